@@ -0,0 +1,243 @@
+package com.elastisys.scale.commons.json;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Extracts the values at a set of JSON Pointers (RFC 6901) from a JSON
+ * document while it is read from a {@link JsonReader}.
+ * <p/>
+ * Only the object members and array elements on the way to a pointed-to value
+ * are visited. All other values are skipped without being materialized, and
+ * reading stops as soon as every pointer has been resolved. Pointed-to values
+ * are read with a {@link TypeAdapter}.
+ * <p/>
+ * If an object has several members with the same name, the first one is used.
+ * <p/>
+ * Instances are not thread-safe and are meant to be used for a single scan.
+ *
+ * @see JsonUtils#extractJson(java.io.Reader, String...)
+ * @see JsonUtils#extractObject(java.io.Reader, String, java.lang.reflect.Type)
+ */
+class JsonPointerScanner<T> {
+
+    /** Reads the pointed-to values. */
+    private final TypeAdapter<T> adapter;
+    /** The root of a tree of the reference tokens of all pointers. */
+    private final Node root = new Node(null);
+
+    /**
+     * Creates a {@link JsonPointerScanner}.
+     *
+     * @param adapter
+     *            Reads the pointed-to values. Must be an adapter for
+     *            {@link JsonElement}s if one pointer is a prefix of another.
+     * @param pointers
+     *            The JSON Pointers to extract.
+     */
+    JsonPointerScanner(TypeAdapter<T> adapter, String... pointers) {
+        checkArgument(adapter != null, "null adapter not allowed");
+        checkArgument(pointers != null, "null pointers not allowed");
+        this.adapter = adapter;
+        for (String pointer : pointers) {
+            add(pointer);
+        }
+    }
+
+    private void add(String pointer) {
+        checkArgument(pointer != null, "null pointer not allowed");
+        checkArgument(pointer.isEmpty() || pointer.startsWith("/"), "not a json pointer: '%s'", pointer);
+        Node node = this.root;
+        if (!pointer.isEmpty()) {
+            for (String token : pointer.substring(1).split("/", -1)) {
+                node = node.child(unescape(token));
+            }
+        }
+        if (node.pointer == null) {
+            node.pointer = pointer;
+            for (Node n = node; n != null; n = n.parent) {
+                n.pending++;
+            }
+        }
+    }
+
+    /**
+     * Reads the next value of a {@link JsonReader} (normally the entire
+     * document) and extracts the values at the pointers. The reader is left
+     * positioned after the last value that had to be read, so the remainder of
+     * the document is not checked for well-formedness.
+     *
+     * @param in
+     * @return The pointed-to values, keyed by pointer. Pointers that could not
+     *         be resolved are left out.
+     * @throws IOException
+     */
+    Map<String, T> scan(JsonReader in) throws IOException {
+        Map<String, T> values = new LinkedHashMap<>();
+        if (this.root.pending > 0) {
+            visit(in, this.root, values);
+        }
+        return values;
+    }
+
+    /**
+     * Visits the next value of the reader, which is at the given node of the
+     * pointer tree. Returns early, in the middle of the value, once all
+     * pointers have been resolved.
+     */
+    private void visit(JsonReader in, Node node, Map<String, T> values) throws IOException {
+        if (node.pointer != null) {
+            T value = this.adapter.read(in);
+            values.put(node.pointer, value);
+            if (node.children != null) {
+                collect((JsonElement) value, node, values);
+            }
+            resolved(node);
+            return;
+        }
+
+        switch (in.peek()) {
+        case BEGIN_OBJECT:
+            in.beginObject();
+            while (in.hasNext()) {
+                if (this.root.pending == 0) {
+                    return;
+                }
+                Node child = node.children.get(in.nextName());
+                if (child == null || child.pending == 0) {
+                    in.skipValue();
+                } else {
+                    visit(in, child, values);
+                }
+            }
+            in.endObject();
+            break;
+        case BEGIN_ARRAY:
+            in.beginArray();
+            for (int index = 0; in.hasNext(); index++) {
+                if (this.root.pending == 0) {
+                    return;
+                }
+                Node child = node.children.get(String.valueOf(index));
+                if (child == null || child.pending == 0) {
+                    in.skipValue();
+                } else {
+                    visit(in, child, values);
+                }
+            }
+            in.endArray();
+            break;
+        default:
+            // a primitive cannot hold the pointed-to values
+            in.skipValue();
+        }
+        // values that were not found here cannot be found anywhere else
+        resolved(node);
+    }
+
+    /**
+     * Extracts the values below an already read value from its
+     * {@link JsonElement} tree.
+     */
+    @SuppressWarnings("unchecked")
+    private void collect(JsonElement element, Node node, Map<String, T> values) {
+        for (Entry<String, Node> entry : node.children.entrySet()) {
+            JsonElement child = null;
+            if (element instanceof JsonObject) {
+                child = ((JsonObject) element).get(entry.getKey());
+            } else if (element instanceof JsonArray) {
+                JsonArray array = (JsonArray) element;
+                int index = arrayIndex(entry.getKey());
+                if (index >= 0 && index < array.size()) {
+                    child = array.get(index);
+                }
+            }
+            if (child == null) {
+                continue;
+            }
+            Node childNode = entry.getValue();
+            if (childNode.pointer != null) {
+                values.put(childNode.pointer, (T) child);
+            }
+            if (childNode.children != null) {
+                collect(child, childNode, values);
+            }
+        }
+    }
+
+    /**
+     * Marks all pointers at or below a node as resolved (found or not).
+     */
+    private void resolved(Node node) {
+        int pending = node.pending;
+        for (Node n = node; n != null; n = n.parent) {
+            n.pending -= pending;
+        }
+    }
+
+    /**
+     * Returns the array index that a reference token refers to, or
+     * <code>-1</code> if it is not an array index.
+     */
+    private static int arrayIndex(String token) {
+        if (token.isEmpty() || token.length() > 9 || (token.length() > 1 && token.charAt(0) == '0')) {
+            return -1;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (token.charAt(i) < '0' || token.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        return Integer.parseInt(token);
+    }
+
+    /**
+     * Unescapes a JSON Pointer reference token.
+     */
+    private static String unescape(String token) {
+        if (token.indexOf('~') < 0) {
+            return token;
+        }
+        return token.replace("~1", "/").replace("~0", "~");
+    }
+
+    /**
+     * A reference token in the tree of pointers.
+     */
+    private static class Node {
+        private final Node parent;
+        /** Child tokens. <code>null</code> if there are none. */
+        private Map<String, Node> children;
+        /** The pointer that ends at this node, if any. */
+        private String pointer;
+        /** The number of unresolved pointers at or below this node. */
+        private int pending;
+
+        Node(Node parent) {
+            this.parent = parent;
+        }
+
+        Node child(String token) {
+            if (this.children == null) {
+                this.children = new HashMap<>();
+            }
+            Node child = this.children.get(token);
+            if (child == null) {
+                child = new Node(this);
+                this.children.put(token, child);
+            }
+            return child;
+        }
+    }
+}
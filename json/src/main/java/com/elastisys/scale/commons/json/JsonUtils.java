@@ -1,21 +1,37 @@
 package com.elastisys.scale.commons.json;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Map;
 
 import org.joda.time.DateTime;
 
-import com.elastisys.scale.commons.json.typeadapters.GsonDateTimeDeserializer;
-import com.elastisys.scale.commons.json.typeadapters.GsonDateTimeSerializer;
-import com.elastisys.scale.commons.util.io.IoUtils;
+import com.elastisys.scale.commons.json.typeadapters.GsonDateTimeTypeAdapter;
+import com.elastisys.scale.commons.util.io.Resources;
 import com.elastisys.scale.commons.util.precond.Preconditions;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 
 /**
  * Utility class for parsing JSON files and converting JSON data to their Java
@@ -25,6 +41,28 @@ import com.google.gson.JsonParser;
  */
 public class JsonUtils {
 
+    /*
+     * Gson instances are thread-safe and cache the type adapters they look up,
+     * so they are created once and shared rather than created per call.
+     */
+
+    /** Serializes and deserializes objects. Leaves out null fields. */
+    private static final Gson DEFAULT_GSON = prepareGsonBuilder().create();
+    /** Serializes objects, including null fields. */
+    private static final Gson SERIALIZE_NULLS_GSON = prepareGsonBuilder().serializeNulls().create();
+    /** Converts {@link JsonElement}s to pretty-printed strings. */
+    private static final Gson PRETTY_GSON = toStringGsonBuilder().setPrettyPrinting().create();
+    /** Converts {@link JsonElement}s to compact strings. */
+    private static final Gson COMPACT_GSON = toStringGsonBuilder().create();
+    /** Writes objects as compact JSON text. Leaves out null fields. */
+    private static final Gson WRITE_COMPACT_GSON = prepareGsonBuilder().disableHtmlEscaping().create();
+    /** Writes objects as compact JSON text, including null fields. */
+    private static final Gson WRITE_COMPACT_NULLS_GSON = prepareGsonBuilder().disableHtmlEscaping().serializeNulls()
+            .create();
+    /** Writes objects as pretty-printed JSON text. Leaves out null fields. */
+    private static final Gson WRITE_PRETTY_GSON = prepareGsonBuilder().disableHtmlEscaping().setPrettyPrinting()
+            .create();
+
     private JsonUtils() {
         throw new UnsupportedOperationException(JsonUtils.class.getName() + " is not instantiable.");
     }
@@ -58,8 +96,8 @@ public class JsonUtils {
             throws JsonParseException, IllegalArgumentException {
         Preconditions.checkArgument(resourceName != null, "null resource not allowed");
 
-        try {
-            return parseJsonString(IoUtils.toString(resourceName, StandardCharsets.UTF_8));
+        try (InputStream stream = Resources.getResource(resourceName).openStream()) {
+            return new JsonParser().parse(new InputStreamReader(stream, StandardCharsets.UTF_8));
         } catch (Exception e) {
             throw new JsonParseException(
                     String.format("failed to parse JSON resource %s: %s", resourceName, e.getMessage()), e);
@@ -77,8 +115,8 @@ public class JsonUtils {
      */
     public static JsonElement parseJsonFile(File jsonFile) throws JsonParseException, IllegalArgumentException {
         Preconditions.checkArgument(jsonFile != null, "null file not allowed");
-        try {
-            return parseJsonString(IoUtils.toString(jsonFile, StandardCharsets.UTF_8));
+        try (InputStream stream = new FileInputStream(jsonFile)) {
+            return new JsonParser().parse(new InputStreamReader(stream, StandardCharsets.UTF_8));
         } catch (Exception e) {
             throw new JsonParseException(
                     String.format("failed to parse JSON file %s: %s", jsonFile.getAbsolutePath(), e.getMessage()), e);
@@ -120,14 +158,130 @@ public class JsonUtils {
      */
     public static JsonElement toJson(Object object, boolean serializeNullFields) {
         Preconditions.checkArgument(object != null, "null object not allowed");
-        GsonBuilder gsonBuilder = prepareGsonBuilder();
-        if (serializeNullFields) {
-            gsonBuilder.serializeNulls();
-        }
-        Gson gson = gsonBuilder.create();
+        Gson gson = serializeNullFields ? SERIALIZE_NULLS_GSON : DEFAULT_GSON;
         return gson.toJsonTree(object);
     }
 
+    /**
+     * Serializes an object to a compact JSON {@link String}.
+     * <code>null</code>-valued fields are excluded from the output.
+     * <p/>
+     * Produces the same output as {@code toString(toJson(object))}, but writes
+     * the object straight to text without first building a
+     * {@link JsonElement} tree.
+     *
+     * @param object
+     *            The Java object.
+     * @return The JSON-serialized representation of the object.
+     */
+    public static String toJsonString(Object object) {
+        return toJsonString(object, false);
+    }
+
+    /**
+     * Serializes an object to a compact JSON {@link String}, with optional
+     * inclusion of <code>null</code>-valued fields.
+     * <p/>
+     * Produces the same output as
+     * {@code toString(toJson(object, serializeNullFields))}, but writes the
+     * object straight to text without first building a {@link JsonElement}
+     * tree.
+     *
+     * @param object
+     *            The Java object.
+     * @param serializeNullFields
+     *            If <code>true</code>, <code>null</code>-values fields are
+     *            included in the output.
+     * @return The JSON-serialized representation of the object.
+     */
+    public static String toJsonString(Object object, boolean serializeNullFields) {
+        Preconditions.checkArgument(object != null, "null object not allowed");
+        Gson gson = serializeNullFields ? WRITE_COMPACT_NULLS_GSON : WRITE_COMPACT_GSON;
+        return gson.toJson(object);
+    }
+
+    /**
+     * Serializes an object to a pretty-printed JSON {@link String}.
+     * <code>null</code>-valued fields are excluded from the output.
+     * <p/>
+     * Produces the same output as {@code toPrettyString(toJson(object))}, but
+     * writes the object straight to text without first building a
+     * {@link JsonElement} tree.
+     *
+     * @param object
+     *            The Java object.
+     * @return The JSON-serialized representation of the object.
+     */
+    public static String toPrettyJsonString(Object object) {
+        Preconditions.checkArgument(object != null, "null object not allowed");
+        return WRITE_PRETTY_GSON.toJson(object);
+    }
+
+    /**
+     * Serializes an object to UTF-8 encoded JSON. <code>null</code>-valued
+     * fields are excluded from the output.
+     *
+     * @param object
+     *            The Java object.
+     * @param prettyPrint
+     *            <code>true</code> for pretty-printed output,
+     *            <code>false</code> for compact output.
+     * @return The UTF-8 encoded JSON-serialized representation of the object.
+     */
+    public static byte[] toJsonBytes(Object object, boolean prettyPrint) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        writeJson(object, bytes, prettyPrint);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Serializes an object as JSON to a {@link Writer}. <code>null</code>-valued
+     * fields are excluded from the output. The {@link Writer} is neither
+     * flushed nor closed.
+     *
+     * @param object
+     *            The Java object.
+     * @param writer
+     *            The {@link Writer} to write to.
+     * @param prettyPrint
+     *            <code>true</code> for pretty-printed output,
+     *            <code>false</code> for compact output.
+     * @throws JsonIOException
+     *             if writing failed.
+     */
+    public static void writeJson(Object object, Writer writer, boolean prettyPrint) throws JsonIOException {
+        Preconditions.checkArgument(object != null, "null object not allowed");
+        Preconditions.checkArgument(writer != null, "null writer not allowed");
+        Gson gson = prettyPrint ? WRITE_PRETTY_GSON : WRITE_COMPACT_GSON;
+        gson.toJson(object, writer);
+    }
+
+    /**
+     * Serializes an object as UTF-8 encoded JSON to an {@link OutputStream}.
+     * <code>null</code>-valued fields are excluded from the output. The
+     * {@link OutputStream} is flushed but not closed.
+     *
+     * @param object
+     *            The Java object.
+     * @param out
+     *            The {@link OutputStream} to write to.
+     * @param prettyPrint
+     *            <code>true</code> for pretty-printed output,
+     *            <code>false</code> for compact output.
+     * @throws JsonIOException
+     *             if writing failed.
+     */
+    public static void writeJson(Object object, OutputStream out, boolean prettyPrint) throws JsonIOException {
+        Preconditions.checkArgument(out != null, "null output stream not allowed");
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writeJson(object, writer, prettyPrint);
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
     /**
      * Returns the "pretty print" {@link String} version of a
      * {@link JsonElement}
@@ -138,8 +292,7 @@ public class JsonUtils {
      */
     public static String toPrettyString(JsonElement jsonElement) {
         Preconditions.checkArgument(jsonElement != null, "null jsonElement not allowed");
-        Gson gson = toStringGsonBuilder().setPrettyPrinting().create();
-        return gson.toJson(jsonElement);
+        return PRETTY_GSON.toJson(jsonElement);
     }
 
     /**
@@ -151,8 +304,7 @@ public class JsonUtils {
      */
     public static String toString(JsonElement jsonElement) {
         Preconditions.checkArgument(jsonElement != null, "null jsonElement not allowed");
-        Gson gson = toStringGsonBuilder().create();
-        return gson.toJson(jsonElement);
+        return COMPACT_GSON.toJson(jsonElement);
     }
 
     /**
@@ -184,8 +336,7 @@ public class JsonUtils {
     public static <T> T toObject(JsonElement jsonElement, Class<T> type) {
         Preconditions.checkArgument(jsonElement != null, "null jsonElement not allowed");
         Preconditions.checkArgument(type != null, "null type not allowed");
-        Gson gson = prepareGsonBuilder().create();
-        return type.cast(gson.fromJson(jsonElement, type));
+        return type.cast(DEFAULT_GSON.fromJson(jsonElement, type));
     }
 
     /**
@@ -214,19 +365,153 @@ public class JsonUtils {
     public static <T> T toObject(JsonElement jsonElement, Type type) {
         Preconditions.checkArgument(jsonElement != null, "null jsonElement not allowed");
         Preconditions.checkArgument(type != null, "null type not allowed");
-        Gson gson = prepareGsonBuilder().create();
-        return gson.fromJson(jsonElement, type);
+        return DEFAULT_GSON.fromJson(jsonElement, type);
+    }
+
+    /**
+     * Reads JSON from a {@link Reader} straight into a Java object of a given
+     * {@link Type}, without first reading the input into a {@link String} or
+     * {@link JsonElement} tree. The {@link Reader} is read to the end but not
+     * closed.
+     * <p/>
+     * This method also handles deserializing time stamp elements into
+     * {@link DateTime} fields.
+     *
+     * @param reader
+     *            The {@link Reader} to read JSON from.
+     * @param type
+     *            The {@link Type} of the Java object.
+     * @return An instance of the specified {@code type}, or <code>null</code>
+     *         if the input is empty.
+     * @throws JsonParseException
+     *             if the input could not be read or is not valid JSON for
+     *             {@code type}.
+     */
+    public static <T> T toObject(Reader reader, Type type) throws JsonParseException {
+        Preconditions.checkArgument(reader != null, "null reader not allowed");
+        Preconditions.checkArgument(type != null, "null type not allowed");
+        return DEFAULT_GSON.fromJson(reader, type);
+    }
+
+    /**
+     * Reads UTF-8 encoded JSON from an {@link InputStream} straight into a Java
+     * object of a given {@link Type}, without first reading the input into a
+     * {@link String} or {@link JsonElement} tree. The {@link InputStream} is
+     * read to the end but not closed.
+     * <p/>
+     * This method also handles deserializing time stamp elements into
+     * {@link DateTime} fields.
+     *
+     * @param inputStream
+     *            The {@link InputStream} to read JSON from.
+     * @param type
+     *            The {@link Type} of the Java object.
+     * @return An instance of the specified {@code type}, or <code>null</code>
+     *         if the input is empty.
+     * @throws JsonParseException
+     *             if the input could not be read or is not valid JSON for
+     *             {@code type}.
+     */
+    public static <T> T toObject(InputStream inputStream, Type type) throws JsonParseException {
+        Preconditions.checkArgument(inputStream != null, "null inputStream not allowed");
+        return toObject(new InputStreamReader(inputStream, StandardCharsets.UTF_8), type);
+    }
+
+    /**
+     * Extracts the values at a number of JSON Pointer (RFC 6901) paths, such
+     * as {@code /alerter/smtp/0/subject}, from a JSON document read from a
+     * {@link Reader}, without parsing the entire document.
+     * <p/>
+     * The document is scanned, and only the values on the paths to the
+     * requested values are visited. All other values are skipped without being
+     * materialized, and reading stops as soon as all values have been found.
+     * Selectively reading a few fields from a large document therefore only
+     * costs the bytes that need to be scanned, and allocates little more than
+     * the extracted values. Since the rest of the document is never read, it
+     * is not checked for well-formedness. The {@link Reader} is not closed.
+     * <p/>
+     * If an object has several members with the same name, the first one is
+     * used.
+     *
+     * @param reader
+     *            The {@link Reader} to read JSON from.
+     * @param pointers
+     *            The JSON Pointers of the values to extract. The empty pointer
+     *            ({@code ""}) refers to the entire document.
+     * @return The extracted values keyed by JSON Pointer. Pointers that don't
+     *         refer to a value in the document are left out.
+     * @throws JsonParseException
+     *             if the input could not be read or is not valid JSON.
+     */
+    public static Map<String, JsonElement> extractJson(Reader reader, String... pointers) throws JsonParseException {
+        Preconditions.checkArgument(reader != null, "null reader not allowed");
+        return scan(reader, DEFAULT_GSON.getAdapter(JsonElement.class), pointers);
+    }
+
+    /**
+     * Extracts the value at a JSON Pointer (RFC 6901) path from a JSON
+     * document read from a {@link Reader}, and deserializes it into a Java
+     * object of a given {@link Type}, without parsing the rest of the
+     * document. See {@link #extractJson(Reader, String...)}.
+     * <p/>
+     * The value is read straight into the Java object, without first being
+     * read into a {@link JsonElement} tree. This method also handles
+     * deserializing time stamp elements into {@link DateTime} fields.
+     *
+     * @param reader
+     *            The {@link Reader} to read JSON from.
+     * @param pointer
+     *            The JSON Pointer of the value to extract.
+     * @param type
+     *            The {@link Type} of the Java object.
+     * @return An instance of the specified {@code type}, or <code>null</code>
+     *         if the pointer doesn't refer to a value in the document.
+     * @throws JsonParseException
+     *             if the input could not be read, is not valid JSON, or the
+     *             value is not valid JSON for {@code type}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T extractObject(Reader reader, String pointer, Type type) throws JsonParseException {
+        Preconditions.checkArgument(reader != null, "null reader not allowed");
+        Preconditions.checkArgument(type != null, "null type not allowed");
+        TypeAdapter<T> adapter = (TypeAdapter<T>) DEFAULT_GSON.getAdapter(TypeToken.get(type));
+        return scan(reader, adapter, pointer).get(pointer);
+    }
+
+    private static <T> Map<String, T> scan(Reader reader, TypeAdapter<T> adapter, String... pointers)
+            throws JsonParseException {
+        JsonPointerScanner<T> scanner = new JsonPointerScanner<>(adapter, pointers);
+        JsonReader in = new JsonReader(reader);
+        // as lenient as Gson#fromJson
+        in.setLenient(true);
+        boolean emptyDocument = true;
+        try {
+            in.peek();
+            emptyDocument = false;
+            return scanner.scan(in);
+        } catch (EOFException e) {
+            if (emptyDocument) {
+                return Collections.emptyMap();
+            }
+            throw new JsonSyntaxException(e);
+        } catch (MalformedJsonException | NumberFormatException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
     }
 
     /**
      * Prepares a {@link GsonBuilder} instance with registered type adapters for
-     * {@link DateTime} and {@link ImmutableList}.
+     * {@link DateTime} and {@link ImmutableList}. Use for customized
+     * {@link Gson} instances; the conversion methods of this class use shared,
+     * pre-built instances. A created {@link Gson} is best kept and reused, since
+     * it caches the type adapters it looks up.
      *
      * @return
      */
     public static GsonBuilder prepareGsonBuilder() {
-        return new GsonBuilder().registerTypeAdapter(DateTime.class, new GsonDateTimeDeserializer())
-                .registerTypeAdapter(DateTime.class, new GsonDateTimeSerializer())
+        return new GsonBuilder().registerTypeAdapter(DateTime.class, new GsonDateTimeTypeAdapter())
                 .setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
 
     }
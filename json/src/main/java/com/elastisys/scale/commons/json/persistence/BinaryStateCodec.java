@@ -0,0 +1,481 @@
+package com.elastisys.scale.commons.json.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.elastisys.scale.commons.util.io.IoUtils;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A {@link StateCodec} that stores states in a compact binary encoding of
+ * their JSON representation, which is smaller than JSON text and faster to
+ * write and to recover.
+ * <p/>
+ * Every value is a one-byte tag followed by its content: integers as
+ * variable-length (zig-zag) integers, other numbers as IEEE 754 doubles (or as
+ * text, if not exactly representable as a double), strings prefixed by their
+ * length, and arrays and objects as their elements followed by an end tag.
+ * Short strings, such as object member names, are only written in full the
+ * first time they occur, and are otherwise written as a reference to their
+ * first occurrence.
+ */
+public class BinaryStateCodec implements StateCodec {
+
+    /** The shared {@link BinaryStateCodec} instance. */
+    public static final BinaryStateCodec INSTANCE = new BinaryStateCodec();
+
+    /** Leading bytes of an encoded state: "ESB" and a format version. */
+    private static final byte[] MAGIC = { 'E', 'S', 'B', 1 };
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INTEGER = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte DECIMAL = 5;
+    private static final byte STRING = 6;
+    private static final byte STRING_REF = 7;
+    private static final byte ARRAY = 8;
+    private static final byte OBJECT = 9;
+    private static final byte END = 10;
+
+    /** Strings up to this length are written by reference when repeated. */
+    private static final int MAX_REF_STRING_LENGTH = 64;
+
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private BinaryStateCodec() {
+    }
+
+    @Override
+    public JsonWriter newWriter(OutputStream out) {
+        return new BinaryWriter(out);
+    }
+
+    /**
+     * Decodes the state into a {@link JsonElement} tree and binds the state
+     * from that tree.
+     */
+    @Override
+    public <T> T read(InputStream in, Gson gson, Type type) throws IOException {
+        return gson.fromJson(readTree(in), type);
+    }
+
+    @Override
+    public JsonElement readTree(InputStream in) throws IOException {
+        byte[] encodedState;
+        try {
+            encodedState = IoUtils.readBytes(in);
+        } finally {
+            in.close();
+        }
+        return decode(encodedState);
+    }
+
+    private static JsonElement decode(byte[] encodedState) throws IOException {
+        if (encodedState.length < MAGIC.length
+                || !Arrays.equals(Arrays.copyOf(encodedState, MAGIC.length), MAGIC)) {
+            throw new IOException("not a binary-encoded state");
+        }
+        Decoder decoder = new Decoder(encodedState, MAGIC.length);
+        try {
+            JsonElement state = decoder.read(decoder.readTag());
+            if (decoder.position != encodedState.length) {
+                throw new IOException("trailing data after binary-encoded state");
+            }
+            return state;
+        } catch (ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("truncated binary-encoded state", e);
+        }
+    }
+
+    /**
+     * A {@link JsonWriter} that writes the binary encoding to an
+     * {@link OutputStream}, without going through a {@link JsonElement} tree.
+     */
+    private static class BinaryWriter extends JsonWriter {
+        /** Stands in for the character stream of a {@link JsonWriter}. */
+        private static final Writer UNWRITABLE = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void flush() {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void close() {
+                throw new AssertionError();
+            }
+        };
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private int position = 0;
+        /** Index of each string written (in full) so far. */
+        private final Map<String, Integer> strings = new HashMap<>();
+        /** An object member name that awaits its value. */
+        private String deferredName;
+        private boolean closed = false;
+
+        BinaryWriter(OutputStream out) {
+            super(UNWRITABLE);
+            this.out = out;
+            System.arraycopy(MAGIC, 0, this.buffer, 0, MAGIC.length);
+            this.position = MAGIC.length;
+        }
+
+        @Override
+        public JsonWriter beginArray() throws IOException {
+            writeDeferredName();
+            writeByte(ARRAY);
+            return this;
+        }
+
+        @Override
+        public JsonWriter endArray() throws IOException {
+            writeByte(END);
+            return this;
+        }
+
+        @Override
+        public JsonWriter beginObject() throws IOException {
+            writeDeferredName();
+            writeByte(OBJECT);
+            return this;
+        }
+
+        @Override
+        public JsonWriter endObject() throws IOException {
+            writeByte(END);
+            return this;
+        }
+
+        @Override
+        public JsonWriter name(String name) {
+            if (name == null) {
+                throw new NullPointerException("name == null");
+            }
+            if (this.deferredName != null) {
+                throw new IllegalStateException("name already given: " + this.deferredName);
+            }
+            this.deferredName = name;
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(String value) throws IOException {
+            if (value == null) {
+                return nullValue();
+            }
+            writeDeferredName();
+            writeString(value);
+            return this;
+        }
+
+        @Override
+        public JsonWriter jsonValue(String value) {
+            throw new UnsupportedOperationException("raw JSON values cannot be binary-encoded");
+        }
+
+        @Override
+        public JsonWriter nullValue() throws IOException {
+            if (this.deferredName != null && !getSerializeNulls()) {
+                // skip the member altogether
+                this.deferredName = null;
+                return this;
+            }
+            writeDeferredName();
+            writeByte(NULL);
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(boolean value) throws IOException {
+            writeDeferredName();
+            writeByte(value ? TRUE : FALSE);
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(Boolean value) throws IOException {
+            if (value == null) {
+                return nullValue();
+            }
+            return value(value.booleanValue());
+        }
+
+        @Override
+        public JsonWriter value(double value) throws IOException {
+            writeDeferredName();
+            writeDouble(value);
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(long value) throws IOException {
+            writeDeferredName();
+            writeInteger(value);
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(Number value) throws IOException {
+            if (value == null) {
+                return nullValue();
+            }
+            writeDeferredName();
+            writeNumber(value);
+            return this;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            this.out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!this.closed) {
+                this.closed = true;
+                drain();
+                this.out.close();
+            }
+        }
+
+        private void writeDeferredName() throws IOException {
+            if (this.deferredName != null) {
+                writeString(this.deferredName);
+                this.deferredName = null;
+            }
+        }
+
+        private void writeNumber(Number number) throws IOException {
+            if (number instanceof Integer || number instanceof Long || number instanceof Short
+                    || number instanceof Byte) {
+                writeInteger(number.longValue());
+            } else if (number instanceof Double || number instanceof Float) {
+                writeDouble(number.doubleValue());
+            } else {
+                // arbitrary precision, or a number parsed from text
+                String text = number.toString();
+                BigDecimal decimal = new BigDecimal(text);
+                if (decimal.scale() <= 0 && decimal.compareTo(LONG_MIN) >= 0 && decimal.compareTo(LONG_MAX) <= 0) {
+                    writeInteger(decimal.longValueExact());
+                } else if (!Double.isInfinite(decimal.doubleValue())
+                        && BigDecimal.valueOf(decimal.doubleValue()).compareTo(decimal) == 0) {
+                    // decodes to the same value
+                    writeDouble(decimal.doubleValue());
+                } else {
+                    writeByte(DECIMAL);
+                    writeUtf8(text);
+                }
+            }
+        }
+
+        private void writeInteger(long value) throws IOException {
+            writeByte(INTEGER);
+            // zig-zag: small negative numbers are small
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        private void writeDouble(double value) throws IOException {
+            writeByte(DOUBLE);
+            long bits = Double.doubleToRawLongBits(value);
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                this.buffer[this.position++] = (byte) (bits >>> shift);
+            }
+        }
+
+        private void writeString(String string) throws IOException {
+            Integer index = this.strings.get(string);
+            if (index != null) {
+                writeByte(STRING_REF);
+                writeVarint(index);
+                return;
+            }
+            writeByte(STRING);
+            writeUtf8(string);
+            if (string.length() <= MAX_REF_STRING_LENGTH) {
+                this.strings.put(string, this.strings.size());
+            }
+        }
+
+        private void writeUtf8(String string) throws IOException {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes);
+        }
+
+        private void writeVarint(long value) throws IOException {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        private void writeByte(byte value) throws IOException {
+            ensureCapacity(1);
+            this.buffer[this.position++] = value;
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            if (bytes.length > this.buffer.length - this.position) {
+                drain();
+                this.out.write(bytes);
+                return;
+            }
+            System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+            this.position += bytes.length;
+        }
+
+        private void ensureCapacity(int bytes) throws IOException {
+            if (this.position + bytes > this.buffer.length) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            this.out.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+    }
+
+    /**
+     * Reads a JSON tree from a byte array.
+     */
+    private static class Decoder {
+        private final byte[] buffer;
+        private int position;
+        /** Strings read (in full) so far, by index. */
+        private final List<String> strings = new ArrayList<>();
+
+        Decoder(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        byte readTag() {
+            return this.buffer[this.position++];
+        }
+
+        JsonElement read(byte tag) throws IOException {
+            switch (tag) {
+            case NULL:
+                return JsonNull.INSTANCE;
+            case FALSE:
+                return new JsonPrimitive(false);
+            case TRUE:
+                return new JsonPrimitive(true);
+            case INTEGER:
+                long zigZag = readVarint();
+                return new JsonPrimitive((zigZag >>> 1) ^ -(zigZag & 1));
+            case DOUBLE:
+                return new JsonPrimitive(Double.longBitsToDouble(readLong()));
+            case DECIMAL:
+                String text = readUtf8();
+                try {
+                    BigDecimal decimal = new BigDecimal(text);
+                    return new JsonPrimitive(decimal.scale() <= 0 ? (Number) decimal.toBigIntegerExact() : decimal);
+                } catch (NumberFormatException | ArithmeticException e) {
+                    throw new IOException("malformed number: " + text, e);
+                }
+            case STRING:
+            case STRING_REF:
+                return new JsonPrimitive(readString(tag));
+            case ARRAY:
+                JsonArray array = new JsonArray();
+                for (byte next = readTag(); next != END; next = readTag()) {
+                    array.add(read(next));
+                }
+                return array;
+            case OBJECT:
+                JsonObject object = new JsonObject();
+                for (byte next = readTag(); next != END; next = readTag()) {
+                    String name = readString(next);
+                    object.add(name, read(readTag()));
+                }
+                return object;
+            default:
+                throw new IOException(String.format("unexpected tag %d at offset %d", tag, this.position - 1));
+            }
+        }
+
+        private String readString(byte tag) throws IOException {
+            if (tag == STRING_REF) {
+                long index = readVarint();
+                if (index < 0 || index >= this.strings.size()) {
+                    throw new IOException("invalid string reference " + index);
+                }
+                return this.strings.get((int) index);
+            }
+            if (tag != STRING) {
+                throw new IOException(String.format("expected a string at offset %d", this.position - 1));
+            }
+            String string = readUtf8();
+            if (string.length() <= MAX_REF_STRING_LENGTH) {
+                this.strings.add(string);
+            }
+            return string;
+        }
+
+        private String readUtf8() throws IOException {
+            int length = readLength();
+            String string = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+            this.position += length;
+            return string;
+        }
+
+        private int readLength() throws IOException {
+            long length = readVarint();
+            if (length < 0 || length > this.buffer.length - this.position) {
+                throw new IOException("invalid length " + length);
+            }
+            return (int) length;
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = this.buffer[this.position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed varint");
+        }
+
+        private long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (this.buffer[this.position++] & 0xFF);
+            }
+            return value;
+        }
+    }
+}
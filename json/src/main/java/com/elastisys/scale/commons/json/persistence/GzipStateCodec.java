@@ -0,0 +1,54 @@
+package com.elastisys.scale.commons.json.persistence;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A {@link StateCodec} that gzip-compresses the output of another
+ * {@link StateCodec}. Trades some encoding/decoding time for a smaller
+ * storage file, which pays off for large states with repetitive content.
+ */
+public class GzipStateCodec implements StateCodec {
+
+    /** Size of gzip buffers. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The codec whose output is compressed. */
+    private final StateCodec codec;
+
+    /**
+     * Creates a {@link GzipStateCodec}.
+     *
+     * @param codec
+     *            The codec whose output is to be compressed.
+     */
+    public GzipStateCodec(StateCodec codec) {
+        checkArgument(codec != null, "codec cannot be null");
+        this.codec = codec;
+    }
+
+    @Override
+    public JsonWriter newWriter(OutputStream out) throws IOException {
+        return this.codec.newWriter(new GZIPOutputStream(out, BUFFER_SIZE));
+    }
+
+    @Override
+    public <T> T read(InputStream in, Gson gson, Type type) throws IOException {
+        return this.codec.read(new GZIPInputStream(in, BUFFER_SIZE), gson, type);
+    }
+
+    @Override
+    public JsonElement readTree(InputStream in) throws IOException {
+        return this.codec.readTree(new GZIPInputStream(in, BUFFER_SIZE));
+    }
+}
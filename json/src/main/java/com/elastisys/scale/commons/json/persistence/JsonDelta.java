@@ -0,0 +1,151 @@
+package com.elastisys.scale.commons.json.persistence;
+
+import java.util.Map.Entry;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Computes and applies the differences between two JSON documents, as logged
+ * to the journal of a {@link PersistentState}.
+ * <p/>
+ * A delta is a JSON array of operations, each of which is either
+ * <code>[path, value]</code> (set the value at a path) or
+ * <code>[path]</code> (remove the object member at a path), where the path is
+ * a JSON Pointer. Objects are compared member by member, whereas any other
+ * changed value (including arrays) is replaced as a whole. For example:
+ *
+ * <pre>
+ * [["/instances/i-1/state", "running"], ["/instances/i-2"]]
+ * </pre>
+ */
+class JsonDelta {
+
+    private JsonDelta() {
+        throw new UnsupportedOperationException(JsonDelta.class + " is not instantiable.");
+    }
+
+    /**
+     * Returns the operations that turn one JSON document into another.
+     *
+     * @param from
+     *            The original document.
+     * @param to
+     *            The changed document.
+     * @return The delta. Empty if the documents are equal.
+     */
+    static JsonArray diff(JsonElement from, JsonElement to) {
+        JsonArray delta = new JsonArray();
+        diff("", from, to, delta);
+        return delta;
+    }
+
+    private static void diff(String path, JsonElement from, JsonElement to, JsonArray delta) {
+        if (from.equals(to)) {
+            return;
+        }
+        if (!from.isJsonObject() || !to.isJsonObject()) {
+            delta.add(operation(path, to));
+            return;
+        }
+        JsonObject fromObject = from.getAsJsonObject();
+        JsonObject toObject = to.getAsJsonObject();
+        for (Entry<String, JsonElement> member : fromObject.entrySet()) {
+            if (!toObject.has(member.getKey())) {
+                delta.add(operation(path + "/" + escape(member.getKey()), null));
+            }
+        }
+        for (Entry<String, JsonElement> member : toObject.entrySet()) {
+            String memberPath = path + "/" + escape(member.getKey());
+            JsonElement fromMember = fromObject.get(member.getKey());
+            if (fromMember == null) {
+                delta.add(operation(memberPath, member.getValue()));
+            } else {
+                diff(memberPath, fromMember, member.getValue(), delta);
+            }
+        }
+    }
+
+    /**
+     * Applies a delta to a JSON document.
+     *
+     * @param document
+     *            The document. Modified in place (unless replaced as a whole).
+     * @param delta
+     *            A delta, as produced by {@link #diff(JsonElement, JsonElement)}.
+     * @return The changed document.
+     * @throws JsonParseException
+     *             if the delta is malformed or doesn't apply to the document.
+     */
+    static JsonElement apply(JsonElement document, JsonArray delta) throws JsonParseException {
+        for (JsonElement element : delta) {
+            if (!element.isJsonArray() || element.getAsJsonArray().size() == 0
+                    || element.getAsJsonArray().size() > 2) {
+                throw new JsonParseException("malformed delta operation: " + element);
+            }
+            JsonArray operation = element.getAsJsonArray();
+            String path = operation.get(0).getAsString();
+            if (path.isEmpty()) {
+                if (operation.size() == 1) {
+                    throw new JsonParseException("cannot remove document root");
+                }
+                document = operation.get(1);
+                continue;
+            }
+
+            // navigate to the object holding the member to set/remove
+            JsonElement parent = document;
+            String[] tokens = path.substring(1).split("/", -1);
+            for (int i = 0; i < tokens.length - 1; i++) {
+                parent = parent.isJsonObject() ? parent.getAsJsonObject().get(unescape(tokens[i])) : null;
+                if (parent == null) {
+                    break;
+                }
+            }
+            if (parent == null || !parent.isJsonObject()) {
+                throw new JsonParseException("delta operation does not apply to document: " + operation);
+            }
+            String name = unescape(tokens[tokens.length - 1]);
+            if (operation.size() == 1) {
+                parent.getAsJsonObject().remove(name);
+            } else {
+                parent.getAsJsonObject().add(name, operation.get(1));
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Creates a set operation, or a remove operation if the value is
+     * <code>null</code>.
+     *
+     * @param path
+     * @param value
+     * @return
+     */
+    private static JsonArray operation(String path, JsonElement value) {
+        JsonArray operation = new JsonArray();
+        operation.add(new JsonPrimitive(path));
+        if (value != null) {
+            operation.add(value);
+        }
+        return operation;
+    }
+
+    private static String escape(String token) {
+        if (token.indexOf('~') < 0 && token.indexOf('/') < 0) {
+            return token;
+        }
+        return token.replace("~", "~0").replace("/", "~1");
+    }
+
+    private static String unescape(String token) {
+        if (token.indexOf('~') < 0) {
+            return token;
+        }
+        return token.replace("~1", "/").replace("~0", "~");
+    }
+}
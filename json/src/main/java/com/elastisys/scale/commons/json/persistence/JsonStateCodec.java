@@ -0,0 +1,66 @@
+package com.elastisys.scale.commons.json.persistence;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A {@link StateCodec} that stores states as JSON text (UTF-8), either
+ * pretty-printed or compact. This is the default {@link StateCodec}.
+ */
+public class JsonStateCodec implements StateCodec {
+
+    /** A {@link JsonStateCodec} that stores pretty-printed JSON. */
+    public static final JsonStateCodec PRETTY = new JsonStateCodec(true);
+    /** A {@link JsonStateCodec} that stores compact JSON. */
+    public static final JsonStateCodec COMPACT = new JsonStateCodec(false);
+
+    /** <code>true</code> if JSON is to be pretty-printed. */
+    private final boolean prettyPrint;
+
+    private JsonStateCodec(boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
+    @Override
+    public JsonWriter newWriter(OutputStream out) {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        if (this.prettyPrint) {
+            writer.setIndent("  ");
+        }
+        return writer;
+    }
+
+    /**
+     * Binds the state straight from the JSON text, without a
+     * {@link JsonElement} tree.
+     */
+    @Override
+    public <T> T read(InputStream in, Gson gson, Type type) throws IOException {
+        try (JsonReader reader = newReader(in)) {
+            return gson.fromJson(reader, type);
+        }
+    }
+
+    @Override
+    public JsonElement readTree(InputStream in) throws IOException {
+        try (JsonReader reader = newReader(in)) {
+            return new JsonParser().parse(reader);
+        }
+    }
+
+    private static JsonReader newReader(InputStream in) {
+        return new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+}
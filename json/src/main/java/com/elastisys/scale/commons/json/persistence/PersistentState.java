@@ -1,17 +1,32 @@
 package com.elastisys.scale.commons.json.persistence;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.elastisys.scale.commons.json.JsonUtils;
 import com.elastisys.scale.commons.util.file.FileUtils;
-import com.elastisys.scale.commons.util.io.IoUtils;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Represents some piece of application state that needs to be persisted to disk
@@ -39,13 +54,38 @@ import com.google.gson.reflect.TypeToken;
  *         &quot;12&quot;, UtcTime.parse(&quot;2015-01-01T12:00:00.000Z&quot;));
  * state.update(timestamps);
  * </pre>
+ * <p/>
+ * Writes are crash-safe: the state is written to a temporary file, which is
+ * flushed to disk and then renamed to the storage location, so the storage
+ * location always holds a complete state. Through a
+ * {@link PersistentStateBuilder} (see {@link #builder(File, TypeToken)}), the
+ * state can be stored in compact rather than pretty-printed form, or in any
+ * other encoding provided by a {@link StateCodec}, and updates can be
+ * journaled: appended as deltas to a journal file (the storage location with a
+ * <code>.journal</code> suffix), which is periodically compacted into a new
+ * snapshot at the storage location.
+ * <p/>
+ * Updates can also be written behind (see
+ * {@link PersistentStateBuilder#writeBehind(long, TimeUnit)}), by a background
+ * thread that coalesces bursts of updates into at most one write per interval.
+ * A write-behind {@link PersistentState} should be {@link #close()}d when no
+ * longer used, to write any pending update.
  *
  * @param <T>
  *            The type of state to persist. Needs to be serializable by Gson
  *            with the type adapters registered in
  *            {@link JsonUtils#prepareGsonBuilder()}.
  */
-public class PersistentState<T> {
+public class PersistentState<T> implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(PersistentState.class);
+
+    /** Shared (thread-safe) {@link Gson} used to map states to and from JSON. */
+    private static final Gson GSON = JsonUtils.prepareGsonBuilder().serializeNulls().create();
+    /**
+     * Journal size in bytes below which the journal is not compacted, even if
+     * larger than the snapshot.
+     */
+    private static final long MIN_COMPACTION_SIZE = 4096;
 
     /** The storage location of the state. */
     private final File storageLocation;
@@ -53,10 +93,51 @@ public class PersistentState<T> {
      * The current state. Needs to be (de)serializable by Gson with the type
      * adapters registered in {@link JsonUtils}.
      */
-    private T state;
+    private volatile T state;
     /** The type of state being persisted. */
     private TypeToken<T> stateType;
 
+    /** Encodes and decodes state snapshots. */
+    private final StateCodec codec;
+    /**
+     * The journal of state deltas. Also used without journaling, to clear out
+     * any journal left behind when journaling was last used.
+     */
+    private final StateJournal journal;
+    /** <code>true</code> if state updates are journaled. */
+    private final boolean journaled;
+    /** Maximum number of journaled deltas before compaction. */
+    private final int maxJournalEntries;
+    /**
+     * The last persisted state, as JSON, which journaled deltas are computed
+     * against. Only kept when journaling.
+     */
+    private JsonElement persistedState;
+    /** Size in bytes of the current snapshot. */
+    private long snapshotSize;
+
+    /**
+     * Minimum time between writes (in nanoseconds) in write-behind mode.
+     * <code>0</code> if updates are written synchronously.
+     */
+    private final long writeBehindInterval;
+    /**
+     * Writes updates in the background in write-behind mode. <code>null</code>
+     * if updates are written synchronously.
+     */
+    private final ScheduledExecutorService flusher;
+    /** Number of updates not yet written to storage. */
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+    /** <code>true</code> while a background write is scheduled. */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    /** {@link System#nanoTime()} when the last write started. */
+    private volatile long lastWriteStart;
+    /** <code>true</code> once {@link #close()} has been called. */
+    private volatile boolean closed;
+
+    /** Collected metrics. */
+    private final PersistentStateMetrics metrics = new PersistentStateMetrics();
+
     /** Write lock to protect from concurrent writes to storage. */
     private final Object lock = new Object();
 
@@ -87,20 +168,79 @@ public class PersistentState<T> {
      *            The type of state to store.
      */
     public PersistentState(File storageLocation, TypeToken<T> stateType) {
-        FileUtils.ensureFileExists(storageLocation.getAbsolutePath());
-        this.storageLocation = storageLocation;
-        this.stateType = stateType;
+        this(new PersistentStateBuilder<>(storageLocation, stateType));
+    }
+
+    /**
+     * Creates a {@link PersistentState} instance from the settings of a
+     * {@link PersistentStateBuilder}.
+     *
+     * @param builder
+     */
+    PersistentState(PersistentStateBuilder<T> builder) {
+        FileUtils.ensureFileExists(builder.storageLocation.getAbsolutePath());
+        this.storageLocation = builder.storageLocation;
+        this.stateType = builder.stateType;
+        this.codec = builder.codec;
+        this.journal = new StateJournal(new File(this.storageLocation.getPath() + ".journal"));
+        this.journaled = builder.journal;
+        this.maxJournalEntries = builder.maxJournalEntries;
         this.state = recover();
+        this.writeBehindInterval = builder.writeBehindInterval;
+        if (this.writeBehindInterval > 0) {
+            ScheduledThreadPoolExecutor flusher = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "persistent-state-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // on close, pending updates are written by the closing thread
+            flusher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            this.flusher = flusher;
+            this.lastWriteStart = System.nanoTime() - this.writeBehindInterval;
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Creates a {@link PersistentStateBuilder} from which a
+     * {@link PersistentState} can be instantiated.
+     *
+     * @param storageLocation
+     *            The storage location of the state.
+     * @param stateType
+     *            The type of state to store.
+     * @return
+     */
+    public static <T> PersistentStateBuilder<T> builder(File storageLocation, Class<T> stateType) {
+        return new PersistentStateBuilder<>(storageLocation, TypeToken.get(stateType));
+    }
+
+    /**
+     * Creates a {@link PersistentStateBuilder} from which a
+     * {@link PersistentState} can be instantiated.
+     *
+     * @param storageLocation
+     *            The storage location of the state.
+     * @param stateType
+     *            The type of state to store.
+     * @return
+     */
+    public static <T> PersistentStateBuilder<T> builder(File storageLocation, TypeToken<T> stateType) {
+        return new PersistentStateBuilder<>(storageLocation, stateType);
     }
 
     /**
      * Sets the current state of this {@link PersistentState} and saves it to
-     * disk.
+     * disk (or, in write-behind mode, schedules it to be saved).
      *
      * @param updatedState
      *            The new state value. May be <code>null</code>.
+     * @throws IllegalStateException
+     *             if this {@link PersistentState} has been closed.
      */
-    public void update(T updatedState) {
+    public void update(T updatedState) throws IllegalStateException {
+        checkNotClosed();
         this.state = updatedState;
         save();
     }
@@ -117,13 +257,31 @@ public class PersistentState<T> {
 
     private T recover() {
         try {
-            if (this.storageLocation.length() <= 0) {
-                return null;
+            byte[] snapshot = Files.readAllBytes(this.storageLocation.toPath());
+            this.snapshotSize = snapshot.length;
+            if (!this.journaled && !this.journal.exists()) {
+                if (snapshot.length == 0) {
+                    return null;
+                }
+                // a JSON codec binds straight from the snapshot, without a
+                // JsonElement tree
+                return this.codec.read(new ByteArrayInputStream(snapshot), GSON, this.stateType.getType());
             }
 
-            Gson gson = prepareGson();
-            T recoveredState = gson.fromJson(IoUtils.toString(this.storageLocation, StandardCharsets.UTF_8),
-                    this.stateType.getType());
+            JsonElement recoveredJson = JsonNull.INSTANCE;
+            if (snapshot.length > 0) {
+                recoveredJson = this.codec.readTree(new ByteArrayInputStream(snapshot));
+            }
+            boolean replayed = this.journal.exists();
+            recoveredJson = this.journal.replay(recoveredJson, StateJournal.checksum(snapshot));
+            T recoveredState = GSON.fromJson(recoveredJson, this.stateType.getType());
+            if (this.journaled) {
+                this.persistedState = recoveredJson;
+            }
+            if (replayed && (!this.journaled || this.journal.needsReset())) {
+                // fold the journal into a new snapshot
+                writeSnapshot(recoveredJson, JsonElement.class);
+            }
             return recoveredState;
         } catch (Exception e) {
             throw new PersistentStateException(String.format("failed to load state of type %s from %s: %s",
@@ -133,24 +291,187 @@ public class PersistentState<T> {
 
     /**
      * Saves the current value of the {@link #state} object to the storage
-     * location. The {@link #state} object is allowed to be <code>null</code>.
+     * location (or, in write-behind mode, schedules it to be saved). The
+     * {@link #state} object is allowed to be <code>null</code>.
+     *
+     * @throws IllegalStateException
+     *             if this {@link PersistentState} has been closed.
+     * @throws PersistentStateException
+     *             if the state could not be written (when not in write-behind
+     *             mode).
+     */
+    public void save() throws IllegalStateException, PersistentStateException {
+        checkNotClosed();
+        this.metrics.updated();
+        this.pendingUpdates.incrementAndGet();
+        if (this.flusher == null) {
+            write();
+            return;
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Schedules a background write, unless one is already scheduled, to run
+     * one write-behind interval after the start of the last write.
      */
-    public void save() {
+    private void scheduleFlush() {
+        if (this.flushScheduled.compareAndSet(false, true)) {
+            long delay = this.lastWriteStart + this.writeBehindInterval - System.nanoTime();
+            try {
+                this.flusher.schedule(this::backgroundFlush, Math.max(0, delay), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // closed: pending updates are written by close()
+                this.flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes any pending update to the storage location. In write-behind
+     * mode, this lets a caller wait for its updates to be written. Without
+     * write-behind, updates are always written when made, and this does
+     * nothing.
+     *
+     * @throws PersistentStateException
+     *             if the state could not be written.
+     */
+    public void flush() throws PersistentStateException {
+        write();
+    }
+
+    /**
+     * Writes any pending update to the storage location and stops the
+     * background writer (in write-behind mode). The state can no longer be
+     * updated once closed. Closing an already closed {@link PersistentState}
+     * has no effect.
+     *
+     * @throws PersistentStateException
+     *             if a pending update could not be written.
+     */
+    @Override
+    public void close() throws PersistentStateException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.flusher != null) {
+            // not shutdownNow: interrupting a write would abort it
+            this.flusher.shutdown();
+        }
+        flush();
+    }
+
+    /**
+     * Returns the metrics collected by this {@link PersistentState}.
+     *
+     * @return
+     */
+    public PersistentStateMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    private void checkNotClosed() throws IllegalStateException {
+        if (this.closed) {
+            throw new IllegalStateException("persistent state has been closed: " + this.storageLocation);
+        }
+    }
+
+    /**
+     * Writes pending updates in the background. Failures are logged, and the
+     * write is retried after another write-behind interval.
+     */
+    private void backgroundFlush() {
+        // any update from now on needs another flush
+        this.flushScheduled.set(false);
+        try {
+            write();
+        } catch (PersistentStateException e) {
+            LOG.error("{} (will retry)", e.getMessage(), e);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Writes the current state to the storage location, if there are updates
+     * that haven't been written.
+     *
+     * @throws PersistentStateException
+     */
+    private void write() throws PersistentStateException {
         // prevent multiple threads from concurrently writing to the same file
         // (possibly overwriting each others writes and corrupting the file)
         synchronized (this.lock) {
+            int updates = this.pendingUpdates.getAndSet(0);
+            if (updates == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            this.lastWriteStart = start;
             try {
-                Gson gson = prepareGson();
-                JsonElement stateAsJson = gson.toJsonTree(this.state);
-                String prettifiedJson = gson.toJson(stateAsJson);
-                Files.write(this.storageLocation.toPath(), prettifiedJson.getBytes(StandardCharsets.UTF_8));
+                if (!this.journaled) {
+                    writeSnapshot(this.state, this.stateType.getType());
+                } else {
+                    JsonElement stateAsJson = GSON.toJsonTree(this.state);
+                    if (this.persistedState == null || compactionDue()) {
+                        writeSnapshot(stateAsJson, JsonElement.class);
+                    } else {
+                        JsonArray delta = JsonDelta.diff(this.persistedState, stateAsJson);
+                        if (delta.size() > 0) {
+                            this.journal.append(delta);
+                        }
+                    }
+                    this.persistedState = stateAsJson;
+                }
+                this.metrics.written(updates - 1, System.nanoTime() - start);
             } catch (Exception e) {
+                this.metrics.writeFailed();
+                // retry on next write
+                this.pendingUpdates.addAndGet(updates);
                 throw new PersistentStateException(String.format("failed to write state of type %s to %s: %s",
                         this.stateType, this.storageLocation.getAbsolutePath(), e.getMessage()), e);
             }
         }
     }
 
+    /**
+     * Returns <code>true</code> if the journal needs to be compacted into a
+     * new snapshot before the next update.
+     *
+     * @return
+     */
+    private boolean compactionDue() {
+        return !this.journal.exists() || this.journal.needsReset()
+                || this.journal.entries() >= this.maxJournalEntries
+                || this.journal.size() > Math.max(this.snapshotSize, MIN_COMPACTION_SIZE);
+    }
+
+    /**
+     * Atomically writes a snapshot of the state to the storage location, and
+     * starts a new journal (when journaling) or removes any old journal (when
+     * not).
+     *
+     * @param state
+     *            The state, or its {@link JsonElement} tree.
+     * @param type
+     *            The type of the state object.
+     * @throws IOException
+     */
+    private void writeSnapshot(Object state, Type type) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JsonWriter writer = this.codec.newWriter(buffer)) {
+            GSON.toJson(state, type, writer);
+        }
+        byte[] snapshot = buffer.toByteArray();
+        FileUtils.writeAtomically(this.storageLocation, snapshot);
+        this.snapshotSize = snapshot.length;
+        if (this.journaled) {
+            this.journal.reset(StateJournal.checksum(snapshot));
+        } else if (this.journal.exists()) {
+            this.journal.delete();
+        }
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(this.state);
@@ -164,8 +485,4 @@ public class PersistentState<T> {
         }
         return false;
     }
-
-    private Gson prepareGson() {
-        return JsonUtils.prepareGsonBuilder().serializeNulls().setPrettyPrinting().create();
-    }
 }
@@ -0,0 +1,169 @@
+package com.elastisys.scale.commons.json.persistence;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * A builder of {@link PersistentState}s.
+ *
+ * @param <T>
+ *            The type of state to persist.
+ * @see PersistentState
+ */
+public class PersistentStateBuilder<T> {
+
+    /**
+     * The default number of deltas that the journal of a
+     * {@link PersistentState} can hold before it is compacted into a new
+     * snapshot.
+     */
+    public static final int DEFAULT_MAX_JOURNAL_ENTRIES = 100;
+
+    /** The storage location of the state. */
+    final File storageLocation;
+    /** The type of state being persisted. */
+    final TypeToken<T> stateType;
+
+    /** Encodes and decodes state snapshots. */
+    StateCodec codec = JsonStateCodec.PRETTY;
+    /** <code>true</code> if state updates are to be journaled. */
+    boolean journal = false;
+    /** Maximum number of journaled deltas before compaction. */
+    int maxJournalEntries = DEFAULT_MAX_JOURNAL_ENTRIES;
+    /**
+     * Minimum time between writes (in nanoseconds) in write-behind mode.
+     * <code>0</code> if updates are to be written synchronously.
+     */
+    long writeBehindInterval = 0;
+
+    /**
+     * Creates a new {@link PersistentStateBuilder}. Without additional input,
+     * the builder is set up to build {@link PersistentState}s that store the
+     * state pretty-printed, and synchronously rewrite the storage file on
+     * every update.
+     *
+     * @param storageLocation
+     *            The storage location of the state.
+     * @param stateType
+     *            The type of state to store.
+     */
+    public PersistentStateBuilder(File storageLocation, TypeToken<T> stateType) {
+        checkArgument(storageLocation != null, "storageLocation cannot be null");
+        checkArgument(stateType != null, "stateType cannot be null");
+        this.storageLocation = storageLocation;
+        this.stateType = stateType;
+    }
+
+    /**
+     * Constructs a {@link PersistentState} from the parameters supplied to
+     * the {@link PersistentStateBuilder}, and recovers its state from the
+     * storage location.
+     *
+     * @return
+     * @throws PersistentStateException
+     *             if the state cannot be recovered.
+     */
+    public PersistentState<T> build() throws PersistentStateException {
+        return new PersistentState<>(this);
+    }
+
+    /**
+     * Sets whether the state is to be stored as pretty-printed JSON (the
+     * default), or as compact JSON. Compact storage is smaller and faster to
+     * write. Shorthand for {@link #codec(StateCodec)} with a
+     * {@link JsonStateCodec}.
+     *
+     * @param prettyPrint
+     * @return
+     */
+    public PersistentStateBuilder<T> prettyPrint(boolean prettyPrint) {
+        return codec(prettyPrint ? JsonStateCodec.PRETTY : JsonStateCodec.COMPACT);
+    }
+
+    /**
+     * Sets the {@link StateCodec} used to store the state. Default:
+     * pretty-printed JSON ({@link JsonStateCodec#PRETTY}). For large states,
+     * {@link BinaryStateCodec} is smaller and faster to write and to recover
+     * than JSON, and {@link GzipStateCodec} can reduce the size of either
+     * considerably.
+     * <p/>
+     * A state must be recovered with the codec that stored it. Journal
+     * entries (see {@link #journal(boolean)}) are always stored as JSON.
+     *
+     * @param codec
+     * @return
+     */
+    public PersistentStateBuilder<T> codec(StateCodec codec) {
+        checkArgument(codec != null, "codec cannot be null");
+        this.codec = codec;
+        return this;
+    }
+
+    /**
+     * Sets whether state updates are to be journaled. When journaled, an
+     * update appends the changes (delta) to the previous state to a journal
+     * file next to the storage location, rather than rewriting the entire
+     * state. The journal is compacted into a new snapshot of the state at the
+     * storage location once it holds {@link #maxJournalEntries(int)} deltas,
+     * or grows larger than the snapshot.
+     * <p/>
+     * Journaling makes frequent, small updates to a large state cheap. Without
+     * journaling (the default), every update rewrites the state.
+     *
+     * @param journal
+     * @return
+     */
+    public PersistentStateBuilder<T> journal(boolean journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Sets the number of deltas that the journal can hold before it is
+     * compacted into a new snapshot. Only used if updates are
+     * {@link #journal(boolean)}ed. Default:
+     * {@value #DEFAULT_MAX_JOURNAL_ENTRIES}.
+     *
+     * @param maxJournalEntries
+     * @return
+     */
+    public PersistentStateBuilder<T> maxJournalEntries(int maxJournalEntries) {
+        checkArgument(maxJournalEntries > 0, "maxJournalEntries must be positive");
+        this.maxJournalEntries = maxJournalEntries;
+        return this;
+    }
+
+    /**
+     * Sets the {@link PersistentState} to write updates behind, in the
+     * background. An update then only replaces the state in memory and
+     * returns immediately, and a background thread writes the state to disk at
+     * most once per interval, so that a burst of updates is coalesced into a
+     * single write.
+     * <p/>
+     * Updates that haven't been written yet are lost if the process crashes.
+     * {@link PersistentState#flush()} writes pending updates, and
+     * {@link PersistentState#close()} writes pending updates and stops the
+     * background thread.
+     * <p/>
+     * Since the state is written by another thread, the state object should
+     * not be modified in place once it has been passed to
+     * {@link PersistentState#update(Object)}, as it may be in the middle of
+     * being written. Update with a new object instead.
+     *
+     * @param interval
+     *            The minimum time between two writes.
+     * @param unit
+     *            The unit of the interval.
+     * @return
+     */
+    public PersistentStateBuilder<T> writeBehind(long interval, TimeUnit unit) {
+        checkArgument(interval > 0, "write-behind interval must be positive");
+        checkArgument(unit != null, "no unit given");
+        this.writeBehindInterval = unit.toNanos(interval);
+        return this;
+    }
+}
@@ -0,0 +1,95 @@
+package com.elastisys.scale.commons.json.persistence;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.elastisys.scale.commons.util.metrics.Histogram;
+
+/**
+ * Counters and write latencies collected by a {@link PersistentState}.
+ * <p/>
+ * In write-behind mode (see
+ * {@link PersistentStateBuilder#writeBehind(long, java.util.concurrent.TimeUnit)}),
+ * the number of coalesced updates (updates that were saved by the write of a
+ * later update) indicates how much disk I/O the write-behind is saving.
+ *
+ * @see PersistentState#getMetrics()
+ */
+public class PersistentStateMetrics {
+    /** Number of state updates (including explicit saves). */
+    private final LongAdder updates = new LongAdder();
+    /** Number of writes to storage (snapshots or journal entries). */
+    private final LongAdder writes = new LongAdder();
+    /** Number of updates that were saved by a later update's write. */
+    private final LongAdder coalescedUpdates = new LongAdder();
+    /** Number of failed writes. */
+    private final LongAdder writeFailures = new LongAdder();
+    /** Duration of writes, including serialization (in microseconds). */
+    private final Histogram writeLatency = new Histogram();
+
+    void updated() {
+        this.updates.increment();
+    }
+
+    void written(int coalescedUpdates, long latencyNanos) {
+        this.writes.increment();
+        this.coalescedUpdates.add(coalescedUpdates);
+        this.writeLatency.record(latencyNanos / 1000);
+    }
+
+    void writeFailed() {
+        this.writeFailures.increment();
+    }
+
+    /**
+     * Returns the number of state updates (including explicit saves).
+     *
+     * @return
+     */
+    public long getUpdates() {
+        return this.updates.sum();
+    }
+
+    /**
+     * Returns the number of writes to storage.
+     *
+     * @return
+     */
+    public long getWrites() {
+        return this.writes.sum();
+    }
+
+    /**
+     * Returns the number of updates that were never written on their own, but
+     * were saved by the write of a later update.
+     *
+     * @return
+     */
+    public long getCoalescedUpdates() {
+        return this.coalescedUpdates.sum();
+    }
+
+    /**
+     * Returns the number of failed writes.
+     *
+     * @return
+     */
+    public long getWriteFailures() {
+        return this.writeFailures.sum();
+    }
+
+    /**
+     * Returns the duration of writes, including serialization, in
+     * microseconds.
+     *
+     * @return
+     */
+    public Histogram getWriteLatency() {
+        return this.writeLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{updates: %d, writes: %d, coalescedUpdates: %d, writeFailures: %d, writeLatency: %s}",
+                getUpdates(), getWrites(), getCoalescedUpdates(), getWriteFailures(), this.writeLatency);
+    }
+}
@@ -0,0 +1,73 @@
+package com.elastisys.scale.commons.json.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Encodes the state of a {@link PersistentState} for storage, and decodes it
+ * on recovery.
+ * <p/>
+ * A {@link StateCodec} works on the JSON representation of the state, as
+ * mapped by Gson: Gson writes the state to the {@link JsonWriter} of the codec
+ * and binds the state that the codec decodes, so any state that can be stored
+ * as JSON can be stored by any {@link StateCodec}. A state must be recovered
+ * with the same codec that stored it.
+ * <p/>
+ * Implementations must be thread-safe.
+ *
+ * @see JsonStateCodec
+ * @see BinaryStateCodec
+ * @see GzipStateCodec
+ * @see PersistentStateBuilder#codec(StateCodec)
+ */
+public interface StateCodec {
+
+    /**
+     * Returns a {@link JsonWriter} that encodes what is written to it onto an
+     * {@link OutputStream}. Closing the {@link JsonWriter} completes the
+     * encoding and closes the {@link OutputStream}.
+     *
+     * @param out
+     *            The stream to write the encoded state to.
+     * @return
+     * @throws IOException
+     */
+    JsonWriter newWriter(OutputStream out) throws IOException;
+
+    /**
+     * Decodes a state from an {@link InputStream} and binds it to an object of
+     * a given type with a {@link Gson} instance. Closes the
+     * {@link InputStream}.
+     *
+     * @param in
+     *            A stream holding an encoded state, as produced by a
+     *            {@link #newWriter(OutputStream)}.
+     * @param gson
+     *            The {@link Gson} instance that binds the state.
+     * @param type
+     *            The type of the state.
+     * @return
+     * @throws IOException
+     *             if the encoded state is malformed.
+     */
+    <T> T read(InputStream in, Gson gson, Type type) throws IOException;
+
+    /**
+     * Decodes a state from an {@link InputStream} into a {@link JsonElement}
+     * tree. Closes the {@link InputStream}.
+     *
+     * @param in
+     *            A stream holding an encoded state, as produced by a
+     *            {@link #newWriter(OutputStream)}.
+     * @return
+     * @throws IOException
+     *             if the encoded state is malformed.
+     */
+    JsonElement readTree(InputStream in) throws IOException;
+}
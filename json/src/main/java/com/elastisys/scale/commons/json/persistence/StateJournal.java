@@ -0,0 +1,233 @@
+package com.elastisys.scale.commons.json.persistence;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import com.elastisys.scale.commons.util.file.FileUtils;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * The append-only journal of a {@link PersistentState}, which logs the
+ * {@link JsonDelta}s of state updates made since the last snapshot was
+ * written.
+ * <p/>
+ * The journal is a text file with one JSON document per line. The first line
+ * is a header that holds the checksum of the snapshot that the journal
+ * applies to, and each of the following lines is a {@link JsonDelta}. A
+ * journal whose header doesn't match the snapshot is stale (the process
+ * crashed after writing a new snapshot, but before starting a new journal)
+ * and is ignored.
+ * <p/>
+ * A last line that cannot be parsed is the remains of an append that was
+ * interrupted by a crash, and is ignored as well, since the update it
+ * belonged to never completed.
+ */
+class StateJournal {
+
+    /** Header member holding the checksum of the journal's snapshot. */
+    private static final String SNAPSHOT_CHECKSUM = "snapshot";
+
+    /** The journal file. */
+    private final File file;
+
+    /** The number of deltas in the journal. */
+    private int entries;
+    /**
+     * <code>true</code> if the journal is known to end with an interrupted
+     * append, which needs to be cleared before anything can be appended.
+     */
+    private boolean torn;
+
+    /**
+     * Creates a {@link StateJournal}.
+     *
+     * @param file
+     *            The journal file. Need not exist.
+     */
+    StateJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the checksum of a snapshot, as written to journal headers.
+     *
+     * @param snapshot
+     * @return
+     */
+    static long checksum(byte[] snapshot) {
+        CRC32 crc = new CRC32();
+        crc.update(snapshot);
+        return crc.getValue();
+    }
+
+    /**
+     * Returns <code>true</code> if there is a journal file.
+     *
+     * @return
+     */
+    boolean exists() {
+        return this.file.isFile();
+    }
+
+    /**
+     * Applies the deltas of this journal to its snapshot. Does nothing if
+     * there is no journal file, or if the journal is stale.
+     *
+     * @param snapshot
+     *            The snapshot, as parsed from the snapshot file. Modified in
+     *            place.
+     * @param snapshotChecksum
+     *            The checksum of the snapshot file.
+     * @return The snapshot with all deltas applied.
+     * @throws IOException
+     * @throws JsonParseException
+     *             if the journal is corrupt.
+     */
+    JsonElement replay(JsonElement snapshot, long snapshotChecksum) throws IOException, JsonParseException {
+        this.entries = 0;
+        this.torn = false;
+        if (!exists()) {
+            return snapshot;
+        }
+
+        JsonElement state = snapshot;
+        try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null || !isHeaderOf(header, snapshotChecksum)) {
+                // stale (or empty) journal
+                this.torn = true;
+                return snapshot;
+            }
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                JsonArray delta;
+                try {
+                    delta = new JsonParser().parse(line).getAsJsonArray();
+                } catch (JsonParseException | IllegalStateException e) {
+                    if (next == null) {
+                        // interrupted append
+                        this.torn = true;
+                        break;
+                    }
+                    throw new JsonParseException(String.format("corrupt journal entry %d", this.entries + 1), e);
+                }
+                state = JsonDelta.apply(state, delta);
+                this.entries++;
+                line = next;
+            }
+        }
+        if (!endsWithNewline()) {
+            // a complete delta, but an append of it was still interrupted
+            this.torn = true;
+        }
+        return state;
+    }
+
+    /**
+     * Returns the number of deltas in the journal.
+     *
+     * @return
+     */
+    int entries() {
+        return this.entries;
+    }
+
+    /**
+     * Returns <code>true</code> if this journal needs to be {@link #reset} (to
+     * discard a stale journal or an interrupted append) before deltas can be
+     * appended.
+     *
+     * @return
+     */
+    boolean needsReset() {
+        return this.torn;
+    }
+
+    /**
+     * Returns the size of the journal file in bytes.
+     *
+     * @return
+     */
+    long size() {
+        return this.file.length();
+    }
+
+    /**
+     * Appends a delta to the journal and flushes it to disk.
+     *
+     * @param delta
+     * @throws IOException
+     */
+    void append(JsonArray delta) throws IOException {
+        byte[] line = (delta.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        this.entries++;
+    }
+
+    /**
+     * Atomically replaces the journal with an empty journal for a new
+     * snapshot.
+     *
+     * @param snapshotChecksum
+     *            The checksum of the new snapshot.
+     * @throws IOException
+     */
+    void reset(long snapshotChecksum) throws IOException {
+        JsonObject header = new JsonObject();
+        header.add(SNAPSHOT_CHECKSUM, new JsonPrimitive(snapshotChecksum));
+        FileUtils.writeAtomically(this.file, (header.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+        this.entries = 0;
+        this.torn = false;
+    }
+
+    /**
+     * Deletes the journal file (if it exists).
+     *
+     * @throws IOException
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(this.file.toPath());
+        this.entries = 0;
+        this.torn = false;
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (RandomAccessFile journal = new RandomAccessFile(this.file, "r")) {
+            if (journal.length() == 0) {
+                return false;
+            }
+            journal.seek(journal.length() - 1);
+            return journal.read() == '\n';
+        }
+    }
+
+    private static boolean isHeaderOf(String header, long snapshotChecksum) {
+        try {
+            JsonElement checksum = new JsonParser().parse(header).getAsJsonObject().get(SNAPSHOT_CHECKSUM);
+            return checksum != null && checksum.getAsLong() == snapshotChecksum;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.elastisys.scale.commons.json.schema;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+
+/**
+ * A compiled <a href="http://json-schema.org/">JSON Schema</a> (draft 4)
+ * against which JSON documents can be validated.
+ * <p/>
+ * A schema is compiled once, by {@link #compile(JsonElement)}, into a tree of
+ * sub-schemas with all keywords parsed and all regular expressions compiled.
+ * The compiled schema is immutable and can be used to validate any number of
+ * documents, from any number of threads.
+ * <p/>
+ * {@code $ref}s are supported within the schema document: JSON Pointer
+ * fragments (such as <code>#/definitions/address</code>), optionally prefixed
+ * by the {@code id} of the root schema. References to other documents are not
+ * supported.
+ *
+ * @see JsonValidator
+ */
+public class JsonSchema {
+
+    /** The compiled root schema. */
+    private final SchemaNode root;
+
+    private JsonSchema(SchemaNode root) {
+        this.root = root;
+    }
+
+    /**
+     * Compiles a JSON Schema.
+     *
+     * @param schema
+     *            A JSON Schema document.
+     * @return The compiled schema.
+     * @throws JsonValidatorException
+     *             if the JSON Schema is invalid or contains unsupported
+     *             references.
+     */
+    public static JsonSchema compile(JsonElement schema) throws JsonValidatorException {
+        checkArgument(schema != null, "json schema cannot be null");
+        return new JsonSchema(new Compiler(schema).compileRoot());
+    }
+
+    /**
+     * Validates a JSON document against this schema.
+     *
+     * @param instance
+     *            The JSON document to validate.
+     * @throws JsonSchemaValidationException
+     *             if the document is not valid.
+     */
+    public void validate(JsonElement instance) throws JsonSchemaValidationException {
+        checkArgument(instance != null, "json document cannot be null");
+        ValidationFailure failure = this.root.validate(instance);
+        if (failure != null) {
+            throw failure.toException();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a JSON document is valid against this
+     * schema.
+     *
+     * @param instance
+     *            The JSON document to validate.
+     * @return
+     */
+    public boolean isValid(JsonElement instance) {
+        checkArgument(instance != null, "json document cannot be null");
+        return this.root.isValid(instance);
+    }
+
+    /**
+     * Compiles the (sub-)schemas of a JSON Schema document into
+     * {@link SchemaNode}s, keeping track of them by their JSON Pointer so that
+     * {@code $ref}s can be resolved once all of the document has been
+     * compiled.
+     */
+    static class Compiler {
+        /** The JSON Schema document being compiled. */
+        private final JsonElement document;
+        /** The {@code id} of the root schema, without fragment. */
+        private final String rootId;
+        /** Compiled schemas by their JSON Pointer from the root schema. */
+        private final Map<String, SchemaNode> schemas = new HashMap<>();
+        /** {@code $ref} schemas, in order of appearance. */
+        private final List<SchemaNode> refSchemas = new ArrayList<>();
+        /** Unresolved {@code $ref} values, in the order of {@link #refSchemas}. */
+        private final List<String> refs = new ArrayList<>();
+
+        Compiler(JsonElement document) {
+            this.document = document;
+            this.rootId = rootId(document);
+        }
+
+        /**
+         * Compiles the root schema and resolves all {@code $ref}s.
+         *
+         * @return
+         * @throws JsonValidatorException
+         */
+        SchemaNode compileRoot() throws JsonValidatorException {
+            SchemaNode root = compile(this.document, "");
+            // resolving may compile more schemas (and add more refs)
+            for (int i = 0; i < this.refs.size(); i++) {
+                this.refSchemas.get(i).resolveRef(resolve(this.refs.get(i)));
+            }
+            for (SchemaNode refSchema : this.refSchemas) {
+                checkNotCircular(refSchema);
+            }
+            return root;
+        }
+
+        /**
+         * Compiles a (sub-)schema.
+         *
+         * @param schema
+         *            The schema.
+         * @param path
+         *            JSON Pointer to the schema from the root schema.
+         * @return
+         * @throws JsonValidatorException
+         */
+        SchemaNode compile(JsonElement schema, String path) throws JsonValidatorException {
+            if (!schema.isJsonObject()) {
+                throw new JsonValidatorException(
+                        String.format("invalid json schema at '%s': schema must be an object", path));
+            }
+            SchemaNode node = new SchemaNode(path);
+            this.schemas.put(path, node);
+            node.compile(schema.getAsJsonObject(), this);
+            return node;
+        }
+
+        /**
+         * Registers a {@code $ref} schema, to be resolved once all of the
+         * document has been compiled.
+         *
+         * @param refSchema
+         * @param ref
+         */
+        void addRef(SchemaNode refSchema, String ref) {
+            this.refSchemas.add(refSchema);
+            this.refs.add(ref);
+        }
+
+        private SchemaNode resolve(String ref) throws JsonValidatorException {
+            String fragment;
+            if (ref.startsWith("#")) {
+                fragment = ref.substring(1);
+            } else if (this.rootId != null && ref.startsWith(this.rootId + "#")) {
+                fragment = ref.substring(this.rootId.length() + 1);
+            } else if (ref.equals(this.rootId)) {
+                fragment = "";
+            } else {
+                throw new JsonValidatorException("unsupported $ref (only references within the schema are supported): "
+                        + ref);
+            }
+            String pointer = percentDecode(fragment, ref);
+            if (!pointer.isEmpty() && !pointer.startsWith("/")) {
+                throw new JsonValidatorException("unsupported $ref (fragment is not a json pointer): " + ref);
+            }
+
+            SchemaNode target = this.schemas.get(pointer);
+            if (target != null) {
+                return target;
+            }
+            // not (yet) compiled as a schema, such as a schema under a
+            // non-standard keyword
+            JsonElement element = this.document;
+            for (String token : pointer.substring(1).split("/", -1)) {
+                token = token.replace("~1", "/").replace("~0", "~");
+                if (element.isJsonObject() && element.getAsJsonObject().has(token)) {
+                    element = element.getAsJsonObject().get(token);
+                } else if (element.isJsonArray() && token.matches("0|[1-9][0-9]{0,8}")
+                        && Integer.parseInt(token) < element.getAsJsonArray().size()) {
+                    element = element.getAsJsonArray().get(Integer.parseInt(token));
+                } else {
+                    throw new JsonValidatorException("unresolvable $ref: " + ref);
+                }
+            }
+            return compile(element, pointer);
+        }
+
+        /**
+         * Fails if a {@code $ref} schema only leads (via other {@code $ref}s)
+         * back to itself, which would make validation loop forever.
+         *
+         * @param refSchema
+         * @throws JsonValidatorException
+         */
+        private void checkNotCircular(SchemaNode refSchema) throws JsonValidatorException {
+            Map<SchemaNode, Boolean> visited = new IdentityHashMap<>();
+            SchemaNode node = refSchema;
+            while (node != null) {
+                if (visited.put(node, true) != null) {
+                    throw new JsonValidatorException("circular $ref at '" + refSchema.getPath() + "'");
+                }
+                node = node.getRef();
+            }
+        }
+
+        private static String rootId(JsonElement document) {
+            if (!document.isJsonObject() || !document.getAsJsonObject().has("id")) {
+                return null;
+            }
+            JsonElement id = document.getAsJsonObject().get("id");
+            if (!id.isJsonPrimitive() || !id.getAsJsonPrimitive().isString()) {
+                return null;
+            }
+            String rootId = id.getAsString();
+            int hash = rootId.indexOf('#');
+            return hash >= 0 ? rootId.substring(0, hash) : rootId;
+        }
+
+        private static String percentDecode(String fragment, String ref) throws JsonValidatorException {
+            if (fragment.indexOf('%') < 0) {
+                return fragment;
+            }
+            try {
+                // protect '+', which is not a space in a uri fragment
+                return URLDecoder.decode(fragment.replace("+", "%2B"), "UTF-8");
+            } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+                throw new JsonValidatorException("malformed $ref: " + ref, e);
+            }
+        }
+    }
+}
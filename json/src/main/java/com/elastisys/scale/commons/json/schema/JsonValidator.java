@@ -1,40 +1,46 @@
 package com.elastisys.scale.commons.json.schema;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.elastisys.scale.commons.json.JsonUtils;
-import com.elastisys.scale.commons.util.io.IoUtils;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 
 /**
  * A utility class that validates JSON documents against
  * <a href="http://json-schema.org/">JSON Schemas</a>.
- * 
- * 
- * 
+ * <p/>
+ * Schemas are compiled into {@link JsonSchema}s, of which the most recently
+ * used are cached, so repeated validations against the same schema only pay
+ * for the validation itself. Callers that validate many documents against a
+ * schema can also {@link JsonSchema#compile(JsonElement)} it themselves and
+ * keep the {@link JsonSchema}.
+ *
+ *
+ *
  */
 public class JsonValidator {
 
-    /**
-     * Version of the tv4 (tiny json validator) JavaScript library used under
-     * the hood to validate JSON documents against a JSON schema.
-     */
-    private static final String TINY_JSON_VALIDATOR_VERSION = "1.0.11";
+    /** The maximum number of compiled schemas to cache. */
+    private static final int SCHEMA_CACHE_SIZE = 32;
 
-    /**
-     * Resource path where tv4 (tiny json validator) JavaScript library resides.
-     */
-    private static final String TINY_JSON_VALIDATOR_PATH = String.format("jsonschema/tv4-%s.min.js",
-            TINY_JSON_VALIDATOR_VERSION);
+    /** Compiled schemas by schema text, in least recently used order. */
+    private static final Map<String, JsonSchema> schemaCache = new LinkedHashMap<String, JsonSchema>(16, 0.75f,
+            true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JsonSchema> eldest) {
+            return size() > SCHEMA_CACHE_SIZE;
+        }
+    };
 
     /**
      * Validates a JSON document instance against a JSON Schema.
-     * 
+     *
      * @param jsonSchema
      *            The JSON Schema to validate against.
      * @param schemaInstance
@@ -43,12 +49,12 @@ public class JsonValidator {
      *             On failure to validate the JSON document.
      */
     public static void validate(JsonObject jsonSchema, JsonObject schemaInstance) throws JsonValidatorException {
-        validate(JsonUtils.toString(jsonSchema), JsonUtils.toString(schemaInstance));
+        getSchema(JsonUtils.toString(jsonSchema), jsonSchema).validate(schemaInstance);
     }
 
     /**
      * Validates a JSON document instance against a JSON Schema.
-     * 
+     *
      * @param jsonSchema
      *            The JSON Schema to validate against.
      * @param schemaInstance
@@ -57,43 +63,46 @@ public class JsonValidator {
      *             On failure to validate the JSON document.
      */
     public static void validate(String jsonSchema, String schemaInstance) throws JsonValidatorException {
-
-        // load tiny json validator JavaScript library
-        String tinyJsonV4Validator = loadTv4Lib();
-
-        ScriptEngineManager factory = new ScriptEngineManager();
-        ScriptEngine engine = factory.getEngineByName("JavaScript");
-        try {
-            // load the tv4 library into the javascript context
-            engine.eval(tinyJsonV4Validator);
-            // load schema and instance and do validation
-            engine.eval("var schema = " + jsonSchema);
-            engine.eval("var instance = " + schemaInstance);
-            boolean isValid = (boolean) engine.eval("tv4.validate(instance, schema)");
-            if (!isValid) {
-                // build error message
-                String message = (String) engine.eval("tv4.error.message");
-                String dataPath = (String) engine.eval("tv4.error.dataPath");
-                String schemaPath = (String) engine.eval("tv4.error.schemaPath");
-                throw new JsonSchemaValidationException(message, schemaPath, dataPath);
-            }
-        } catch (ScriptException e) {
-            throw new JsonValidatorException("failed to validate json document against json schema: " + e.getMessage(),
-                    e);
-        }
+        JsonSchema schema = getSchema(jsonSchema, null);
+        schema.validate(parse(schemaInstance, "json document"));
     }
 
     /**
-     * Load tiny JSON validator library from classpath.
-     * 
+     * Returns the compiled {@link JsonSchema} for a JSON Schema, compiling it
+     * if it isn't cached.
+     *
+     * @param schemaText
+     *            The JSON Schema, as text.
+     * @param parsedSchema
+     *            The JSON Schema, if already parsed. May be <code>null</code>.
      * @return
-     * @throws RuntimeException
+     * @throws JsonValidatorException
      */
-    private static String loadTv4Lib() throws RuntimeException {
+    private static JsonSchema getSchema(String schemaText, JsonElement parsedSchema) throws JsonValidatorException {
+        synchronized (schemaCache) {
+            JsonSchema schema = schemaCache.get(schemaText);
+            if (schema != null) {
+                return schema;
+            }
+        }
+        // compile outside of lock: at worst a schema is compiled twice
+        JsonSchema schema = JsonSchema
+                .compile(parsedSchema != null ? parsedSchema : parse(schemaText, "json schema"));
+        synchronized (schemaCache) {
+            schemaCache.put(schemaText, schema);
+        }
+        return schema;
+    }
+
+    private static JsonElement parse(String json, String description) throws JsonValidatorException {
         try {
-            return IoUtils.toString(TINY_JSON_VALIDATOR_PATH, StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            throw new RuntimeException("failed to load tv4 (tiny json validator) JavaScript library: " + e.getMessage(),
+            JsonElement element = new JsonParser().parse(json);
+            if (element.isJsonNull()) {
+                throw new JsonValidatorException(String.format("failed to parse %s: empty input", description));
+            }
+            return element;
+        } catch (JsonParseException e) {
+            throw new JsonValidatorException(String.format("failed to parse %s: %s", description, e.getMessage()),
                     e);
         }
     }
@@ -0,0 +1,737 @@
+package com.elastisys.scale.commons.json.schema;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A compiled (sub-)schema of a {@link JsonSchema}: the validation keywords of
+ * a JSON Schema object, parsed once into fields (with regular expressions
+ * compiled and sub-schemas compiled into {@link SchemaNode}s), and checked
+ * against JSON documents without looking at the schema JSON again.
+ * <p/>
+ * Keywords are checked in the same order as by the
+ * <a href="https://github.com/geraintluff/tv4">tv4</a> validator: type and
+ * enum, numeric, string, array and object keywords, and lastly
+ * {@code allOf}/{@code anyOf}/{@code oneOf}/{@code not}. Validation stops at
+ * the first failure.
+ * <p/>
+ * The {@code format} keyword (optional in draft 4) and all annotation
+ * keywords are ignored.
+ */
+class SchemaNode {
+
+    /** The JSON types of draft 4. */
+    enum Type {
+        ARRAY, BOOLEAN, INTEGER, NULL, NUMBER, OBJECT, STRING;
+
+        /** The name of the type in JSON Schema. */
+        private final String schemaName = name().toLowerCase();
+
+        @Override
+        public String toString() {
+            return this.schemaName;
+        }
+    }
+
+    /** JSON Pointer to this schema from the root schema. */
+    private final String path;
+
+    /** The referenced schema, if this is a {@code $ref} schema. */
+    private SchemaNode ref;
+
+    private Set<Type> types;
+    /** The {@code type}s as declared, for error messages. */
+    private String typeNames;
+    private List<JsonElement> enumValues;
+
+    private BigDecimal multipleOf;
+    private Double maximum;
+    private boolean exclusiveMaximum;
+    private Double minimum;
+    private boolean exclusiveMinimum;
+
+    private Integer maxLength;
+    private Integer minLength;
+    private Pattern pattern;
+
+    private SchemaNode items;
+    private List<SchemaNode> tupleItems;
+    private boolean additionalItemsAllowed = true;
+    private SchemaNode additionalItems;
+    private Integer maxItems;
+    private Integer minItems;
+    private boolean uniqueItems;
+
+    private Integer maxProperties;
+    private Integer minProperties;
+    private List<String> required;
+    private Map<String, SchemaNode> properties;
+    private Map<Pattern, SchemaNode> patternProperties;
+    private boolean additionalPropertiesAllowed = true;
+    private SchemaNode additionalProperties;
+    private Map<String, SchemaNode> schemaDependencies;
+    private Map<String, List<String>> propertyDependencies;
+
+    private List<SchemaNode> allOf;
+    private List<SchemaNode> anyOf;
+    private List<SchemaNode> oneOf;
+    private SchemaNode not;
+
+    /**
+     * Creates a {@link SchemaNode}, to be filled in by {@link #compile}.
+     *
+     * @param path
+     *            JSON Pointer to this schema from the root schema.
+     */
+    SchemaNode(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the JSON Pointer to this schema from the root schema.
+     *
+     * @return
+     */
+    String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Returns the schema that this {@code $ref} schema refers to, or
+     * <code>null</code> if this is not a {@code $ref} schema.
+     *
+     * @return
+     */
+    SchemaNode getRef() {
+        return this.ref;
+    }
+
+    /**
+     * Sets the schema that this {@code $ref} schema refers to.
+     *
+     * @param target
+     */
+    void resolveRef(SchemaNode target) {
+        this.ref = target;
+    }
+
+    /**
+     * Compiles the keywords of a schema object into this {@link SchemaNode}.
+     *
+     * @param schema
+     *            The schema object.
+     * @param compiler
+     *            Compiles sub-schemas and tracks {@code $ref}s.
+     * @throws JsonValidatorException
+     *             if the schema is invalid.
+     */
+    void compile(JsonObject schema, JsonSchema.Compiler compiler) throws JsonValidatorException {
+        if (schema.has("$ref")) {
+            // all other keywords are ignored in a $ref schema
+            compiler.addRef(this, string(schema, "$ref"));
+            return;
+        }
+        compileGeneric(schema, compiler);
+        compileNumeric(schema);
+        compileString(schema);
+        compileArray(schema, compiler);
+        compileObject(schema, compiler);
+    }
+
+    private void compileGeneric(JsonObject schema, JsonSchema.Compiler compiler) throws JsonValidatorException {
+        JsonElement type = schema.get("type");
+        if (type != null) {
+            this.types = EnumSet.noneOf(Type.class);
+            StringBuilder typeNames = new StringBuilder();
+            for (JsonElement element : type.isJsonArray() ? type.getAsJsonArray() : Collections.singleton(type)) {
+                Type declaredType = typeName(element);
+                this.types.add(declaredType);
+                typeNames.append(typeNames.length() > 0 ? "/" : "").append(declaredType);
+            }
+            this.typeNames = typeNames.toString();
+            if (this.types.contains(Type.NUMBER)) {
+                // every integer is a number
+                this.types.add(Type.INTEGER);
+            }
+        }
+        if (schema.has("enum")) {
+            this.enumValues = new ArrayList<>();
+            for (JsonElement value : array(schema, "enum")) {
+                this.enumValues.add(value);
+            }
+        }
+        if (schema.has("definitions")) {
+            for (Entry<String, JsonElement> definition : object(schema, "definitions").entrySet()) {
+                compiler.compile(definition.getValue(), childPath("definitions", definition.getKey()));
+            }
+        }
+        this.allOf = schemaList(schema, "allOf", compiler);
+        this.anyOf = schemaList(schema, "anyOf", compiler);
+        this.oneOf = schemaList(schema, "oneOf", compiler);
+        if (schema.has("not")) {
+            this.not = compiler.compile(schema.get("not"), childPath("not"));
+        }
+    }
+
+    private void compileNumeric(JsonObject schema) throws JsonValidatorException {
+        if (schema.has("multipleOf")) {
+            this.multipleOf = number(schema, "multipleOf").getAsBigDecimal();
+            if (this.multipleOf.signum() <= 0) {
+                throw invalid("multipleOf must be greater than 0");
+            }
+        }
+        if (schema.has("maximum")) {
+            this.maximum = number(schema, "maximum").getAsDouble();
+            this.exclusiveMaximum = bool(schema, "exclusiveMaximum");
+        }
+        if (schema.has("minimum")) {
+            this.minimum = number(schema, "minimum").getAsDouble();
+            this.exclusiveMinimum = bool(schema, "exclusiveMinimum");
+        }
+    }
+
+    private void compileString(JsonObject schema) throws JsonValidatorException {
+        this.maxLength = count(schema, "maxLength");
+        this.minLength = count(schema, "minLength");
+        if (schema.has("pattern")) {
+            this.pattern = regex(string(schema, "pattern"));
+        }
+    }
+
+    private void compileArray(JsonObject schema, JsonSchema.Compiler compiler) throws JsonValidatorException {
+        JsonElement items = schema.get("items");
+        if (items != null) {
+            if (items.isJsonArray()) {
+                this.tupleItems = schemaList(schema, "items", compiler);
+            } else {
+                this.items = compiler.compile(items, childPath("items"));
+            }
+        }
+        JsonElement additionalItems = schema.get("additionalItems");
+        if (additionalItems != null) {
+            if (isBoolean(additionalItems)) {
+                this.additionalItemsAllowed = additionalItems.getAsBoolean();
+            } else {
+                this.additionalItems = compiler.compile(additionalItems, childPath("additionalItems"));
+            }
+        }
+        this.maxItems = count(schema, "maxItems");
+        this.minItems = count(schema, "minItems");
+        this.uniqueItems = bool(schema, "uniqueItems");
+    }
+
+    private void compileObject(JsonObject schema, JsonSchema.Compiler compiler) throws JsonValidatorException {
+        this.maxProperties = count(schema, "maxProperties");
+        this.minProperties = count(schema, "minProperties");
+        if (schema.has("required")) {
+            this.required = new ArrayList<>();
+            for (JsonElement name : array(schema, "required")) {
+                if (!isString(name)) {
+                    throw invalid("required must be an array of strings");
+                }
+                this.required.add(name.getAsString());
+            }
+        }
+        if (schema.has("properties")) {
+            this.properties = new LinkedHashMap<>();
+            for (Entry<String, JsonElement> property : object(schema, "properties").entrySet()) {
+                this.properties.put(property.getKey(),
+                        compiler.compile(property.getValue(), childPath("properties", property.getKey())));
+            }
+        }
+        if (schema.has("patternProperties")) {
+            this.patternProperties = new LinkedHashMap<>();
+            for (Entry<String, JsonElement> property : object(schema, "patternProperties").entrySet()) {
+                this.patternProperties.put(regex(property.getKey()),
+                        compiler.compile(property.getValue(), childPath("patternProperties", property.getKey())));
+            }
+        }
+        JsonElement additionalProperties = schema.get("additionalProperties");
+        if (additionalProperties != null) {
+            if (isBoolean(additionalProperties)) {
+                this.additionalPropertiesAllowed = additionalProperties.getAsBoolean();
+            } else {
+                this.additionalProperties = compiler.compile(additionalProperties, childPath("additionalProperties"));
+            }
+        }
+        if (schema.has("dependencies")) {
+            this.schemaDependencies = new LinkedHashMap<>();
+            this.propertyDependencies = new LinkedHashMap<>();
+            for (Entry<String, JsonElement> dependency : object(schema, "dependencies").entrySet()) {
+                String name = dependency.getKey();
+                JsonElement value = dependency.getValue();
+                if (value.isJsonArray()) {
+                    List<String> names = new ArrayList<>();
+                    for (JsonElement element : value.getAsJsonArray()) {
+                        if (!isString(element)) {
+                            throw invalid("property dependencies must be arrays of strings");
+                        }
+                        names.add(element.getAsString());
+                    }
+                    this.propertyDependencies.put(name, names);
+                } else {
+                    this.schemaDependencies.put(name, compiler.compile(value, childPath("dependencies", name)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Validates a JSON document element against this schema.
+     *
+     * @param instance
+     *            The element to validate.
+     * @return A {@link ValidationFailure} describing the first failure, or
+     *         <code>null</code> if the element is valid.
+     */
+    ValidationFailure validate(JsonElement instance) {
+        if (this.ref != null) {
+            return this.ref.validate(instance);
+        }
+        ValidationFailure failure = validateGeneric(instance);
+        if (failure != null) {
+            return failure;
+        }
+        if (instance.isJsonPrimitive()) {
+            JsonPrimitive primitive = instance.getAsJsonPrimitive();
+            if (primitive.isNumber()) {
+                failure = validateNumber(primitive);
+            } else if (primitive.isString()) {
+                failure = validateString(primitive.getAsString());
+            }
+        } else if (instance.isJsonArray()) {
+            failure = validateArray(instance.getAsJsonArray());
+        } else if (instance.isJsonObject()) {
+            failure = validateObject(instance.getAsJsonObject());
+        }
+        if (failure != null) {
+            return failure;
+        }
+        return validateCombinations(instance);
+    }
+
+    /**
+     * Returns <code>true</code> if a JSON document element is valid against
+     * this schema.
+     *
+     * @param instance
+     * @return
+     */
+    boolean isValid(JsonElement instance) {
+        return validate(instance) == null;
+    }
+
+    private ValidationFailure validateGeneric(JsonElement instance) {
+        if (this.types != null) {
+            Type type = typeOf(instance);
+            if (!this.types.contains(type)) {
+                // integers are reported as numbers
+                return new ValidationFailure(String.format("Invalid type: %s (expected %s)",
+                        type == Type.INTEGER ? Type.NUMBER : type, this.typeNames), this.path + "/type");
+            }
+        }
+        if (this.enumValues != null && !this.enumValues.contains(instance)) {
+            return new ValidationFailure("No enum match for: " + instance, this.path + "/enum");
+        }
+        return null;
+    }
+
+    private ValidationFailure validateNumber(JsonPrimitive number) {
+        if (this.multipleOf != null && number.getAsBigDecimal().remainder(this.multipleOf).signum() != 0) {
+            return new ValidationFailure(
+                    String.format("Value %s is not a multiple of %s", number, this.multipleOf.toPlainString()),
+                    this.path + "/multipleOf");
+        }
+        double value = number.getAsDouble();
+        if (this.minimum != null) {
+            if (value < this.minimum) {
+                return new ValidationFailure(String.format("Value %s is less than minimum %s", number,
+                        format(this.minimum)), this.path + "/minimum");
+            }
+            if (this.exclusiveMinimum && value == this.minimum) {
+                return new ValidationFailure(String.format("Value %s is equal to exclusive minimum %s", number,
+                        format(this.minimum)), this.path + "/exclusiveMinimum");
+            }
+        }
+        if (this.maximum != null) {
+            if (value > this.maximum) {
+                return new ValidationFailure(String.format("Value %s is greater than maximum %s", number,
+                        format(this.maximum)), this.path + "/maximum");
+            }
+            if (this.exclusiveMaximum && value == this.maximum) {
+                return new ValidationFailure(String.format("Value %s is equal to exclusive maximum %s", number,
+                        format(this.maximum)), this.path + "/exclusiveMaximum");
+            }
+        }
+        return null;
+    }
+
+    private ValidationFailure validateString(String string) {
+        if (this.minLength != null || this.maxLength != null) {
+            int length = string.codePointCount(0, string.length());
+            if (this.minLength != null && length < this.minLength) {
+                return new ValidationFailure(
+                        String.format("String is too short (%d chars), minimum %d", length, this.minLength),
+                        this.path + "/minLength");
+            }
+            if (this.maxLength != null && length > this.maxLength) {
+                return new ValidationFailure(
+                        String.format("String is too long (%d chars), maximum %d", length, this.maxLength),
+                        this.path + "/maxLength");
+            }
+        }
+        if (this.pattern != null && !this.pattern.matcher(string).find()) {
+            return new ValidationFailure("String does not match pattern: " + this.pattern.pattern(),
+                    this.path + "/pattern");
+        }
+        return null;
+    }
+
+    private ValidationFailure validateArray(JsonArray array) {
+        int size = array.size();
+        if (this.minItems != null && size < this.minItems) {
+            return new ValidationFailure(String.format("Array is too short (%d), minimum %d", size, this.minItems),
+                    this.path + "/minItems");
+        }
+        if (this.maxItems != null && size > this.maxItems) {
+            return new ValidationFailure(String.format("Array is too long (%d), maximum %d", size, this.maxItems),
+                    this.path + "/maxItems");
+        }
+        if (this.uniqueItems) {
+            for (int i = 0; i < size; i++) {
+                for (int j = i + 1; j < size; j++) {
+                    if (array.get(i).equals(array.get(j))) {
+                        return new ValidationFailure(
+                                String.format("Array items are not unique (indices %d and %d)", i, j),
+                                this.path + "/uniqueItems");
+                    }
+                }
+            }
+        }
+        if (this.items != null) {
+            for (int i = 0; i < size; i++) {
+                ValidationFailure failure = this.items.validate(array.get(i));
+                if (failure != null) {
+                    return failure.under(i);
+                }
+            }
+        } else if (this.tupleItems != null) {
+            for (int i = 0; i < size; i++) {
+                ValidationFailure failure;
+                if (i < this.tupleItems.size()) {
+                    failure = this.tupleItems.get(i).validate(array.get(i));
+                } else if (!this.additionalItemsAllowed) {
+                    failure = new ValidationFailure("Additional items not allowed", this.path + "/additionalItems");
+                } else if (this.additionalItems != null) {
+                    failure = this.additionalItems.validate(array.get(i));
+                } else {
+                    break;
+                }
+                if (failure != null) {
+                    return failure.under(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    private ValidationFailure validateObject(JsonObject object) {
+        Set<Entry<String, JsonElement>> members = object.entrySet();
+        int size = members.size();
+        if (this.minProperties != null && size < this.minProperties) {
+            return new ValidationFailure(
+                    String.format("Too few properties defined (%d), minimum %d", size, this.minProperties),
+                    this.path + "/minProperties");
+        }
+        if (this.maxProperties != null && size > this.maxProperties) {
+            return new ValidationFailure(
+                    String.format("Too many properties defined (%d), maximum %d", size, this.maxProperties),
+                    this.path + "/maxProperties");
+        }
+        if (this.required != null) {
+            for (int i = 0; i < this.required.size(); i++) {
+                String name = this.required.get(i);
+                if (!object.has(name)) {
+                    return new ValidationFailure("Missing required property: " + name,
+                            this.path + "/required/" + i);
+                }
+            }
+        }
+        if (this.properties != null || this.patternProperties != null || this.additionalProperties != null
+                || !this.additionalPropertiesAllowed) {
+            for (Entry<String, JsonElement> member : members) {
+                ValidationFailure failure = validateProperty(member.getKey(), member.getValue());
+                if (failure != null) {
+                    return failure.under(member.getKey());
+                }
+            }
+        }
+        if (this.propertyDependencies != null) {
+            for (Entry<String, List<String>> dependency : this.propertyDependencies.entrySet()) {
+                if (!object.has(dependency.getKey())) {
+                    continue;
+                }
+                List<String> names = dependency.getValue();
+                for (int i = 0; i < names.size(); i++) {
+                    if (!object.has(names.get(i))) {
+                        return new ValidationFailure(
+                                String.format("Dependency failed - key must exist: %s (due to key: %s)",
+                                        names.get(i), dependency.getKey()),
+                                childPath("dependencies", dependency.getKey()) + "/" + i);
+                    }
+                }
+            }
+            for (Entry<String, SchemaNode> dependency : this.schemaDependencies.entrySet()) {
+                if (object.has(dependency.getKey())) {
+                    ValidationFailure failure = dependency.getValue().validate(object);
+                    if (failure != null) {
+                        return failure;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Validates an object member against the {@code properties},
+     * {@code patternProperties} and {@code additionalProperties} of this
+     * schema.
+     *
+     * @param name
+     * @param value
+     * @return
+     */
+    private ValidationFailure validateProperty(String name, JsonElement value) {
+        boolean matched = false;
+        if (this.properties != null) {
+            SchemaNode property = this.properties.get(name);
+            if (property != null) {
+                matched = true;
+                ValidationFailure failure = property.validate(value);
+                if (failure != null) {
+                    return failure;
+                }
+            }
+        }
+        if (this.patternProperties != null) {
+            for (Entry<Pattern, SchemaNode> property : this.patternProperties.entrySet()) {
+                if (property.getKey().matcher(name).find()) {
+                    matched = true;
+                    ValidationFailure failure = property.getValue().validate(value);
+                    if (failure != null) {
+                        return failure;
+                    }
+                }
+            }
+        }
+        if (!matched) {
+            if (!this.additionalPropertiesAllowed) {
+                return new ValidationFailure("Additional properties not allowed", this.path + "/additionalProperties");
+            }
+            if (this.additionalProperties != null) {
+                return this.additionalProperties.validate(value);
+            }
+        }
+        return null;
+    }
+
+    private ValidationFailure validateCombinations(JsonElement instance) {
+        if (this.allOf != null) {
+            for (SchemaNode schema : this.allOf) {
+                ValidationFailure failure = schema.validate(instance);
+                if (failure != null) {
+                    return failure;
+                }
+            }
+        }
+        if (this.anyOf != null) {
+            boolean matched = false;
+            for (SchemaNode schema : this.anyOf) {
+                if (schema.isValid(instance)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return new ValidationFailure("Data does not match any schemas from \"anyOf\"", this.path + "/anyOf");
+            }
+        }
+        if (this.oneOf != null) {
+            int matched = -1;
+            for (int i = 0; i < this.oneOf.size(); i++) {
+                if (this.oneOf.get(i).isValid(instance)) {
+                    if (matched >= 0) {
+                        return new ValidationFailure(String.format(
+                                "Data is valid against more than one schema from \"oneOf\": indices %d and %d",
+                                matched, i), this.path + "/oneOf");
+                    }
+                    matched = i;
+                }
+            }
+            if (matched < 0) {
+                return new ValidationFailure("Data does not match any schemas from \"oneOf\"", this.path + "/oneOf");
+            }
+        }
+        if (this.not != null && this.not.isValid(instance)) {
+            return new ValidationFailure("Data matches schema from \"not\"", this.path + "/not");
+        }
+        return null;
+    }
+
+    /**
+     * Returns the JSON type of a JSON document element. Numbers without a
+     * fractional part are {@link Type#INTEGER}s.
+     *
+     * @param instance
+     * @return
+     */
+    static Type typeOf(JsonElement instance) {
+        if (instance.isJsonObject()) {
+            return Type.OBJECT;
+        } else if (instance.isJsonArray()) {
+            return Type.ARRAY;
+        } else if (instance.isJsonNull()) {
+            return Type.NULL;
+        }
+        JsonPrimitive primitive = instance.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+            return Type.BOOLEAN;
+        } else if (primitive.isString()) {
+            return Type.STRING;
+        }
+        double value = primitive.getAsDouble();
+        return !Double.isInfinite(value) && value == Math.rint(value) ? Type.INTEGER : Type.NUMBER;
+    }
+
+    private String childPath(String... tokens) {
+        StringBuilder path = new StringBuilder(this.path);
+        for (String token : tokens) {
+            path.append('/').append(ValidationFailure.escape(token));
+        }
+        return path.toString();
+    }
+
+    private Type typeName(JsonElement name) throws JsonValidatorException {
+        if (isString(name)) {
+            for (Type type : Type.values()) {
+                if (type.toString().equals(name.getAsString())) {
+                    return type;
+                }
+            }
+        }
+        throw invalid("unrecognized type: " + name);
+    }
+
+    private List<SchemaNode> schemaList(JsonObject schema, String keyword, JsonSchema.Compiler compiler)
+            throws JsonValidatorException {
+        if (!schema.has(keyword)) {
+            return null;
+        }
+        JsonArray array = array(schema, keyword);
+        List<SchemaNode> schemas = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            schemas.add(compiler.compile(array.get(i), childPath(keyword, String.valueOf(i))));
+        }
+        return schemas;
+    }
+
+    private JsonArray array(JsonObject schema, String keyword) throws JsonValidatorException {
+        JsonElement value = schema.get(keyword);
+        if (!value.isJsonArray()) {
+            throw invalid(keyword + " must be an array");
+        }
+        return value.getAsJsonArray();
+    }
+
+    private JsonObject object(JsonObject schema, String keyword) throws JsonValidatorException {
+        JsonElement value = schema.get(keyword);
+        if (!value.isJsonObject()) {
+            throw invalid(keyword + " must be an object");
+        }
+        return value.getAsJsonObject();
+    }
+
+    private String string(JsonObject schema, String keyword) throws JsonValidatorException {
+        JsonElement value = schema.get(keyword);
+        if (!isString(value)) {
+            throw invalid(keyword + " must be a string");
+        }
+        return value.getAsString();
+    }
+
+    private JsonPrimitive number(JsonObject schema, String keyword) throws JsonValidatorException {
+        JsonElement value = schema.get(keyword);
+        if (!value.isJsonPrimitive() || !value.getAsJsonPrimitive().isNumber()) {
+            throw invalid(keyword + " must be a number");
+        }
+        return value.getAsJsonPrimitive();
+    }
+
+    private boolean bool(JsonObject schema, String keyword) throws JsonValidatorException {
+        JsonElement value = schema.get(keyword);
+        if (value == null) {
+            return false;
+        }
+        if (!isBoolean(value)) {
+            throw invalid(keyword + " must be a boolean");
+        }
+        return value.getAsBoolean();
+    }
+
+    private Integer count(JsonObject schema, String keyword) throws JsonValidatorException {
+        if (!schema.has(keyword)) {
+            return null;
+        }
+        JsonPrimitive value = number(schema, keyword);
+        if (typeOf(value) != Type.INTEGER || value.getAsLong() < 0 || value.getAsLong() > Integer.MAX_VALUE) {
+            throw invalid(keyword + " must be a non-negative integer");
+        }
+        return value.getAsInt();
+    }
+
+    private Pattern regex(String regex) throws JsonValidatorException {
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw invalid("invalid regular expression: " + e.getMessage());
+        }
+    }
+
+    private JsonValidatorException invalid(String message) {
+        return new JsonValidatorException(String.format("invalid json schema at '%s': %s", this.path, message));
+    }
+
+    private static boolean isString(JsonElement value) {
+        return value.isJsonPrimitive() && value.getAsJsonPrimitive().isString();
+    }
+
+    private static boolean isBoolean(JsonElement value) {
+        return value.isJsonPrimitive() && value.getAsJsonPrimitive().isBoolean();
+    }
+
+    /**
+     * Formats a schema limit, without a fractional part if it has none.
+     *
+     * @param value
+     * @return
+     */
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? String.valueOf((long) value)
+                : String.valueOf(value);
+    }
+}
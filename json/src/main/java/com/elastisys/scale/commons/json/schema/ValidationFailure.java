@@ -0,0 +1,84 @@
+package com.elastisys.scale.commons.json.schema;
+
+/**
+ * Describes why a JSON document failed to validate against a
+ * {@link JsonSchema}. Returned rather than thrown while validating, since
+ * failures are expected (and discarded) when trying the alternatives of an
+ * {@code anyOf}, {@code oneOf} or {@code not}.
+ * <p/>
+ * The data path is built up (as a JSON Pointer) on the way back out of the
+ * validated document, so that a successful validation never has to build
+ * paths.
+ */
+class ValidationFailure {
+    /** Validation error message. */
+    private final String message;
+    /** Point in the JSON Schema that was evaluated when validation failed. */
+    private final String schemaPath;
+    /** Point in the JSON document where validation failed. */
+    private String dataPath;
+
+    /**
+     * Creates a {@link ValidationFailure} at the document element currently
+     * being validated.
+     *
+     * @param message
+     *            Validation error message.
+     * @param schemaPath
+     *            Point in the JSON Schema that was evaluated when validation
+     *            failed.
+     */
+    ValidationFailure(String message, String schemaPath) {
+        this.message = message;
+        this.schemaPath = schemaPath;
+        this.dataPath = "";
+    }
+
+    /**
+     * Moves the failure one level down in the document, to the member (or
+     * element) with a given key (or index) of the element currently being
+     * validated.
+     *
+     * @param token
+     *            An object member name or array index.
+     * @return This {@link ValidationFailure}.
+     */
+    ValidationFailure under(String token) {
+        this.dataPath = "/" + escape(token) + this.dataPath;
+        return this;
+    }
+
+    /**
+     * Moves the failure one level down in the document, to the element with a
+     * given index of the array currently being validated.
+     *
+     * @param index
+     * @return This {@link ValidationFailure}.
+     */
+    ValidationFailure under(int index) {
+        this.dataPath = "/" + index + this.dataPath;
+        return this;
+    }
+
+    /**
+     * Returns a {@link JsonSchemaValidationException} for this failure.
+     *
+     * @return
+     */
+    JsonSchemaValidationException toException() {
+        return new JsonSchemaValidationException(this.message, this.schemaPath, this.dataPath);
+    }
+
+    /**
+     * Escapes a JSON Pointer reference token.
+     *
+     * @param token
+     * @return
+     */
+    static String escape(String token) {
+        if (token.indexOf('~') < 0 && token.indexOf('/') < 0) {
+            return token;
+        }
+        return token.replace("~", "~0").replace("/", "~1");
+    }
+}
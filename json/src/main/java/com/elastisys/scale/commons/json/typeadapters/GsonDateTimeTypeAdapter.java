@@ -0,0 +1,212 @@
+package com.elastisys.scale.commons.json.typeadapters;
+
+import java.io.IOException;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+
+import com.elastisys.scale.commons.util.time.UtcTime;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A Gson {@link TypeAdapter} that writes {@link DateTime} objects as ISO8601
+ * timestamps in UTC (such as {@code 2014-01-13T12:00:00.000Z}) and reads
+ * ISO8601 timestamps to {@link DateTime}s in UTC.
+ * <p/>
+ * Produces the same output as the {@link GsonDateTimeSerializer} and accepts
+ * the same input as the {@link GsonDateTimeDeserializer}, but reads and writes
+ * timestamps straight from/to the JSON stream rather than via a
+ * {@link com.google.gson.JsonElement} tree. Timestamps in the common
+ * {@code yyyy-MM-dd'T'HH:mm:ss[.SSS](Z|+HH:mm)} format are formatted and
+ * parsed by hand, without the (allocation-heavy) Joda-Time formatters, which
+ * are only used for other timestamps.
+ * <p/>
+ * Register via:
+ *
+ * <pre>
+ * GsonBuilder gson = new GsonBuilder();
+ * gson.registerTypeAdapter(DateTime.class, new GsonDateTimeTypeAdapter());
+ * </pre>
+ */
+public class GsonDateTimeTypeAdapter extends TypeAdapter<DateTime> {
+
+    /** Calendar used to compute timestamp fields. */
+    private static final ISOChronology ISO_UTC = ISOChronology.getInstanceUTC();
+
+    /** Earliest instant with a four-digit year: 0000-01-01T00:00:00.000Z. */
+    private static final long MIN_FAST_MILLIS = ISO_UTC.getDateTimeMillis(0, 1, 1, 0);
+    /** Latest instant with a four-digit year: 9999-12-31T23:59:59.999Z. */
+    private static final long MAX_FAST_MILLIS = ISO_UTC.getDateTimeMillis(10000, 1, 1, 0) - 1;
+
+    /** Returned by {@link #parseFast(String)} for unsupported timestamps. */
+    private static final long NOT_PARSED = Long.MIN_VALUE;
+
+    @Override
+    public void write(JsonWriter out, DateTime value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.value(format(value));
+    }
+
+    @Override
+    public DateTime read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return parse(in.nextString());
+    }
+
+    /**
+     * Formats a {@link DateTime} as an ISO8601 timestamp in UTC. Equivalent to
+     * {@code dateTime.toDateTime(DateTimeZone.UTC).toString()}.
+     *
+     * @param dateTime
+     * @return
+     */
+    static String format(DateTime dateTime) {
+        long millis = dateTime.getMillis();
+        if (!(dateTime.getChronology() instanceof ISOChronology) || millis < MIN_FAST_MILLIS
+                || millis > MAX_FAST_MILLIS) {
+            return dateTime.toDateTime(DateTimeZone.UTC).toString();
+        }
+
+        int millisOfDay = (int) Math.floorMod(millis, (long) DateTimeConstants.MILLIS_PER_DAY);
+        char[] text = new char[24];
+        putDigits(text, 0, ISO_UTC.year().get(millis), 4);
+        text[4] = '-';
+        putDigits(text, 5, ISO_UTC.monthOfYear().get(millis), 2);
+        text[7] = '-';
+        putDigits(text, 8, ISO_UTC.dayOfMonth().get(millis), 2);
+        text[10] = 'T';
+        putDigits(text, 11, millisOfDay / DateTimeConstants.MILLIS_PER_HOUR, 2);
+        text[13] = ':';
+        putDigits(text, 14, millisOfDay / DateTimeConstants.MILLIS_PER_MINUTE % 60, 2);
+        text[16] = ':';
+        putDigits(text, 17, millisOfDay / DateTimeConstants.MILLIS_PER_SECOND % 60, 2);
+        text[19] = '.';
+        putDigits(text, 20, millisOfDay % 1000, 3);
+        text[23] = 'Z';
+        return new String(text);
+    }
+
+    /**
+     * Parses an ISO8601 timestamp to a {@link DateTime} in UTC. Equivalent to
+     * {@link UtcTime#parse(String)}.
+     *
+     * @param timestamp
+     * @return
+     * @throws IllegalArgumentException
+     *             if the timestamp cannot be parsed.
+     */
+    static DateTime parse(String timestamp) throws IllegalArgumentException {
+        long millis = parseFast(timestamp);
+        if (millis == NOT_PARSED) {
+            return UtcTime.parse(timestamp);
+        }
+        return new DateTime(millis, ISO_UTC);
+    }
+
+    /**
+     * Parses a timestamp on the form
+     * {@code yyyy-MM-dd'T'HH:mm:ss[.SSS](Z|+HH:mm|-HH:mm)}.
+     *
+     * @param timestamp
+     * @return The parsed instant in milliseconds since the epoch, or
+     *         {@link #NOT_PARSED} if the timestamp isn't on that form (or has
+     *         out-of-range fields), in which case it is left to the general
+     *         parser to either parse it or report the error.
+     */
+    private static long parseFast(String timestamp) {
+        int length = timestamp.length();
+        if (length < 20 || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-' || timestamp.charAt(10) != 'T'
+                || timestamp.charAt(13) != ':' || timestamp.charAt(16) != ':') {
+            return NOT_PARSED;
+        }
+        int year = digits(timestamp, 0, 4);
+        int month = digits(timestamp, 5, 2);
+        int day = digits(timestamp, 8, 2);
+        int hour = digits(timestamp, 11, 2);
+        int minute = digits(timestamp, 14, 2);
+        int second = digits(timestamp, 17, 2);
+        int millisOfSecond = 0;
+        int position = 19;
+        if (timestamp.charAt(position) == '.') {
+            if (length < 24) {
+                return NOT_PARSED;
+            }
+            millisOfSecond = digits(timestamp, 20, 3);
+            position = 23;
+        }
+
+        int offsetMillis;
+        char zone = timestamp.charAt(position);
+        if (zone == 'Z' && length == position + 1) {
+            offsetMillis = 0;
+        } else if ((zone == '+' || zone == '-') && length == position + 6 && timestamp.charAt(position + 3) == ':') {
+            int offsetHours = digits(timestamp, position + 1, 2);
+            int offsetMinutes = digits(timestamp, position + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0 || offsetHours > 23 || offsetMinutes > 59) {
+                return NOT_PARSED;
+            }
+            offsetMillis = (offsetHours * DateTimeConstants.MILLIS_PER_HOUR
+                    + offsetMinutes * DateTimeConstants.MILLIS_PER_MINUTE) * (zone == '-' ? -1 : 1);
+        } else {
+            return NOT_PARSED;
+        }
+
+        if ((year | month | day | hour | minute | second | millisOfSecond) < 0) {
+            return NOT_PARSED;
+        }
+        try {
+            return ISO_UTC.getDateTimeMillis(year, month, day, hour, minute, second, millisOfSecond) - offsetMillis;
+        } catch (IllegalArgumentException e) {
+            // field out of range
+            return NOT_PARSED;
+        }
+    }
+
+    /**
+     * Parses a fixed number of decimal digits.
+     *
+     * @param text
+     * @param offset
+     * @param count
+     * @return The parsed value, or a negative value if any of the characters
+     *         isn't a digit.
+     */
+    private static int digits(String text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Writes a non-negative value as a fixed number of (zero-padded) decimal
+     * digits.
+     *
+     * @param text
+     * @param offset
+     * @param value
+     * @param count
+     */
+    private static void putDigits(char[] text, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
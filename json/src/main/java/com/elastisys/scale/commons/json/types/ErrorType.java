@@ -110,6 +110,6 @@ public class ErrorType {
 
     @Override
     public String toString() {
-        return JsonUtils.toPrettyString(JsonUtils.toJson(this));
+        return JsonUtils.toPrettyJsonString(this);
     }
 }
@@ -132,7 +132,7 @@ public class TimeInterval {
 
     @Override
     public String toString() {
-        return JsonUtils.toString(JsonUtils.toJson(this));
+        return JsonUtils.toJsonString(this);
     }
 
     public void validate() {
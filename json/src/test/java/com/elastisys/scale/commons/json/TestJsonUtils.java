@@ -1,16 +1,27 @@
 package com.elastisys.scale.commons.json;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.joda.time.DateTime;
 import org.junit.Test;
@@ -19,7 +30,9 @@ import com.elastisys.scale.commons.util.time.UtcTime;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 
 /**
@@ -174,6 +187,47 @@ public class TestJsonUtils {
         assertTrue(empty.isEmpty());
     }
 
+    /**
+     * Reads JSON from a {@link java.io.Reader} straight into a Java object.
+     */
+    @Test
+    public void toObjectFromReader() {
+        Type genericType = new TypeToken<Map<String, DateTime>>() {
+        }.getType();
+        String json = "{\"noon\": \"2015-01-01T12:00:00.000Z\", \"midnight\": \"2015-01-01T00:00:00.000Z\"}";
+        Map<String, DateTime> result = JsonUtils.toObject(new StringReader(json), genericType);
+        assertThat(result.size(), is(2));
+        assertThat(result.get("noon"), is(UtcTime.parse("2015-01-01T12:00:00.000Z")));
+
+        SomeClass object = JsonUtils.toObject(new StringReader("{\"a\": \"value\", \"b\": 1}"), SomeClass.class);
+        assertThat(object, is(new SomeClass("value", 1)));
+
+        // empty input
+        SomeClass nothing = JsonUtils.toObject(new StringReader(""), SomeClass.class);
+        assertThat(nothing == null, is(true));
+    }
+
+    /**
+     * Reads UTF-8 encoded JSON from an {@link java.io.InputStream} straight
+     * into a Java object.
+     */
+    @Test
+    public void toObjectFromInputStream() {
+        byte[] json = "{\"a\": \"v\u00e4rde\", \"b\": 2}".getBytes(StandardCharsets.UTF_8);
+        SomeClass object = JsonUtils.toObject(new ByteArrayInputStream(json), SomeClass.class);
+        assertThat(object, is(new SomeClass("v\u00e4rde", 2)));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void toObjectFromMalformedReader() {
+        JsonUtils.toObject(new StringReader("{\"a\": \"value\", "), SomeClass.class);
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void toObjectFromReaderWithTrailingData() {
+        JsonUtils.toObject(new StringReader("{\"a\": \"value\"} {}"), SomeClass.class);
+    }
+
     @Test
     public void testToString() {
         String rawJsonString = "{\"a\":\"value\",\"b\":1}";
@@ -206,4 +260,140 @@ public class TestJsonUtils {
         assertThat(JsonUtils.toString(json), is("{\"base64\":\"aGVsbG8geW91IQ==\"}"));
     }
 
+    /**
+     * Objects written straight to text should give the same output as
+     * converting them to a {@link JsonElement} tree and printing that.
+     */
+    @Test
+    public void toJsonStringMatchesTreeConversion() throws Exception {
+        Map<String, DateTime> timestamps = new TreeMap<>();
+        timestamps.put("t1", UtcTime.parse("2013-07-01T12:00:00.000+02:00"));
+        timestamps.put("t2", null);
+        SomeNestedClass object = new SomeNestedClass(1, "a=b <c>", timestamps,
+                new SomeClassWithTimestamp(null, UtcTime.parse("2013-07-01T12:00:00.000Z")));
+
+        assertThat(JsonUtils.toJsonString(object), is(JsonUtils.toString(JsonUtils.toJson(object))));
+        assertThat(JsonUtils.toJsonString(object, true), is(JsonUtils.toString(JsonUtils.toJson(object, true))));
+        assertThat(JsonUtils.toPrettyJsonString(object), is(JsonUtils.toPrettyString(JsonUtils.toJson(object))));
+
+        byte[] expectedBytes = JsonUtils.toPrettyString(JsonUtils.toJson(object)).getBytes(StandardCharsets.UTF_8);
+        assertTrue(Arrays.equals(JsonUtils.toJsonBytes(object, true), expectedBytes));
+
+        StringWriter writer = new StringWriter();
+        JsonUtils.writeJson(object, writer, false);
+        assertThat(writer.toString(), is(JsonUtils.toString(JsonUtils.toJson(object))));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonUtils.writeJson(object, out, true);
+        assertTrue(Arrays.equals(out.toByteArray(), expectedBytes));
+
+        // round-trip
+        assertThat(JsonUtils.toObject(JsonUtils.parseJsonString(JsonUtils.toJsonString(object)),
+                SomeNestedClass.class).getNestedObject(), is(object.getNestedObject()));
+    }
+
+    /**
+     * The conversion methods share {@link com.google.gson.Gson} instances.
+     * Verify that they can be used concurrently and that settings (such as
+     * serialization of <code>null</code> fields) do not leak between calls.
+     */
+    @Test
+    public void concurrentConversions() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new LinkedList<>();
+            for (int i = 0; i < 100; i++) {
+                final int value = i;
+                results.add(executor.submit(() -> {
+                    SomeClass object = new SomeClass(null, value);
+                    assertThat(JsonUtils.toJson(object, true).toString(), is("{\"a\":null,\"b\":" + value + "}"));
+                    assertThat(JsonUtils.toJson(object).toString(), is("{\"b\":" + value + "}"));
+                    JsonElement json = JsonUtils.toJson(new SomeClass("v", value));
+                    assertThat(JsonUtils.toObject(json, SomeClass.class), is(new SomeClass("v", value)));
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Values should be extractable by JSON Pointer without parsing the
+     * document. Pointers that don't resolve are left out.
+     */
+    @Test
+    public void extractJson() {
+        String json = "{\"a\": {\"b\": [1, {\"c\": \"x\"}, 3], \"d/e\": true, \"f~g\": null},"
+                + " \"h\": \"i\", \"\": 0}";
+
+        Map<String, JsonElement> values = JsonUtils.extractJson(new StringReader(json), "/a/b/1/c", "/a/d~1e",
+                "/a/f~0g", "/h", "/", "/a/b/3", "/a/b/01", "/h/x", "/missing");
+        Map<String, JsonElement> expected = new TreeMap<>();
+        expected.put("/a/b/1/c", JsonUtils.parseJsonString("\"x\""));
+        expected.put("/a/d~1e", JsonUtils.parseJsonString("true"));
+        expected.put("/a/f~0g", JsonNull.INSTANCE);
+        expected.put("/h", JsonUtils.parseJsonString("\"i\""));
+        expected.put("/", JsonUtils.parseJsonString("0"));
+        assertThat(new TreeMap<>(values), is(expected));
+
+        // the empty pointer refers to the whole document
+        assertThat(JsonUtils.extractJson(new StringReader(json), "").get(""), is(JsonUtils.parseJsonString(json)));
+        // pointers that are prefixes of each other
+        values = JsonUtils.extractJson(new StringReader(json), "/a/b/1/c", "/a/b", "/a/b/2");
+        assertThat(values.get("/a/b"), is(JsonUtils.parseJsonString("[1, {\"c\": \"x\"}, 3]")));
+        assertThat(values.get("/a/b/1/c"), is(JsonUtils.parseJsonString("\"x\"")));
+        assertThat(values.get("/a/b/2"), is(JsonUtils.parseJsonString("3")));
+        // first of several members with the same name
+        assertThat(JsonUtils.extractJson(new StringReader("{\"a\": 1, \"a\": 2}"), "/a").get("/a"),
+                is(JsonUtils.parseJsonString("1")));
+        // empty input
+        assertTrue(JsonUtils.extractJson(new StringReader(""), "/a").isEmpty());
+    }
+
+    /**
+     * Scanning should stop once all values have been found, so that the rest
+     * of the document is never read.
+     */
+    @Test
+    public void extractJsonStopsOnceAllValuesFound() {
+        // malformed after the extracted values
+        String json = "{\"a\": {\"b\": 1, \"c\": 2}, \"d\": [1, 2, {{{ \"e\": ]";
+        Map<String, JsonElement> values = JsonUtils.extractJson(new StringReader(json), "/a/b", "/d/1");
+        assertThat(values.get("/a/b"), is(JsonUtils.parseJsonString("1")));
+        assertThat(values.get("/d/1"), is(JsonUtils.parseJsonString("2")));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void extractJsonFromMalformedDocument() {
+        JsonUtils.extractJson(new StringReader("{\"a\": [1, }, \"b\": 2}"), "/b");
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void extractJsonFromTruncatedDocument() {
+        JsonUtils.extractJson(new StringReader("{\"a\": {\"b\": 1"), "/c");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void extractJsonWithIllegalPointer() {
+        JsonUtils.extractJson(new StringReader("{}"), "a/b");
+    }
+
+    /**
+     * A value should be extractable straight into a Java object.
+     */
+    @Test
+    public void extractObject() {
+        String json = "{\"header\": {\"kind\": \"x\"}, \"items\": [{\"a\": \"v\", \"b\": 1},"
+                + " {\"timestamp\": \"2013-07-01T12:00:00.000Z\"}]}";
+
+        assertThat(JsonUtils.extractObject(new StringReader(json), "/items/0", SomeClass.class),
+                is(new SomeClass("v", 1)));
+        assertThat(JsonUtils.extractObject(new StringReader(json), "/items/1/timestamp", DateTime.class),
+                is(UtcTime.parse("2013-07-01T12:00:00.000Z")));
+        assertThat(JsonUtils.extractObject(new StringReader(json), "/header/kind", String.class), is("x"));
+        assertThat(JsonUtils.extractObject(new StringReader(json), "/items/2", SomeClass.class), is(nullValue()));
+    }
 }
@@ -0,0 +1,91 @@
+package com.elastisys.scale.commons.json.lab;
+
+import java.lang.management.ManagementFactory;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.elastisys.scale.commons.json.typeadapters.GsonDateTimeDeserializer;
+import com.elastisys.scale.commons.json.typeadapters.GsonDateTimeSerializer;
+import com.elastisys.scale.commons.json.typeadapters.GsonDateTimeTypeAdapter;
+import com.elastisys.scale.commons.util.time.UtcTime;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+
+/**
+ * Simple program that compares (de)serializing {@link DateTime}s via
+ * {@link com.google.gson.JsonElement}s and Joda-Time's formatter/parser (as
+ * the {@link GsonDateTimeSerializer}/{@link GsonDateTimeDeserializer} pair
+ * used to) against the streaming {@link GsonDateTimeTypeAdapter}. Reports time
+ * and (where the JVM supports it) allocated bytes per array of a hundred
+ * timestamps.
+ */
+public class DateTimeSerializationLab {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ITERATIONS = 50_000;
+    private static final int TIMESTAMPS = 100;
+
+    public static void main(String[] args) {
+        Gson jodaGson = new GsonBuilder()
+                .registerTypeAdapter(DateTime.class,
+                        (JsonDeserializer<DateTime>) (json, type, context) -> UtcTime.parse(json.getAsString()))
+                .registerTypeAdapter(DateTime.class,
+                        (JsonSerializer<DateTime>) (src, type,
+                                context) -> new JsonPrimitive(src.toDateTime(DateTimeZone.UTC).toString()))
+                .create();
+        Gson streamingGson = new GsonBuilder().registerTypeAdapter(DateTime.class, new GsonDateTimeTypeAdapter())
+                .create();
+
+        DateTime[] timestamps = new DateTime[TIMESTAMPS];
+        for (int i = 0; i < TIMESTAMPS; i++) {
+            timestamps[i] = UtcTime.parse("2017-01-01T12:00:00.000Z").plusMillis(i * 12_345_678);
+        }
+        String json = jodaGson.toJson(timestamps);
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+            measure(report, "serialize (joda)       ", () -> jodaGson.toJson(timestamps).length());
+            measure(report, "serialize (streaming)  ", () -> streamingGson.toJson(timestamps).length());
+            measure(report, "deserialize (joda)     ", () -> jodaGson.fromJson(json, DateTime[].class).length);
+            measure(report, "deserialize (streaming)", () -> streamingGson.fromJson(json, DateTime[].class).length);
+        }
+    }
+
+    private static void measure(boolean report, String name, Operation operation) {
+        long checksum = 0;
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            checksum += operation.run();
+        }
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        if (report) {
+            System.out.printf("%s: %6.0f ns/op, %6d bytes/op (checksum: %d)%n", name, (double) nanos / ITERATIONS,
+                    bytes / ITERATIONS, checksum);
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or
+     * {@code 0} if not supported by the JVM.
+     *
+     * @return
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /** An operation to measure. */
+    private interface Operation {
+        int run();
+    }
+}
@@ -0,0 +1,70 @@
+package com.elastisys.scale.commons.json.lab;
+
+import java.io.StringReader;
+
+import com.elastisys.scale.commons.json.JsonUtils;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Simple program that compares reading a couple of fields from a large JSON
+ * document by parsing the whole document into a {@link JsonElement} tree
+ * against extracting them with {@link JsonUtils#extractJson}. One field is
+ * near the start of the document and one is at its end.
+ */
+public class JsonPointerExtractionLab {
+
+    private static final int ENTRIES = 10_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ITERATIONS = 200;
+
+    public static void main(String[] args) {
+        JsonObject document = new JsonObject();
+        JsonObject header = new JsonObject();
+        header.addProperty("kind", "CloudPoolConfig");
+        document.add("header", header);
+        JsonArray entries = new JsonArray();
+        for (int i = 0; i < ENTRIES; i++) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("id", "i-" + i);
+            entry.addProperty("state", "running");
+            entry.add("tags", JsonUtils.parseJsonString("{\"pool\": \"pool-1\", \"index\": " + i + "}"));
+            entries.add(entry);
+        }
+        document.add("entries", entries);
+        document.addProperty("trailer", "end");
+        String json = JsonUtils.toString(document);
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long checksum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                JsonObject parsed = JsonUtils.parseJsonString(json).getAsJsonObject();
+                checksum += parsed.getAsJsonObject("header").get("kind").getAsString().length();
+                checksum += parsed.get("trailer").getAsString().length();
+            }
+            long parseNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                checksum -= JsonUtils.extractJson(new StringReader(json), "/header/kind", "/trailer").get("/trailer")
+                        .getAsString().length();
+            }
+            long extractNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                checksum -= JsonUtils.extractJson(new StringReader(json), "/header/kind").get("/header/kind")
+                        .getAsString().length();
+            }
+            long extractFirstNanos = System.nanoTime() - start;
+            if (round == WARMUP_ROUNDS) {
+                System.out.printf("%d bytes: parse: %5d us, extract (first and last field): %5d us, "
+                        + "extract (first field): %5d us (checksum: %d)%n", json.length(),
+                        parseNanos / ITERATIONS / 1000, extractNanos / ITERATIONS / 1000,
+                        extractFirstNanos / ITERATIONS / 1000, checksum);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.elastisys.scale.commons.json.lab;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.joda.time.DateTime;
+
+import com.elastisys.scale.commons.json.JsonUtils;
+import com.elastisys.scale.commons.util.time.UtcTime;
+
+/**
+ * Simple program that compares serializing an object by first converting it
+ * to a {@link com.google.gson.JsonElement} tree and then printing the tree
+ * ({@code JsonUtils.toPrettyString(JsonUtils.toJson(object))}) against writing
+ * it straight to text ({@code JsonUtils.toPrettyJsonString(object)}). Reports
+ * time and (where the JVM supports it) allocated bytes per serialization.
+ */
+public class JsonSerializationLab {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ITERATIONS = 200_000;
+
+    public static void main(String[] args) {
+        Map<String, DateTime> timestamps = new TreeMap<>();
+        for (int i = 0; i < 10; i++) {
+            timestamps.put("instance-" + i, UtcTime.parse("2017-01-01T12:00:00.000Z").plusMinutes(i));
+        }
+        Sample sample = new Sample("/cloudpool/size/CHANGED", 42, timestamps,
+                new String[] { "i-1", "i-2", "i-3", "i-4" });
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            long length = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                length += JsonUtils.toPrettyString(JsonUtils.toJson(sample)).length();
+            }
+            long treeNanos = System.nanoTime() - start;
+            long treeBytes = allocatedBytes() - bytes;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                length -= JsonUtils.toPrettyJsonString(sample).length();
+            }
+            long streamNanos = System.nanoTime() - start;
+            long streamBytes = allocatedBytes() - bytes;
+
+            if (round == WARMUP_ROUNDS) {
+                System.out.printf("via JsonElement tree: %.0f ns/op, %d bytes/op%n", (double) treeNanos / ITERATIONS,
+                        treeBytes / ITERATIONS);
+                System.out.printf("streaming:            %.0f ns/op, %d bytes/op%n", (double) streamNanos / ITERATIONS,
+                        streamBytes / ITERATIONS);
+                System.out.printf("(checksum: %d)%n", length);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or
+     * {@code 0} if not supported by the JVM.
+     *
+     * @return
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /** Object to serialize. */
+    static class Sample {
+        private final String topic;
+        private final int size;
+        private final Map<String, DateTime> timestamps;
+        private final String[] instances;
+        private final String details = null;
+
+        public Sample(String topic, int size, Map<String, DateTime> timestamps, String[] instances) {
+            this.topic = topic;
+            this.size = size;
+            this.timestamps = timestamps;
+            this.instances = instances;
+        }
+    }
+}
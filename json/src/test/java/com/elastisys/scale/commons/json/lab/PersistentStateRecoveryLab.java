@@ -0,0 +1,106 @@
+package com.elastisys.scale.commons.json.lab;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.joda.time.DateTime;
+
+import com.elastisys.scale.commons.json.persistence.BinaryStateCodec;
+import com.elastisys.scale.commons.json.persistence.GzipStateCodec;
+import com.elastisys.scale.commons.json.persistence.JsonStateCodec;
+import com.elastisys.scale.commons.json.persistence.PersistentState;
+import com.elastisys.scale.commons.json.persistence.StateCodec;
+import com.elastisys.scale.commons.util.file.FileUtils;
+import com.elastisys.scale.commons.util.time.UtcTime;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Simple program that measures the storage size, write time and (startup)
+ * recovery time of a multi-megabyte {@link PersistentState} with each of the
+ * available {@link com.elastisys.scale.commons.json.persistence.StateCodec}s.
+ * The best times of a number of rounds are reported.
+ */
+public class PersistentStateRecoveryLab {
+
+    private static final File STORAGE_LOCATION = new File("target", "recovery-lab-state");
+    private static final int INSTANCES = 20_000;
+    private static final int WARMUP_ROUNDS = 5;
+    /** Rounds after warmup. The best time of these rounds is reported. */
+    private static final int ROUNDS = 10;
+
+    private static final TypeToken<Map<String, Instance>> STATE_TYPE = new TypeToken<Map<String, Instance>>() {
+    };
+
+    public static void main(String[] args) throws IOException {
+        Map<String, Instance> state = new TreeMap<>();
+        DateTime launchTime = UtcTime.parse("2017-01-01T12:00:00.000Z");
+        for (int i = 0; i < INSTANCES; i++) {
+            state.put("i-" + i, new Instance("i-" + i, i % 10 == 0 ? "pending" : "running", "m1.medium",
+                    launchTime.plusSeconds(i), 0.0125 * (i % 100), "10.0.0." + (i % 256)));
+        }
+
+        Map<String, StateCodec> codecs = new LinkedHashMap<>();
+        codecs.put("json (pretty)", JsonStateCodec.PRETTY);
+        codecs.put("json (compact)", JsonStateCodec.COMPACT);
+        codecs.put("json (gzip)", new GzipStateCodec(JsonStateCodec.COMPACT));
+        codecs.put("binary", BinaryStateCodec.INSTANCE);
+        codecs.put("binary (gzip)", new GzipStateCodec(BinaryStateCodec.INSTANCE));
+
+        Map<String, long[]> bestNanos = new LinkedHashMap<>();
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            for (Entry<String, StateCodec> codec : codecs.entrySet()) {
+                FileUtils.deleteRecursively(STORAGE_LOCATION);
+                System.gc();
+                long start = System.nanoTime();
+                PersistentState.builder(STORAGE_LOCATION, STATE_TYPE).codec(codec.getValue()).build().update(state);
+                long writeNanos = System.nanoTime() - start;
+
+                System.gc();
+                start = System.nanoTime();
+                PersistentState<Map<String, Instance>> recovered = PersistentState
+                        .builder(STORAGE_LOCATION, STATE_TYPE).codec(codec.getValue()).build();
+                long recoverNanos = System.nanoTime() - start;
+                if (recovered.get().get().size() != INSTANCES) {
+                    throw new IllegalStateException("recovered state is incomplete");
+                }
+
+                if (round >= WARMUP_ROUNDS) {
+                    long[] best = bestNanos.computeIfAbsent(codec.getKey(),
+                            key -> new long[] { Long.MAX_VALUE, Long.MAX_VALUE, STORAGE_LOCATION.length() });
+                    best[0] = Math.min(best[0], writeNanos);
+                    best[1] = Math.min(best[1], recoverNanos);
+                }
+            }
+        }
+        for (Entry<String, long[]> best : bestNanos.entrySet()) {
+            System.out.printf("%-15s %8d bytes, write: %4d ms, recover: %4d ms%n", best.getKey(), best.getValue()[2],
+                    best.getValue()[0] / 1_000_000, best.getValue()[1] / 1_000_000);
+        }
+        FileUtils.deleteRecursively(STORAGE_LOCATION);
+    }
+
+    /**
+     * Sample state entry.
+     */
+    static class Instance {
+        private final String id;
+        private final String state;
+        private final String type;
+        private final DateTime launchTime;
+        private final double price;
+        private final String privateIp;
+
+        public Instance(String id, String state, String type, DateTime launchTime, double price, String privateIp) {
+            this.id = id;
+            this.state = state;
+            this.type = type;
+            this.launchTime = launchTime;
+            this.price = price;
+            this.privateIp = privateIp;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.elastisys.scale.commons.json.persistence;
+
+import static com.elastisys.scale.commons.json.JsonUtils.parseJsonString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Exercises the {@link BinaryStateCodec} (and the {@link GzipStateCodec}).
+ */
+public class TestBinaryStateCodec {
+
+    private final StateCodec codec = BinaryStateCodec.INSTANCE;
+
+    @Test
+    public void encodeAndDecodeValues() throws IOException {
+        assertRoundTrip(JsonNull.INSTANCE);
+        assertRoundTrip(new JsonPrimitive(true));
+        assertRoundTrip(new JsonPrimitive(false));
+        assertRoundTrip(new JsonPrimitive(""));
+        assertRoundTrip(new JsonPrimitive("räksmörgås 😀"));
+        assertRoundTrip(new JsonPrimitive(0));
+        assertRoundTrip(new JsonPrimitive(-1));
+        assertRoundTrip(new JsonPrimitive(Long.MAX_VALUE));
+        assertRoundTrip(new JsonPrimitive(Long.MIN_VALUE));
+        assertRoundTrip(new JsonPrimitive(0.1));
+        assertRoundTrip(new JsonPrimitive(-2.5f));
+        assertRoundTrip(new JsonPrimitive(Double.NaN));
+        assertRoundTrip(new JsonPrimitive(new BigInteger("123456789012345678901234567890")));
+        assertRoundTrip(new JsonPrimitive(new BigDecimal("0.1000000000000000000000001")));
+    }
+
+    @Test
+    public void encodeAndDecodeNumbersParsedFromText() throws IOException {
+        assertRoundTrip(parseJsonString("[1, -7, 0.1, 1e2, 2.50, 1e400, 12345678901234567890]"));
+    }
+
+    @Test
+    public void encodeAndDecodeTrees() throws IOException {
+        assertRoundTrip(parseJsonString("{}"));
+        assertRoundTrip(parseJsonString("[]"));
+        assertRoundTrip(parseJsonString(
+                "{\"a\": [1, {\"b\": null, \"c\": \"a\"}], \"d\": {\"a\": {\"a\": \"b\"}}, \"e\": [[], {}, \"\"]}"));
+    }
+
+    /**
+     * Repeated strings (such as member names in an array of objects) should
+     * only be stored once.
+     */
+    @Test
+    public void repeatedStringsAreStoredOnce() throws IOException {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < 100; i++) {
+            array.add(parseJsonString("{\"instanceId\": \"i-" + i + "\", \"state\": \"running\"}"));
+        }
+        byte[] encoded = assertRoundTrip(array);
+        String text = new String(encoded, StandardCharsets.ISO_8859_1);
+        assertThat(text.indexOf("instanceId"), is(text.lastIndexOf("instanceId")));
+        assertThat(text.indexOf("running"), is(text.lastIndexOf("running")));
+        assertTrue(encoded.length < array.toString().length() / 2);
+    }
+
+    /**
+     * Objects should be encoded as Gson maps them, straight from the object.
+     */
+    @Test
+    public void encodeAndDecodeObjects() throws IOException {
+        SomeClass value = new SomeClass("a", null, 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = this.codec.newWriter(out)) {
+            new Gson().toJson(value, SomeClass.class, writer);
+        }
+        // null members are left out, unless nulls are serialized
+        assertThat(decode(this.codec, out.toByteArray()), is(parseJsonString("{\"a\": \"a\", \"c\": 2}")));
+        assertThat(this.codec.read(new ByteArrayInputStream(out.toByteArray()), new Gson(), SomeClass.class),
+                is(value));
+    }
+
+    @Test
+    public void gzipRoundTrip() throws IOException {
+        StateCodec gzip = new GzipStateCodec(this.codec);
+        JsonElement state = parseJsonString("{\"a\": [1, 2.5, \"three\", null, true]}");
+        assertThat(decode(gzip, encode(gzip, state)), is(state));
+
+        gzip = new GzipStateCodec(JsonStateCodec.COMPACT);
+        assertThat(decode(gzip, encode(gzip, state)), is(state));
+    }
+
+    @Test(expected = IOException.class)
+    public void decodeNonBinaryState() throws IOException {
+        decode(this.codec, "{\"a\": 1}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IOException.class)
+    public void decodeTruncatedState() throws IOException {
+        byte[] encoded = encode(this.codec, parseJsonString("{\"a\": [1, 2, 3]}"));
+        decode(this.codec, Arrays.copyOf(encoded, encoded.length - 1));
+    }
+
+    private byte[] assertRoundTrip(JsonElement state) throws IOException {
+        byte[] encoded = encode(this.codec, state);
+        assertThat(decode(this.codec, encoded), is(state));
+        return encoded;
+    }
+
+    private static byte[] encode(StateCodec codec, JsonElement state) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = codec.newWriter(out)) {
+            new GsonBuilder().serializeNulls().create().toJson(state, writer);
+        }
+        return out.toByteArray();
+    }
+
+    private static JsonElement decode(StateCodec codec, byte[] encodedState) throws IOException {
+        try {
+            return codec.readTree(new ByteArrayInputStream(encodedState));
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+    }
+
+    static class SomeClass {
+        private final String a;
+        private final String b;
+        private final int c;
+
+        public SomeClass(String a, String b, int c) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof SomeClass) {
+                SomeClass that = (SomeClass) obj;
+                return Objects.equals(this.a, that.a) && Objects.equals(this.b, that.b) && this.c == that.c;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.a, this.b, this.c);
+        }
+    }
+}
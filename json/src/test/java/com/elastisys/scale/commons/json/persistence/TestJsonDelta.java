@@ -0,0 +1,64 @@
+package com.elastisys.scale.commons.json.persistence;
+
+import static com.elastisys.scale.commons.json.JsonUtils.parseJsonString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+
+/**
+ * Exercises the {@link JsonDelta} class.
+ */
+public class TestJsonDelta {
+
+    @Test
+    public void diffEqualDocuments() {
+        JsonElement document = json("{'a': [1, 2], 'b': {'c': null}}");
+        JsonArray delta = JsonDelta.diff(document, json("{'a': [1, 2], 'b': {'c': null}}"));
+        assertThat(delta.size(), is(0));
+    }
+
+    @Test
+    public void diffObjects() {
+        JsonElement from = json("{'a': 1, 'b': {'c': 2, 'd': 3}, 'e/f': 4, 'g': [1]}");
+        JsonElement to = json("{'a': 1, 'b': {'c': 20, 'x': null}, 'e/f': 4, 'g': [1, 2], 'h': {}}");
+
+        JsonArray delta = JsonDelta.diff(from, to);
+        assertThat(delta, is(json("[['/b/d'], ['/b/c', 20], ['/b/x', null], ['/g', [1, 2]], ['/h', {}]]")));
+        assertThat(JsonDelta.apply(from, delta), is(to));
+    }
+
+    @Test
+    public void diffEscapedNames() {
+        JsonElement from = json("{'a/b': {'c~d': 1}}");
+        JsonElement to = json("{'a/b': {'c~d': 2}}");
+
+        JsonArray delta = JsonDelta.diff(from, to);
+        assertThat(delta, is(json("[['/a~1b/c~0d', 2]]")));
+        assertThat(JsonDelta.apply(from, delta), is(to));
+    }
+
+    @Test
+    public void diffReplacedRoot() {
+        JsonElement from = json("{'a': 1}");
+        JsonElement to = json("null");
+
+        JsonArray delta = JsonDelta.diff(from, to);
+        assertThat(delta, is(json("[['', null]]")));
+        assertThat(JsonDelta.apply(from, delta), is(to));
+        assertThat(JsonDelta.apply(to, JsonDelta.diff(to, from)), is(from));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void applyToNonMatchingDocument() {
+        JsonDelta.apply(json("{'a': 1}"), json("[['/b/c', 1]]").getAsJsonArray());
+    }
+
+    private static JsonElement json(String json) {
+        return parseJsonString(json.replace('\'', '"'));
+    }
+}
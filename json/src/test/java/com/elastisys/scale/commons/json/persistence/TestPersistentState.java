@@ -1,14 +1,21 @@
 package com.elastisys.scale.commons.json.persistence;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.joda.time.DateTime;
 import org.junit.Before;
@@ -24,10 +31,15 @@ import com.google.gson.reflect.TypeToken;
 public class TestPersistentState {
 
     private static final File STORAGE_LOCATION = new File("target", "state.json");
+    private static final File JOURNAL = new File("target", "state.json.journal");
+
+    private static final TypeToken<Map<String, Integer>> STRING_INT_MAP = new TypeToken<Map<String, Integer>>() {
+    };
 
     @Before
     public void beforeTestMethod() throws IOException {
         FileUtils.deleteRecursively(STORAGE_LOCATION);
+        FileUtils.deleteRecursively(JOURNAL);
     }
 
     /**
@@ -175,4 +187,218 @@ public class TestPersistentState {
         state.save();
     }
 
+    /**
+     * A state stored without pretty-printing should be written on a single
+     * line and be recoverable.
+     */
+    @Test
+    public void storeAndRecoverCompact() throws IOException {
+        PersistentState<SomeClassWithTimestamp> state = PersistentState
+                .builder(STORAGE_LOCATION, SomeClassWithTimestamp.class).prettyPrint(false).build();
+        SomeClassWithTimestamp value = new SomeClassWithTimestamp("midnight",
+                UtcTime.parse("2015-01-01T00:00:00.000Z"));
+        state.update(value);
+
+        assertFalse(read(STORAGE_LOCATION).contains("\n"));
+        assertThat(new PersistentState<>(STORAGE_LOCATION, SomeClassWithTimestamp.class).get().get(), is(value));
+        // no temporary file left behind
+        assertFalse(new File("target", "state.json.tmp").exists());
+    }
+
+    /**
+     * States stored with the binary codec (optionally compressed) should be
+     * recoverable with the same codec.
+     */
+    @Test
+    public void storeAndRecoverWithBinaryCodec() throws IOException {
+        Map<String, DateTime> timestamps = Maps.of("10", UtcTime.parse("2015-01-01T10:00:00.000Z"), //
+                "12", UtcTime.parse("2015-01-01T12:00:00.000Z"));
+        SomeNestedClass value = new SomeNestedClass(10, "ten", timestamps,
+                new SomeClassWithTimestamp("midnight", UtcTime.parse("2015-01-01T00:00:00.000Z")));
+
+        for (StateCodec codec : asList(BinaryStateCodec.INSTANCE, new GzipStateCodec(BinaryStateCodec.INSTANCE))) {
+            FileUtils.deleteRecursively(STORAGE_LOCATION);
+            PersistentState.builder(STORAGE_LOCATION, SomeNestedClass.class).codec(codec).build().update(value);
+
+            PersistentState<SomeNestedClass> recovered = PersistentState
+                    .builder(STORAGE_LOCATION, SomeNestedClass.class).codec(codec).build();
+            assertThat(recovered.get().get(), is(value));
+        }
+    }
+
+    /**
+     * With journaling, updates should be appended to the journal rather than
+     * rewrite the snapshot, and the state should be recovered from snapshot
+     * and journal.
+     */
+    @Test
+    public void storeAndRecoverJournaled() throws IOException {
+        PersistentState<Map<String, Integer>> state = PersistentState.builder(STORAGE_LOCATION, STRING_INT_MAP)
+                .journal(true).build();
+        Map<String, Integer> value = new HashMap<>();
+        value.put("a", 1);
+        value.put("b", 2);
+        state.update(value);
+        String snapshot = read(STORAGE_LOCATION);
+
+        value.put("a", 10);
+        state.save();
+        value.remove("b");
+        value.put("c", 3);
+        state.update(value);
+        // unchanged state is not journaled
+        state.save();
+
+        assertThat(read(STORAGE_LOCATION), is(snapshot));
+        assertThat(read(JOURNAL).split("\n").length, is(3));
+
+        PersistentState<Map<String, Integer>> recovered = PersistentState.builder(STORAGE_LOCATION, STRING_INT_MAP)
+                .journal(true).build();
+        assertThat(recovered.get().get(), is(value));
+    }
+
+    /**
+     * The journal should be compacted into a new snapshot once it holds the
+     * maximum number of entries.
+     */
+    @Test
+    public void compactJournal() throws IOException {
+        PersistentState<Map<String, Integer>> state = PersistentState.builder(STORAGE_LOCATION, STRING_INT_MAP)
+                .journal(true).maxJournalEntries(2).build();
+        Map<String, Integer> value = new HashMap<>();
+        for (int i = 0; i < 4; i++) {
+            value.put("key" + i, i);
+            state.update(value);
+        }
+        // snapshot + 2 deltas, then a new snapshot on the fourth update
+        assertThat(read(JOURNAL).split("\n").length, is(1));
+        assertThat(new PersistentState<>(STORAGE_LOCATION, STRING_INT_MAP).get().get(), is(value));
+    }
+
+    /**
+     * A journal entry that was only partially written (when the process
+     * crashed) should be ignored on recovery, and the journal should be
+     * usable afterwards.
+     */
+    @Test
+    public void recoverWithInterruptedJournalAppend() throws IOException {
+        PersistentState<Map<String, Integer>> state = PersistentState.builder(STORAGE_LOCATION, STRING_INT_MAP)
+                .journal(true).build();
+        Map<String, Integer> value = new HashMap<>();
+        value.put("a", 1);
+        state.update(value);
+        value.put("a", 2);
+        state.update(value);
+        Files.write(JOURNAL.toPath(), "[[\"/a\",".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        PersistentState<Map<String, Integer>> recovered = PersistentState.builder(STORAGE_LOCATION, STRING_INT_MAP)
+                .journal(true).build();
+        assertThat(recovered.get().get(), is(value));
+
+        value.put("a", 3);
+        recovered.update(value);
+        assertThat(new PersistentState<>(STORAGE_LOCATION, STRING_INT_MAP).get().get(), is(value));
+    }
+
+    /**
+     * A journal that doesn't belong to the snapshot (left behind by a crash
+     * during compaction) should be ignored.
+     */
+    @Test
+    public void recoverWithStaleJournal() throws IOException {
+        PersistentState<Map<String, Integer>> state = PersistentState.builder(STORAGE_LOCATION, STRING_INT_MAP)
+                .journal(true).build();
+        Map<String, Integer> value = new HashMap<>();
+        value.put("a", 1);
+        state.update(value);
+        Files.write(JOURNAL.toPath(), "{\"snapshot\":1}\n[[\"/a\",2]]\n".getBytes(StandardCharsets.UTF_8));
+
+        PersistentState<Map<String, Integer>> recovered = PersistentState.builder(STORAGE_LOCATION, STRING_INT_MAP)
+                .journal(true).build();
+        assertThat(recovered.get().get(), is(value));
+    }
+
+    /**
+     * When journaling is turned off, a journal left behind should be
+     * recovered and folded into the snapshot.
+     */
+    @Test
+    public void recoverJournalWithoutJournaling() throws IOException {
+        PersistentState<Map<String, Integer>> state = PersistentState.builder(STORAGE_LOCATION, STRING_INT_MAP)
+                .journal(true).build();
+        Map<String, Integer> value = new HashMap<>();
+        value.put("a", 1);
+        state.update(value);
+        value.put("a", 2);
+        state.update(value);
+
+        PersistentState<Map<String, Integer>> recovered = new PersistentState<>(STORAGE_LOCATION, STRING_INT_MAP);
+        assertThat(recovered.get().get(), is(value));
+        assertFalse(JOURNAL.exists());
+    }
+
+    /**
+     * In write-behind mode, a burst of updates should be coalesced into few
+     * writes, and flush should write any pending update.
+     */
+    @Test
+    public void writeBehindCoalescesUpdates() {
+        PersistentState<Integer> state = PersistentState.builder(STORAGE_LOCATION, Integer.class)
+                .writeBehind(1, TimeUnit.MINUTES).build();
+        for (int i = 1; i <= 100; i++) {
+            state.update(i);
+        }
+        state.flush();
+        assertThat(new PersistentState<>(STORAGE_LOCATION, Integer.class).get().get(), is(100));
+
+        PersistentStateMetrics metrics = state.getMetrics();
+        assertThat(metrics.getUpdates(), is(100L));
+        // possibly one write on the leading edge of the burst
+        assertTrue(metrics.getWrites() <= 2);
+        assertThat(metrics.getWrites() + metrics.getCoalescedUpdates(), is(100L));
+        assertThat(metrics.getWriteLatency().getCount(), is(metrics.getWrites()));
+        state.close();
+    }
+
+    /**
+     * In write-behind mode, an update should be written in the background
+     * after at most the write-behind interval.
+     */
+    @Test
+    public void writeBehindInBackground() throws Exception {
+        PersistentState<Integer> state = PersistentState.builder(STORAGE_LOCATION, Integer.class)
+                .writeBehind(100, TimeUnit.MILLISECONDS).build();
+        state.update(1);
+        state.update(2);
+        Thread.sleep(500);
+        assertThat(new PersistentState<>(STORAGE_LOCATION, Integer.class).get().get(), is(2));
+        state.close();
+    }
+
+    /**
+     * Closing should write pending updates, after which updates are no longer
+     * allowed.
+     */
+    @Test
+    public void closeWritesPendingUpdates() {
+        PersistentState<Integer> state = PersistentState.builder(STORAGE_LOCATION, Integer.class)
+                .writeBehind(1, TimeUnit.HOURS).build();
+        state.update(1);
+        state.update(2);
+        state.close();
+        // closing again has no effect
+        state.close();
+        assertThat(new PersistentState<>(STORAGE_LOCATION, Integer.class).get().get(), is(2));
+
+        try {
+            state.update(3);
+            fail("should not be possible to update a closed state");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
 }
@@ -0,0 +1,182 @@
+package com.elastisys.scale.commons.json.schema;
+
+import static com.elastisys.scale.commons.json.JsonUtils.parseJsonString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Exercises the {@link JsonSchema} class.
+ */
+public class TestJsonSchema {
+
+    @Test
+    public void typeKeyword() throws Exception {
+        JsonSchema schema = schema("{'type': 'integer'}");
+        assertValid(schema, "1");
+        assertValid(schema, "1.0");
+        assertInvalid(schema, "1.5", "/type", "", "Invalid type: number (expected integer)");
+        assertInvalid(schema, "'1'", "/type", "", "Invalid type: string (expected integer)");
+
+        schema = schema("{'type': ['number', 'null']}");
+        assertValid(schema, "1");
+        assertValid(schema, "1.5");
+        assertValid(schema, "null");
+        assertInvalid(schema, "true", "/type", "", "Invalid type: boolean (expected number/null)");
+    }
+
+    @Test
+    public void enumKeyword() throws Exception {
+        JsonSchema schema = schema("{'enum': ['a', 1, {'b': [true]}]}");
+        assertValid(schema, "'a'");
+        assertValid(schema, "1");
+        assertValid(schema, "{'b': [true]}");
+        assertInvalid(schema, "{'b': [false]}", "/enum", "", "No enum match for: {\"b\":[false]}");
+    }
+
+    @Test
+    public void numericKeywords() throws Exception {
+        JsonSchema schema = schema("{'minimum': 0, 'maximum': 10, 'exclusiveMaximum': true, 'multipleOf': 0.5}");
+        assertValid(schema, "0");
+        assertValid(schema, "9.5");
+        assertInvalid(schema, "-1", "/minimum", "", "Value -1 is less than minimum 0");
+        assertInvalid(schema, "10", "/exclusiveMaximum", "", "Value 10 is equal to exclusive maximum 10");
+        assertInvalid(schema, "1.2", "/multipleOf", "", "Value 1.2 is not a multiple of 0.5");
+        // non-numbers are not constrained by numeric keywords
+        assertValid(schema, "'-1'");
+    }
+
+    @Test
+    public void stringKeywords() throws Exception {
+        JsonSchema schema = schema("{'minLength': 2, 'maxLength': 3, 'pattern': '^[a-z]'}");
+        assertValid(schema, "'ab'");
+        assertValid(schema, "'a12'");
+        assertInvalid(schema, "'a'", "/minLength", "", "String is too short (1 chars), minimum 2");
+        assertInvalid(schema, "'abcd'", "/maxLength", "", "String is too long (4 chars), maximum 3");
+        assertInvalid(schema, "'12'", "/pattern", "", "String does not match pattern: ^[a-z]");
+        // lengths are counted in code points
+        assertValid(schema, "'a😀😀'");
+    }
+
+    @Test
+    public void arrayKeywords() throws Exception {
+        JsonSchema schema = schema("{'minItems': 1, 'maxItems': 3, 'uniqueItems': true, 'items': {'type': 'string'}}");
+        assertValid(schema, "['a', 'b']");
+        assertInvalid(schema, "[]", "/minItems", "", "Array is too short (0), minimum 1");
+        assertInvalid(schema, "['a', 'b', 'c', 'd']", "/maxItems", "", "Array is too long (4), maximum 3");
+        assertInvalid(schema, "['a', 'b', 'a']", "/uniqueItems", "", "Array items are not unique (indices 0 and 2)");
+        assertInvalid(schema, "['a', 1]", "/items/type", "/1", "Invalid type: number (expected string)");
+
+        schema = schema("{'items': [{'type': 'string'}, {'type': 'number'}], 'additionalItems': false}");
+        assertValid(schema, "['a']");
+        assertValid(schema, "['a', 1]");
+        assertInvalid(schema, "[1]", "/items/0/type", "/0", "Invalid type: number (expected string)");
+        assertInvalid(schema, "['a', 1, 2]", "/additionalItems", "/2", "Additional items not allowed");
+    }
+
+    @Test
+    public void objectKeywords() throws Exception {
+        JsonSchema schema = schema("{'required': ['a'], 'maxProperties': 3, "
+                + "'properties': {'a': {'type': 'string'}, 'b/c': {'type': 'number'}}, "
+                + "'patternProperties': {'^x-': {'type': 'boolean'}}, 'additionalProperties': false, "
+                + "'dependencies': {'b/c': ['x-d']}}");
+        assertValid(schema, "{'a': 'x'}");
+        assertValid(schema, "{'a': 'x', 'b/c': 1, 'x-d': true}");
+        assertInvalid(schema, "{}", "/required/0", "", "Missing required property: a");
+        assertInvalid(schema, "{'a': 1}", "/properties/a/type", "/a", "Invalid type: number (expected string)");
+        assertInvalid(schema, "{'a': 'x', 'b/c': 'y', 'x-d': true}", "/properties/b~1c/type", "/b~1c",
+                "Invalid type: string (expected number)");
+        assertInvalid(schema, "{'a': 'x', 'x-d': 1}", "/patternProperties/^x-/type", "/x-d",
+                "Invalid type: number (expected boolean)");
+        assertInvalid(schema, "{'a': 'x', 'e': 1}", "/additionalProperties", "/e",
+                "Additional properties not allowed");
+        assertInvalid(schema, "{'a': 'x', 'b/c': 1}", "/dependencies/b~1c/0", "",
+                "Dependency failed - key must exist: x-d (due to key: b/c)");
+        assertInvalid(schema, "{'a': 'x', 'x-a': true, 'x-b': true, 'x-c': true}", "/maxProperties", "",
+                "Too many properties defined (4), maximum 3");
+    }
+
+    @Test
+    public void combinationKeywords() throws Exception {
+        JsonSchema schema = schema("{'anyOf': [{'type': 'string'}, {'minimum': 10}]}");
+        assertValid(schema, "'a'");
+        assertValid(schema, "10");
+        assertInvalid(schema, "1", "/anyOf", "", "Data does not match any schemas from \"anyOf\"");
+
+        schema = schema("{'oneOf': [{'type': 'integer'}, {'minimum': 10}]}");
+        assertValid(schema, "1");
+        assertValid(schema, "10.5");
+        assertInvalid(schema, "10", "/oneOf", "",
+                "Data is valid against more than one schema from \"oneOf\": indices 0 and 1");
+        assertInvalid(schema, "1.5", "/oneOf", "", "Data does not match any schemas from \"oneOf\"");
+
+        schema = schema("{'allOf': [{'type': 'number'}, {'maximum': 1}], 'not': {'enum': [0]}}");
+        assertValid(schema, "1");
+        assertInvalid(schema, "2", "/allOf/1/maximum", "", "Value 2 is greater than maximum 1");
+        assertInvalid(schema, "0", "/not", "", "Data matches schema from \"not\"");
+    }
+
+    @Test
+    public void refs() throws Exception {
+        JsonSchema schema = schema("{'id': 'http://elastisys.com/tree#', 'definitions': {"
+                + "  'node': {'type': 'object', 'properties': {"
+                + "    'value': {'$ref': '#/definitions/value'}, "
+                + "    'children': {'type': 'array', 'items': {'$ref': 'http://elastisys.com/tree#/definitions/node'}}"
+                + "  }}, "
+                + "  'value': {'type': 'integer'}}, "
+                + "'$ref': '#/definitions/node'}");
+        assertValid(schema, "{'value': 1, 'children': [{'value': 2}, {'value': 3, 'children': []}]}");
+        assertInvalid(schema, "{'value': 1, 'children': [{'value': 2}, {'value': 'x'}]}",
+                "/definitions/value/type", "/children/1/value", "Invalid type: string (expected integer)");
+
+        // ref to a schema not under a schema keyword, with escaped tokens
+        schema = schema("{'x-defs': {'a/b%': {'type': 'string'}}, 'items': {'$ref': '#/x-defs/a~1b%25'}}");
+        assertValid(schema, "['a']");
+        assertInvalid(schema, "[1]", "/x-defs/a~1b%/type", "/0", "Invalid type: number (expected string)");
+    }
+
+    @Test
+    public void compileInvalidSchemas() {
+        assertCompileFails("[]");
+        assertCompileFails("{'type': 'date'}");
+        assertCompileFails("{'minLength': -1}");
+        assertCompileFails("{'pattern': '['}");
+        assertCompileFails("{'properties': {'a': 1}}");
+        assertCompileFails("{'items': {'$ref': '#/definitions/missing'}}");
+        assertCompileFails("{'items': {'$ref': 'http://json-schema.org/draft-04/schema#'}}");
+        assertCompileFails("{'definitions': {'a': {'$ref': '#/definitions/b'}, 'b': {'$ref': '#/definitions/a'}}}");
+    }
+
+    private static JsonSchema schema(String schema) throws JsonValidatorException {
+        return JsonSchema.compile(parseJsonString(schema.replace('\'', '"')));
+    }
+
+    private static void assertValid(JsonSchema schema, String instance) throws JsonValidatorException {
+        schema.validate(parseJsonString(instance.replace('\'', '"')));
+        assertThat(schema.isValid(parseJsonString(instance.replace('\'', '"'))), is(true));
+    }
+
+    private static void assertInvalid(JsonSchema schema, String instance, String schemaPath, String dataPath,
+            String message) {
+        assertThat(schema.isValid(parseJsonString(instance.replace('\'', '"'))), is(false));
+        try {
+            schema.validate(parseJsonString(instance.replace('\'', '"')));
+            fail("expected to fail validation: " + instance);
+        } catch (JsonSchemaValidationException e) {
+            assertThat(e.getSchemaPath(), is(schemaPath));
+            assertThat(e.getDataPath(), is(dataPath));
+            assertThat(e.getErrorMessage(), is(message));
+        }
+    }
+
+    private static void assertCompileFails(String schema) {
+        try {
+            schema(schema);
+            fail("expected compilation to fail: " + schema);
+        } catch (JsonValidatorException e) {
+            // expected
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.elastisys.scale.commons.json.schema;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -46,6 +47,7 @@ public class TestJsonValidator {
         // minimum constraint violation (bidPrice < 0)
         try {
             JsonValidator.validate(jsonSchema, invalidInstanceNegativeBidPrice);
+            fail("expected to fail validation");
         } catch (JsonSchemaValidationException e) {
             assertEquals("/bidPrice", e.getDataPath());
             assertEquals("/properties/bidPrice/minimum", e.getSchemaPath());
@@ -54,6 +56,7 @@ public class TestJsonValidator {
         // missing required field (/bidPrice)
         try {
             JsonValidator.validate(jsonSchema, invalidInstanceWrongFieldname);
+            fail("expected to fail validation");
         } catch (JsonSchemaValidationException e) {
             assertEquals("", e.getDataPath());
             assertEquals("/required/0", e.getSchemaPath());
@@ -62,6 +65,7 @@ public class TestJsonValidator {
         // missing nested field (/awsCredentials/region)
         try {
             JsonValidator.validate(jsonSchema, invalidInstanceMissingRegion);
+            fail("expected to fail validation");
         } catch (JsonSchemaValidationException e) {
             assertEquals("/awsCredentials", e.getDataPath());
             assertEquals("/properties/awsCredentials/required/2", e.getSchemaPath());
@@ -70,9 +74,35 @@ public class TestJsonValidator {
         // illegal enum value (/awsCredentials/region)
         try {
             JsonValidator.validate(jsonSchema, invalidInstanceDisallowedRegion);
+            fail("expected to fail validation");
         } catch (JsonSchemaValidationException e) {
             assertEquals("/awsCredentials/region", e.getDataPath());
-            assertEquals("/properties/awsCredentials/properties/region/type", e.getSchemaPath());
+            assertEquals("/properties/awsCredentials/properties/region/enum", e.getSchemaPath());
+        }
+    }
+
+    /**
+     * Malformed schemas and documents should fail with a
+     * {@link JsonValidatorException} rather than a validation error.
+     */
+    @Test
+    public void testValidationOfMalformedJson() {
+        try {
+            JsonValidator.validate("{\"type\": ", validInstanceAllFields);
+            fail("expected to fail on malformed schema");
+        } catch (JsonSchemaValidationException e) {
+            fail("expected a malformed json failure");
+        } catch (JsonValidatorException e) {
+            // expected
+        }
+
+        try {
+            JsonValidator.validate(jsonSchema, "{\"bidPrice\": ");
+            fail("expected to fail on malformed document");
+        } catch (JsonSchemaValidationException e) {
+            fail("expected a malformed json failure");
+        } catch (JsonValidatorException e) {
+            // expected
         }
     }
 
@@ -0,0 +1,134 @@
+package com.elastisys.scale.commons.json.typeadapters;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.BuddhistChronology;
+import org.joda.time.chrono.ISOChronology;
+import org.junit.Test;
+
+import com.elastisys.scale.commons.util.time.UtcTime;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Verifies that the {@link GsonDateTimeTypeAdapter} formats and parses
+ * timestamps exactly like Joda-Time does, both on and off its fast path.
+ */
+public class TestGsonDateTimeTypeAdapter {
+
+    private final Gson gson = new GsonBuilder().registerTypeAdapter(DateTime.class, new GsonDateTimeTypeAdapter())
+            .create();
+
+    @Test
+    public void write() {
+        assertThat(this.gson.toJson(UtcTime.parse("2014-01-13T12:00:00.000Z")), is("\"2014-01-13T12:00:00.000Z\""));
+        // converted to UTC
+        assertThat(this.gson.toJson(DateTime.parse("2013-07-01T12:00:00.123+02:00")),
+                is("\"2013-07-01T10:00:00.123Z\""));
+        assertThat(this.gson.toJson(null, DateTime.class), is("null"));
+    }
+
+    @Test
+    public void read() {
+        assertThat(this.gson.fromJson("\"2014-01-13T12:00:00.000Z\"", DateTime.class),
+                is(UtcTime.parse("2014-01-13T12:00:00.000Z")));
+        assertThat(this.gson.fromJson("null", DateTime.class), is((DateTime) null));
+    }
+
+    /**
+     * Formatting should give the same result as {@link DateTime#toString()} in
+     * UTC, also for timestamps that are not formatted on the fast path.
+     */
+    @Test
+    public void formatLikeJodaTime() {
+        List<DateTime> dateTimes = Arrays.asList(//
+                new DateTime(0, DateTimeZone.UTC), //
+                new DateTime(-1, DateTimeZone.UTC), //
+                new DateTime(2016, 2, 29, 23, 59, 59, 999, DateTimeZone.forOffsetHours(-5)), //
+                new DateTime(0, 1, 1, 0, 0, 0, 0, DateTimeZone.UTC), //
+                new DateTime(9999, 12, 31, 23, 59, 59, 999, DateTimeZone.UTC), //
+                // not four-digit years
+                new DateTime(-1, 12, 31, 23, 59, 59, 999, DateTimeZone.UTC), //
+                new DateTime(10000, 1, 1, 0, 0, 0, 0, DateTimeZone.UTC), //
+                // not an ISO chronology
+                new DateTime(0, BuddhistChronology.getInstance(DateTimeZone.forOffsetHours(1))));
+        for (DateTime dateTime : dateTimes) {
+            assertThat(GsonDateTimeTypeAdapter.format(dateTime), is(dateTime.toDateTime(DateTimeZone.UTC).toString()));
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            DateTime dateTime = new DateTime(random.nextLong() % 300_000_000_000_000L,
+                    ISOChronology.getInstance(DateTimeZone.forOffsetMillis(random.nextInt(86_400_000) - 43_200_000)));
+            assertThat(GsonDateTimeTypeAdapter.format(dateTime), is(dateTime.toDateTime(DateTimeZone.UTC).toString()));
+        }
+    }
+
+    /**
+     * Parsing should give the same result as {@link UtcTime#parse(String)},
+     * also for timestamps that are not parsed on the fast path.
+     */
+    @Test
+    public void parseLikeJodaTime() {
+        List<String> timestamps = Arrays.asList(//
+                "2014-01-13T12:00:00.000Z", //
+                "2014-01-13T12:00:00Z", //
+                "2013-07-01T12:00:00.123+02:00", //
+                "2013-07-01T12:00:00-05:30", //
+                "2016-02-29T23:59:59.999+00:00", //
+                "0000-01-01T00:00:00.000Z", //
+                // not on the fast path
+                "2014-01-13", //
+                "2014-01-13T12:00", //
+                "2014-01-13T12:00:00.1Z", //
+                "2014-01-13T12:00:00.123456Z", //
+                "2014-01-13T12:00:00.000+0200", //
+                "2014-01-13T12:00:00.000", //
+                "+12014-01-13T12:00:00.000Z", //
+                "-0001-01-13T12:00:00.000Z");
+        for (String timestamp : timestamps) {
+            assertThat(timestamp, GsonDateTimeTypeAdapter.parse(timestamp), is(UtcTime.parse(timestamp)));
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            DateTime dateTime = new DateTime(random.nextLong() % 250_000_000_000_000L, DateTimeZone.UTC);
+            String timestamp = GsonDateTimeTypeAdapter.format(dateTime);
+            assertThat(GsonDateTimeTypeAdapter.parse(timestamp), is(UtcTime.parse(timestamp)));
+        }
+    }
+
+    /**
+     * Invalid timestamps should be rejected just like by
+     * {@link UtcTime#parse(String)}.
+     */
+    @Test
+    public void parseInvalidTimestamps() {
+        List<String> timestamps = Arrays.asList(//
+                "2015-02-29T12:00:00.000Z", //
+                "2015-13-01T12:00:00.000Z", //
+                "2015-01-01T25:00:00.000Z", //
+                "2015-01-01T12:60:00.000Z", //
+                "2015-01-01T12:00:00.000+24:00", //
+                "2015-01-01T12:00:00.0a0Z", //
+                "2015-01-01T12:00:00.000Zulu", //
+                "2015-01-01 12:00:00.000Z", //
+                "tomorrow");
+        for (String timestamp : timestamps) {
+            try {
+                GsonDateTimeTypeAdapter.parse(timestamp);
+                fail("expected " + timestamp + " to be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -4,11 +4,14 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
+import com.elastisys.scale.commons.json.JsonUtils;
+
 /**
  * Exercises the {@link TimeInterval} class.
  */
@@ -149,4 +152,29 @@ public class TestTimeInterval {
     public void seconds() {
         assertThat(TimeInterval.seconds(10), is(new TimeInterval(10L, TimeUnit.SECONDS)));
     }
+
+    @Test
+    public void toAndFromJson() {
+        TimeInterval interval = new TimeInterval(10L, "Minutes");
+        assertThat(JsonUtils.toJsonString(interval), is("{\"time\":10,\"unit\":\"minutes\"}"));
+        assertThat(JsonUtils.toObject(JsonUtils.toJson(interval), TimeInterval.class), is(interval));
+    }
+
+    /**
+     * Like any configuration, a {@link TimeInterval} should be deserialized
+     * as-is, and only be validated on {@link TimeInterval#validate()}.
+     */
+    @Test
+    public void fromJsonWithoutValidation() {
+        TimeInterval interval = JsonUtils.toObject(
+                JsonUtils.parseJsonString("{\"time\": -1, \"unit\": \"months\", \"unknown\": [1, 2]}"),
+                TimeInterval.class);
+        assertThat(interval.getTime(), is(-1L));
+        try {
+            interval.validate();
+            fail("expected validation to fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
 }
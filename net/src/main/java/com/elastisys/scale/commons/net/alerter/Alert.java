@@ -2,10 +2,8 @@ package com.elastisys.scale.commons.net.alerter;
 
 import static java.util.Objects.requireNonNull;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.TreeMap;
 
 import org.joda.time.DateTime;
 
@@ -13,6 +11,7 @@ import com.elastisys.scale.commons.json.JsonUtils;
 import com.elastisys.scale.commons.util.collection.Maps;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.annotations.JsonAdapter;
 
 /**
  * Represents a system event that can be sent by an {@link Alerter}.
@@ -40,9 +39,14 @@ public class Alert {
     private final String details;
     /**
      * Additional JSON meta data about the {@link Alert} as a {@link Map} of
-     * meta data keys mapped to a {@link JsonObject}s.
+     * meta data keys mapped to a {@link JsonObject}s. Immutable and sorted by
+     * key.
      */
-    private final Map<String, JsonElement> metadata;
+    @JsonAdapter(AlertMetadata.GsonAdapterFactory.class)
+    private final AlertMetadata metadata;
+
+    /** Cached hash code. {@code 0} until computed. */
+    private transient int hashCode;
 
     /**
      * Constructs a new {@link Alert} without metadata tags.
@@ -60,7 +64,7 @@ public class Alert {
      *            about the alert. May be <code>null</code>.
      */
     public Alert(String topic, AlertSeverity severity, DateTime timestamp, String message, String details) {
-        this(topic, severity, timestamp, message, details, new HashMap<String, JsonElement>(0));
+        this(topic, severity, timestamp, message, details, AlertMetadata.EMPTY);
     }
 
     /**
@@ -94,8 +98,7 @@ public class Alert {
         this.timestamp = timestamp;
         this.message = message;
         this.details = details;
-        this.metadata = new TreeMap<>();
-        this.metadata.putAll(metadata);
+        this.metadata = AlertMetadata.of(metadata);
     }
 
     /**
@@ -148,12 +151,14 @@ public class Alert {
 
     /**
      * Returns meta data about the {@link Alert} as a {@link Map} of meta data
-     * keys mapped to a {@link JsonObject}.
+     * keys mapped to a {@link JsonObject}. The returned {@link Map} is
+     * immutable and iterates in key order.
      *
      * @return
      */
     public Map<String, JsonElement> getMetadata() {
-        return this.metadata;
+        // null if deserialized from JSON without metadata
+        return this.metadata != null ? this.metadata : AlertMetadata.EMPTY;
     }
 
     /**
@@ -179,20 +184,28 @@ public class Alert {
      * @return A field-by-field copy with additional metadata tags.
      */
     public Alert withMetadata(Map<String, JsonElement> additionalTags) {
-        Map<String, JsonElement> extendedTags = new HashMap<>(getMetadata());
-        extendedTags.putAll(additionalTags);
-
+        requireNonNull(additionalTags, "additionalTags cannot be null");
+        AlertMetadata extendedTags = AlertMetadata.of(getMetadata()).with(additionalTags);
+        if (extendedTags == this.metadata) {
+            return this;
+        }
         return new Alert(this.topic, this.severity, this.timestamp, this.message, this.details, extendedTags);
     }
 
     @Override
     public String toString() {
-        return JsonUtils.toString(JsonUtils.toJson(this));
+        return JsonUtils.toJsonString(this);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(this.topic, this.severity, this.timestamp, this.message, this.details, this.metadata);
+        int hashCode = this.hashCode;
+        if (hashCode == 0) {
+            hashCode = Objects.hash(this.topic, this.severity, this.timestamp, this.message, this.details,
+                    getMetadata());
+            this.hashCode = hashCode;
+        }
+        return hashCode;
     }
 
     @Override
@@ -204,7 +217,7 @@ public class Alert {
                     && Objects.equals(this.timestamp, that.timestamp) //
                     && Objects.equals(this.message, that.message) //
                     && Objects.equals(this.details, that.details) //
-                    && Objects.equals(this.metadata, that.metadata);
+                    && getMetadata().equals(that.getMetadata());
         } else {
             return false;
         }
@@ -47,6 +47,28 @@ public class AlertBuilder {
         return new AlertBuilder();
     }
 
+    /**
+     * Creates an {@link AlertBuilder} initialized with the fields and metadata
+     * tags of an existing {@link Alert}. Useful for adding several tags to an
+     * {@link Alert} in one go: the tags are collected by the builder and the
+     * metadata of the new {@link Alert} is put together once, on
+     * {@link #build()}.
+     *
+     * @param alert
+     * @return
+     */
+    public static AlertBuilder from(Alert alert) {
+        checkArgument(alert != null, "alert cannot be null");
+        AlertBuilder builder = new AlertBuilder();
+        builder.topic = alert.getTopic();
+        builder.severity = alert.getSeverity();
+        builder.timestamp = alert.getTimestamp();
+        builder.message = alert.getMessage();
+        builder.details = alert.getDetails();
+        builder.metadata.putAll(alert.getMetadata());
+        return builder;
+    }
+
     public Alert build() {
         checkArgument(this.topic != null && !this.topic.isEmpty(), "topic is required");
         checkArgument(this.severity != null, "severity is required");
@@ -124,7 +146,9 @@ public class AlertBuilder {
      * @return
      */
     public AlertBuilder addMetadata(String key, Object value) {
-        this.metadata.put(key, JsonUtils.toJson(value));
+        // JSON values need no conversion (which would copy them)
+        JsonElement json = value instanceof JsonElement ? (JsonElement) value : JsonUtils.toJson(value);
+        this.metadata.put(key, json);
         return this;
     }
 
@@ -0,0 +1,70 @@
+package com.elastisys.scale.commons.net.alerter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Exception thrown by a {@link ReportingAlerter} on failure to deliver an
+ * {@link Alert}. If the {@link ReportingAlerter} delivers to several
+ * destinations, the outcome of the delivery to each destination is available
+ * through {@link #getDeliveryResults()}.
+ *
+ * @see ReportingAlerter
+ */
+public class AlertDeliveryException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The result of the delivery to each destination. May be empty. Not
+     * serialized.
+     */
+    private final transient List<DeliveryResult> deliveryResults;
+
+    public AlertDeliveryException() {
+        super();
+        this.deliveryResults = Collections.emptyList();
+    }
+
+    public AlertDeliveryException(String message, Throwable cause) {
+        super(message, cause);
+        this.deliveryResults = Collections.emptyList();
+    }
+
+    /**
+     * Creates an {@link AlertDeliveryException} that reports the outcome of
+     * the delivery to each destination.
+     *
+     * @param message
+     * @param cause
+     * @param deliveryResults
+     *            The result of the delivery to each destination, including
+     *            those that succeeded.
+     */
+    public AlertDeliveryException(String message, Throwable cause, List<DeliveryResult> deliveryResults) {
+        super(message, cause);
+        this.deliveryResults = deliveryResults == null ? Collections.emptyList()
+                : Collections.unmodifiableList(deliveryResults);
+    }
+
+    public AlertDeliveryException(String message) {
+        super(message);
+        this.deliveryResults = Collections.emptyList();
+    }
+
+    public AlertDeliveryException(Throwable cause) {
+        super(cause);
+        this.deliveryResults = Collections.emptyList();
+    }
+
+    /**
+     * Returns the result of the delivery to each destination, including those
+     * that succeeded. Empty if the {@link ReportingAlerter} does not report
+     * results per destination.
+     *
+     * @return
+     */
+    public List<DeliveryResult> getDeliveryResults() {
+        // null if deserialized
+        return this.deliveryResults != null ? this.deliveryResults : Collections.emptyList();
+    }
+}
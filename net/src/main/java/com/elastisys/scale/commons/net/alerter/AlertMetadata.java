@@ -0,0 +1,286 @@
+package com.elastisys.scale.commons.net.alerter;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The immutable metadata tags of an {@link Alert}: a {@link Map} of tag keys
+ * to JSON values, kept as two arrays sorted by key.
+ * <p/>
+ * Compared to a {@link java.util.TreeMap}, this takes two small arrays rather
+ * than a node per tag, lookups are binary searches, the hash code is computed
+ * once, and adding tags ({@link #with(Map)}) is a single merge of two sorted
+ * arrays into a new {@link AlertMetadata}, leaving the original untouched.
+ * <p/>
+ * Serialized by {@link GsonAdapter} as a JSON object.
+ */
+final class AlertMetadata extends AbstractMap<String, JsonElement> {
+
+    /** The empty {@link AlertMetadata}. */
+    static final AlertMetadata EMPTY = new AlertMetadata(new String[0], new JsonElement[0]);
+
+    /** Tag keys, in ascending order. */
+    private final String[] keys;
+    /** Tag values, in the order of {@link #keys}. */
+    private final JsonElement[] values;
+    /** Cached hash code. {@code 0} until computed. */
+    private int hashCode;
+
+    private AlertMetadata(String[] keys, JsonElement[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Returns an {@link AlertMetadata} holding the tags of a {@link Map}.
+     *
+     * @param tags
+     * @return
+     */
+    static AlertMetadata of(Map<String, JsonElement> tags) {
+        if (tags instanceof AlertMetadata) {
+            return (AlertMetadata) tags;
+        }
+        if (tags.isEmpty()) {
+            return EMPTY;
+        }
+        String[] keys = new String[tags.size()];
+        JsonElement[] values = new JsonElement[keys.length];
+        int i = 0;
+        for (Entry<String, JsonElement> entry : tags.entrySet()) {
+            keys[i] = requireNonNull(entry.getKey(), "metadata tag keys cannot be null");
+            values[i] = entry.getValue();
+            i++;
+        }
+        sortByKey(keys, values);
+        return new AlertMetadata(keys, values);
+    }
+
+    /**
+     * Sorts parallel arrays of keys and values by key (insertion sort, since
+     * there are rarely more than a handful of tags).
+     */
+    private static void sortByKey(String[] keys, JsonElement[] values) {
+        for (int i = 1; i < keys.length; i++) {
+            String key = keys[i];
+            JsonElement value = values[i];
+            int j = i - 1;
+            for (; j >= 0 && keys[j].compareTo(key) > 0; j--) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    /**
+     * Returns an {@link AlertMetadata} with the tags of this one and a number
+     * of additional tags. Additional tags replace tags with the same key.
+     *
+     * @param additionalTags
+     * @return
+     */
+    AlertMetadata with(Map<String, JsonElement> additionalTags) {
+        AlertMetadata other = of(additionalTags);
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+
+        String[] keys = new String[this.keys.length + other.keys.length];
+        JsonElement[] values = new JsonElement[keys.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < this.keys.length || j < other.keys.length) {
+            int order;
+            if (i == this.keys.length) {
+                order = 1;
+            } else if (j == other.keys.length) {
+                order = -1;
+            } else {
+                order = this.keys[i].compareTo(other.keys[j]);
+            }
+            if (order < 0) {
+                keys[n] = this.keys[i];
+                values[n++] = this.values[i++];
+            } else {
+                if (order == 0) {
+                    // replaced by the additional tag
+                    i++;
+                }
+                keys[n] = other.keys[j];
+                values[n++] = other.values[j++];
+            }
+        }
+        if (n < keys.length) {
+            keys = Arrays.copyOf(keys, n);
+            values = Arrays.copyOf(values, n);
+        }
+        return new AlertMetadata(keys, values);
+    }
+
+    @Override
+    public int size() {
+        return this.keys.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public JsonElement get(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? this.values[index] : null;
+    }
+
+    @Override
+    public Set<Entry<String, JsonElement>> entrySet() {
+        return new AbstractSet<Entry<String, JsonElement>>() {
+            @Override
+            public Iterator<Entry<String, JsonElement>> iterator() {
+                return new Iterator<Entry<String, JsonElement>>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.next < AlertMetadata.this.keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, JsonElement> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int index = this.next++;
+                        return new SimpleImmutableEntry<>(AlertMetadata.this.keys[index],
+                                AlertMetadata.this.values[index]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return AlertMetadata.this.keys.length;
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = this.hashCode;
+        if (hashCode == 0) {
+            // same as AbstractMap.hashCode, without creating entries
+            for (int i = 0; i < this.keys.length; i++) {
+                hashCode += this.keys[i].hashCode() ^ (this.values[i] == null ? 0 : this.values[i].hashCode());
+            }
+            this.hashCode = hashCode;
+        }
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof AlertMetadata) {
+            AlertMetadata that = (AlertMetadata) obj;
+            return Arrays.equals(this.keys, that.keys) && Arrays.equals(this.values, that.values);
+        }
+        return super.equals(obj);
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        return Arrays.binarySearch(this.keys, key);
+    }
+
+    /**
+     * Creates {@link GsonAdapter}s. Since {@link AlertMetadata} is a
+     * {@link Map}, Gson would pick its map adapter over a class-level adapter,
+     * so the factory is attached to the {@code metadata} field of
+     * {@link Alert}.
+     */
+    static class GsonAdapterFactory implements TypeAdapterFactory {
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != AlertMetadata.class) {
+                return null;
+            }
+            return (TypeAdapter<T>) new GsonAdapter(gson.getAdapter(JsonElement.class));
+        }
+    }
+
+    /**
+     * Reads and writes an {@link AlertMetadata} as a JSON object.
+     */
+    static class GsonAdapter extends TypeAdapter<AlertMetadata> {
+        /** Reads and writes tag values. */
+        private final TypeAdapter<JsonElement> valueAdapter;
+
+        /**
+         * Creates a {@link GsonAdapter}.
+         *
+         * @param valueAdapter
+         *            Reads and writes tag values. Obtained with
+         *            {@code gson.getAdapter(JsonElement.class)}.
+         */
+        GsonAdapter(TypeAdapter<JsonElement> valueAdapter) {
+            this.valueAdapter = valueAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, AlertMetadata metadata) throws IOException {
+            if (metadata == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            for (int i = 0; i < metadata.keys.length; i++) {
+                out.name(metadata.keys[i]);
+                this.valueAdapter.write(out, metadata.values[i]);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public AlertMetadata read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Map<String, JsonElement> tags = new HashMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                tags.put(in.nextName(), this.valueAdapter.read(in));
+            }
+            in.endObject();
+            return of(tags);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.elastisys.scale.commons.net.alerter;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Map;
+
+import com.elastisys.scale.commons.json.JsonUtils;
+import com.google.gson.JsonElement;
+
+/**
+ * The serialized form of an {@link Alert} tagged with a set of standard
+ * metadata tags, as sent by {@link Alerter}s. A caller that dispatches an
+ * {@link Alert} to several {@link ReportingAlerter}s with the same standard
+ * tags can create the {@link AlertPayload} once and pass it to each of them
+ * with {@link ReportingAlerter#sendPayload(AlertPayload)}, so that the
+ * {@link Alert} is tagged and serialized once rather than once per
+ * {@link Alerter}.
+ * <p/>
+ * Each form is computed on first use and then kept. Instances are
+ * thread-safe, and each form is computed at most once even if several
+ * {@link Alerter}s ask for it concurrently.
+ */
+public class AlertPayload {
+    /** The {@link Alert}, without standard tags. */
+    private final Alert alert;
+    /**
+     * The standard tags to add to the {@link Alert}. May be
+     * <code>null</code>.
+     */
+    private final Map<String, JsonElement> standardTags;
+
+    /** The {@link Alert} with standard tags. Forms are guarded by this. */
+    private Alert taggedAlert;
+    /** The JSON form of the {@link Alert} with standard tags. */
+    private JsonElement json;
+    /** The pretty-printed JSON form of the {@link Alert} with standard tags. */
+    private String prettyString;
+    /** The compact JSON form of the {@link Alert} with standard tags. */
+    private String compactString;
+    /** The UTF-8 encoded {@link #compactString}. */
+    private byte[] compactBytes;
+
+    /**
+     * Creates an {@link AlertPayload}.
+     *
+     * @param alert
+     *            The {@link Alert}, without standard tags.
+     * @param standardTags
+     *            The standard tags to add to the {@link Alert}. Standard tags
+     *            replace any {@link Alert} tags with the same key. May be
+     *            <code>null</code>.
+     */
+    public AlertPayload(Alert alert, Map<String, JsonElement> standardTags) {
+        checkArgument(alert != null, "alert cannot be null");
+        this.alert = alert;
+        this.standardTags = standardTags;
+    }
+
+    /**
+     * Returns <code>true</code> if this {@link AlertPayload} was created with
+     * the given standard tags.
+     *
+     * @param standardTags
+     * @return
+     */
+    public boolean hasStandardTags(Map<String, JsonElement> standardTags) {
+        if (this.standardTags == standardTags) {
+            return true;
+        }
+        return isEmpty(this.standardTags) ? isEmpty(standardTags)
+                : standardTags != null && this.standardTags.equals(standardTags);
+    }
+
+    /**
+     * Returns the {@link Alert}, without standard tags.
+     *
+     * @return
+     */
+    public Alert getUntaggedAlert() {
+        return this.alert;
+    }
+
+    /**
+     * Returns the {@link Alert} with standard tags added.
+     *
+     * @return
+     */
+    public synchronized Alert getAlert() {
+        if (this.taggedAlert == null) {
+            // merge all standard tags in one go
+            this.taggedAlert = isEmpty(this.standardTags) ? this.alert : this.alert.withMetadata(this.standardTags);
+        }
+        return this.taggedAlert;
+    }
+
+    /**
+     * Returns the JSON form of the {@link Alert} with standard tags added. The
+     * returned {@link JsonElement} is shared and must not be modified.
+     *
+     * @return
+     */
+    public synchronized JsonElement getJson() {
+        if (this.json == null) {
+            this.json = JsonUtils.toJson(getAlert());
+        }
+        return this.json;
+    }
+
+    /**
+     * Returns the pretty-printed JSON form of the {@link Alert} with standard
+     * tags added.
+     *
+     * @return
+     */
+    public synchronized String getPrettyString() {
+        if (this.prettyString == null) {
+            // write straight to text unless the JSON tree is already built
+            this.prettyString = this.json != null ? JsonUtils.toPrettyString(this.json)
+                    : JsonUtils.toPrettyJsonString(getAlert());
+        }
+        return this.prettyString;
+    }
+
+    /**
+     * Returns the compact JSON form of the {@link Alert} with standard tags
+     * added.
+     *
+     * @return
+     */
+    public synchronized String getCompactString() {
+        if (this.compactString == null) {
+            this.compactString = this.json != null ? JsonUtils.toString(this.json)
+                    : JsonUtils.toJsonString(getAlert());
+        }
+        return this.compactString;
+    }
+
+    /**
+     * Returns the UTF-8 encoded compact JSON form of the {@link Alert} with
+     * standard tags added. The returned array is shared and must not be
+     * modified.
+     *
+     * @return
+     */
+    public synchronized byte[] getCompactBytes() {
+        if (this.compactBytes == null) {
+            this.compactBytes = getCompactString().getBytes(UTF_8);
+        }
+        return this.compactBytes;
+    }
+
+    private static boolean isEmpty(Map<String, JsonElement> tags) {
+        return tags == null || tags.isEmpty();
+    }
+}
@@ -0,0 +1,27 @@
+package com.elastisys.scale.commons.net.alerter;
+
+import java.util.List;
+
+import com.elastisys.scale.commons.net.alerter.batching.BatchingAlerter;
+
+/**
+ * An {@link Alerter} that can send a batch of {@link Alert}s as a single
+ * digest message (for example, a single HTTP request or a single email)
+ * rather than one message per {@link Alert}.
+ *
+ * @see BatchingAlerter
+ */
+public interface BatchAlerter extends Alerter {
+
+    /**
+     * Forwards a batch of {@link Alert}s as a single digest message to the
+     * configured recipients according to the supported protocol.
+     *
+     * @param alerts
+     *            The {@link Alert}s to be sent, in the order they were
+     *            raised.
+     * @throws RuntimeException
+     *             if the alerts could not be sent.
+     */
+    public void handleAlerts(List<Alert> alerts) throws RuntimeException;
+}
@@ -0,0 +1,94 @@
+package com.elastisys.scale.commons.net.alerter;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The outcome of delivering an {@link Alert} to a single destination (such as
+ * a webhook URL or a registered {@link Alerter}).
+ *
+ * @see ParallelDelivery
+ */
+public class DeliveryResult {
+    /** The destination that the {@link Alert} was delivered to. */
+    private final String destination;
+    /** The error that the delivery failed with. <code>null</code> on success. */
+    private final Exception error;
+    /** The time (in milliseconds) spent on the delivery. */
+    private final long elapsedMillis;
+
+    /**
+     * Creates a {@link DeliveryResult}.
+     *
+     * @param destination
+     *            The destination that the {@link Alert} was delivered to.
+     * @param error
+     *            The error that the delivery failed with. <code>null</code>
+     *            on success.
+     * @param elapsedMillis
+     *            The time (in milliseconds) spent on the delivery.
+     */
+    public DeliveryResult(String destination, Exception error, long elapsedMillis) {
+        this.destination = destination;
+        this.error = error;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Returns the destination that the {@link Alert} was delivered to.
+     *
+     * @return
+     */
+    public String getDestination() {
+        return this.destination;
+    }
+
+    /**
+     * Returns <code>true</code> if the {@link Alert} was successfully
+     * delivered.
+     *
+     * @return
+     */
+    public boolean isSuccess() {
+        return this.error == null;
+    }
+
+    /**
+     * Returns the error that the delivery failed with, if any.
+     *
+     * @return
+     */
+    public Optional<Exception> getError() {
+        return Optional.ofNullable(this.error);
+    }
+
+    /**
+     * Returns the time (in milliseconds) spent on the delivery.
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return this.elapsedMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.destination, this.error, this.elapsedMillis);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof DeliveryResult) {
+            DeliveryResult that = (DeliveryResult) obj;
+            return Objects.equals(this.destination, that.destination) && Objects.equals(this.error, that.error)
+                    && this.elapsedMillis == that.elapsedMillis;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{destination: %s, success: %s, elapsedMillis: %d%s}", this.destination, isSuccess(),
+                this.elapsedMillis, isSuccess() ? "" : ", error: " + this.error.getMessage());
+    }
+}
@@ -0,0 +1,157 @@
+package com.elastisys.scale.commons.net.alerter;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Delivers an {@link Alert} to a number of destinations concurrently, on a
+ * bounded pool of threads, and waits (at most until a deadline) for all
+ * deliveries to complete. The time to deliver an {@link Alert} is thereby
+ * bounded by the slowest destination (or the deadline) rather than by the sum
+ * of all destinations.
+ * <p/>
+ * Pool threads are daemon threads that are let go when idle, so an unclosed
+ * {@link ParallelDelivery} does not keep any threads around.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class ParallelDelivery implements Closeable {
+    /** Time (in seconds) that an idle pool thread is kept around. */
+    private static final long THREAD_KEEP_ALIVE = 60;
+
+    /** The pool of threads that deliveries are run on. */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates a {@link ParallelDelivery}.
+     *
+     * @param name
+     *            A name used for the pool threads.
+     * @param maxThreads
+     *            The maximum number of deliveries to run concurrently.
+     */
+    public ParallelDelivery(String name, int maxThreads) {
+        checkArgument(name != null, "parallelDelivery: name cannot be null");
+        checkArgument(maxThreads > 0, "parallelDelivery: maxThreads must be positive");
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads(name));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Delivers to a number of destinations concurrently and waits for all
+     * deliveries to complete. Deliveries that have not completed by the
+     * deadline are cancelled (their threads are interrupted) and reported as
+     * failed with a {@link TimeoutException}.
+     *
+     * @param destinations
+     *            The destinations to deliver to. Each destination is
+     *            identified by its {@link Object#toString()} in the returned
+     *            {@link DeliveryResult}s.
+     * @param delivery
+     *            Delivers to a single destination. Any {@link Exception}
+     *            thrown marks the delivery as failed (an
+     *            {@link UncheckedIOException} is reported as its cause).
+     * @param timeout
+     *            The maximum time to wait for all deliveries to complete.
+     * @param unit
+     *            The unit of {@code timeout}.
+     * @return The result of each delivery, in the order of
+     *         {@code destinations}.
+     */
+    public <T> List<DeliveryResult> deliver(List<T> destinations, Consumer<T> delivery, long timeout,
+            TimeUnit unit) {
+        checkArgument(timeout > 0, "parallelDelivery: timeout must be positive");
+
+        List<Callable<DeliveryResult>> tasks = new ArrayList<>(destinations.size());
+        for (T destination : destinations) {
+            tasks.add(() -> run(String.valueOf(destination), () -> delivery.accept(destination)));
+        }
+
+        long start = System.nanoTime();
+        List<Future<DeliveryResult>> futures;
+        try {
+            futures = this.executor.invokeAll(tasks, timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failAll(destinations, e, start);
+        } catch (RejectedExecutionException e) {
+            return failAll(destinations, new IllegalStateException("parallelDelivery: closed", e), start);
+        }
+
+        List<DeliveryResult> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            String destination = String.valueOf(destinations.get(i));
+            try {
+                results.add(futures.get(i).get());
+            } catch (CancellationException e) {
+                TimeoutException timeoutError = new TimeoutException(format(
+                        "delivery to %s did not complete within %d ms", destination, unit.toMillis(timeout)));
+                results.add(new DeliveryResult(destination, timeoutError, elapsedMillis(start)));
+            } catch (ExecutionException | InterruptedException e) {
+                // cannot happen: all futures are done and tasks catch errors
+                results.add(new DeliveryResult(destination, e, elapsedMillis(start)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Stops the pool threads. Any running deliveries are interrupted, and
+     * later deliveries fail with an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+    private static <T> List<DeliveryResult> failAll(List<T> destinations, Exception error, long startNanos) {
+        List<DeliveryResult> results = new ArrayList<>(destinations.size());
+        for (T destination : destinations) {
+            results.add(new DeliveryResult(String.valueOf(destination), error, elapsedMillis(startNanos)));
+        }
+        return results;
+    }
+
+    private static DeliveryResult run(String destination, Runnable delivery) {
+        long start = System.nanoTime();
+        try {
+            delivery.run();
+            return new DeliveryResult(destination, null, elapsedMillis(start));
+        } catch (UncheckedIOException e) {
+            return new DeliveryResult(destination, e.getCause(), elapsedMillis(start));
+        } catch (Exception e) {
+            return new DeliveryResult(destination, e, elapsedMillis(start));
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package com.elastisys.scale.commons.net.alerter;
+
+import com.elastisys.scale.commons.net.alerter.outbox.OutboxAlerter;
+
+/**
+ * An {@link Alerter} that, in addition to {@link #handleAlert(Alert)} (which
+ * typically logs and swallows delivery failures to not disturb the poster of
+ * the {@link Alert}), can report failure to deliver an {@link Alert} to its
+ * caller. This allows a caller, such as the {@link OutboxAlerter}, to retry
+ * failed deliveries.
+ *
+ * @see OutboxAlerter
+ */
+public interface ReportingAlerter extends Alerter {
+
+    /**
+     * Forwards an {@link Alert} message to the configured recipients according
+     * to the supported protocol, and raises an exception if it could not be
+     * delivered to all recipients. {@link Alert}s that are suppressed (for
+     * example, by a severity filter) count as successfully delivered.
+     *
+     * @param alert
+     *            An {@link Alert} to be sent.
+     * @throws AlertDeliveryException
+     *             if the alert could not be delivered to one or more of the
+     *             recipients.
+     */
+    public void sendAlert(Alert alert) throws AlertDeliveryException;
+
+    /**
+     * Like {@link #sendAlert(Alert)}, but for an {@link Alert} whose payload
+     * has already been built by the caller, so that a caller that sends an
+     * {@link Alert} to several {@link ReportingAlerter}s only tags and
+     * serializes it once. A {@link ReportingAlerter} only uses the
+     * {@link AlertPayload} if it has the standard tags that it would have
+     * added itself. By default, the untagged {@link Alert} is passed to
+     * {@link #sendAlert(Alert)}.
+     *
+     * @param payload
+     *            The payload of the {@link Alert} to be sent.
+     * @throws AlertDeliveryException
+     *             if the alert could not be delivered to one or more of the
+     *             recipients.
+     */
+    public default void sendPayload(AlertPayload payload) throws AlertDeliveryException {
+        sendAlert(payload.getUntaggedAlert());
+    }
+}
@@ -1,12 +1,20 @@
 package com.elastisys.scale.commons.net.alerter;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Objects;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
  * A {@link SeverityFilter} is used by an {@link Alerter} to suppress certain
  * {@link Alert}s whose {@link AlertSeverity} doesn't match a given severity
  * filter regular expression, such as {@code INFO|WARN|ERROR}.
+ * <p/>
+ * Since there are only a handful of {@link AlertSeverity} values, the filter
+ * expression is matched against each of them once, on construction, and the
+ * severities that match are kept in an {@link EnumSet}. Filtering an
+ * {@link Alert} is then a set membership test.
  *
  * @see Alert
  * @see Alerter
@@ -20,6 +28,9 @@ public class SeverityFilter {
      */
     private final String filterExpression;
 
+    /** The {@link AlertSeverity} values that match the filter expression. */
+    private final Set<AlertSeverity> acceptedSeverities;
+
     /**
      * Creates a new {@link SeverityFilter}. Throws an
      * {@link IllegalArgumentException} if the given expression isn't a valid
@@ -33,8 +44,15 @@ public class SeverityFilter {
      *             If the filter expression is illegal.
      */
     public SeverityFilter(String filterExpression) throws IllegalArgumentException {
-        verifySeverityFilter(filterExpression);
+        Pattern pattern = compileSeverityFilter(filterExpression);
         this.filterExpression = filterExpression;
+        EnumSet<AlertSeverity> accepted = EnumSet.noneOf(AlertSeverity.class);
+        for (AlertSeverity severity : AlertSeverity.values()) {
+            if (pattern.matcher(severity.name()).matches()) {
+                accepted.add(severity);
+            }
+        }
+        this.acceptedSeverities = Collections.unmodifiableSet(accepted);
     }
 
     /**
@@ -48,6 +66,17 @@ public class SeverityFilter {
         return this.filterExpression;
     }
 
+    /**
+     * Returns the {@link AlertSeverity} values that match the filter
+     * expression. {@link Alert}s with any other {@link AlertSeverity} are
+     * suppressed.
+     *
+     * @return
+     */
+    public Set<AlertSeverity> getAcceptedSeverities() {
+        return this.acceptedSeverities;
+    }
+
     /**
      * Determines if a given {@link Alert} should be suppressed, based on the
      * set {@link #filterExpression}.
@@ -58,13 +87,12 @@ public class SeverityFilter {
      *         <code>false</code> otherwise.
      */
     public boolean shouldSuppress(Alert alert) {
-        String severity = alert.getSeverity().name();
-        return !Pattern.matches(this.filterExpression, severity);
+        return !this.acceptedSeverities.contains(alert.getSeverity());
     }
 
-    private void verifySeverityFilter(String severityFilter) {
+    private static Pattern compileSeverityFilter(String severityFilter) {
         try {
-            Pattern.compile(severityFilter);
+            return Pattern.compile(severityFilter);
         } catch (Exception e) {
             throw new IllegalArgumentException("illegal severity filter expression: " + e.getMessage(), e);
         }
@@ -0,0 +1,244 @@
+package com.elastisys.scale.commons.net.alerter.batching;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.elastisys.scale.commons.eventbus.Subscriber;
+import com.elastisys.scale.commons.net.alerter.Alert;
+import com.elastisys.scale.commons.net.alerter.Alerter;
+import com.elastisys.scale.commons.net.alerter.BatchAlerter;
+
+/**
+ * An {@link Alerter} decorator that buffers incoming {@link Alert}s and
+ * forwards them as a single digest to a wrapped {@link BatchAlerter}. A batch
+ * is sent when it holds a maximum number of {@link Alert}s or when a time
+ * window (counted from the first {@link Alert} in the batch) has passed,
+ * whichever comes first.
+ * <p/>
+ * Batches are sent, in order, on a background thread so {@link #handleAlert}
+ * never waits for a delivery. Any buffered {@link Alert}s are sent on
+ * {@link #close()}.
+ */
+public class BatchingAlerter implements Alerter, Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(BatchingAlerter.class);
+
+    /** The maximum time (in seconds) to wait for pending batches on close. */
+    private static final long CLOSE_TIMEOUT = 60;
+
+    /** The wrapped {@link BatchAlerter} that batches are forwarded to. */
+    private final BatchAlerter alerter;
+    /** The maximum number of {@link Alert}s in a batch. */
+    private final int maxBatchSize;
+    /** The maximum time (in milliseconds) to hold on to a batch. */
+    private final long windowMillis;
+    /** Runs scheduled flushes and sends batches. */
+    private final ScheduledExecutorService sender;
+
+    /** Guards the batch state. */
+    private final Object lock = new Object();
+    /** The batch currently being collected. */
+    private List<Alert> batch;
+    /**
+     * Sequence number of the batch currently being collected. Lets a
+     * scheduled flush detect that its batch has already been sent.
+     */
+    private long batchNumber;
+    /** The scheduled flush of the current batch, if any. */
+    private ScheduledFuture<?> scheduledFlush;
+    /** <code>true</code> once this {@link BatchingAlerter} has been closed. */
+    private boolean closed;
+
+    /**
+     * Creates a {@link BatchingAlerter}.
+     *
+     * @param alerter
+     *            The wrapped {@link BatchAlerter} that batches are forwarded
+     *            to.
+     * @param config
+     *            Batch size and time window.
+     */
+    public BatchingAlerter(BatchAlerter alerter, BatchingAlerterConfig config) {
+        this(alerter, config.getMaxBatchSize(), config.getWindow().getMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a {@link BatchingAlerter}.
+     *
+     * @param alerter
+     *            The wrapped {@link BatchAlerter} that batches are forwarded
+     *            to.
+     * @param maxBatchSize
+     *            The maximum number of {@link Alert}s in a batch. A full batch
+     *            is sent right away.
+     * @param window
+     *            The maximum time to hold on to {@link Alert}s in a batch,
+     *            counted from the first {@link Alert} in the batch.
+     * @param unit
+     *            The unit of {@code window}.
+     */
+    public BatchingAlerter(BatchAlerter alerter, int maxBatchSize, long window, TimeUnit unit) {
+        checkArgument(alerter != null, "no alerter given");
+        checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+        checkArgument(window > 0, "window must be positive");
+        checkArgument(unit != null, "no unit given");
+        this.alerter = alerter;
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = unit.toMillis(window);
+        this.sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batching-alerter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batch = new ArrayList<>();
+    }
+
+    /**
+     * Adds an {@link Alert} to the current batch. Sends the batch (in the
+     * background) if it is full.
+     *
+     * @throws IllegalStateException
+     *             if this {@link BatchingAlerter} has been closed.
+     */
+    @Subscriber
+    @Override
+    public void handleAlert(Alert alert) throws RuntimeException {
+        List<Alert> fullBatch = null;
+        synchronized (this.lock) {
+            if (this.closed) {
+                throw new IllegalStateException("batching alerter has been closed");
+            }
+            this.batch.add(alert);
+            if (this.batch.size() >= this.maxBatchSize) {
+                fullBatch = takeBatch();
+            } else if (this.batch.size() == 1) {
+                long scheduledBatch = this.batchNumber;
+                this.scheduledFlush = this.sender.schedule(() -> flush(scheduledBatch), this.windowMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            List<Alert> alerts = fullBatch;
+            this.sender.execute(() -> send(alerts));
+        }
+    }
+
+    /**
+     * Sends any buffered {@link Alert}s and stops the background thread,
+     * waiting (for a limited time) for pending batches to be sent. Any
+     * {@link Alert}s received after close are rejected.
+     */
+    @Override
+    public void close() {
+        List<Alert> remaining;
+        synchronized (this.lock) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            remaining = takeBatch();
+        }
+        this.sender.execute(() -> send(remaining));
+        this.sender.shutdown();
+        try {
+            if (!this.sender.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+                LOG.warn("gave up waiting for pending alert batches to be sent");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of {@link Alert}s in the batch currently being
+     * collected.
+     *
+     * @return
+     */
+    int pending() {
+        synchronized (this.lock) {
+            return this.batch.size();
+        }
+    }
+
+    /**
+     * Sends a given batch, unless it has already been sent.
+     *
+     * @param scheduledBatch
+     *            The sequence number of the batch to send.
+     */
+    private void flush(long scheduledBatch) {
+        List<Alert> alerts;
+        synchronized (this.lock) {
+            if (scheduledBatch != this.batchNumber) {
+                // batch already sent (it filled up or we were closed)
+                return;
+            }
+            alerts = takeBatch();
+        }
+        send(alerts);
+    }
+
+    /**
+     * Takes the current batch and starts a new one. Must be called with the
+     * lock held.
+     *
+     * @return
+     */
+    private List<Alert> takeBatch() {
+        if (this.batch.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (this.scheduledFlush != null) {
+            this.scheduledFlush.cancel(false);
+            this.scheduledFlush = null;
+        }
+        List<Alert> alerts = this.batch;
+        this.batch = new ArrayList<>();
+        this.batchNumber++;
+        return alerts;
+    }
+
+    private void send(List<Alert> alerts) {
+        if (alerts.isEmpty()) {
+            return;
+        }
+        try {
+            LOG.debug("sending batch of {} alert(s) to {}", alerts.size(), this.alerter);
+            this.alerter.handleAlerts(alerts);
+        } catch (Exception e) {
+            LOG.warn("failed to send batch of {} alert(s) to {}: {}", alerts.size(), this.alerter, e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "batched(" + this.alerter + ")";
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.alerter, this.maxBatchSize, this.windowMillis);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof BatchingAlerter) {
+            BatchingAlerter that = (BatchingAlerter) obj;
+            return Objects.equals(this.alerter, that.alerter) && this.maxBatchSize == that.maxBatchSize
+                    && this.windowMillis == that.windowMillis;
+        }
+        return false;
+    }
+}
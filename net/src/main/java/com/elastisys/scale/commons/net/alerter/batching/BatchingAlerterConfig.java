@@ -0,0 +1,108 @@
+package com.elastisys.scale.commons.net.alerter.batching;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import com.elastisys.scale.commons.json.JsonUtils;
+import com.elastisys.scale.commons.json.types.TimeInterval;
+import com.elastisys.scale.commons.net.alerter.Alert;
+
+/**
+ * {@link BatchingAlerter} configuration.
+ *
+ * @see BatchingAlerter
+ */
+public class BatchingAlerterConfig {
+    /** The default maximum number of {@link Alert}s in a batch. */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    /** The default maximum time to hold on to {@link Alert}s in a batch. */
+    public static final TimeInterval DEFAULT_WINDOW = TimeInterval.seconds(60);
+
+    /**
+     * The maximum number of {@link Alert}s in a batch. A full batch is sent
+     * right away.
+     */
+    private final Integer maxBatchSize;
+
+    /**
+     * The maximum time to hold on to {@link Alert}s in a batch, counted from
+     * the first {@link Alert} in the batch.
+     */
+    private final TimeInterval window;
+
+    /**
+     * Creates a {@link BatchingAlerterConfig}.
+     *
+     * @param maxBatchSize
+     *            The maximum number of {@link Alert}s in a batch. A full batch
+     *            is sent right away. May be <code>null</code>. Default:
+     *            {@link #DEFAULT_MAX_BATCH_SIZE}.
+     * @param window
+     *            The maximum time to hold on to {@link Alert}s in a batch,
+     *            counted from the first {@link Alert} in the batch. May be
+     *            <code>null</code>. Default: {@link #DEFAULT_WINDOW}.
+     */
+    public BatchingAlerterConfig(Integer maxBatchSize, TimeInterval window) {
+        this.maxBatchSize = maxBatchSize;
+        this.window = window;
+        validate();
+    }
+
+    /**
+     * Returns the maximum number of {@link Alert}s in a batch.
+     *
+     * @return
+     */
+    public int getMaxBatchSize() {
+        return Optional.ofNullable(this.maxBatchSize).orElse(DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Returns the maximum time to hold on to {@link Alert}s in a batch,
+     * counted from the first {@link Alert} in the batch.
+     *
+     * @return
+     */
+    public TimeInterval getWindow() {
+        return Optional.ofNullable(this.window).orElse(DEFAULT_WINDOW);
+    }
+
+    /**
+     * Performs basic validation of this object. If the object is valid, the
+     * method returns. If the object is incorrectly set up an
+     * {@link IllegalArgumentException} is thrown.
+     *
+     * @throws IllegalArgumentException
+     */
+    public void validate() throws IllegalArgumentException {
+        checkArgument(getMaxBatchSize() > 0, "batching: maxBatchSize must be positive");
+        try {
+            getWindow().validate();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("batching: window: " + e.getMessage(), e);
+        }
+        checkArgument(getWindow().getMillis() > 0, "batching: window must be positive");
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getMaxBatchSize(), getWindow());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof BatchingAlerterConfig) {
+            BatchingAlerterConfig that = (BatchingAlerterConfig) obj;
+            return Objects.equals(getMaxBatchSize(), that.getMaxBatchSize())
+                    && Objects.equals(getWindow(), that.getWindow());
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return JsonUtils.toJsonString(this);
+    }
+}
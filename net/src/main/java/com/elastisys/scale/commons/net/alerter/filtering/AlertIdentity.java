@@ -0,0 +1,137 @@
+package com.elastisys.scale.commons.net.alerter.filtering;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.elastisys.scale.commons.net.alerter.Alert;
+import com.elastisys.scale.commons.util.hash.Hash128;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Computes {@link Alert} identities for the built-in identity functions of the
+ * {@link FilteringAlerter}, as 128-bit hashes (rendered as hexadecimal
+ * strings) of a selection of {@link Alert} fields.
+ * <p/>
+ * The fields are fed straight into a streaming {@link Hash128}, rather than
+ * first being collected into an array or string, and at 128 bits the chance of
+ * two distinct {@link Alert}s getting the same identity (and one of them
+ * being wrongly suppressed) is negligible.
+ */
+class AlertIdentity {
+
+    /** Kinds of values fed to the hash, to tell apart values of equal content. */
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int BOOLEAN = 2;
+    private static final int NUMBER = 3;
+    private static final int ARRAY = 4;
+    private static final int OBJECT = 5;
+
+    private AlertIdentity() {
+        throw new UnsupportedOperationException("not intended to be instantiated");
+    }
+
+    /**
+     * Returns an identity based on the topic of an {@link Alert}.
+     *
+     * @param alert
+     * @return
+     */
+    static String ofTopic(Alert alert) {
+        return new Hash128().putString(alert.getTopic()).toHexString();
+    }
+
+    /**
+     * Returns an identity based on the topic and message of an {@link Alert}.
+     *
+     * @param alert
+     * @return
+     */
+    static String ofTopicAndMessage(Alert alert) {
+        return new Hash128().putString(alert.getTopic()).putString(alert.getMessage()).toHexString();
+    }
+
+    /**
+     * Returns an identity based on the topic, message and metadata tags of an
+     * {@link Alert}.
+     *
+     * @param alert
+     * @return
+     */
+    static String ofTopicMessageAndTags(Alert alert) {
+        Hash128 hash = new Hash128().putString(alert.getTopic()).putString(alert.getMessage());
+        // metadata is held in a sorted map, so iteration order is stable
+        Map<String, JsonElement> metadata = alert.getMetadata();
+        hash.putInt(metadata.size());
+        for (Entry<String, JsonElement> tag : metadata.entrySet()) {
+            hash.putString(tag.getKey());
+            putJson(hash, tag.getValue());
+        }
+        return hash.toHexString();
+    }
+
+    /**
+     * Feeds a JSON value to a {@link Hash128}. Object members are hashed
+     * independently of their order, and numbers by their numeric value (so
+     * that {@code 1} and {@code 1.0} hash alike), in line with
+     * {@link JsonElement#equals}.
+     *
+     * @param hash
+     * @param json
+     */
+    static void putJson(Hash128 hash, JsonElement json) {
+        if (json == null || json.isJsonNull()) {
+            hash.putInt(NULL);
+        } else if (json.isJsonPrimitive()) {
+            JsonPrimitive primitive = json.getAsJsonPrimitive();
+            if (primitive.isString()) {
+                hash.putInt(STRING).putString(primitive.getAsString());
+            } else if (primitive.isBoolean()) {
+                hash.putInt(BOOLEAN).putBoolean(primitive.getAsBoolean());
+            } else {
+                hash.putInt(NUMBER).putLong(numberBits(primitive));
+            }
+        } else if (json.isJsonArray()) {
+            JsonArray array = json.getAsJsonArray();
+            hash.putInt(ARRAY).putInt(array.size());
+            for (JsonElement element : array) {
+                putJson(hash, element);
+            }
+        } else {
+            // combine member hashes with a commutative operation (addition)
+            long high = 0;
+            long low = 0;
+            int members = 0;
+            for (Entry<String, JsonElement> member : json.getAsJsonObject().entrySet()) {
+                Hash128 memberHash = new Hash128().putString(member.getKey());
+                putJson(memberHash, member.getValue());
+                high += memberHash.high();
+                low += memberHash.low();
+                members++;
+            }
+            hash.putInt(OBJECT).putInt(members).putLong(high).putLong(low);
+        }
+    }
+
+    /**
+     * Returns a representation of a JSON number that is the same for all
+     * numbers that are equal according to {@link JsonPrimitive#equals}. That
+     * compares numbers by their {@code double} value or, if both are integral
+     * types, by their {@code long} value (and equal {@code long}s have equal
+     * {@code double}s).
+     *
+     * @param number
+     * @return
+     */
+    private static long numberBits(JsonPrimitive number) {
+        double value = number.getAsDouble();
+        if (value == 0.0) {
+            // -0.0 == 0.0
+            value = 0.0;
+        }
+        // canonicalizes NaN
+        return Double.doubleToLongBits(value);
+    }
+}
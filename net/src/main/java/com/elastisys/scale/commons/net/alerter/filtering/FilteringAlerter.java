@@ -2,52 +2,61 @@ package com.elastisys.scale.commons.net.alerter.filtering;
 
 import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
 
-import java.util.HashSet;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Objects;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import org.joda.time.DateTime;
-import org.joda.time.Duration;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.elastisys.scale.commons.eventbus.Subscriber;
 import com.elastisys.scale.commons.net.alerter.Alert;
+import com.elastisys.scale.commons.net.alerter.AlertDeliveryException;
+import com.elastisys.scale.commons.net.alerter.AlertPayload;
 import com.elastisys.scale.commons.net.alerter.Alerter;
-import com.elastisys.scale.commons.util.time.UtcTime;
+import com.elastisys.scale.commons.net.alerter.ReportingAlerter;
 
 /**
  * An {@link Alerter} decorator that wraps an {@link Alerter} to suppress
  * sending of duplicate {@link Alert}s for a configurable duration.
+ * <p/>
+ * The number of {@link Alert} identities kept track of is bounded. Dated
+ * observations are evicted incrementally on every call and, should the bound
+ * be reached before they are dated (for example, during a storm of distinct
+ * {@link Alert}s), the oldest observation is evicted.
+ * <p/>
+ * If the wrapped {@link Alerter} is a {@link ReportingAlerter},
+ * {@link #sendAlert(Alert)} reports its delivery failures. Otherwise, an
+ * exception thrown by its {@link Alerter#handleAlert(Alert)} is taken as
+ * failure. An {@link Alert} that fails to be delivered is not recorded as
+ * observed, so a retry is not suppressed as a duplicate.
  */
-public class FilteringAlerter implements Alerter {
+public class FilteringAlerter implements ReportingAlerter {
     private static final Logger LOG = LoggerFactory.getLogger(FilteringAlerter.class);
 
     /**
      * An identity function that considers two {@link Alert}s to be equal if
-     * they share a common topic.
+     * they share a common topic. The identity is a 128-bit hash.
      */
-    public static final Function<Alert, String> TOPIC_IDENTITY_FUNCTION = alert -> String
-            .valueOf(Objects.hash(alert.getTopic()));
+    public static final Function<Alert, String> TOPIC_IDENTITY_FUNCTION = AlertIdentity::ofTopic;
 
     /**
      * An identity function that considers two {@link Alert}s to be equal if
-     * they share a common topic and message.
+     * they share a common topic and message. The identity is a 128-bit hash.
      */
-    public static final Function<Alert, String> TOPIC_MSG_IDENTITY_FUNCTION = alert -> String
-            .valueOf(Objects.hash(alert.getTopic(), alert.getMessage()));
+    public static final Function<Alert, String> TOPIC_MSG_IDENTITY_FUNCTION = AlertIdentity::ofTopicAndMessage;
 
     /**
      * An identity function that considers two {@link Alert}s to be equal if
-     * they share a common topic, message and metadata tags.
+     * they share a common topic, message and metadata tags. The identity is a
+     * 128-bit hash.
      */
-    public static final Function<Alert, String> TOPIC_MSG_TAGS_IDENTITY_FUNCTION = alert -> String
-            .valueOf(Objects.hash(alert.getTopic(), alert.getMessage(), alert.getMetadata()));
+    public static final Function<Alert, String> TOPIC_MSG_TAGS_IDENTITY_FUNCTION = AlertIdentity::ofTopicMessageAndTags;
 
     /**
      * The default {@link Alert} identity function. Two {@link Alert}s are
@@ -58,9 +67,18 @@ public class FilteringAlerter implements Alerter {
     /**
      * The number of calls between every call to
      * {@link #evictDatedObservations()}.
+     *
+     * @deprecated Dated observations are now evicted incrementally on every
+     *             call. No longer used.
      */
+    @Deprecated
     public static final int CALLS_BETWEEN_EVICTION_RUN = 100;
 
+    /**
+     * The default maximum number of {@link Alert} identities to keep track of.
+     */
+    public static final int DEFAULT_MAX_OBSERVATIONS = 10000;
+
     /**
      * The wrapped {@link Alerter} to which all non-duplicate {@link Alert}s get
      * forwarded.
@@ -77,23 +95,26 @@ public class FilteringAlerter implements Alerter {
     private final Function<Alert, String> identityFunction;
 
     /**
-     * The duration for which to suppress {@link Alert}s with a given identity
-     * after first encounter.
+     * The duration (in milliseconds) for which to suppress {@link Alert}s with
+     * a given identity after first encounter.
      */
-    private final Duration suppressionTime;
+    private final long suppressionMillis;
 
     /**
-     * The cache where the last observation of a given {@link Alert} is stored.
-     * Keys are {@link Alert} identities, as produced by the
-     * {@link #identityFunction}.
+     * The maximum number of {@link Alert} identities to keep track of. When
+     * full, the oldest observation is evicted to make room for a new one, even
+     * if its suppression time has not passed.
      */
-    private final Map<String, DateTime> alertObservations;
+    private final int maxObservations;
 
     /**
-     * Counts remaining invocations until next run of
-     * {@link #evictDatedObservations()}.
+     * The cache where the last observation of a given {@link Alert} is stored.
+     * Keys are {@link Alert} identities, as produced by the
+     * {@link #identityFunction}. Kept in order of observation time (oldest
+     * first), so that dated observations can be evicted from the head of the
+     * map without scanning it. Guarded by its own monitor.
      */
-    private AtomicInteger evictionRunCountdown = new AtomicInteger(CALLS_BETWEEN_EVICTION_RUN);
+    private final LinkedHashMap<String, Observation> alertObservations;
 
     /**
      * Creates a {@link FilteringAlerter} with the default {@link Alert}
@@ -130,88 +151,203 @@ public class FilteringAlerter implements Alerter {
      */
     public FilteringAlerter(Alerter alerter, Function<Alert, String> identityFunction, long suppressionTime,
             TimeUnit timeUnit) {
+        this(alerter, identityFunction, suppressionTime, timeUnit, DEFAULT_MAX_OBSERVATIONS);
+    }
+
+    /**
+     * Creates a {@link FilteringAlerter} with a given {@link Alert} identity
+     * function and a bound on the number of {@link Alert} identities to keep
+     * track of.
+     *
+     * @param alerter
+     *            The wrapped {@link Alerter} to which all non-duplicate
+     *            {@link Alert}s get forwarded.
+     * @param identityFunction
+     *            Maps an {@link Alert} to the identity used to detect
+     *            duplicates.
+     * @param suppressionTime
+     *            The duration for which to suppress {@link Alert}s with a given
+     *            identity after first encounter.
+     * @param timeUnit
+     *            The time unit of {@code suppressionTime}.
+     * @param maxObservations
+     *            The maximum number of {@link Alert} identities to keep track
+     *            of. When full, the oldest observation is evicted to make room
+     *            for a new one, even if its suppression time has not passed.
+     */
+    public FilteringAlerter(Alerter alerter, Function<Alert, String> identityFunction, long suppressionTime,
+            TimeUnit timeUnit, int maxObservations) {
         checkArgument(alerter != null, "no alerter given");
         checkArgument(identityFunction != null, "no identityFunction given");
         checkArgument(suppressionTime > 0, "suppressionTime must be greater than zero");
+        checkArgument(maxObservations > 0, "maxObservations must be greater than zero");
         this.alerter = alerter;
         this.identityFunction = identityFunction;
-        this.suppressionTime = new Duration(TimeUnit.MILLISECONDS.convert(suppressionTime, timeUnit));
-        this.alertObservations = new ConcurrentHashMap<>();
+        this.suppressionMillis = TimeUnit.MILLISECONDS.convert(suppressionTime, timeUnit);
+        this.maxObservations = maxObservations;
+        this.alertObservations = new LinkedHashMap<>();
     }
 
     @Subscriber
     @Override
     public void handleAlert(Alert alert) throws RuntimeException {
-        checkEvictionNeed();
-
-        if (shouldSuppress(alert)) {
+        String alertIdentity = this.identityFunction.apply(alert);
+        if (shouldSuppress(alertIdentity, alert)) {
             return;
         }
 
         // forward to handler
         this.alerter.handleAlert(alert);
 
-        String alertIdentity = this.identityFunction.apply(alert);
-        this.alertObservations.put(alertIdentity, UtcTime.now());
+        observe(alertIdentity);
     }
 
     /**
-     * Runs {@link #evictDatedObservations()} if it has not been done for
-     * sufficiently long in order to prevent the cache from growing without
-     * bounds.
+     * Forwards the {@link Alert} to the wrapped {@link Alerter}, unless it is
+     * a duplicate, and raises an {@link AlertDeliveryException} if it could
+     * not be delivered. Suppressed duplicates count as delivered.
      */
-    private void checkEvictionNeed() {
-        if (this.evictionRunCountdown.decrementAndGet() == 0) {
-            evictDatedObservations();
-            this.evictionRunCountdown.set(CALLS_BETWEEN_EVICTION_RUN);
-        }
+    @Override
+    public void sendAlert(Alert alert) throws AlertDeliveryException {
+        send(alert, null);
+    }
+
+    /**
+     * Like {@link #sendAlert(Alert)}, but passes the {@link AlertPayload} on
+     * to the wrapped {@link Alerter} if it is a {@link ReportingAlerter}.
+     */
+    @Override
+    public void sendPayload(AlertPayload payload) throws AlertDeliveryException {
+        send(payload.getUntaggedAlert(), payload);
     }
 
-    private boolean shouldSuppress(Alert alert) {
+    private void send(Alert alert, AlertPayload payload) throws AlertDeliveryException {
         String alertIdentity = this.identityFunction.apply(alert);
-        if (!this.alertObservations.containsKey(alertIdentity)) {
-            // no similar alert has been observed
-            return false;
+        if (shouldSuppress(alertIdentity, alert)) {
+            return;
+        }
+
+        if (this.alerter instanceof ReportingAlerter) {
+            ReportingAlerter alerter = (ReportingAlerter) this.alerter;
+            if (payload != null) {
+                alerter.sendPayload(payload);
+            } else {
+                alerter.sendAlert(alert);
+            }
+        } else {
+            try {
+                this.alerter.handleAlert(alert);
+            } catch (AlertDeliveryException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw new AlertDeliveryException(
+                        String.format("failed to send alert to %s: %s", this.alerter, e.getMessage()), e);
+            }
         }
-        DateTime lastOccurrence = this.alertObservations.get(alertIdentity);
-        Duration timeSinceLastOccurrence = new Duration(lastOccurrence, UtcTime.now());
-        boolean shouldSuppress = timeSinceLastOccurrence.isShorterThan(this.suppressionTime);
+
+        observe(alertIdentity);
+    }
+
+    /**
+     * Evicts dated observations and returns <code>true</code> if an
+     * {@link Alert} with the given identity was observed within the
+     * suppression time.
+     *
+     * @param alertIdentity
+     * @param alert
+     * @return
+     */
+    private boolean shouldSuppress(String alertIdentity, Alert alert) {
+        long now = DateTimeUtils.currentTimeMillis();
+        long lastOccurrence;
+        synchronized (this.alertObservations) {
+            evictDatedObservations(now);
+            Observation observation = this.alertObservations.get(alertIdentity);
+            if (observation == null) {
+                // no similar alert has been observed
+                return false;
+            }
+            lastOccurrence = observation.time;
+        }
+        boolean shouldSuppress = now - lastOccurrence < this.suppressionMillis;
 
         if (shouldSuppress && LOG.isDebugEnabled()) {
             LOG.debug(
                     "suppressing alert since a similar alert was observed "
                             + "at {} and {} second(s) have not passed: {}",
-                    lastOccurrence, this.suppressionTime.getStandardSeconds(), alert);
+                    new DateTime(lastOccurrence, DateTimeZone.UTC), this.suppressionMillis / 1000, alert);
         }
         return shouldSuppress;
     }
 
+    /**
+     * Records an observation of an {@link Alert} with a given identity at the
+     * current time, evicting the oldest observation if the cache is full.
+     *
+     * @param alertIdentity
+     */
+    private void observe(String alertIdentity) {
+        long now = DateTimeUtils.currentTimeMillis();
+        synchronized (this.alertObservations) {
+            // re-insert to move the observation to the tail of the map
+            Observation observation = this.alertObservations.remove(alertIdentity);
+            if (observation == null) {
+                if (this.alertObservations.size() >= this.maxObservations) {
+                    Iterator<Observation> oldest = this.alertObservations.values().iterator();
+                    oldest.next();
+                    oldest.remove();
+                }
+                observation = new Observation();
+            }
+            observation.time = now;
+            this.alertObservations.put(alertIdentity, observation);
+        }
+    }
+
     /**
      * Evict all observations for which the suppression time has passed to avoid
      * infinite growth of the cache.
      */
     void evictDatedObservations() {
-        LOG.debug("evicting dated alerts from filter ...");
-        DateTime now = UtcTime.now();
-
-        Set<String> keys = new HashSet<>(this.alertObservations.keySet());
-        for (String alertIdentity : keys) {
-            DateTime lastOccurrence = this.alertObservations.get(alertIdentity);
-            Duration timeSinceLastOccurrence = new Duration(lastOccurrence, now);
-            boolean shouldEvict = timeSinceLastOccurrence.isLongerThan(this.suppressionTime);
-            if (shouldEvict) {
-                this.alertObservations.remove(alertIdentity);
+        synchronized (this.alertObservations) {
+            evictDatedObservations(DateTimeUtils.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Evicts observations for which the suppression time has passed from the
+     * head of the cache. Since the cache is ordered by observation time, this
+     * stops at the first observation that is still current, which makes the
+     * eviction cost proportional to the number of evicted observations. Must
+     * be called with the cache monitor held.
+     *
+     * @param now
+     *            The current time in milliseconds.
+     */
+    private void evictDatedObservations(long now) {
+        Iterator<Observation> observations = this.alertObservations.values().iterator();
+        while (observations.hasNext()) {
+            if (now - observations.next().time <= this.suppressionMillis) {
+                return;
             }
+            observations.remove();
         }
     }
 
     int size() {
-        return this.alertObservations.size();
+        synchronized (this.alertObservations) {
+            return this.alertObservations.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "filtered(" + this.alerter + ")";
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(this.alerter, this.suppressionTime);
+        return Objects.hash(this.alerter, this.suppressionMillis, this.maxObservations);
     }
 
     @Override
@@ -219,9 +355,18 @@ public class FilteringAlerter implements Alerter {
         if (obj instanceof FilteringAlerter) {
             FilteringAlerter that = (FilteringAlerter) obj;
             return Objects.equals(this.alerter, that.alerter)
-                    && Objects.equals(this.suppressionTime, that.suppressionTime);
+                    && this.suppressionMillis == that.suppressionMillis
+                    && this.maxObservations == that.maxObservations;
 
         }
         return false;
     }
+
+    /**
+     * The time (in milliseconds) of the last observation of an {@link Alert}
+     * identity. Mutable, so that a repeated observation doesn't allocate.
+     */
+    private static class Observation {
+        private long time;
+    }
 }
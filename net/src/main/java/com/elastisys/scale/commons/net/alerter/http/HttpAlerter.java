@@ -1,11 +1,18 @@
 package com.elastisys.scale.commons.net.alerter.http;
 
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkState;
 import static java.lang.String.format;
 import static org.apache.http.entity.ContentType.APPLICATION_JSON;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
@@ -16,10 +23,16 @@ import com.elastisys.scale.commons.eventbus.EventBus;
 import com.elastisys.scale.commons.eventbus.Subscriber;
 import com.elastisys.scale.commons.json.JsonUtils;
 import com.elastisys.scale.commons.net.alerter.Alert;
-import com.elastisys.scale.commons.net.alerter.Alerter;
+import com.elastisys.scale.commons.net.alerter.AlertDeliveryException;
+import com.elastisys.scale.commons.net.alerter.AlertPayload;
+import com.elastisys.scale.commons.net.alerter.BatchAlerter;
+import com.elastisys.scale.commons.net.alerter.DeliveryResult;
+import com.elastisys.scale.commons.net.alerter.ParallelDelivery;
+import com.elastisys.scale.commons.net.alerter.ReportingAlerter;
 import com.elastisys.scale.commons.net.alerter.SeverityFilter;
 import com.elastisys.scale.commons.net.alerter.smtp.SmtpAlerter;
 import com.elastisys.scale.commons.net.http.client.AuthenticatedHttpClient;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 
 /**
@@ -33,11 +46,26 @@ import com.google.gson.JsonElement;
  * Note that it is the responsibility of the {@link SmtpAlerter} creator to
  * register the alerter to (and unregister the alerter from) an {@link EventBus}
  * .
+ * <p/>
+ * A single {@link AuthenticatedHttpClient}, with a pool of persistent
+ * connections, is set up on the first alert and is then reused for all alerts
+ * and destinations. It is released on {@link #close()}, after which the
+ * {@link HttpAlerter} no longer delivers any {@link Alert}s.
+ * <p/>
+ * {@link Alert}s are sent to all destinations concurrently, so that one slow
+ * destination doesn't hold up the others. Deliveries that have not completed
+ * within the configured delivery timeout are cancelled.
+ * <p/>
+ * A batch of {@link Alert}s passed to {@link #handleAlerts(List)} is sent as
+ * a single JSON array.
  */
-public class HttpAlerter implements Alerter {
+public class HttpAlerter implements BatchAlerter, ReportingAlerter, Closeable {
 
     private static final Logger LOG = LoggerFactory.getLogger(HttpAlerter.class);
 
+    /** The maximum number of pooled connections per destination. */
+    static final int MAX_POOLED_CONNECTIONS = 4;
+
     /** Configuration. */
     private final HttpAlerterConfig config;
     /**
@@ -45,6 +73,27 @@ public class HttpAlerter implements Alerter {
      * sending to the destination endpoint(s).
      */
     private final Map<String, JsonElement> standardMetadata;
+    /**
+     * The severity filter of the configuration. Resolved once, rather than on
+     * every {@link Alert}.
+     */
+    private final SeverityFilter severityFilter;
+
+    /**
+     * The client used to send alerts. Set up on the first alert. Guarded by
+     * the monitor of this object.
+     */
+    private AuthenticatedHttpClient httpClient;
+    /**
+     * Sends alerts to all destinations concurrently. Set up on the first
+     * alert. Guarded by the monitor of this object.
+     */
+    private ParallelDelivery parallelDelivery;
+    /**
+     * <code>true</code> once {@link #close()} has been called. Guarded by the
+     * monitor of this object.
+     */
+    private boolean closed;
 
     /**
      * Constructs an {@link SmtpAlerter} configured to send {@link Alert} events
@@ -61,13 +110,92 @@ public class HttpAlerter implements Alerter {
     public HttpAlerter(HttpAlerterConfig config, Map<String, JsonElement> standardMetadata) {
         this.config = config;
         this.standardMetadata = standardMetadata;
+        this.severityFilter = config.getSeverityFilter();
     }
 
     @Subscriber
     @Override
     public void handleAlert(Alert alert) throws RuntimeException {
-        // apply severity filter
-        SeverityFilter severityFilter = this.config.getSeverityFilter();
+        if (!accepts(alert)) {
+            return;
+        }
+
+        // post message to destinations
+        send(new AlertPayload(alert, this.standardMetadata).getPrettyString());
+    }
+
+    /**
+     * {@code POST}s the {@link Alert} to all destination URLs (unless it is
+     * suppressed by the severity filter) and raises an
+     * {@link AlertDeliveryException} if any of the deliveries failed. The
+     * exception holds the result of the delivery to each destination URL. Note
+     * that a caller that retries on failure will re-send the {@link Alert} to
+     * the destinations that did receive it.
+     */
+    @Override
+    public void sendAlert(Alert alert) throws AlertDeliveryException {
+        sendPayload(new AlertPayload(alert, this.standardMetadata));
+    }
+
+    /**
+     * Like {@link #sendAlert(Alert)}, but uses the given {@link AlertPayload}
+     * if it has the standard metadata of this {@link HttpAlerter}.
+     */
+    @Override
+    public void sendPayload(AlertPayload payload) throws AlertDeliveryException {
+        Alert alert = payload.getUntaggedAlert();
+        if (!accepts(alert)) {
+            return;
+        }
+        if (!payload.hasStandardTags(this.standardMetadata)) {
+            payload = new AlertPayload(alert, this.standardMetadata);
+        }
+
+        List<String> failedDestinations = new ArrayList<>();
+        Exception firstError = null;
+        List<DeliveryResult> results = deliver(payload.getPrettyString());
+        for (DeliveryResult result : results) {
+            if (!result.isSuccess()) {
+                failedDestinations.add(result.getDestination());
+                if (firstError == null) {
+                    firstError = result.getError().get();
+                }
+            }
+        }
+        if (!failedDestinations.isEmpty()) {
+            throw new AlertDeliveryException(
+                    format("failed to send alert to %s: %s", failedDestinations, firstError.getMessage()), firstError,
+                    results);
+        }
+    }
+
+    /**
+     * {@code POST}s the {@link Alert}s that pass the severity filter as a
+     * single JSON array to each destination URL.
+     */
+    @Override
+    public void handleAlerts(List<Alert> alerts) throws RuntimeException {
+        JsonArray taggedAlerts = new JsonArray();
+        for (Alert alert : alerts) {
+            if (accepts(alert)) {
+                taggedAlerts.add(new AlertPayload(alert, this.standardMetadata).getJson());
+            }
+        }
+        if (taggedAlerts.size() == 0) {
+            return;
+        }
+        send(JsonUtils.toPrettyString(taggedAlerts));
+    }
+
+    /**
+     * Returns <code>true</code> if an {@link Alert} passes the severity
+     * filter.
+     *
+     * @param alert
+     * @return
+     */
+    private boolean accepts(Alert alert) {
+        SeverityFilter severityFilter = this.severityFilter;
         if (severityFilter.shouldSuppress(alert)) {
             if (LOG.isTraceEnabled()) {
                 LOG.trace(
@@ -75,26 +203,133 @@ public class HttpAlerter implements Alerter {
                                 + "as it doesn't match the severity filter '{}'.",
                         alert.getSeverity().name(), severityFilter.getFilterExpression());
             }
-            return;
+            return false;
         }
+        return true;
+    }
 
-        // post message to destinations
-        Alert taggedAlert = appendStandardTags(alert);
-        String message = JsonUtils.toPrettyString(JsonUtils.toJson(taggedAlert));
+    /**
+     * {@code POST}s a message to all destination URLs and logs any failures.
+     *
+     * @param message
+     *            The JSON-formatted message to send.
+     */
+    private void send(String message) {
+        for (DeliveryResult result : deliver(message)) {
+            if (!result.isSuccess()) {
+                Exception e = result.getError().get();
+                LOG.warn(format("failed to send alert to %s: %s\nAlert message was: %s", result.getDestination(),
+                        e.getMessage(), message), e);
+            }
+        }
+    }
+
+    /**
+     * {@code POST}s a message to all destination URLs concurrently and waits
+     * for the deliveries to complete, at most until the configured delivery
+     * timeout has passed. Once the {@link HttpAlerter} has been closed, all
+     * deliveries fail.
+     *
+     * @param message
+     *            The JSON-formatted message to send.
+     * @return The result of the delivery to each destination URL.
+     */
+    List<DeliveryResult> deliver(String message) {
+        List<Request> requests = new ArrayList<>();
         for (String destinationUrl : this.config.getDestinationUrls()) {
+            requests.add(new Request(destinationUrl, message));
+        }
+        ParallelDelivery parallelDelivery;
+        try {
+            parallelDelivery = parallelDelivery();
+        } catch (IllegalStateException e) {
+            List<DeliveryResult> results = new ArrayList<>();
+            for (Request request : requests) {
+                results.add(new DeliveryResult(request.toString(), e, 0));
+            }
+            return results;
+        }
+        List<DeliveryResult> results = parallelDelivery.deliver(requests, request -> {
+            LOG.debug("sending alert to {}", request);
             try {
-                LOG.debug("sending alert to {}: {}", destinationUrl, alert);
-                AuthenticatedHttpClient httpClient = new AuthenticatedHttpClient(LOG,
-                        this.config.getAuth().getBasicCredentials(), this.config.getAuth().getCertificateCredentials(),
-                        this.config.getConnectTimeout(), this.config.getSocketTimeout());
-                HttpPost request = new HttpPost(destinationUrl);
-                request.setEntity(new StringEntity(message, APPLICATION_JSON));
-                httpClient.execute(request);
-            } catch (Exception e) {
-                LOG.warn(format("failed to send alert to %s: %s\nAlert message was: %s", destinationUrl, e.getMessage(),
-                        message), e);
+                httpClient().execute(request.post);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, this.config.getDeliveryTimeout(), TimeUnit.MILLISECONDS);
+
+        // a thread blocked on socket I/O does not respond to interrupts, so
+        // abort requests that are still outstanding to release their threads
+        // and connections
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).getError().orElse(null) instanceof TimeoutException) {
+                requests.get(i).post.abort();
             }
         }
+        return results;
+    }
+
+    /**
+     * Releases the pooled connections and delivery threads of this
+     * {@link HttpAlerter}. Deliveries that are in progress are aborted. A
+     * closed {@link HttpAlerter} cannot be reopened: any {@link Alert}s it
+     * receives after being closed fail to be delivered (and are logged or, by
+     * {@link #sendAlert(Alert)}, reported as failed).
+     */
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        if (this.httpClient != null) {
+            this.httpClient.close();
+            this.httpClient = null;
+        }
+        if (this.parallelDelivery != null) {
+            this.parallelDelivery.close();
+            this.parallelDelivery = null;
+        }
+    }
+
+    /**
+     * Returns the {@link ParallelDelivery} used to send alerts to all
+     * destinations concurrently, setting it up if this is the first call.
+     *
+     * @return
+     * @throws IllegalStateException
+     *             if the {@link HttpAlerter} has been closed.
+     */
+    private synchronized ParallelDelivery parallelDelivery() throws IllegalStateException {
+        checkState(!this.closed, "%s is closed", this);
+        if (this.parallelDelivery == null) {
+            int destinations = this.config.getDestinationUrls().size();
+            this.parallelDelivery = new ParallelDelivery("http-alerter", Math.max(1, destinations));
+        }
+        return this.parallelDelivery;
+    }
+
+    /**
+     * Returns the {@link AuthenticatedHttpClient} used to send alerts, setting
+     * it up from the {@link HttpAlerterConfig} if this is the first call.
+     * Should the set-up fail (for example, due to an unreadable key store) it
+     * is retried on the next call.
+     *
+     * @return
+     * @throws IllegalStateException
+     *             if the {@link HttpAlerter} has been closed.
+     */
+    synchronized AuthenticatedHttpClient httpClient() throws IllegalStateException {
+        checkState(!this.closed, "%s is closed", this);
+        if (this.httpClient == null) {
+            HttpAuthConfig auth = this.config.getAuth();
+            this.httpClient = new AuthenticatedHttpClient(LOG, auth.getBasicCredentials(),
+                    auth.getCertificateCredentials(), this.config.getConnectTimeout(), this.config.getSocketTimeout(),
+                    MAX_POOLED_CONNECTIONS * this.config.getDestinationUrls().size());
+        }
+        return this.httpClient;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpAlerter" + this.config.getDestinationUrls();
     }
 
     @Override
@@ -113,15 +348,23 @@ public class HttpAlerter implements Alerter {
         return false;
     }
 
-    private Alert appendStandardTags(Alert alert) {
-        if (this.standardMetadata == null) {
-            return alert;
+    /**
+     * A {@code POST} of an {@link Alert} message to a destination URL.
+     */
+    private static class Request {
+        private final String destinationUrl;
+        private final HttpPost post;
+
+        public Request(String destinationUrl, String message) {
+            this.destinationUrl = destinationUrl;
+            this.post = new HttpPost(destinationUrl);
+            this.post.setEntity(new StringEntity(message, APPLICATION_JSON));
         }
 
-        for (Entry<String, JsonElement> standardMetadata : this.standardMetadata.entrySet()) {
-            alert = alert.withMetadata(standardMetadata.getKey(), standardMetadata.getValue());
+        @Override
+        public String toString() {
+            return this.destinationUrl;
         }
-        return alert;
     }
 
 }
@@ -37,6 +37,11 @@ public class HttpAlerterConfig {
      * undefined (system default).
      */
     public static final int DEFAULT_SOCKET_TIMEOUT = 60000;
+    /**
+     * The default maximum time in milliseconds to wait for an {@link Alert} to
+     * be delivered to all destinations.
+     */
+    public static final int DEFAULT_DELIVERY_TIMEOUT = 90000;
     /**
      * The regular expression used to filter {@link Alert}s. {@link Alert}s with
      * an {@link AlertSeverity} that doesn't match the filter expression are
@@ -69,6 +74,13 @@ public class HttpAlerterConfig {
      */
     private final Integer socketTimeout;
 
+    /**
+     * The maximum time in milliseconds to wait for an {@link Alert} to be
+     * delivered to all destinations. Deliveries that have not completed by
+     * then are cancelled.
+     */
+    private final Integer deliveryTimeout;
+
     /**
      * Constructs a new {@link HttpAlerterConfig} with default connection and
      * socket timeouts.
@@ -118,11 +130,50 @@ public class HttpAlerterConfig {
      */
     public HttpAlerterConfig(List<String> destinationUrls, String severityFilter, HttpAuthConfig auth,
             Integer connectTimeout, Integer socketTimeout) {
+        this(destinationUrls, severityFilter, auth, connectTimeout, socketTimeout, DEFAULT_DELIVERY_TIMEOUT);
+    }
+
+    /**
+     * Constructs a new {@link HttpAlerterConfig}.
+     *
+     * @param destinationUrls
+     *            The list of target HTTP(S) URLs to notify.
+     * @param severityFilter
+     *            The regular expression used to filter {@link Alert}s.
+     *            {@link Alert}s with an {@link AlertSeverity} that doesn't
+     *            match the filter expression are suppressed and not sent. Set
+     *            to <code>null</code> to accept any severity.
+     * @param auth
+     *            Authentication credentials. May be <code>null</code> if no
+     *            authentication is to be performed.
+     * @param connectTimeout
+     *            The timeout in milliseconds until a connection is established.
+     *            A timeout value of zero is interpreted as an infinite timeout.
+     *            A negative value is interpreted as undefined (system default).
+     *            If <code>null</code>, {@link #DEFAULT_CONNECTION_TIMEOUT} will
+     *            be used.
+     * @param socketTimeout
+     *            The socket timeout ({@code SO_TIMEOUT}) in milliseconds, which
+     *            is the timeout for waiting for data or, put differently, a
+     *            maximum period inactivity between two consecutive data
+     *            packets). A timeout value of zero is interpreted as an
+     *            infinite timeout. A negative value is interpreted as undefined
+     *            (system default). If <code>null</code>,
+     *            {@link #DEFAULT_SOCKET_TIMEOUT} will be used.
+     * @param deliveryTimeout
+     *            The maximum time in milliseconds to wait for an {@link Alert}
+     *            to be delivered to all destinations. Deliveries that have not
+     *            completed by then are cancelled. If <code>null</code>,
+     *            {@link #DEFAULT_DELIVERY_TIMEOUT} will be used.
+     */
+    public HttpAlerterConfig(List<String> destinationUrls, String severityFilter, HttpAuthConfig auth,
+            Integer connectTimeout, Integer socketTimeout, Integer deliveryTimeout) {
         this.destinationUrls = destinationUrls;
         this.severityFilter = severityFilter;
         this.auth = auth;
         this.connectTimeout = connectTimeout;
         this.socketTimeout = socketTimeout;
+        this.deliveryTimeout = deliveryTimeout;
         validate();
     }
 
@@ -181,10 +232,21 @@ public class HttpAlerterConfig {
         return Optional.ofNullable(this.socketTimeout).orElse(DEFAULT_SOCKET_TIMEOUT);
     }
 
+    /**
+     * The maximum time in milliseconds to wait for an {@link Alert} to be
+     * delivered to all destinations. Deliveries that have not completed by
+     * then are cancelled.
+     *
+     * @return
+     */
+    public int getDeliveryTimeout() {
+        return Optional.ofNullable(this.deliveryTimeout).orElse(DEFAULT_DELIVERY_TIMEOUT);
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(getSeverityFilter(), this.destinationUrls, getAuth(), getConnectTimeout(),
-                getSocketTimeout());
+                getSocketTimeout(), getDeliveryTimeout());
     }
 
     @Override
@@ -196,7 +258,8 @@ public class HttpAlerterConfig {
                     && Objects.equals(getAuth(), that.getAuth())
                     && Objects.equals(getSeverityFilter(), that.getSeverityFilter())
                     && Objects.equals(getConnectTimeout(), that.getConnectTimeout())
-                    && Objects.equals(getSocketTimeout(), that.getSocketTimeout());
+                    && Objects.equals(getSocketTimeout(), that.getSocketTimeout())
+                    && Objects.equals(getDeliveryTimeout(), that.getDeliveryTimeout());
         }
         return false;
     }
@@ -214,6 +277,7 @@ public class HttpAlerterConfig {
             checkArgument(url != null, "httpAlerter: URL cannot be null");
             checkArgument(ValidHttpUrl.isValid(url), "httpAlerter: illegal URL '%s'", url);
         }
+        checkArgument(getDeliveryTimeout() > 0, "httpAlerter: deliveryTimeout must be positive");
         try {
             getAuth().validate();
             getSeverityFilter();
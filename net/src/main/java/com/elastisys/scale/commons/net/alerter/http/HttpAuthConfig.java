@@ -98,6 +98,6 @@ public class HttpAuthConfig {
 
     @Override
     public String toString() {
-        return JsonUtils.toString(JsonUtils.toJson(this, true));
+        return JsonUtils.toJsonString(this, true);
     }
 }
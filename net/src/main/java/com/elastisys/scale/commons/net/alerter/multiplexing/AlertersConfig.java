@@ -10,6 +10,7 @@ import com.elastisys.scale.commons.json.JsonUtils;
 import com.elastisys.scale.commons.json.types.TimeInterval;
 import com.elastisys.scale.commons.net.alerter.Alert;
 import com.elastisys.scale.commons.net.alerter.Alerter;
+import com.elastisys.scale.commons.net.alerter.batching.BatchingAlerterConfig;
 import com.elastisys.scale.commons.net.alerter.filtering.FilteringAlerter;
 import com.elastisys.scale.commons.net.alerter.http.HttpAlerterConfig;
 import com.elastisys.scale.commons.net.alerter.smtp.SmtpAlerterConfig;
@@ -42,6 +43,13 @@ public class AlertersConfig {
      */
     private final TimeInterval duplicateSuppression;
 
+    /**
+     * Settings for batching {@link Alert}s into digests before they are sent.
+     * May be <code>null</code>, meaning that every {@link Alert} is sent
+     * separately.
+     */
+    private final BatchingAlerterConfig batching;
+
     /**
      * Constructs a new {@link AlertersConfig} instance with default duplicate
      * suppression.
@@ -75,9 +83,35 @@ public class AlertersConfig {
      */
     public AlertersConfig(List<SmtpAlerterConfig> smtpAlerters, List<HttpAlerterConfig> httpAlerters,
             TimeInterval duplicateSuppression) {
+        this(smtpAlerters, httpAlerters, duplicateSuppression, null);
+    }
+
+    /**
+     * Constructs a new {@link AlertersConfig} instance.
+     *
+     * @param smtpAlerters
+     *            A list of configured SMTP email {@link Alerter}s. A
+     *            <code>null</code> value is equivalent to an empty list.
+     * @param httpAlerters
+     *            A list of HTTP(S) webhook {@link Alerter}s. A
+     *            <code>null</code> value is equivalent to an empty list.
+     * @param duplicateSuppression
+     *            Duration of time to suppress duplicate {@link Alert}s from
+     *            being re-sent. {@link Alert} equality is determined by the
+     *            identity function that was supplied on creation of the
+     *            {@link FilteringAlerter}. May be <code>null</code>. Default: 5
+     *            minutes.
+     * @param batching
+     *            Settings for batching {@link Alert}s into digests before they
+     *            are sent. May be <code>null</code>, meaning that every
+     *            {@link Alert} is sent separately.
+     */
+    public AlertersConfig(List<SmtpAlerterConfig> smtpAlerters, List<HttpAlerterConfig> httpAlerters,
+            TimeInterval duplicateSuppression, BatchingAlerterConfig batching) {
         this.smtpAlerters = smtpAlerters;
         this.httpAlerters = httpAlerters;
         this.duplicateSuppression = duplicateSuppression;
+        this.batching = batching;
     }
 
     /**
@@ -115,6 +149,16 @@ public class AlertersConfig {
         return Optional.ofNullable(this.duplicateSuppression).orElse(DEFAULT_DUPLICATE_SUPPRESSION);
     }
 
+    /**
+     * Returns the settings for batching {@link Alert}s into digests, if
+     * batching is to be used.
+     *
+     * @return
+     */
+    public Optional<BatchingAlerterConfig> getBatching() {
+        return Optional.ofNullable(this.batching);
+    }
+
     /**
      * Performs basic validation of this configuration.
      *
@@ -129,6 +173,9 @@ public class AlertersConfig {
                 httpAlerterConfig.validate();
             }
             getDuplicateSuppression().validate();
+            if (this.batching != null) {
+                this.batching.validate();
+            }
         } catch (Exception e) {
             throw new IllegalArgumentException("alerter: " + e.getMessage(), e);
         }
@@ -137,7 +184,7 @@ public class AlertersConfig {
 
     @Override
     public int hashCode() {
-        return Objects.hash(getSmtpAlerters(), getHttpAlerters(), getDuplicateSuppression());
+        return Objects.hash(getSmtpAlerters(), getHttpAlerters(), getDuplicateSuppression(), this.batching);
     }
 
     @Override
@@ -146,14 +193,15 @@ public class AlertersConfig {
             AlertersConfig that = (AlertersConfig) obj;
             return Objects.equals(getSmtpAlerters(), that.getSmtpAlerters()) //
                     && Objects.equals(getHttpAlerters(), that.getHttpAlerters()) //
-                    && Objects.equals(getDuplicateSuppression(), that.getDuplicateSuppression());
+                    && Objects.equals(getDuplicateSuppression(), that.getDuplicateSuppression()) //
+                    && Objects.equals(this.batching, that.batching);
         }
         return false;
     }
 
     @Override
     public String toString() {
-        return JsonUtils.toPrettyString(JsonUtils.toJson(this));
+        return JsonUtils.toPrettyJsonString(this);
     }
 
 }
\ No newline at end of file
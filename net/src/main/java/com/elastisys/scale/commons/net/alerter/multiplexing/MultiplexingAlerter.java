@@ -1,5 +1,9 @@
 package com.elastisys.scale.commons.net.alerter.multiplexing;
 
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkState;
+
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -15,7 +19,14 @@ import com.elastisys.scale.commons.eventbus.EventBus;
 import com.elastisys.scale.commons.eventbus.Subscriber;
 import com.elastisys.scale.commons.json.types.TimeInterval;
 import com.elastisys.scale.commons.net.alerter.Alert;
+import com.elastisys.scale.commons.net.alerter.AlertDeliveryException;
+import com.elastisys.scale.commons.net.alerter.AlertPayload;
 import com.elastisys.scale.commons.net.alerter.Alerter;
+import com.elastisys.scale.commons.net.alerter.BatchAlerter;
+import com.elastisys.scale.commons.net.alerter.DeliveryResult;
+import com.elastisys.scale.commons.net.alerter.ParallelDelivery;
+import com.elastisys.scale.commons.net.alerter.ReportingAlerter;
+import com.elastisys.scale.commons.net.alerter.batching.BatchingAlerter;
 import com.elastisys.scale.commons.net.alerter.filtering.FilteringAlerter;
 import com.elastisys.scale.commons.net.alerter.http.HttpAlerter;
 import com.elastisys.scale.commons.net.alerter.http.HttpAlerterConfig;
@@ -35,10 +46,36 @@ import com.google.gson.JsonElement;
  * describes a number of SMTP and HTTP {@link Alerter}s as well as for how long
  * to suppress duplicate {@link Alert} messages. An <i>identity function</i> is
  * used to determine if two {@link Alert}s are considered equal.
+ * <p/>
+ * {@link Alert}s are dispatched to all registered {@link Alerter}s
+ * concurrently, so that one slow {@link Alerter} doesn't hold up the others.
+ * Dispatches that have not completed within the delivery timeout are
+ * cancelled. The dispatch threads are set up on the first dispatch and are let
+ * go when idle, and released by {@link #close()}.
+ * <p/>
+ * {@link #dispatch(Alert)} reports the outcome per {@link Alerter}. Alerters
+ * that can report delivery failures ({@link ReportingAlerter}s) are sent the
+ * {@link Alert} with {@link ReportingAlerter#sendPayload(AlertPayload)}, so a
+ * failed delivery shows up as a failed {@link DeliveryResult}. Alerters that
+ * batch {@link Alert}s only report whether the {@link Alert} was accepted into
+ * a batch.
+ * <p/>
+ * The registered {@link Alerter}s share the same standard tags. The
+ * {@link AlertPayload} of an {@link Alert} is built once per dispatch and
+ * passed to all {@link ReportingAlerter}s, so an {@link Alert} is tagged and
+ * serialized once rather than once per {@link Alerter}.
  */
-public class MultiplexingAlerter implements Alerter {
+public class MultiplexingAlerter implements Alerter, Closeable {
     private final static Logger LOG = LoggerFactory.getLogger(MultiplexingAlerter.class);
 
+    /**
+     * The default maximum time to wait for an {@link Alert} to be dispatched
+     * to all {@link Alerter}s.
+     */
+    public static final TimeInterval DEFAULT_DELIVERY_TIMEOUT = TimeInterval.seconds(120);
+    /** The maximum number of {@link Alerter}s to dispatch to concurrently. */
+    public static final int MAX_DELIVERY_THREADS = 10;
+
     /**
      * The identity function used by the duplicate suppression filter to
      * determine if two {@link Alert}s are to be considered equal.
@@ -52,6 +89,37 @@ public class MultiplexingAlerter implements Alerter {
      */
     private final List<Alerter> alerters;
 
+    /**
+     * The maximum time to wait for an {@link Alert} to be dispatched to all
+     * {@link Alerter}s.
+     */
+    private final TimeInterval deliveryTimeout;
+
+    /**
+     * Dispatches {@link Alert}s to all {@link Alerter}s concurrently. Set up
+     * on the first dispatch. Guarded by the monitor of this object.
+     */
+    private ParallelDelivery parallelDelivery;
+    /**
+     * <code>true</code> once {@link #close()} has been called. Guarded by the
+     * monitor of this object.
+     */
+    private boolean closed;
+
+    /**
+     * Resources (such as batch buffers and connection pools) held by the
+     * registered {@link Alerter}s, in order of creation. Closed when the
+     * {@link Alerter}s are unregistered.
+     */
+    private final List<Closeable> alerterResources;
+
+    /**
+     * The standard tags of the most recently registered {@link Alerter}s.
+     * Used to build the {@link AlertPayload} of an {@link Alert} that is
+     * dispatched.
+     */
+    private volatile Map<String, JsonElement> standardTags;
+
     /**
      * Creates a {@link MultiplexingAlerter} that dispatches {@link Alert}s to
      * registered {@link Alerter}s, and uses the default identity function,
@@ -70,8 +138,27 @@ public class MultiplexingAlerter implements Alerter {
      * @param identityFunction
      */
     public MultiplexingAlerter(Function<Alert, String> identityFunction) {
+        this(identityFunction, DEFAULT_DELIVERY_TIMEOUT);
+    }
+
+    /**
+     * Creates a {@link MultiplexingAlerter} that dispatches {@link Alert}s to
+     * registered {@link Alerter}s, and uses the supplied identity function used
+     * to determine if two {@link Alert}s are equal when suppressing duplicates.
+     *
+     * @param identityFunction
+     * @param deliveryTimeout
+     *            The maximum time to wait for an {@link Alert} to be
+     *            dispatched to all {@link Alerter}s. Dispatches that have not
+     *            completed by then are cancelled.
+     */
+    public MultiplexingAlerter(Function<Alert, String> identityFunction, TimeInterval deliveryTimeout) {
+        checkArgument(deliveryTimeout != null, "deliveryTimeout cannot be null");
+        checkArgument(deliveryTimeout.getMillis() > 0, "deliveryTimeout must be positive");
         this.alerters = new CopyOnWriteArrayList<>();
+        this.alerterResources = new CopyOnWriteArrayList<>();
         this.identityFunction = identityFunction;
+        this.deliveryTimeout = deliveryTimeout;
     }
 
     /**
@@ -85,15 +172,91 @@ public class MultiplexingAlerter implements Alerter {
     @Subscriber
     @Override
     public void handleAlert(Alert alert) throws RuntimeException {
-        for (Alerter alerter : alerters()) {
-            try {
+        for (DeliveryResult result : dispatch(alert)) {
+            if (!result.isSuccess()) {
+                LOG.warn("failed to dispatch alert to alerter {}: {}", result.getDestination(),
+                        result.getError().get().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Dispatches the {@link Alert} to all registered {@link Alerter}s
+     * concurrently and waits for the dispatches to complete, at most until the
+     * delivery timeout has passed.
+     * <p/>
+     * A {@link ReportingAlerter} is sent the {@link Alert} with
+     * {@link ReportingAlerter#sendPayload(AlertPayload)}, so its
+     * {@link DeliveryResult} reflects whether the {@link Alert} was actually
+     * delivered. On failure, the error is an {@link AlertDeliveryException},
+     * which (for an {@link Alerter} with several destinations, such as an
+     * {@link HttpAlerter}) holds the result per destination. For other
+     * {@link Alerter}s, the {@link DeliveryResult} only reflects whether
+     * {@link Alerter#handleAlert(Alert)} raised an exception.
+     *
+     * @param alert
+     *            The {@link Alert} to dispatch.
+     * @return The result of the dispatch to each registered {@link Alerter}.
+     */
+    public List<DeliveryResult> dispatch(Alert alert) {
+        List<Alerter> alerters = alerters();
+        if (alerters.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ParallelDelivery parallelDelivery;
+        try {
+            parallelDelivery = parallelDelivery();
+        } catch (IllegalStateException e) {
+            List<DeliveryResult> results = new ArrayList<>();
+            for (Alerter alerter : alerters) {
+                results.add(new DeliveryResult(String.valueOf(alerter), e, 0));
+            }
+            return results;
+        }
+        // build the payload once, for all alerters
+        AlertPayload payload = new AlertPayload(alert, this.standardTags);
+        return parallelDelivery.deliver(alerters, alerter -> {
+            if (alerter instanceof ReportingAlerter) {
+                ((ReportingAlerter) alerter).sendPayload(payload);
+            } else {
                 alerter.handleAlert(alert);
-            } catch (Exception e) {
-                LOG.warn("failed to dispatch alert to alerter: {}", e.getMessage());
+            }
+        }, this.deliveryTimeout.getMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Unregisters all {@link Alerter}s and stops the threads used to dispatch
+     * {@link Alert}s. A closed {@link MultiplexingAlerter} cannot dispatch any
+     * further {@link Alert}s.
+     */
+    @Override
+    public void close() {
+        unregisterAlerters();
+        synchronized (this) {
+            this.closed = true;
+            if (this.parallelDelivery != null) {
+                this.parallelDelivery.close();
+                this.parallelDelivery = null;
             }
         }
     }
 
+    /**
+     * Returns the {@link ParallelDelivery} used to dispatch {@link Alert}s,
+     * setting it up if this is the first call.
+     *
+     * @return
+     * @throws IllegalStateException
+     *             if the {@link MultiplexingAlerter} has been closed.
+     */
+    private synchronized ParallelDelivery parallelDelivery() throws IllegalStateException {
+        checkState(!this.closed, "multiplexing alerter is closed");
+        if (this.parallelDelivery == null) {
+            this.parallelDelivery = new ParallelDelivery("multiplexing-alerter", MAX_DELIVERY_THREADS);
+        }
+        return this.parallelDelivery;
+    }
+
     /**
      * Registers a number of {@link Alerter}s to which incoming {@link Alert}s
      * are to be forwarded. The {@link Alerter}s, specified in an
@@ -120,6 +283,7 @@ public class MultiplexingAlerter implements Alerter {
         if (standardAlertMetadataTags != null) {
             standardTags = standardAlertMetadataTags;
         }
+        this.standardTags = standardTags;
 
         LOG.debug("alerters set up with duplicate suppression: {}", alertersConfig.getDuplicateSuppression());
 
@@ -128,19 +292,30 @@ public class MultiplexingAlerter implements Alerter {
         List<SmtpAlerterConfig> smtpAlerters = alertersConfig.getSmtpAlerters();
         LOG.debug("adding {} SMTP alerter(s)", smtpAlerters.size());
         for (SmtpAlerterConfig smtpAlerterConfig : smtpAlerters) {
-            newAlerters.add(filteredAlerter(new SmtpAlerter(smtpAlerterConfig, standardTags),
-                    alertersConfig.getDuplicateSuppression()));
+            Alerter smtpAlerter = batchedAlerter(new SmtpAlerter(smtpAlerterConfig, standardTags), alertersConfig);
+            newAlerters.add(filteredAlerter(smtpAlerter, alertersConfig.getDuplicateSuppression()));
         }
         // add HTTP alerters
         List<HttpAlerterConfig> httpAlerters = alertersConfig.getHttpAlerters();
         LOG.debug("adding {} HTTP alerter(s)", httpAlerters.size());
         for (HttpAlerterConfig httpAlerterConfig : httpAlerters) {
-            newAlerters.add(filteredAlerter(new HttpAlerter(httpAlerterConfig, standardTags),
+            HttpAlerter httpAlerter = new HttpAlerter(httpAlerterConfig, standardTags);
+            this.alerterResources.add(httpAlerter);
+            newAlerters.add(filteredAlerter(batchedAlerter(httpAlerter, alertersConfig),
                     alertersConfig.getDuplicateSuppression()));
         }
         this.alerters.addAll(newAlerters);
     }
 
+    private Alerter batchedAlerter(BatchAlerter alerter, AlertersConfig alertersConfig) {
+        if (!alertersConfig.getBatching().isPresent()) {
+            return alerter;
+        }
+        BatchingAlerter batchingAlerter = new BatchingAlerter(alerter, alertersConfig.getBatching().get());
+        this.alerterResources.add(batchingAlerter);
+        return batchingAlerter;
+    }
+
     private Alerter filteredAlerter(Alerter alerter, TimeInterval duplicateSuppression) {
         long suppressionTime = duplicateSuppression.getTime();
         TimeUnit timeUnit = duplicateSuppression.getUnit();
@@ -148,10 +323,23 @@ public class MultiplexingAlerter implements Alerter {
     }
 
     /**
-     * Clears all registered {@link Alerter}s.
+     * Clears all registered {@link Alerter}s. Any {@link Alert}s held in
+     * batches are sent before the {@link Alerter}s are let go.
      */
     public void unregisterAlerters() {
         this.alerters.clear();
+        // close in reverse order of creation: batches are flushed before the
+        // connection pools they are sent over are released
+        List<Closeable> resources = new ArrayList<>(this.alerterResources);
+        this.alerterResources.clear();
+        Collections.reverse(resources);
+        for (Closeable resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                LOG.warn("failed to close alerter {}: {}", resource, e.getMessage());
+            }
+        }
     }
 
     /**
@@ -0,0 +1,327 @@
+package com.elastisys.scale.commons.net.alerter.outbox;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.elastisys.scale.commons.eventbus.Subscriber;
+import com.elastisys.scale.commons.json.JsonUtils;
+import com.elastisys.scale.commons.net.alerter.Alert;
+import com.elastisys.scale.commons.net.alerter.AlertDeliveryException;
+import com.elastisys.scale.commons.net.alerter.Alerter;
+import com.elastisys.scale.commons.net.alerter.ReportingAlerter;
+import com.elastisys.scale.commons.net.alerter.outbox.OutboxLog.Record;
+
+/**
+ * An {@link Alerter} decorator that writes incoming {@link Alert}s to a
+ * durable, append-only log on local disk (an outbox) and returns right away. A
+ * background thread delivers the {@link Alert}s from the log, in order, to a
+ * wrapped {@link Alerter}, retrying failed deliveries with exponential
+ * back-off. This keeps a slow or unavailable recipient from blocking the
+ * poster of an {@link Alert}, and {@link Alert}s that have not been delivered
+ * when the process stops are delivered when an {@link OutboxAlerter} is next
+ * opened on the same directory.
+ * <p/>
+ * To be able to retry, the {@link OutboxAlerter} needs to learn about failed
+ * deliveries. If the wrapped {@link Alerter} is a {@link ReportingAlerter} its
+ * {@link ReportingAlerter#sendAlert(Alert)} method is used, otherwise an
+ * exception thrown by {@link Alerter#handleAlert(Alert)} is taken as failure.
+ * <p/>
+ * Delivery is at-least-once: an {@link Alert} may be delivered more than once
+ * if the process crashes right after a delivery, or if a delivery to several
+ * destinations partially fails and is retried.
+ */
+public class OutboxAlerter implements Alerter, Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(OutboxAlerter.class);
+
+    /** Default size (in bytes) at which a new log segment is started. */
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 1024 * 1024;
+    /** Default delay (in milliseconds) before the first retry. */
+    public static final long DEFAULT_INITIAL_RETRY_DELAY = 1000;
+    /** Default maximum delay (in milliseconds) between retries. */
+    public static final long DEFAULT_MAX_RETRY_DELAY = 60000;
+
+    /**
+     * The maximum time (in milliseconds) to wait for an ongoing delivery on
+     * close.
+     */
+    private static final long CLOSE_TIMEOUT = 30000;
+
+    /** The wrapped {@link Alerter} that {@link Alert}s are delivered to. */
+    private final Alerter alerter;
+    /** The log holding undelivered {@link Alert}s. */
+    private final OutboxLog log;
+    /** The delay (in milliseconds) before the first retry. */
+    private final long initialRetryDelay;
+    /** The maximum delay (in milliseconds) between retries. */
+    private final long maxRetryDelay;
+    /** Delivers {@link Alert}s from the log. */
+    private final Thread worker;
+
+    /** Lock used to wake up the worker on new {@link Alert}s and on close. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Signalled on new {@link Alert}s and on close. */
+    private final Condition changed = this.lock.newCondition();
+    /** <code>true</code> once this {@link OutboxAlerter} has been closed. */
+    private volatile boolean closed;
+
+    /**
+     * Creates an {@link OutboxAlerter} with default segment size and retry
+     * delays, which forces every {@link Alert} to disk before acknowledging
+     * it.
+     *
+     * @param alerter
+     *            The wrapped {@link Alerter} that {@link Alert}s are
+     *            delivered to.
+     * @param directory
+     *            The directory in which to keep the outbox log. Created if it
+     *            does not exist.
+     * @throws IOException
+     *             if the outbox log could not be opened.
+     */
+    public OutboxAlerter(Alerter alerter, File directory) throws IOException {
+        this(alerter, directory, DEFAULT_MAX_SEGMENT_SIZE, true, DEFAULT_INITIAL_RETRY_DELAY, DEFAULT_MAX_RETRY_DELAY,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates an {@link OutboxAlerter}.
+     *
+     * @param alerter
+     *            The wrapped {@link Alerter} that {@link Alert}s are
+     *            delivered to.
+     * @param directory
+     *            The directory in which to keep the outbox log. Created if it
+     *            does not exist.
+     * @param maxSegmentSize
+     *            The size (in bytes) at which a new log segment is started.
+     *            Segments are deleted once all of their {@link Alert}s have
+     *            been delivered.
+     * @param sync
+     *            <code>true</code> if every {@link Alert} is to be forced to
+     *            disk before {@link #handleAlert(Alert)} returns. If
+     *            <code>false</code>, {@link Alert}s survive a process crash
+     *            but not necessarily an operating system crash.
+     * @param initialRetryDelay
+     *            The delay before the first retry of a failed delivery. The
+     *            delay is doubled on every subsequent retry.
+     * @param maxRetryDelay
+     *            The maximum delay between retries.
+     * @param unit
+     *            The unit of the retry delays.
+     * @throws IOException
+     *             if the outbox log could not be opened.
+     */
+    public OutboxAlerter(Alerter alerter, File directory, long maxSegmentSize, boolean sync, long initialRetryDelay,
+            long maxRetryDelay, TimeUnit unit) throws IOException {
+        checkArgument(alerter != null, "no alerter given");
+        checkArgument(initialRetryDelay > 0, "initialRetryDelay must be positive");
+        checkArgument(maxRetryDelay >= initialRetryDelay, "maxRetryDelay must not be smaller than initialRetryDelay");
+        checkArgument(unit != null, "no unit given");
+        this.alerter = alerter;
+        this.log = new OutboxLog(directory, maxSegmentSize, sync);
+        this.initialRetryDelay = unit.toMillis(initialRetryDelay);
+        this.maxRetryDelay = unit.toMillis(maxRetryDelay);
+        if (this.log.pending() > 0) {
+            LOG.info("outbox {} holds {} undelivered alert(s)", directory, this.log.pending());
+        }
+
+        this.worker = new Thread(this::deliverLoop, "outbox-alerter");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Writes an {@link Alert} to the outbox log, from which it is delivered in
+     * the background.
+     *
+     * @throws AlertDeliveryException
+     *             if the {@link Alert} could not be written to the outbox log.
+     * @throws IllegalStateException
+     *             if this {@link OutboxAlerter} has been closed.
+     */
+    @Subscriber
+    @Override
+    public void handleAlert(Alert alert) throws RuntimeException {
+        if (this.closed) {
+            throw new IllegalStateException("outbox alerter has been closed");
+        }
+        try {
+            this.log.append(JsonUtils.toJsonString(alert));
+        } catch (IOException e) {
+            throw new AlertDeliveryException("failed to write alert to outbox: " + e.getMessage(), e);
+        }
+
+        this.lock.lock();
+        try {
+            this.changed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of {@link Alert}s that have not yet been delivered.
+     *
+     * @return
+     */
+    public long getPendingCount() {
+        return this.log.pending();
+    }
+
+    /**
+     * Stops the background delivery, waiting (for a limited time) for an
+     * ongoing delivery to complete, and closes the outbox log. Undelivered
+     * {@link Alert}s remain in the log and are delivered when an
+     * {@link OutboxAlerter} is next opened on the same directory. Any
+     * {@link Alert}s received after close are rejected.
+     */
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.changed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        try {
+            this.worker.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.worker.isAlive()) {
+            LOG.warn("outbox alerter did not stop within {} ms", CLOSE_TIMEOUT);
+        }
+    }
+
+    /**
+     * Delivers {@link Alert}s from the outbox log until closed. The log is
+     * closed by this thread on exit, to not pull it away from under an ongoing
+     * delivery.
+     */
+    private void deliverLoop() {
+        try {
+            while (!this.closed) {
+                Record record;
+                try {
+                    record = this.log.peek();
+                } catch (IOException e) {
+                    LOG.error("failed to read from outbox: " + e.getMessage(), e);
+                    awaitChange(this.maxRetryDelay);
+                    continue;
+                }
+                if (record == null) {
+                    awaitChange(this.maxRetryDelay);
+                    continue;
+                }
+                if (!deliver(record)) {
+                    // closed before delivery succeeded
+                    return;
+                }
+                try {
+                    this.log.acknowledge(record);
+                } catch (IOException e) {
+                    LOG.error("failed to acknowledge delivered alert in outbox: " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            try {
+                this.log.close();
+            } catch (IOException e) {
+                LOG.warn("failed to close outbox: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Delivers the {@link Alert} in a record to the wrapped {@link Alerter},
+     * retrying until it succeeds or this {@link OutboxAlerter} is closed. A
+     * record that cannot be parsed is logged and dropped.
+     *
+     * @param record
+     * @return <code>true</code> if the record was processed,
+     *         <code>false</code> if this {@link OutboxAlerter} was closed
+     *         first.
+     */
+    private boolean deliver(Record record) {
+        Alert alert;
+        try {
+            alert = JsonUtils.toObject(JsonUtils.parseJsonString(record.getPayload()), Alert.class);
+        } catch (Exception e) {
+            LOG.error(String.format("dropping unparseable alert from outbox: %s\nRecord was: %s", e.getMessage(),
+                    record.getPayload()), e);
+            return true;
+        }
+
+        long retryDelay = this.initialRetryDelay;
+        for (int attempt = 1; !this.closed; attempt++) {
+            try {
+                if (this.alerter instanceof ReportingAlerter) {
+                    ((ReportingAlerter) this.alerter).sendAlert(alert);
+                } else {
+                    this.alerter.handleAlert(alert);
+                }
+                return true;
+            } catch (Exception e) {
+                LOG.warn(String.format("attempt %d to deliver alert failed, retrying in %d ms: %s", attempt,
+                        retryDelay, e.getMessage()), e);
+            }
+            awaitClose(retryDelay);
+            retryDelay = Math.min(2 * retryDelay, this.maxRetryDelay);
+        }
+        return false;
+    }
+
+    /**
+     * Waits for new {@link Alert}s or close, at most for a given time.
+     *
+     * @param millis
+     */
+    private void awaitChange(long millis) {
+        this.lock.lock();
+        try {
+            if (!this.closed) {
+                this.changed.await(millis, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.closed = true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for close, at most for a given time.
+     *
+     * @param millis
+     */
+    private void awaitClose(long millis) {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(millis);
+        this.lock.lock();
+        try {
+            while (!this.closed && remaining > 0) {
+                remaining = this.changed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.closed = true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "outbox(" + this.alerter + ")";
+    }
+}
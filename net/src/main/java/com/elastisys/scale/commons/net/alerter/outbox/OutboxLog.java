@@ -0,0 +1,402 @@
+package com.elastisys.scale.commons.net.alerter.outbox;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A durable, append-only log of string records with a persistent read
+ * cursor, used by the {@link OutboxAlerter} to hold {@link Record}s until they
+ * have been delivered.
+ * <p/>
+ * Records are appended to segment files ({@code segment-<n>.log}) in a
+ * directory. A new segment is started when the current one has grown beyond a
+ * maximum size, and a segment is deleted once all of its records have been
+ * acknowledged. Each record is stored as a four-byte length, a four-byte CRC32
+ * checksum and the UTF-8 encoded record. On open, a partially written record
+ * at the end of the log (left by a crash in the middle of an append) is
+ * truncated.
+ * <p/>
+ * The position of the oldest unacknowledged record is kept in a
+ * {@code cursor} file, which is replaced atomically on every
+ * acknowledgement. Since the cursor is not forced to disk, the last few
+ * records may be handed out again after a crash (at-least-once delivery).
+ * <p/>
+ * Instances are thread-safe.
+ */
+class OutboxLog implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(OutboxLog.class);
+
+    /** Segment file name prefix. */
+    static final String SEGMENT_PREFIX = "segment-";
+    /** Segment file name suffix. */
+    static final String SEGMENT_SUFFIX = ".log";
+    /** Name of the file that holds the read cursor. */
+    static final String CURSOR_FILE = "cursor";
+    /** Size of the length and checksum that precede every record. */
+    private static final int HEADER_SIZE = 8;
+
+    /** The directory holding the segment files. */
+    private final File directory;
+    /** The size (in bytes) at which a new segment is started. */
+    private final long maxSegmentSize;
+    /**
+     * <code>true</code> if every append is to be forced to disk before it
+     * returns.
+     */
+    private final boolean sync;
+
+    /** The segment currently being appended to. */
+    private long writeSegment;
+    /** Channel of the segment currently being appended to. */
+    private FileChannel writer;
+    /** The segment of the oldest unacknowledged record. */
+    private long readSegment;
+    /** The offset of the oldest unacknowledged record. */
+    private long readOffset;
+    /** Channel of the segment being read from. Opened on demand. */
+    private FileChannel reader;
+    /** The number of unacknowledged records. */
+    private long pending;
+
+    /**
+     * Opens an {@link OutboxLog} in a given directory, creating the directory
+     * if it does not exist. Any records left in the directory from an earlier
+     * {@link OutboxLog} that have not been acknowledged are handed out again.
+     *
+     * @param directory
+     *            The directory holding the segment files.
+     * @param maxSegmentSize
+     *            The size (in bytes) at which a new segment is started.
+     * @param sync
+     *            <code>true</code> if every append is to be forced to disk
+     *            before it returns.
+     * @throws IOException
+     */
+    public OutboxLog(File directory, long maxSegmentSize, boolean sync) throws IOException {
+        checkArgument(directory != null, "no directory given");
+        checkArgument(maxSegmentSize > 0, "maxSegmentSize must be positive");
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        this.sync = sync;
+        Files.createDirectories(directory.toPath());
+
+        List<Long> segments = listSegments();
+        readCursor(segments);
+        // delete segments that were acknowledged before a crash
+        for (long segment : segments) {
+            if (segment < this.readSegment) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        }
+        this.writeSegment = segments.isEmpty() ? this.readSegment
+                : Math.max(this.readSegment, segments.get(segments.size() - 1));
+        this.writer = FileChannel.open(segmentPath(this.writeSegment), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = scan(this.writer, this.writeSegment == this.readSegment ? this.readOffset : 0)[1];
+        if (validEnd < this.writer.size()) {
+            LOG.warn("truncating {} bytes of incomplete records at end of {}", this.writer.size() - validEnd,
+                    segmentPath(this.writeSegment));
+            this.writer.truncate(validEnd);
+        }
+        this.writer.position(validEnd);
+        this.pending = countPending();
+    }
+
+    /**
+     * Appends a record to the log.
+     *
+     * @param record
+     * @throws IOException
+     */
+    public synchronized void append(String record) throws IOException {
+        byte[] bytes = record.getBytes(UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.putInt(checksum(bytes));
+        buffer.put(bytes);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            this.writer.write(buffer);
+        }
+        if (this.sync) {
+            this.writer.force(false);
+        }
+        this.pending++;
+
+        if (this.writer.position() >= this.maxSegmentSize) {
+            this.writer.close();
+            this.writeSegment++;
+            this.writer = FileChannel.open(segmentPath(this.writeSegment), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * Returns the oldest unacknowledged record without removing it from the
+     * log. The same record is returned until it has been acknowledged.
+     *
+     * @return The oldest unacknowledged record, or <code>null</code> if all
+     *         records have been acknowledged.
+     * @throws IOException
+     */
+    public synchronized Record peek() throws IOException {
+        while (true) {
+            if (this.reader == null) {
+                this.reader = FileChannel.open(segmentPath(this.readSegment), StandardOpenOption.READ);
+            }
+            Record record = read(this.reader, this.readSegment, this.readOffset);
+            if (record != null) {
+                return record;
+            }
+            if (this.readSegment == this.writeSegment) {
+                return null;
+            }
+
+            // end of a segment that is no longer appended to: move on to next
+            if (this.readOffset < this.reader.size()) {
+                LOG.warn("skipping {} bytes of corrupt records at end of {}", this.reader.size() - this.readOffset,
+                        segmentPath(this.readSegment));
+            }
+            this.reader.close();
+            this.reader = null;
+            Files.deleteIfExists(segmentPath(this.readSegment));
+            this.readSegment++;
+            this.readOffset = 0;
+            writeCursor();
+        }
+    }
+
+    /**
+     * Acknowledges the oldest unacknowledged record (as returned by
+     * {@link #peek()}), so that it will not be handed out again.
+     *
+     * @param record
+     * @throws IOException
+     */
+    public synchronized void acknowledge(Record record) throws IOException {
+        checkArgument(record.segment == this.readSegment && record.offset == this.readOffset,
+                "can only acknowledge the oldest unacknowledged record");
+        this.readOffset = record.nextOffset;
+        this.pending--;
+        writeCursor();
+    }
+
+    /**
+     * Returns the number of unacknowledged records.
+     *
+     * @return
+     */
+    public synchronized long pending() {
+        return this.pending;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.reader != null) {
+            this.reader.close();
+            this.reader = null;
+        }
+        this.writer.close();
+    }
+
+    /**
+     * Reads the record at a given offset of a segment.
+     *
+     * @param channel
+     * @param segment
+     * @param offset
+     * @return The record, or <code>null</code> if there is no complete and
+     *         intact record at the given offset.
+     * @throws IOException
+     */
+    private static Record read(FileChannel channel, long segment, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (!readFully(channel, header, offset)) {
+            return null;
+        }
+        int length = header.getInt(0);
+        int checksum = header.getInt(4);
+        if (length < 0 || length > channel.size() - offset - HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (!readFully(channel, payload, offset + HEADER_SIZE)) {
+            return null;
+        }
+        byte[] bytes = payload.array();
+        if (checksum(bytes) != checksum) {
+            return null;
+        }
+        return new Record(segment, offset, offset + HEADER_SIZE + length, new String(bytes, UTF_8));
+    }
+
+    /**
+     * Scans the intact records of a segment from a given offset.
+     *
+     * @param channel
+     * @param offset
+     * @return The number of intact records and the offset at which they end.
+     * @throws IOException
+     */
+    private static long[] scan(FileChannel channel, long offset) throws IOException {
+        long count = 0;
+        Record record;
+        while ((record = read(channel, 0, offset)) != null) {
+            count++;
+            offset = record.nextOffset;
+        }
+        return new long[] { count, offset };
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Counts the unacknowledged records from the read cursor to the end of
+     * the log.
+     *
+     * @return
+     * @throws IOException
+     */
+    private long countPending() throws IOException {
+        long count = 0;
+        for (long segment = this.readSegment; segment <= this.writeSegment; segment++) {
+            Path path = segmentPath(segment);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                count += scan(channel, segment == this.readSegment ? this.readOffset : 0)[0];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sets the read cursor from the cursor file or, if there is none, to the
+     * start of the oldest segment.
+     *
+     * @param segments
+     *            The segments in the log directory, in ascending order.
+     * @throws IOException
+     */
+    private void readCursor(List<Long> segments) throws IOException {
+        this.readSegment = segments.isEmpty() ? 1 : segments.get(0);
+        this.readOffset = 0;
+        Path cursorFile = new File(this.directory, CURSOR_FILE).toPath();
+        if (!Files.exists(cursorFile)) {
+            return;
+        }
+        String[] cursor = new String(Files.readAllBytes(cursorFile), UTF_8).trim().split(" ");
+        try {
+            long segment = Long.parseLong(cursor[0]);
+            long offset = Long.parseLong(cursor[1]);
+            if (segments.contains(segment)) {
+                this.readSegment = segment;
+                this.readOffset = offset;
+            } else if (segments.isEmpty() || segment > segments.get(segments.size() - 1)) {
+                // all records acknowledged, last segment deleted
+                this.readSegment = segment;
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            LOG.warn("ignoring malformed outbox cursor file {}", cursorFile);
+        }
+    }
+
+    /**
+     * Atomically replaces the cursor file with the current read cursor.
+     *
+     * @throws IOException
+     */
+    private void writeCursor() throws IOException {
+        Path cursorFile = new File(this.directory, CURSOR_FILE).toPath();
+        Path tempFile = new File(this.directory, CURSOR_FILE + ".tmp").toPath();
+        Files.write(tempFile, (this.readSegment + " " + this.readOffset).getBytes(UTF_8));
+        Files.move(tempFile, cursorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the segments in the log directory in ascending order.
+     *
+     * @return
+     */
+    private List<Long> listSegments() {
+        List<Long> segments = new ArrayList<>();
+        String[] names = this.directory.list();
+        if (names == null) {
+            return segments;
+        }
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    segments.add(Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    LOG.warn("ignoring unrecognized file {} in outbox directory", name);
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(long segment) {
+        return new File(this.directory, String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX))
+                .toPath();
+    }
+
+    /**
+     * A record read from an {@link OutboxLog}.
+     */
+    public static class Record {
+        /** The segment holding the record. */
+        private final long segment;
+        /** The offset of the record within its segment. */
+        private final long offset;
+        /** The offset of the following record within the segment. */
+        private final long nextOffset;
+        /** The record. */
+        private final String payload;
+
+        private Record(long segment, long offset, long nextOffset, String payload) {
+            this.segment = segment;
+            this.offset = offset;
+            this.nextOffset = nextOffset;
+            this.payload = payload;
+        }
+
+        public String getPayload() {
+            return this.payload;
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package com.elastisys.scale.commons.net.alerter.smtp;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 
 import org.slf4j.Logger;
@@ -12,11 +12,15 @@ import com.elastisys.scale.commons.eventbus.EventBus;
 import com.elastisys.scale.commons.eventbus.Subscriber;
 import com.elastisys.scale.commons.json.JsonUtils;
 import com.elastisys.scale.commons.net.alerter.Alert;
-import com.elastisys.scale.commons.net.alerter.Alerter;
+import com.elastisys.scale.commons.net.alerter.AlertDeliveryException;
+import com.elastisys.scale.commons.net.alerter.AlertPayload;
+import com.elastisys.scale.commons.net.alerter.BatchAlerter;
+import com.elastisys.scale.commons.net.alerter.ReportingAlerter;
 import com.elastisys.scale.commons.net.alerter.SeverityFilter;
 import com.elastisys.scale.commons.net.smtp.SmtpMessage;
 import com.elastisys.scale.commons.net.smtp.SmtpSender;
 import com.elastisys.scale.commons.util.time.UtcTime;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 
 /**
@@ -30,8 +34,11 @@ import com.google.gson.JsonElement;
  * Note that it is the responsibility of the {@link SmtpAlerter} creator to
  * register the alerter to (and unregister the alerter from) an {@link EventBus}
  * .
+ * <p/>
+ * A batch of {@link Alert}s passed to {@link #handleAlerts(List)} is sent as
+ * a single email.
  */
-public class SmtpAlerter implements Alerter {
+public class SmtpAlerter implements BatchAlerter, ReportingAlerter {
     static final Logger LOG = LoggerFactory.getLogger(SmtpAlerter.class);
 
     /**
@@ -43,6 +50,11 @@ public class SmtpAlerter implements Alerter {
      * sending to the final receiver.
      */
     private final Map<String, JsonElement> standardMetadata;
+    /**
+     * The severity filter of the configuration. Resolved once, rather than on
+     * every {@link Alert}.
+     */
+    private final SeverityFilter severityFilter;
 
     /**
      * Constructs an {@link SmtpAlerter} configured to send {@link Alert} events
@@ -70,6 +82,7 @@ public class SmtpAlerter implements Alerter {
     public SmtpAlerter(SmtpAlerterConfig config, Map<String, JsonElement> standardMetadata) {
         this.config = config;
         this.standardMetadata = standardMetadata;
+        this.severityFilter = config.getSeverityFilter();
     }
 
     /**
@@ -87,8 +100,77 @@ public class SmtpAlerter implements Alerter {
     @Override
     @Subscriber
     public void handleAlert(Alert alert) {
-        // apply severity filter
-        SeverityFilter severityFilter = this.config.getSeverityFilter();
+        if (!accepts(alert)) {
+            return;
+        }
+
+        LOG.debug("sending alert to {}: {}", this.config.getRecipients(), alert);
+        send(this.config.getSubject(), new AlertPayload(alert, this.standardMetadata).getPrettyString());
+    }
+
+    /**
+     * Sends an {@link Alert} email to the list of recipients (unless the
+     * {@link Alert} is suppressed by the severity filter) and raises an
+     * {@link AlertDeliveryException} if the email could not be sent.
+     */
+    @Override
+    public void sendAlert(Alert alert) throws AlertDeliveryException {
+        sendPayload(new AlertPayload(alert, this.standardMetadata));
+    }
+
+    /**
+     * Like {@link #sendAlert(Alert)}, but uses the given {@link AlertPayload}
+     * if it has the standard metadata of this {@link SmtpAlerter}.
+     */
+    @Override
+    public void sendPayload(AlertPayload payload) throws AlertDeliveryException {
+        Alert alert = payload.getUntaggedAlert();
+        if (!accepts(alert)) {
+            return;
+        }
+        if (!payload.hasStandardTags(this.standardMetadata)) {
+            payload = new AlertPayload(alert, this.standardMetadata);
+        }
+
+        LOG.debug("sending alert to {}: {}", this.config.getRecipients(), alert);
+        try {
+            sendEmail(this.config.getSubject(), payload.getPrettyString());
+        } catch (Exception e) {
+            throw new AlertDeliveryException(String.format("failed to send alert to %s: %s",
+                    this.config.getRecipients(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Sends the {@link Alert}s that pass the severity filter as a single
+     * email, holding a JSON array of the {@link Alert}s. The number of
+     * {@link Alert}s is appended to the subject line.
+     */
+    @Override
+    public void handleAlerts(List<Alert> alerts) {
+        JsonArray taggedAlerts = new JsonArray();
+        for (Alert alert : alerts) {
+            if (accepts(alert)) {
+                taggedAlerts.add(new AlertPayload(alert, this.standardMetadata).getJson());
+            }
+        }
+        if (taggedAlerts.size() == 0) {
+            return;
+        }
+        LOG.debug("sending {} alert(s) to {}", taggedAlerts.size(), this.config.getRecipients());
+        String subject = String.format("%s (%d alerts)", this.config.getSubject(), taggedAlerts.size());
+        send(subject, JsonUtils.toPrettyString(taggedAlerts));
+    }
+
+    /**
+     * Returns <code>true</code> if an {@link Alert} passes the severity
+     * filter.
+     *
+     * @param alert
+     * @return
+     */
+    private boolean accepts(Alert alert) {
+        SeverityFilter severityFilter = this.severityFilter;
         if (severityFilter.shouldSuppress(alert)) {
             if (LOG.isTraceEnabled()) {
                 LOG.trace(
@@ -96,22 +178,49 @@ public class SmtpAlerter implements Alerter {
                                 + "as it doesn't match the severity filter '{}'.",
                         alert.getSeverity().name(), severityFilter.getFilterExpression());
             }
-            return;
+            return false;
         }
+        return true;
+    }
 
-        Alert taggedAlert = appendStandardTags(alert);
-        String alertMessage = JsonUtils.toPrettyString(JsonUtils.toJson(taggedAlert));
+    /**
+     * Sends an email to the configured recipients and logs any failure.
+     *
+     * @param subject
+     *            The email subject line.
+     * @param alertMessage
+     *            The email content.
+     */
+    private void send(String subject, String alertMessage) {
         try {
-            LOG.debug("sending alert to {}: {}", this.config.getRecipients(), alert);
-            SmtpMessage email = new SmtpMessage(this.config.getRecipients(), this.config.getSender(),
-                    this.config.getSubject(), alertMessage, UtcTime.now());
-            new SmtpSender(email, this.config.getSmtpClientConfig()).call();
+            sendEmail(subject, alertMessage);
         } catch (Exception e) {
             LOG.error(String.format("failed to send alert message: %s\nAlert message was: %s", e.getMessage(),
                     alertMessage), e);
         }
     }
 
+    /**
+     * Sends an email to the configured recipients.
+     *
+     * @param subject
+     *            The email subject line.
+     * @param alertMessage
+     *            The email content.
+     * @throws Exception
+     *             if the email could not be sent.
+     */
+    private void sendEmail(String subject, String alertMessage) throws Exception {
+        SmtpMessage email = new SmtpMessage(this.config.getRecipients(), this.config.getSender(), subject,
+                alertMessage, UtcTime.now());
+        new SmtpSender(email, this.config.getSmtpClientConfig()).call();
+    }
+
+    @Override
+    public String toString() {
+        return "SmtpAlerter" + this.config.getRecipients();
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(this.config, this.standardMetadata);
@@ -128,11 +237,4 @@ public class SmtpAlerter implements Alerter {
         return false;
     }
 
-    private Alert appendStandardTags(Alert alert) {
-        for (Entry<String, JsonElement> standardMetadata : this.standardMetadata.entrySet()) {
-            alert = alert.withMetadata(standardMetadata.getKey(), standardMetadata.getValue());
-        }
-        return alert;
-    }
-
 }
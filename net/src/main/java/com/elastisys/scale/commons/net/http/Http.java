@@ -1,18 +1,34 @@
 package com.elastisys.scale.commons.net.http;
 
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.elastisys.scale.commons.net.limiter.ConcurrencyLimiter;
+import com.elastisys.scale.commons.net.limiter.ConcurrencyLimiter.Permit;
+import com.elastisys.scale.commons.net.limiter.TokenBucketRateLimiter;
+import com.elastisys.scale.commons.net.url.UrlUtils;
+
 /**
  * A HTTP(S) client. Use {@link Http#builder()} to construct a new instance.
  * <p/>
@@ -20,26 +36,56 @@ import org.slf4j.LoggerFactory;
  *
  * @see HttpBuilder
  */
-public class Http {
+public class Http implements Closeable {
     /** Default logger instance to use. */
     static Logger LOG = LoggerFactory.getLogger(Http.class);
 
     /**
      * The {@link HttpClientBuilder} used to instantiate a new
      * {@link CloseableHttpClient} for every call to
-     * {@link #execute(HttpRequestBase)}.
+     * {@link #execute(HttpRequestBase)} (unless pooled).
      */
     private final HttpClientBuilder clientBuilder;
+    /**
+     * A {@link CloseableHttpClient} with a connection pool that is shared by
+     * all calls to {@link #execute(HttpRequestBase)}. <code>null</code> unless
+     * the {@link Http} client was built with
+     * {@link HttpBuilder#connectionPool(int, int)}.
+     */
+    private final CloseableHttpClient pooledClient;
     /** Logger instance to log to. */
     private final Logger logger;
 
+    /**
+     * Creates a {@link ConcurrencyLimiter} for every new destination that a
+     * request is sent to. May be <code>null</code>, in which case the number
+     * of concurrent requests is not limited.
+     */
+    private final Supplier<ConcurrencyLimiter> concurrencyLimiterFactory;
+    /** {@link ConcurrencyLimiter}s keyed by destination. */
+    private final Map<String, ConcurrencyLimiter> concurrencyLimiters;
+    /**
+     * Limits the rate of requests per destination (or route). May be
+     * <code>null</code>, in which case the request rate is not limited.
+     */
+    private final TokenBucketRateLimiter rateLimiter;
+
     Http(HttpClientBuilder clientBuilder) {
         this(clientBuilder, LOG);
     }
 
     Http(HttpClientBuilder clientBuilder, Logger logger) {
+        this(clientBuilder, logger, null, null, false);
+    }
+
+    Http(HttpClientBuilder clientBuilder, Logger logger, Supplier<ConcurrencyLimiter> concurrencyLimiterFactory,
+            TokenBucketRateLimiter rateLimiter, boolean pooled) {
         this.clientBuilder = clientBuilder;
+        this.pooledClient = pooled ? clientBuilder.build() : null;
         this.logger = logger;
+        this.concurrencyLimiterFactory = concurrencyLimiterFactory;
+        this.concurrencyLimiters = new ConcurrentHashMap<>();
+        this.rateLimiter = rateLimiter;
     }
 
     /**
@@ -60,9 +106,21 @@ public class Http {
      * response code is not a {@code 2XX} one, a {@link HttpResponseException}
      * is raised.
      * <p/>
-     * On return the response has been fully consumed, the connection is closed,
-     * and any system resources used for connection establishment have been
-     * released.
+     * If a concurrency limit has been configured (see
+     * {@link HttpBuilder#concurrencyLimiter}), a permit for the request's
+     * destination is acquired before the request is sent. Should no permit be
+     * available in time, a
+     * {@link com.elastisys.scale.commons.net.limiter.LimitExceededException}
+     * (an {@link IOException}) is raised.
+     * <p/>
+     * Similarly, if a rate limit has been configured (see
+     * {@link HttpBuilder#rateLimiter}), the request is first admitted by the
+     * rate limiter. Should a {@code 429} or {@code 503} response carry a
+     * {@code Retry-After} header, the rate limiter is paused accordingly.
+     * <p/>
+     * On return the response has been fully consumed, the connection is closed
+     * (or, for a pooled client, returned to the connection pool), and any
+     * system resources used for connection establishment have been released.
      *
      * @param request
      *            The request to send.
@@ -74,8 +132,135 @@ public class Http {
      *             On failure to send the request.
      */
     public HttpRequestResponse execute(HttpRequestBase request) throws HttpResponseException, IOException {
+        if (this.rateLimiter != null) {
+            awaitRateLimit(request);
+        }
+        Permit permit = acquirePermit(request);
+
+        HttpRequestResponse response;
+        try {
+            response = send(request);
+        } catch (IOException | RuntimeException e) {
+            release(permit, true);
+            throw e;
+        }
+
+        int responseCode = response.getStatusCode();
+        release(permit, indicatesOverload(responseCode));
+        if (this.rateLimiter != null && (responseCode == 429 || responseCode == 503)) {
+            Long retryAfter = retryAfterMillis(response.getHeaders(), System.currentTimeMillis());
+            if (retryAfter != null) {
+                this.logger.debug("pausing requests to {} for {} ms as requested by Retry-After header",
+                        request.getURI(), retryAfter);
+                this.rateLimiter.pause(request.getURI(), retryAfter, MILLISECONDS);
+            }
+        }
+
+        // raise error if response code is not 2XX
+        if (responseCode < 200 || responseCode > 299) {
+            throw new HttpResponseException(responseCode,
+                    format("error response received from remote endpoint " + "on request (%s): %s:\n%s", request,
+                            responseCode, response.getResponseBody()));
+        }
+        return response;
+    }
+
+    /**
+     * Returns the {@link ConcurrencyLimiter} used for requests to a given
+     * destination ({@code <scheme>://<host>:<port>}). Returns <code>null</code>
+     * if no concurrency limit has been configured for this {@link Http}
+     * client.
+     *
+     * @param destination
+     *            A destination on the form {@code <scheme>://<host>:<port>}.
+     * @return
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter(String destination) {
+        if (this.concurrencyLimiterFactory == null) {
+            return null;
+        }
+        return this.concurrencyLimiters.computeIfAbsent(destination, d -> this.concurrencyLimiterFactory.get());
+    }
+
+    /**
+     * Returns the {@link TokenBucketRateLimiter} used by this {@link Http}
+     * client. Returns <code>null</code> if no rate limit has been configured.
+     *
+     * @return
+     */
+    public TokenBucketRateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
 
-        CloseableHttpClient client = this.clientBuilder.build();
+    /**
+     * Waits for a request to be admitted by the {@link TokenBucketRateLimiter}.
+     *
+     * @param request
+     * @throws IOException
+     *             If the request could not be admitted (in time).
+     */
+    private void awaitRateLimit(HttpRequestBase request) throws IOException {
+        try {
+            this.rateLimiter.acquire(request.getURI());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(format("interrupted while waiting to send request (%s)", request), e);
+        }
+    }
+
+    /**
+     * Acquires a permit for a request from the {@link ConcurrencyLimiter} of
+     * its destination. Returns <code>null</code> if no concurrency limit has
+     * been configured.
+     *
+     * @param request
+     * @return
+     * @throws IOException
+     *             If no permit could be acquired (in time).
+     */
+    private Permit acquirePermit(HttpRequestBase request) throws IOException {
+        if (this.concurrencyLimiterFactory == null) {
+            return null;
+        }
+        ConcurrencyLimiter limiter = getConcurrencyLimiter(UrlUtils.destination(request.getURI()));
+        try {
+            return limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(format("interrupted while waiting to send request (%s)", request), e);
+        }
+    }
+
+    /**
+     * Reports the outcome of a request to its {@link ConcurrencyLimiter}
+     * {@link Permit} (if any).
+     *
+     * @param permit
+     *            A {@link Permit}. May be <code>null</code>.
+     * @param dropped
+     *            <code>true</code> if the request failed in a way that
+     *            indicates that the destination is overloaded.
+     */
+    private static void release(Permit permit, boolean dropped) {
+        if (permit == null) {
+            return;
+        }
+        if (dropped) {
+            permit.dropped();
+        } else {
+            permit.success();
+        }
+    }
+
+    /**
+     * Sends a request and consumes the response.
+     *
+     * @param request
+     * @return
+     * @throws IOException
+     */
+    private HttpRequestResponse send(HttpRequestBase request) throws IOException {
+        CloseableHttpClient client = this.pooledClient != null ? this.pooledClient : this.clientBuilder.build();
         try {
             CloseableHttpResponse httpResponse = null;
             try {
@@ -87,19 +272,66 @@ public class Http {
                 }
                 throw new IOException(format("failed to send request (%s): %s", request, e.getMessage()), e);
             }
+            return new HttpRequestResponse(httpResponse);
+        } finally {
+            if (client != this.pooledClient) {
+                HttpClientUtils.closeQuietly(client);
+            }
+        }
+    }
+
+    /**
+     * Closes the connection pool of this {@link Http} client (if it was built
+     * with {@link HttpBuilder#connectionPool(int, int)}). A closed pooled
+     * client cannot be used to send further requests. For a non-pooled client
+     * this is a no-op.
+     */
+    @Override
+    public void close() {
+        if (this.pooledClient != null) {
+            HttpClientUtils.closeQuietly(this.pooledClient);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a response status code indicates that the
+     * remote endpoint is overloaded ({@code 429 Too Many Requests} or any
+     * {@code 5XX} code).
+     *
+     * @param statusCode
+     * @return
+     */
+    private static boolean indicatesOverload(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
 
-            HttpRequestResponse response = new HttpRequestResponse(httpResponse);
-            int responseCode = response.getStatusCode();
-            String responseBody = response.getResponseBody();
-            // raise error if response code is not 2XX
-            if (responseCode < 200 || responseCode > 299) {
-                throw new HttpResponseException(responseCode,
-                        format("error response received from remote endpoint " + "on request (%s): %s:\n%s", request,
-                                responseCode, responseBody));
+    /**
+     * Returns the delay (in milliseconds) requested by a {@code Retry-After}
+     * response header, which can either hold a number of seconds or a HTTP
+     * date. Returns <code>null</code> if there is no (valid)
+     * {@code Retry-After} header.
+     *
+     * @param headers
+     *            The response headers.
+     * @param nowMillis
+     *            The current time in milliseconds since the epoch.
+     * @return
+     */
+    static Long retryAfterMillis(Collection<Header> headers, long nowMillis) {
+        for (Header header : headers) {
+            if (!HttpHeaders.RETRY_AFTER.equalsIgnoreCase(header.getName()) || header.getValue() == null) {
+                continue;
+            }
+            String value = header.getValue().trim();
+            try {
+                return Math.max(0, SECONDS.toMillis(Long.parseLong(value)));
+            } catch (NumberFormatException e) {
+                Date date = DateUtils.parseDate(value);
+                if (date != null) {
+                    return Math.max(0, date.getTime() - nowMillis);
+                }
             }
-            return response;
-        } finally {
-            HttpClientUtils.closeQuietly(client);
         }
+        return null;
     }
 }
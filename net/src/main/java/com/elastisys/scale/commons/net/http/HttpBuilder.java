@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import javax.net.ssl.HostnameVerifier;
 
@@ -28,6 +29,8 @@ import org.apache.http.impl.client.LaxRedirectStrategy;
 import org.apache.http.message.BasicHeader;
 import org.slf4j.Logger;
 
+import com.elastisys.scale.commons.net.limiter.ConcurrencyLimiter;
+import com.elastisys.scale.commons.net.limiter.TokenBucketRateLimiter;
 import com.elastisys.scale.commons.net.ssl.BasicCredentials;
 import com.elastisys.scale.commons.net.ssl.CertificateCredentials;
 import com.elastisys.scale.commons.net.ssl.KeyStoreType;
@@ -80,6 +83,24 @@ public class HttpBuilder {
 
     private Logger logger;
 
+    /**
+     * Creates a {@link ConcurrencyLimiter} per destination for the {@link Http}
+     * instance being built. May be <code>null</code>.
+     */
+    private Supplier<ConcurrencyLimiter> concurrencyLimiterFactory;
+
+    /**
+     * Limits the request rate for the {@link Http} instance being built. May
+     * be <code>null</code>.
+     */
+    private TokenBucketRateLimiter rateLimiter;
+
+    /**
+     * <code>true</code> if the {@link Http} instance being built is to reuse a
+     * single client with a pool of persistent connections.
+     */
+    private boolean pooled;
+
     /**
      * Creates a new {@link HttpBuilder}. Without additional input, the builder
      * is set up to build {@link Http} instances with the following properties:
@@ -130,7 +151,8 @@ public class HttpBuilder {
         });
         this.clientBuilder.setDefaultHeaders(headers);
 
-        return new Http(this.clientBuilder, this.logger);
+        return new Http(this.clientBuilder, this.logger, this.concurrencyLimiterFactory, this.rateLimiter,
+                this.pooled);
     }
 
     /**
@@ -144,6 +166,93 @@ public class HttpBuilder {
         return this;
     }
 
+    /**
+     * Sets an adaptive limit on the number of concurrent (in-flight) requests
+     * that the {@link Http} client being built sends to each destination. The
+     * given factory is called to create a separate {@link ConcurrencyLimiter}
+     * for every destination ({@code <scheme>://<host>:<port>}) that a request
+     * is sent to. For example:
+     *
+     * <pre>
+     * Http.builder().concurrencyLimiter(() -> new ConcurrencyLimiter(new AimdLimit())).build();
+     * </pre>
+     *
+     * Connection failures, {@code 429} and {@code 5XX} responses are reported
+     * as drops to the {@link ConcurrencyLimiter}, which will then back off.
+     * Should no permit be available within the limiter's maximum wait time, a
+     * {@link com.elastisys.scale.commons.net.limiter.LimitExceededException} is
+     * raised by {@link Http#execute}.
+     *
+     * @param limiterFactory
+     *            Creates a {@link ConcurrencyLimiter} per destination.
+     * @return
+     */
+    public HttpBuilder concurrencyLimiter(Supplier<ConcurrencyLimiter> limiterFactory) {
+        checkArgument(limiterFactory != null, "concurrencyLimiter: limiterFactory cannot be null");
+        this.concurrencyLimiterFactory = limiterFactory;
+        return this;
+    }
+
+    /**
+     * Sets a {@link TokenBucketRateLimiter} that limits the rate of requests
+     * that the {@link Http} client being built sends per destination (or per
+     * route). For example, to allow 10 requests per second (with bursts of up
+     * to 20 requests) to every destination, but only 1 request per second to
+     * a particular API route:
+     *
+     * <pre>
+     * TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 20, RateLimitPolicy.WAIT, 30, SECONDS)
+     *         .route("https://api.example.com/v1/servers", 1, 1);
+     * Http.builder().rateLimiter(limiter).build();
+     * </pre>
+     *
+     * Requests that exceed the rate limit either wait or fail with a
+     * {@link com.elastisys.scale.commons.net.limiter.LimitExceededException},
+     * depending on the limiter's
+     * {@link com.elastisys.scale.commons.net.limiter.RateLimitPolicy}. When a
+     * destination responds {@code 429} or {@code 503} with a
+     * {@code Retry-After} header, the limiter holds back subsequent requests
+     * until the requested time has passed.
+     *
+     * @param rateLimiter
+     *            The rate limiter to use.
+     * @return
+     */
+    public HttpBuilder rateLimiter(TokenBucketRateLimiter rateLimiter) {
+        checkArgument(rateLimiter != null, "rateLimiter: rateLimiter cannot be null");
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    /**
+     * Makes the {@link Http} client being built reuse a single underlying
+     * client, backed by a pool of persistent connections, for all requests
+     * instead of setting up a new client (and SSL context) for every request.
+     * This saves a connection (and TLS handshake) per request when the same
+     * destinations are called repeatedly.
+     * <p/>
+     * A pooled {@link Http} client holds on to its connections until
+     * {@link Http#close()} is called.
+     *
+     * @param maxTotal
+     *            The maximum number of pooled connections in total.
+     * @param maxPerRoute
+     *            The maximum number of pooled connections per route
+     *            (destination).
+     * @return
+     */
+    public HttpBuilder connectionPool(int maxTotal, int maxPerRoute) {
+        checkArgument(maxTotal > 0, "connectionPool: maxTotal must be positive");
+        checkArgument(maxPerRoute > 0, "connectionPool: maxPerRoute must be positive");
+        this.clientBuilder.setMaxConnTotal(maxTotal);
+        this.clientBuilder.setMaxConnPerRoute(maxPerRoute);
+        // all requests are sent with the same credentials, so connections
+        // established with a client certificate can be reused by any request
+        this.clientBuilder.disableConnectionState();
+        this.pooled = true;
+        return this;
+    }
+
     /**
      * The default timeout in milliseconds until a connection is established. A
      * timeout value of zero is interpreted as an infinite timeout. A negative
@@ -1,5 +1,8 @@
 package com.elastisys.scale.commons.net.http.client;
 
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Objects;
 import java.util.Optional;
@@ -21,7 +24,7 @@ import com.elastisys.scale.commons.net.ssl.CertificateCredentials;
  * <p/>
  * This class is thread-safe.
  */
-public class AuthenticatedHttpClient {
+public class AuthenticatedHttpClient implements Closeable {
     private static Logger LOG = LoggerFactory.getLogger(AuthenticatedHttpClient.class);
 
     /**
@@ -114,7 +117,45 @@ public class AuthenticatedHttpClient {
      */
     public AuthenticatedHttpClient(Logger logger, Optional<BasicCredentials> basicCredentials,
             Optional<CertificateCredentials> certificateCredentials, int connectTimeout, int socketTimeout) {
+        this(logger, basicCredentials, certificateCredentials, connectTimeout, socketTimeout, 0);
+    }
+
+    /**
+     * Constructs a {@link AuthenticatedHttpClient} that (if
+     * {@code maxConnections} is positive) keeps a pool of persistent
+     * connections which are reused across requests. The SSL context and key
+     * stores are only set up once, on construction. A pooled
+     * {@link AuthenticatedHttpClient} should be {@link #close()}d when no
+     * longer needed.
+     *
+     * @param logger
+     *            The {@link Logger} instance to make use of.
+     * @param basicCredentials
+     *            Username/password credentials for basic authentication.
+     * @param certificateCredentials
+     *            Certificate credentials for certificate-based client
+     *            authentication.
+     * @param connectTimeout
+     *            The timeout in milliseconds until a connection is established.
+     *            A timeout value of zero is interpreted as an infinite timeout.
+     *            A negative value is interpreted as undefined (system default).
+     * @param socketTimeout
+     *            The socket timeout ({@code SO_TIMEOUT}) in milliseconds, which
+     *            is the timeout for waiting for data or, put differently, a
+     *            maximum period inactivity between two consecutive data
+     *            packets). A timeout value of zero is interpreted as an
+     *            infinite timeout. A negative value is interpreted as undefined
+     *            (system default).
+     * @param maxConnections
+     *            The maximum number of pooled connections (per destination as
+     *            well as in total). A value of zero means that connections are
+     *            not pooled, but set up anew for every request.
+     */
+    public AuthenticatedHttpClient(Logger logger, Optional<BasicCredentials> basicCredentials,
+            Optional<CertificateCredentials> certificateCredentials, int connectTimeout, int socketTimeout,
+            int maxConnections) {
         Objects.requireNonNull(logger, "null logger provided");
+        checkArgument(maxConnections >= 0, "maxConnections cannot be negative");
         HttpBuilder httpBuilder = Http.builder().logger(logger);
         if (basicCredentials.isPresent()) {
             httpBuilder.clientBasicAuth(basicCredentials.get());
@@ -124,6 +165,9 @@ public class AuthenticatedHttpClient {
         }
         httpBuilder.connectionTimeout(connectTimeout);
         httpBuilder.socketTimeout(socketTimeout);
+        if (maxConnections > 0) {
+            httpBuilder.connectionPool(maxConnections, maxConnections);
+        }
         this.http = httpBuilder.build();
     }
 
@@ -150,4 +194,13 @@ public class AuthenticatedHttpClient {
     public HttpRequestResponse execute(HttpRequestBase request) throws HttpResponseException, IOException {
         return this.http.execute(request);
     }
+
+    /**
+     * Releases any pooled connections held by this
+     * {@link AuthenticatedHttpClient}.
+     */
+    @Override
+    public void close() {
+        this.http.close();
+    }
 }
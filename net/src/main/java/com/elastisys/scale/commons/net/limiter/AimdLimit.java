@@ -0,0 +1,99 @@
+package com.elastisys.scale.commons.net.limiter;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An additive-increase/multiplicative-decrease (AIMD) {@link LimitAlgorithm}.
+ * The limit is increased by one for every successful request (as long as the
+ * limit is actually being utilized) and is multiplied by a back-off ratio
+ * whenever a request is dropped or exceeds a given latency threshold.
+ *
+ * @see ConcurrencyLimiter
+ */
+public class AimdLimit implements LimitAlgorithm {
+    /** Default initial limit. */
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    /** Default minimum limit. */
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    /** Default maximum limit. */
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    /** Default factor by which the limit is reduced on drops. */
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    /**
+     * Default latency above which a request is considered dropped: 5 seconds.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long timeoutNanos;
+
+    /**
+     * Creates an {@link AimdLimit} with default settings.
+     */
+    public AimdLimit() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_BACKOFF_RATIO,
+                DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates an {@link AimdLimit}.
+     *
+     * @param initialLimit
+     *            The initial limit.
+     * @param minLimit
+     *            The lowest limit that the algorithm will back off to. Must be
+     *            at least {@code 1}.
+     * @param maxLimit
+     *            The highest limit that the algorithm will grow to.
+     * @param backoffRatio
+     *            The factor by which the limit is multiplied on drops. Must be
+     *            in the range {@code [0.5, 1.0)}.
+     * @param timeout
+     *            Requests with a latency above this threshold are considered
+     *            dropped.
+     * @param unit
+     *            The unit of the timeout.
+     */
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long timeout,
+            TimeUnit unit) {
+        checkArgument(minLimit >= 1, "aimdLimit: minLimit must be >= 1");
+        checkArgument(maxLimit >= minLimit, "aimdLimit: maxLimit must be >= minLimit");
+        checkArgument(minLimit <= initialLimit && initialLimit <= maxLimit,
+                "aimdLimit: initialLimit must be in range [minLimit, maxLimit]");
+        checkArgument(0.5 <= backoffRatio && backoffRatio < 1.0, "aimdLimit: backoffRatio must be in range [0.5, 1.0)");
+        checkArgument(timeout > 0, "aimdLimit: timeout must be positive");
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    @Override
+    public int getInitialLimit() {
+        return this.initialLimit;
+    }
+
+    @Override
+    public int update(int currentLimit, long rttNanos, int inFlight, boolean dropped) {
+        int limit = currentLimit;
+        if (dropped || rttNanos > this.timeoutNanos) {
+            limit = (int) (currentLimit * this.backoffRatio);
+        } else if (inFlight * 2 >= currentLimit) {
+            // only grow the limit if it is actually being utilized
+            limit = currentLimit + 1;
+        }
+        return Math.min(this.maxLimit, Math.max(this.minLimit, limit));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AimdLimit{min: %d, max: %d, backoffRatio: %.2f}", this.minLimit, this.maxLimit,
+                this.backoffRatio);
+    }
+}
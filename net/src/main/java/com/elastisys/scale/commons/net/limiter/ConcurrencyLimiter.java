@@ -0,0 +1,229 @@
+package com.elastisys.scale.commons.net.limiter;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of concurrent (in-flight) requests to a single
+ * destination. Rather than relying on a static limit, the limit is
+ * continuously adjusted by a {@link LimitAlgorithm} from the measured latency
+ * and error rate of completed requests, in order to keep throughput high
+ * without overloading the destination.
+ * <p/>
+ * Callers {@link #acquire()} a {@link Permit} before sending a request and
+ * report the outcome through the {@link Permit} when the request completes:
+ *
+ * <pre>
+ * Permit permit = limiter.acquire();
+ * try {
+ *     send(request);
+ *     permit.success();
+ * } catch (IOException e) {
+ *     permit.dropped();
+ *     throw e;
+ * }
+ * </pre>
+ *
+ * A {@link ConcurrencyLimiter} can be plugged into a
+ * {@link com.elastisys.scale.commons.net.http.Http} client (see
+ * {@link com.elastisys.scale.commons.net.http.HttpBuilder#concurrencyLimiter})
+ * and into a {@link com.elastisys.scale.commons.net.retryable.Retryable} (see
+ * {@link com.elastisys.scale.commons.net.retryable.Retryable#concurrencyLimiter}).
+ * <p/>
+ * This class is thread-safe.
+ *
+ * @see AimdLimit
+ * @see GradientLimit
+ */
+public class ConcurrencyLimiter {
+    /** Default maximum time to wait for a permit: 10 seconds. */
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 10000;
+
+    /** Decides on the limit from the outcome of completed requests. */
+    private final LimitAlgorithm algorithm;
+    /** Maximum time (in nanoseconds) to wait for a permit. */
+    private final long maxWaitNanos;
+
+    /** Protects {@link #limit} and {@link #inFlight}. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Signalled whenever a permit may have become available. */
+    private final Condition permitAvailable = this.lock.newCondition();
+
+    /** The current limit of concurrent requests. */
+    private volatile int limit;
+    /** The number of permits currently handed out. */
+    private volatile int inFlight;
+
+    /**
+     * Creates a {@link ConcurrencyLimiter} that waits up to
+     * {@link #DEFAULT_MAX_WAIT_MILLIS} for a permit.
+     *
+     * @param algorithm
+     *            The {@link LimitAlgorithm} that adjusts the limit.
+     */
+    public ConcurrencyLimiter(LimitAlgorithm algorithm) {
+        this(algorithm, DEFAULT_MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a {@link ConcurrencyLimiter}.
+     *
+     * @param algorithm
+     *            The {@link LimitAlgorithm} that adjusts the limit.
+     * @param maxWait
+     *            The maximum time that {@link #acquire()} waits for a permit.
+     *            {@code 0} means that {@link #acquire()} fails immediately if
+     *            the limit has been reached.
+     * @param unit
+     *            The unit of the maximum wait time.
+     */
+    public ConcurrencyLimiter(LimitAlgorithm algorithm, long maxWait, TimeUnit unit) {
+        checkArgument(algorithm != null, "concurrencyLimiter: no algorithm given");
+        checkArgument(maxWait >= 0, "concurrencyLimiter: maxWait cannot be negative");
+        checkArgument(unit != null, "concurrencyLimiter: no time unit given");
+        checkArgument(algorithm.getInitialLimit() >= 1, "concurrencyLimiter: initial limit must be >= 1");
+        this.algorithm = algorithm;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.limit = algorithm.getInitialLimit();
+        this.inFlight = 0;
+    }
+
+    /**
+     * Acquires a {@link Permit} to send a request, waiting (up to the
+     * configured maximum wait time) for the number of in-flight requests to
+     * drop below the limit.
+     *
+     * @return A {@link Permit} that must be completed when the request has
+     *         finished.
+     * @throws LimitExceededException
+     *             If no permit could be acquired within the maximum wait time.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting for a permit.
+     */
+    public Permit acquire() throws LimitExceededException, InterruptedException {
+        long remainingNanos = this.maxWaitNanos;
+        this.lock.lockInterruptibly();
+        try {
+            while (this.inFlight >= this.limit) {
+                if (remainingNanos <= 0) {
+                    throw new LimitExceededException(String.format(
+                            "concurrency limit exceeded: %d requests in flight (limit: %d)", this.inFlight, this.limit));
+                }
+                remainingNanos = this.permitAvailable.awaitNanos(remainingNanos);
+            }
+            this.inFlight++;
+            return new Permit(this.inFlight);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current limit of concurrent requests.
+     *
+     * @return
+     */
+    public int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * Returns the number of requests currently in flight.
+     *
+     * @return
+     */
+    public int getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Releases a {@link Permit}, optionally feeding its outcome to the
+     * {@link LimitAlgorithm}.
+     *
+     * @param permit
+     * @param sample
+     *            <code>true</code> if the outcome should be used to update the
+     *            limit.
+     * @param dropped
+     *            <code>true</code> if the request was dropped.
+     */
+    private void release(Permit permit, boolean sample, boolean dropped) {
+        long rttNanos = System.nanoTime() - permit.startNanos;
+        this.lock.lock();
+        try {
+            this.inFlight--;
+            if (sample) {
+                this.limit = Math.max(1, this.algorithm.update(this.limit, rttNanos, permit.inFlight, dropped));
+            }
+            if (this.inFlight < this.limit) {
+                this.permitAvailable.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConcurrencyLimiter{limit: %d, inFlight: %d, algorithm: %s}", this.limit, this.inFlight,
+                this.algorithm);
+    }
+
+    /**
+     * A permit to send a single request, handed out by
+     * {@link ConcurrencyLimiter#acquire()}. Exactly one of {@link #success()},
+     * {@link #dropped()} or {@link #ignore()} is to be called when the request
+     * has completed. Subsequent calls have no effect.
+     */
+    public class Permit {
+        /** The time at which the permit was acquired. */
+        private final long startNanos;
+        /** The number of in-flight requests when the permit was acquired. */
+        private final int inFlight;
+        /** Set when the permit has been released. */
+        private boolean released;
+
+        private Permit(int inFlight) {
+            this.startNanos = System.nanoTime();
+            this.inFlight = inFlight;
+            this.released = false;
+        }
+
+        /**
+         * Reports that the request completed successfully. The measured
+         * latency is used to update the limit.
+         */
+        public void success() {
+            release(true, false);
+        }
+
+        /**
+         * Reports that the request failed in a way that indicates overload at
+         * the destination (such as a timeout, a connection failure or a
+         * {@code 503} response). This causes the limit to be reduced.
+         */
+        public void dropped() {
+            release(true, true);
+        }
+
+        /**
+         * Releases the permit without affecting the limit. Used when the
+         * outcome of the request says nothing about the load on the
+         * destination (for example, a client-side error).
+         */
+        public void ignore() {
+            release(false, false);
+        }
+
+        private synchronized void release(boolean sample, boolean dropped) {
+            if (this.released) {
+                return;
+            }
+            this.released = true;
+            ConcurrencyLimiter.this.release(this, sample, dropped);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.elastisys.scale.commons.net.limiter;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+/**
+ * A latency-gradient (Vegas-style) {@link LimitAlgorithm}. The limit is
+ * adjusted according to the ratio between the lowest observed (no-load)
+ * latency and a smoothed estimate of the current latency:
+ *
+ * <pre>
+ * gradient = max(0.5, min(1.0, minRtt / smoothedRtt))
+ * newLimit = limit * gradient + queueSize
+ * limit = (1 - smoothing) * limit + smoothing * newLimit
+ * </pre>
+ *
+ * where {@code queueSize} (the square root of the current limit) allows the
+ * limit to grow while latencies stay close to the no-load latency. As queueing
+ * builds up at the destination, latencies grow, the gradient drops below one
+ * and the limit shrinks. Dropped requests cut the limit in half.
+ * <p/>
+ * The minimum latency is periodically reset (every {@code probeInterval}
+ * samples) to let the algorithm adapt to permanent latency changes at the
+ * destination.
+ *
+ * @see ConcurrencyLimiter
+ */
+public class GradientLimit implements LimitAlgorithm {
+    /** Default initial limit. */
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    /** Default minimum limit. */
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    /** Default maximum limit. */
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    /** Default weight of new samples in the smoothed latency and limit. */
+    public static final double DEFAULT_SMOOTHING = 0.2;
+    /** Default number of samples after which the minimum latency is reset. */
+    public static final int DEFAULT_PROBE_INTERVAL = 1000;
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final int probeInterval;
+
+    /** Lowest latency observed since the last probe (reset). */
+    private long minRttNanos = Long.MAX_VALUE;
+    /** Exponentially smoothed latency. */
+    private double smoothedRttNanos = 0.0;
+    /** Samples since the minimum latency was last reset. */
+    private int samples = 0;
+    /** The limit with decimals retained between updates. */
+    private double estimatedLimit;
+
+    /**
+     * Creates a {@link GradientLimit} with default settings.
+     */
+    public GradientLimit() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_SMOOTHING, DEFAULT_PROBE_INTERVAL);
+    }
+
+    /**
+     * Creates a {@link GradientLimit}.
+     *
+     * @param initialLimit
+     *            The initial limit.
+     * @param minLimit
+     *            The lowest limit that the algorithm will back off to. Must be
+     *            at least {@code 1}.
+     * @param maxLimit
+     *            The highest limit that the algorithm will grow to.
+     * @param smoothing
+     *            The weight (in the range {@code (0.0, 1.0]}) of new samples in
+     *            the smoothed latency and limit estimates.
+     * @param probeInterval
+     *            The number of samples after which the minimum latency is
+     *            reset.
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, int probeInterval) {
+        checkArgument(minLimit >= 1, "gradientLimit: minLimit must be >= 1");
+        checkArgument(maxLimit >= minLimit, "gradientLimit: maxLimit must be >= minLimit");
+        checkArgument(minLimit <= initialLimit && initialLimit <= maxLimit,
+                "gradientLimit: initialLimit must be in range [minLimit, maxLimit]");
+        checkArgument(0.0 < smoothing && smoothing <= 1.0, "gradientLimit: smoothing must be in range (0.0, 1.0]");
+        checkArgument(probeInterval > 0, "gradientLimit: probeInterval must be positive");
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.probeInterval = probeInterval;
+        this.estimatedLimit = initialLimit;
+    }
+
+    @Override
+    public int getInitialLimit() {
+        return this.initialLimit;
+    }
+
+    @Override
+    public int update(int currentLimit, long rttNanos, int inFlight, boolean dropped) {
+        if (dropped) {
+            this.estimatedLimit = clamp(currentLimit / 2.0);
+            return (int) this.estimatedLimit;
+        }
+
+        if (++this.samples >= this.probeInterval) {
+            this.samples = 0;
+            this.minRttNanos = Long.MAX_VALUE;
+            this.smoothedRttNanos = 0.0;
+        }
+        long rtt = Math.max(1, rttNanos);
+        this.minRttNanos = Math.min(this.minRttNanos, rtt);
+        this.smoothedRttNanos = this.smoothedRttNanos == 0.0 ? rtt
+                : (1.0 - this.smoothing) * this.smoothedRttNanos + this.smoothing * rtt;
+
+        // don't grow the limit unless it is actually being utilized
+        if (inFlight * 2 < currentLimit) {
+            return currentLimit;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, this.minRttNanos / this.smoothedRttNanos));
+        double queueSize = Math.sqrt(currentLimit);
+        double newLimit = this.estimatedLimit * gradient + queueSize;
+        this.estimatedLimit = clamp((1.0 - this.smoothing) * this.estimatedLimit + this.smoothing * newLimit);
+        return (int) this.estimatedLimit;
+    }
+
+    private double clamp(double limit) {
+        return Math.min(this.maxLimit, Math.max(this.minLimit, limit));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GradientLimit{min: %d, max: %d, smoothing: %.2f}", this.minLimit, this.maxLimit,
+                this.smoothing);
+    }
+}
@@ -0,0 +1,43 @@
+package com.elastisys.scale.commons.net.limiter;
+
+/**
+ * An algorithm that, given the outcome of a completed request, decides on the
+ * new concurrency limit (the number of allowed in-flight requests) of a
+ * {@link ConcurrencyLimiter}.
+ * <p/>
+ * Implementations are only ever called while holding the lock of the
+ * {@link ConcurrencyLimiter} that they belong to and therefore need not be
+ * thread-safe, but an instance must not be shared between limiters.
+ *
+ * @see AimdLimit
+ * @see GradientLimit
+ * @see ConcurrencyLimiter
+ */
+public interface LimitAlgorithm {
+
+    /**
+     * Returns the initial concurrency limit.
+     *
+     * @return
+     */
+    int getInitialLimit();
+
+    /**
+     * Calculates a new concurrency limit from the outcome of a completed
+     * request.
+     *
+     * @param currentLimit
+     *            The current concurrency limit.
+     * @param rttNanos
+     *            The round-trip time (latency) of the request in nanoseconds.
+     * @param inFlight
+     *            The number of requests that were in-flight (including this
+     *            one) when the request was started.
+     * @param dropped
+     *            <code>true</code> if the request failed in a way that
+     *            indicates that the destination is overloaded (for example, a
+     *            timeout or a {@code 503} response).
+     * @return The new concurrency limit. Must be at least {@code 1}.
+     */
+    int update(int currentLimit, long rttNanos, int inFlight, boolean dropped);
+}
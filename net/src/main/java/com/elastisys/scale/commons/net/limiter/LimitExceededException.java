@@ -0,0 +1,24 @@
+package com.elastisys.scale.commons.net.limiter;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link ConcurrencyLimiter} or a {@link TokenBucketRateLimiter}
+ * when a request could not be admitted within the allowed time. Since the
+ * request was never sent, it is an {@link IOException}, which makes it safe to
+ * retry.
+ *
+ * @see ConcurrencyLimiter
+ * @see TokenBucketRateLimiter
+ */
+public class LimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+
+    public LimitExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,20 @@
+package com.elastisys.scale.commons.net.limiter;
+
+/**
+ * Decides what a {@link TokenBucketRateLimiter} does with a request that
+ * exceeds the rate limit.
+ *
+ * @see TokenBucketRateLimiter
+ */
+public enum RateLimitPolicy {
+    /**
+     * Wait (up to a maximum wait time) for the request to be admitted. Fail
+     * with a {@link LimitExceededException} if the request cannot be admitted
+     * within the maximum wait time.
+     */
+    WAIT,
+    /**
+     * Fail immediately with a {@link LimitExceededException}.
+     */
+    FAIL_FAST
+}
@@ -0,0 +1,182 @@
+package com.elastisys.scale.commons.net.limiter;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket that admits requests at a sustained rate of
+ * {@code permitsPerSecond}, while allowing bursts of up to {@code burst}
+ * requests. The bucket holds at most {@code burst} tokens, is refilled at
+ * {@code permitsPerSecond} and every admitted request consumes one token.
+ * <p/>
+ * Requests can reserve a token ahead of time (see {@link #reserve(long)}), in
+ * which case the caller is told how long to wait before sending its request.
+ * The bucket can also be paused (see {@link #pause(long, TimeUnit)}) for a
+ * period of time, for example when the destination has asked the client to
+ * back off via a {@code Retry-After} header.
+ * <p/>
+ * This class is thread-safe.
+ *
+ * @see TokenBucketRateLimiter
+ */
+public class TokenBucket {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /** The sustained rate at which the bucket is refilled. */
+    private final double permitsPerSecond;
+    /** The maximum number of tokens that the bucket can hold. */
+    private final int burst;
+    /** Source of the current time in nanoseconds. */
+    private final LongSupplier clock;
+
+    /**
+     * The number of tokens currently in the bucket. Goes negative when tokens
+     * have been reserved ahead of time.
+     */
+    private double tokens;
+    /**
+     * The time (in nanoseconds) up to which the bucket has been refilled. May
+     * lie in the future if the bucket has been paused.
+     */
+    private long refilledUntilNanos;
+
+    /**
+     * Creates a full {@link TokenBucket}.
+     *
+     * @param permitsPerSecond
+     *            The sustained rate at which requests are admitted. Must be
+     *            positive.
+     * @param burst
+     *            The maximum number of requests that can be admitted in a
+     *            burst. Must be at least {@code 1}.
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    /**
+     * Creates a full {@link TokenBucket} with a custom clock.
+     *
+     * @param permitsPerSecond
+     * @param burst
+     * @param clock
+     *            Source of the current time in nanoseconds.
+     */
+    TokenBucket(double permitsPerSecond, int burst, LongSupplier clock) {
+        checkArgument(permitsPerSecond > 0, "tokenBucket: permitsPerSecond must be positive");
+        checkArgument(burst >= 1, "tokenBucket: burst must be >= 1");
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.clock = clock;
+        this.tokens = burst;
+        this.refilledUntilNanos = clock.getAsLong();
+    }
+
+    /**
+     * Takes a token from the bucket if one is available right away.
+     *
+     * @return <code>true</code> if a token was taken, <code>false</code>
+     *         otherwise.
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * Reserves a token, provided that one will be available within a given
+     * maximum wait time. On success, the caller must wait for the returned
+     * time before sending its request.
+     *
+     * @param maxWaitNanos
+     *            The maximum time (in nanoseconds) that the caller is prepared
+     *            to wait for a token.
+     * @return The time (in nanoseconds) to wait before the reserved token may
+     *         be used, or {@code -1} if no token could be reserved within the
+     *         maximum wait time (in which case nothing was reserved).
+     */
+    public synchronized long reserve(long maxWaitNanos) {
+        long now = this.clock.getAsLong();
+        refill(now);
+
+        long waitNanos = Math.max(0, this.refilledUntilNanos - now);
+        if (this.tokens < 1.0) {
+            waitNanos += (long) Math.ceil((1.0 - this.tokens) / this.permitsPerSecond * NANOS_PER_SECOND);
+        }
+        if (waitNanos > maxWaitNanos) {
+            return -1;
+        }
+        this.tokens -= 1.0;
+        return waitNanos;
+    }
+
+    /**
+     * Pauses the bucket for a given period of time. No tokens are handed out
+     * before the pause has expired, after which the bucket is refilled from
+     * empty at its normal rate. Pausing an already paused bucket only extends
+     * the pause.
+     *
+     * @param delay
+     *            The duration of the pause.
+     * @param unit
+     *            The unit of the delay.
+     */
+    public synchronized void pause(long delay, TimeUnit unit) {
+        long now = this.clock.getAsLong();
+        refill(now);
+        long pausedUntil = now + unit.toNanos(delay);
+        if (pausedUntil > this.refilledUntilNanos) {
+            this.refilledUntilNanos = pausedUntil;
+            this.tokens = Math.min(this.tokens, 0.0);
+        }
+    }
+
+    /**
+     * Returns the number of tokens currently available in the bucket.
+     * Negative if tokens have been reserved ahead of time.
+     *
+     * @return
+     */
+    public synchronized double getAvailableTokens() {
+        refill(this.clock.getAsLong());
+        return this.tokens;
+    }
+
+    /**
+     * Returns the sustained rate at which requests are admitted.
+     *
+     * @return
+     */
+    public double getPermitsPerSecond() {
+        return this.permitsPerSecond;
+    }
+
+    /**
+     * Returns the maximum number of requests that can be admitted in a burst.
+     *
+     * @return
+     */
+    public int getBurst() {
+        return this.burst;
+    }
+
+    /**
+     * Adds the tokens accumulated up until a given point in time.
+     *
+     * @param now
+     */
+    private void refill(long now) {
+        if (now <= this.refilledUntilNanos) {
+            return;
+        }
+        double newTokens = (now - this.refilledUntilNanos) / NANOS_PER_SECOND * this.permitsPerSecond;
+        this.tokens = Math.min(this.burst, this.tokens + newTokens);
+        this.refilledUntilNanos = now;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TokenBucket{permitsPerSecond: %.2f, burst: %d}", this.permitsPerSecond, this.burst);
+    }
+}
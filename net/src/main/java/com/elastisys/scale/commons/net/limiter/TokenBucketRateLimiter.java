@@ -0,0 +1,240 @@
+package com.elastisys.scale.commons.net.limiter;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.elastisys.scale.commons.net.url.UrlUtils;
+
+/**
+ * Limits the rate of requests sent to remote destinations with one
+ * {@link TokenBucket} per host or per route.
+ * <p/>
+ * By default, every destination ({@code <scheme>://<host>:<port>}) gets its
+ * own {@link TokenBucket} with the default rate and burst. Stricter (or more
+ * generous) limits can be set for a given host or route by registering a URL
+ * prefix via {@link #route(String, double, int)}. A request is subjected to the
+ * bucket of the longest matching route prefix, or, if no route matches, to the
+ * default bucket of its destination.
+ * <p/>
+ * Requests that exceed the rate limit are handled according to the
+ * {@link RateLimitPolicy}: they either wait (on the calling thread) until they
+ * are admitted or fail fast with a {@link LimitExceededException}. When a
+ * destination responds with a {@code Retry-After} header, the bucket can be
+ * paused via {@link #pause(URI, long, TimeUnit)} so that no further requests
+ * are sent before the destination is ready to accept them.
+ * <p/>
+ * A {@link TokenBucketRateLimiter} can be plugged into a
+ * {@link com.elastisys.scale.commons.net.http.Http} client via
+ * {@link com.elastisys.scale.commons.net.http.HttpBuilder#rateLimiter}.
+ * <p/>
+ * This class is thread-safe.
+ *
+ * @see TokenBucket
+ */
+public class TokenBucketRateLimiter {
+
+    /** Default rate for destinations without an explicit route. */
+    private final double defaultPermitsPerSecond;
+    /** Default burst for destinations without an explicit route. */
+    private final int defaultBurst;
+    /** What to do with requests that exceed the rate limit. */
+    private final RateLimitPolicy policy;
+    /** Maximum time (in nanoseconds) to wait under {@link RateLimitPolicy#WAIT}. */
+    private final long maxWaitNanos;
+
+    /** Explicitly configured routes, ordered by descending prefix length. */
+    private final CopyOnWriteArrayList<Route> routes;
+    /** Buckets for destinations without an explicit route. */
+    private final Map<String, TokenBucket> destinationBuckets;
+
+    /**
+     * Creates a {@link TokenBucketRateLimiter}.
+     *
+     * @param defaultPermitsPerSecond
+     *            The default sustained rate of requests per destination.
+     * @param defaultBurst
+     *            The default number of requests that can be sent to a
+     *            destination in a burst.
+     * @param policy
+     *            What to do with requests that exceed the rate limit.
+     * @param maxWait
+     *            The maximum time that a request waits to be admitted under
+     *            {@link RateLimitPolicy#WAIT}. Ignored for
+     *            {@link RateLimitPolicy#FAIL_FAST}.
+     * @param unit
+     *            The unit of the maximum wait time.
+     */
+    public TokenBucketRateLimiter(double defaultPermitsPerSecond, int defaultBurst, RateLimitPolicy policy,
+            long maxWait, TimeUnit unit) {
+        checkArgument(defaultPermitsPerSecond > 0, "rateLimiter: defaultPermitsPerSecond must be positive");
+        checkArgument(defaultBurst >= 1, "rateLimiter: defaultBurst must be >= 1");
+        checkArgument(policy != null, "rateLimiter: no policy given");
+        checkArgument(maxWait >= 0, "rateLimiter: maxWait cannot be negative");
+        checkArgument(unit != null, "rateLimiter: no time unit given");
+        this.defaultPermitsPerSecond = defaultPermitsPerSecond;
+        this.defaultBurst = defaultBurst;
+        this.policy = policy;
+        this.maxWaitNanos = policy == RateLimitPolicy.FAIL_FAST ? 0 : unit.toNanos(maxWait);
+        this.routes = new CopyOnWriteArrayList<>();
+        this.destinationBuckets = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Sets a rate limit for all requests whose URL starts with a given prefix.
+     * The prefix can be a destination (such as
+     * {@code https://api.example.com}) or a route (such as
+     * {@code https://api.example.com/v1/servers}). All matching requests share
+     * a single {@link TokenBucket}.
+     * <p/>
+     * The prefix only matches at a boundary of the URL: the URL must either
+     * end after the prefix, or continue with a {@code /}, {@code ?} or
+     * {@code #} (or, for a destination without a port, a {@code :}). So a
+     * route for {@code https://api.example.com/v1} matches
+     * {@code https://api.example.com/v1/servers} but not
+     * {@code https://api.example.com/v10}, and a route for
+     * {@code https://api.example.com} does not match
+     * {@code https://api.example.com.other.org}.
+     *
+     * @param urlPrefix
+     *            The URL prefix of the route.
+     * @param permitsPerSecond
+     *            The sustained rate of requests on the route.
+     * @param burst
+     *            The number of requests that can be sent on the route in a
+     *            burst.
+     * @return
+     */
+    public TokenBucketRateLimiter route(String urlPrefix, double permitsPerSecond, int burst) {
+        checkArgument(urlPrefix != null && !urlPrefix.isEmpty(), "rateLimiter: route urlPrefix cannot be empty");
+        synchronized (this.routes) {
+            this.routes.removeIf(route -> route.urlPrefix.equals(urlPrefix));
+            int index = 0;
+            while (index < this.routes.size() && this.routes.get(index).urlPrefix.length() >= urlPrefix.length()) {
+                index++;
+            }
+            this.routes.add(index, new Route(urlPrefix, new TokenBucket(permitsPerSecond, burst)));
+        }
+        return this;
+    }
+
+    /**
+     * Waits for a request to a given {@link URI} to be admitted, according to
+     * the {@link RateLimitPolicy}.
+     *
+     * @param uri
+     *            The request {@link URI}.
+     * @throws LimitExceededException
+     *             If the request could not be admitted (in time).
+     * @throws InterruptedException
+     *             If interrupted while waiting to be admitted.
+     */
+    public void acquire(URI uri) throws LimitExceededException, InterruptedException {
+        TokenBucket bucket = getBucket(uri);
+        long waitNanos = bucket.reserve(this.maxWaitNanos);
+        if (waitNanos < 0) {
+            throw new LimitExceededException(String.format("rate limit exceeded for %s (%s)", uri, bucket));
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Pauses the bucket that requests to a given {@link URI} are subjected to.
+     * Intended to be called when the destination has responded with a
+     * {@code Retry-After} header.
+     *
+     * @param uri
+     *            The request {@link URI}.
+     * @param delay
+     *            The time to pause the bucket.
+     * @param unit
+     *            The unit of the delay.
+     */
+    public void pause(URI uri, long delay, TimeUnit unit) {
+        getBucket(uri).pause(delay, unit);
+    }
+
+    /**
+     * Returns the {@link TokenBucket} that requests to a given {@link URI} are
+     * subjected to.
+     *
+     * @param uri
+     * @return
+     */
+    public TokenBucket getBucket(URI uri) {
+        String url = uri == null ? "" : uri.toString();
+        for (Route route : this.routes) {
+            if (route.matches(url)) {
+                return route.bucket;
+            }
+        }
+        return this.destinationBuckets.computeIfAbsent(UrlUtils.destination(uri),
+                destination -> new TokenBucket(this.defaultPermitsPerSecond, this.defaultBurst));
+    }
+
+    /**
+     * Returns the {@link RateLimitPolicy} of this limiter.
+     *
+     * @return
+     */
+    public RateLimitPolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * A URL prefix with its own {@link TokenBucket}.
+     */
+    private static class Route {
+        private final String urlPrefix;
+        private final TokenBucket bucket;
+        /**
+         * <code>true</code> if the prefix ends with a separator, so that any
+         * URL starting with it is at a boundary.
+         */
+        private final boolean endsWithSeparator;
+        /**
+         * <code>true</code> if the prefix is a destination without path or
+         * port, which may be followed by a port.
+         */
+        private final boolean hostOnly;
+
+        public Route(String urlPrefix, TokenBucket bucket) {
+            this.urlPrefix = urlPrefix;
+            this.bucket = bucket;
+            this.endsWithSeparator = isSeparator(urlPrefix.charAt(urlPrefix.length() - 1));
+            int schemeEnd = urlPrefix.indexOf("://");
+            String authority = schemeEnd < 0 ? urlPrefix : urlPrefix.substring(schemeEnd + 3);
+            // the last ':' of an IPv6 address comes before its closing ']'
+            this.hostOnly = authority.indexOf('/') < 0 && authority.indexOf('?') < 0 && authority.indexOf('#') < 0
+                    && authority.lastIndexOf(':') <= authority.lastIndexOf(']');
+        }
+
+        /**
+         * Returns <code>true</code> if a URL starts with the prefix of this
+         * route, followed by a boundary.
+         *
+         * @param url
+         * @return
+         */
+        public boolean matches(String url) {
+            if (!url.startsWith(this.urlPrefix)) {
+                return false;
+            }
+            if (url.length() == this.urlPrefix.length() || this.endsWithSeparator) {
+                return true;
+            }
+            char next = url.charAt(this.urlPrefix.length());
+            return isSeparator(next) || next == ':' && this.hostOnly;
+        }
+
+        private static boolean isSeparator(char c) {
+            return c == '/' || c == '?' || c == '#';
+        }
+    }
+}
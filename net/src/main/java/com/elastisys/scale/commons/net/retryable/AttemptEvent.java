@@ -0,0 +1,133 @@
+package com.elastisys.scale.commons.net.retryable;
+
+import java.util.Objects;
+
+/**
+ * Describes a single attempt made by a {@link Retryable}. Passed to
+ * {@link AttemptListener}s on every attempt-related callback.
+ *
+ * @see AttemptListener
+ * @see Retryable
+ */
+public class AttemptEvent {
+    /** The name of the {@link Retryable} task. */
+    private final String taskName;
+    /** The attempt number (the first attempt is {@code 1}). */
+    private final int attempt;
+    /**
+     * The time in milliseconds since the first attempt was started, at the
+     * time the event was emitted.
+     */
+    private final long elapsedTimeMillis;
+    /**
+     * The delay in milliseconds that was introduced (by the
+     * {@link DelayStrategy}) prior to this attempt. {@code 0} for the first
+     * attempt.
+     */
+    private final long delayMillis;
+    /**
+     * The duration of the attempt in milliseconds. {@code 0} for attempts that
+     * have not yet completed.
+     */
+    private final long attemptDurationMillis;
+
+    /**
+     * Creates an {@link AttemptEvent}.
+     *
+     * @param taskName
+     *            The name of the {@link Retryable} task.
+     * @param attempt
+     *            The attempt number (the first attempt is {@code 1}).
+     * @param elapsedTimeMillis
+     *            The time in milliseconds since the first attempt was started,
+     *            at the time the event was emitted.
+     * @param delayMillis
+     *            The delay in milliseconds that was introduced prior to this
+     *            attempt. {@code 0} for the first attempt.
+     * @param attemptDurationMillis
+     *            The duration of the attempt in milliseconds. {@code 0} for
+     *            attempts that have not yet completed.
+     */
+    public AttemptEvent(String taskName, int attempt, long elapsedTimeMillis, long delayMillis,
+            long attemptDurationMillis) {
+        this.taskName = taskName;
+        this.attempt = attempt;
+        this.elapsedTimeMillis = elapsedTimeMillis;
+        this.delayMillis = delayMillis;
+        this.attemptDurationMillis = attemptDurationMillis;
+    }
+
+    /**
+     * Returns the name of the {@link Retryable} task.
+     *
+     * @return
+     */
+    public String getTaskName() {
+        return this.taskName;
+    }
+
+    /**
+     * Returns the attempt number (the first attempt is {@code 1}).
+     *
+     * @return
+     */
+    public int getAttempt() {
+        return this.attempt;
+    }
+
+    /**
+     * Returns the time in milliseconds since the first attempt was started, at
+     * the time the event was emitted.
+     *
+     * @return
+     */
+    public long getElapsedTimeMillis() {
+        return this.elapsedTimeMillis;
+    }
+
+    /**
+     * Returns the delay in milliseconds that was introduced (by the
+     * {@link DelayStrategy}) prior to this attempt. {@code 0} for the first
+     * attempt.
+     *
+     * @return
+     */
+    public long getDelayMillis() {
+        return this.delayMillis;
+    }
+
+    /**
+     * Returns the duration of the attempt in milliseconds. {@code 0} for
+     * attempts that have not yet completed.
+     *
+     * @return
+     */
+    public long getAttemptDurationMillis() {
+        return this.attemptDurationMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.taskName, this.attempt, this.elapsedTimeMillis, this.delayMillis,
+                this.attemptDurationMillis);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof AttemptEvent) {
+            AttemptEvent that = (AttemptEvent) obj;
+            return Objects.equals(this.taskName, that.taskName) //
+                    && this.attempt == that.attempt //
+                    && this.elapsedTimeMillis == that.elapsedTimeMillis //
+                    && this.delayMillis == that.delayMillis //
+                    && this.attemptDurationMillis == that.attemptDurationMillis;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{task: %s, attempt: %d, elapsed: %d ms, delay: %d ms, duration: %d ms}", this.taskName,
+                this.attempt, this.elapsedTimeMillis, this.delayMillis, this.attemptDurationMillis);
+    }
+}
@@ -0,0 +1,76 @@
+package com.elastisys.scale.commons.net.retryable;
+
+/**
+ * Receives callbacks on the progress of a {@link Retryable}. Can, for example,
+ * be used to collect metrics on retry rates (see {@link AttemptMetrics}).
+ * <p/>
+ * All callbacks are invoked on the thread that called the {@link Retryable}
+ * and should therefore return quickly. Any {@link RuntimeException} thrown by
+ * a callback is logged and otherwise ignored. All methods have empty default
+ * implementations, so implementations only need to override the callbacks
+ * they are interested in.
+ *
+ * @see Retryable#listener(AttemptListener)
+ * @see AttemptMetrics
+ */
+public interface AttemptListener {
+
+    /**
+     * Called just before an attempt is made.
+     *
+     * @param event
+     *            Describes the attempt.
+     */
+    default void attemptStarted(AttemptEvent event) {
+    }
+
+    /**
+     * Called when an attempt produced a response that was accepted as
+     * successful. No further attempts will be made.
+     *
+     * @param event
+     *            Describes the attempt.
+     * @param response
+     *            The response produced by the attempt.
+     */
+    default void attemptSucceeded(AttemptEvent event, Object response) {
+    }
+
+    /**
+     * Called when an attempt produced a response that was not accepted as
+     * successful.
+     *
+     * @param event
+     *            Describes the attempt.
+     * @param response
+     *            The response produced by the attempt.
+     */
+    default void attemptRejected(AttemptEvent event, Object response) {
+    }
+
+    /**
+     * Called when an attempt failed with an {@link Exception} (including an
+     * attempt that timed out). If the error isn't suppressed, no further
+     * attempts will be made.
+     *
+     * @param event
+     *            Describes the attempt.
+     * @param error
+     *            The error raised by the attempt.
+     */
+    default void attemptFailed(AttemptEvent event, Exception error) {
+    }
+
+    /**
+     * Called when the {@link StopStrategy} has decided to give up after an
+     * unsuccessful attempt.
+     *
+     * @param event
+     *            Describes the last attempt.
+     * @param lastResult
+     *            The result of the last attempt (a response or an
+     *            {@link Exception}).
+     */
+    default void gaveUp(AttemptEvent event, Object lastResult) {
+    }
+}
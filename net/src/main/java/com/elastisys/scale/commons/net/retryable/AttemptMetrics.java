@@ -0,0 +1,237 @@
+package com.elastisys.scale.commons.net.retryable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.elastisys.scale.commons.util.metrics.Histogram;
+
+/**
+ * An {@link AttemptListener} that collects counters and latency
+ * {@link Histogram}s per named {@link Retryable} task. Can be shared between
+ * any number of {@link Retryable}s (and threads). Statistics are grouped by
+ * task name, so {@link Retryable}s should be given distinct names (see
+ * {@link Retryable#name(String)}) to be told apart.
+ * <p/>
+ * The ratio of attempts to calls (see {@link TaskMetrics#getRetryRate()})
+ * indicates the retry amplification of a task.
+ *
+ * @see AttemptListener
+ * @see Retryable#listener(AttemptListener)
+ */
+public class AttemptMetrics implements AttemptListener {
+
+    /** Collected metrics keyed by task name. */
+    private final Map<String, TaskMetrics> tasks = new ConcurrentHashMap<>();
+
+    @Override
+    public void attemptStarted(AttemptEvent event) {
+        TaskMetrics metrics = metrics(event);
+        if (event.getAttempt() == 1) {
+            metrics.calls.increment();
+        } else {
+            metrics.retries.increment();
+        }
+        metrics.attempts.increment();
+        metrics.delay.record(event.getDelayMillis());
+    }
+
+    @Override
+    public void attemptSucceeded(AttemptEvent event, Object response) {
+        TaskMetrics metrics = metrics(event);
+        metrics.successes.increment();
+        metrics.attemptDuration.record(event.getAttemptDurationMillis());
+        metrics.attemptsPerCall.record(event.getAttempt());
+    }
+
+    @Override
+    public void attemptRejected(AttemptEvent event, Object response) {
+        TaskMetrics metrics = metrics(event);
+        metrics.rejections.increment();
+        metrics.attemptDuration.record(event.getAttemptDurationMillis());
+    }
+
+    @Override
+    public void attemptFailed(AttemptEvent event, Exception error) {
+        TaskMetrics metrics = metrics(event);
+        metrics.failures.increment();
+        metrics.attemptDuration.record(event.getAttemptDurationMillis());
+    }
+
+    @Override
+    public void gaveUp(AttemptEvent event, Object lastResult) {
+        TaskMetrics metrics = metrics(event);
+        metrics.gaveUps.increment();
+        metrics.attemptsPerCall.record(event.getAttempt());
+    }
+
+    /**
+     * Returns the metrics collected for a given task, or <code>null</code> if
+     * no attempts have been observed for the task.
+     *
+     * @param taskName
+     *            The task name.
+     * @return
+     */
+    public TaskMetrics getTaskMetrics(String taskName) {
+        return this.tasks.get(taskName);
+    }
+
+    /**
+     * Returns the metrics collected for all observed tasks, keyed by task
+     * name.
+     *
+     * @return
+     */
+    public Map<String, TaskMetrics> getTaskMetrics() {
+        return Collections.unmodifiableMap(this.tasks);
+    }
+
+    private TaskMetrics metrics(AttemptEvent event) {
+        return this.tasks.computeIfAbsent(event.getTaskName(), name -> new TaskMetrics());
+    }
+
+    /**
+     * Metrics collected for a single named task.
+     */
+    public static class TaskMetrics {
+        /** Number of times the {@link Retryable} was called. */
+        private final LongAdder calls = new LongAdder();
+        /** Total number of attempts. */
+        private final LongAdder attempts = new LongAdder();
+        /** Number of attempts beyond the first attempt of each call. */
+        private final LongAdder retries = new LongAdder();
+        /** Number of attempts that produced a successful response. */
+        private final LongAdder successes = new LongAdder();
+        /** Number of attempts that produced an unaccepted response. */
+        private final LongAdder rejections = new LongAdder();
+        /** Number of attempts that failed with an exception. */
+        private final LongAdder failures = new LongAdder();
+        /** Number of calls for which the {@link StopStrategy} gave up. */
+        private final LongAdder gaveUps = new LongAdder();
+        /** Duration of completed attempts (in milliseconds). */
+        private final Histogram attemptDuration = new Histogram();
+        /** Delay introduced before each attempt (in milliseconds). */
+        private final Histogram delay = new Histogram();
+        /** Number of attempts needed per succeeded (or given up) call. */
+        private final Histogram attemptsPerCall = new Histogram();
+
+        /**
+         * Returns the number of times the {@link Retryable} was called.
+         *
+         * @return
+         */
+        public long getCalls() {
+            return this.calls.sum();
+        }
+
+        /**
+         * Returns the total number of attempts made.
+         *
+         * @return
+         */
+        public long getAttempts() {
+            return this.attempts.sum();
+        }
+
+        /**
+         * Returns the number of attempts beyond the first attempt of each
+         * call.
+         *
+         * @return
+         */
+        public long getRetries() {
+            return this.retries.sum();
+        }
+
+        /**
+         * Returns the number of attempts that produced a successful response.
+         *
+         * @return
+         */
+        public long getSuccesses() {
+            return this.successes.sum();
+        }
+
+        /**
+         * Returns the number of attempts that produced a response that was not
+         * accepted as successful.
+         *
+         * @return
+         */
+        public long getRejections() {
+            return this.rejections.sum();
+        }
+
+        /**
+         * Returns the number of attempts that failed with an exception.
+         *
+         * @return
+         */
+        public long getFailures() {
+            return this.failures.sum();
+        }
+
+        /**
+         * Returns the number of calls for which the {@link StopStrategy} gave
+         * up.
+         *
+         * @return
+         */
+        public long getGaveUps() {
+            return this.gaveUps.sum();
+        }
+
+        /**
+         * Returns the average number of retries per call (that is, the number
+         * of attempts beyond the first per call). A value of {@code 0.0} means
+         * that every call succeeded on its first attempt.
+         *
+         * @return
+         */
+        public double getRetryRate() {
+            long calls = getCalls();
+            return calls == 0 ? 0.0 : (double) getRetries() / calls;
+        }
+
+        /**
+         * Returns a {@link Histogram} of the duration (in milliseconds) of
+         * completed attempts.
+         *
+         * @return
+         */
+        public Histogram getAttemptDuration() {
+            return this.attemptDuration;
+        }
+
+        /**
+         * Returns a {@link Histogram} of the delay (in milliseconds) introduced
+         * before each attempt.
+         *
+         * @return
+         */
+        public Histogram getDelay() {
+            return this.delay;
+        }
+
+        /**
+         * Returns a {@link Histogram} of the number of attempts needed per call
+         * that either succeeded or was given up.
+         *
+         * @return
+         */
+        public Histogram getAttemptsPerCall() {
+            return this.attemptsPerCall;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "{calls: %d, attempts: %d, successes: %d, rejections: %d, failures: %d, gaveUps: %d, "
+                            + "retryRate: %.2f, attemptDuration: %s, delay: %s, attemptsPerCall: %s}",
+                    getCalls(), getAttempts(), getSuccesses(), getRejections(), getFailures(), getGaveUps(),
+                    getRetryRate(), this.attemptDuration, this.delay, this.attemptsPerCall);
+        }
+    }
+}
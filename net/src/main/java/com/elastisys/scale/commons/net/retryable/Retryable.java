@@ -1,16 +1,31 @@
 package com.elastisys.scale.commons.net.retryable;
 
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.elastisys.scale.commons.net.limiter.ConcurrencyLimiter;
+import com.elastisys.scale.commons.net.limiter.ConcurrencyLimiter.Permit;
+import com.elastisys.scale.commons.net.limiter.LimitExceededException;
+
 /**
  * A {@link Callable} that repeatedly invokes a wrapped {@link Callable} until
  * it gives a successful response or until all retry attempts have been
@@ -33,13 +48,27 @@ import org.slf4j.LoggerFactory;
  * </pre>
  *
  * <p/>
+ * By default, each attempt runs on the calling thread and is allowed to run to
+ * completion. To put an upper bound on the time spent in a single attempt, an
+ * attempt timeout can be set via
+ * {@link #attemptTimeout(long, TimeUnit, ExecutorService)}. Each attempt is then
+ * submitted to the given executor and, should it not complete within the
+ * timeout, it is interrupted and counted as a failed attempt.
+ * <p/>
+ * {@link AttemptListener}s can be added via {@link #listener(AttemptListener)}
+ * to observe the progress of attempts, for example, to collect metrics on
+ * retry rates (see {@link AttemptMetrics}).
+ * <p/>
  * If no successful response has been received before the {@link StopStrategy}
  * decides to give up, a {@link GaveUpException} is raised, which includes the
  * last result/exception that resulted from the last attempt.
  * <p/>
  * On encountering an exception that isn't included in the collection of
  * suppressed exceptions, it will simply re-raise the exception and the
- * {@link Retryable} task will fail.
+ * {@link Retryable} task will fail. An {@link InterruptedException} is never
+ * suppressed: if the calling thread is interrupted during an attempt, the
+ * {@link Retryable} fails with the {@link InterruptedException} and the
+ * interrupt status of the calling thread is restored.
  *
  * @see DelayStrategies
  * @see StopStrategies
@@ -87,6 +116,29 @@ public class Retryable<R> implements Callable<R> {
      */
     private Set<Class<? extends Exception>> suppressedErrors;
 
+    /**
+     * The maximum time (in milliseconds) that a single attempt is allowed to
+     * run before being abandoned. Only enforced if an
+     * {@link #attemptExecutor} has been set.
+     */
+    private long attemptTimeoutMillis;
+
+    /**
+     * The {@link ExecutorService} on which attempts are run when an attempt
+     * timeout has been set. May be <code>null</code>, in which case attempts
+     * are run on the calling thread without any timeout.
+     */
+    private ExecutorService attemptExecutor;
+
+    /**
+     * Limits the number of concurrent attempts against the destination of the
+     * task. May be <code>null</code>, in which case attempts are not limited.
+     */
+    private ConcurrencyLimiter concurrencyLimiter;
+
+    /** {@link AttemptListener}s to notify of the progress of attempts. */
+    private final List<AttemptListener> listeners;
+
     /** The number of attempts that have been made thus far. */
     private int attempts;
     /** Tracks the elapsed time thus far. */
@@ -113,6 +165,13 @@ public class Retryable<R> implements Callable<R> {
         this.delayStrategy = DelayStrategies.noDelay();
         // default: no suppressed errors
         this.suppressedErrors = new HashSet<>();
+        // default: no attempt timeout, run attempts on calling thread
+        this.attemptTimeoutMillis = 0;
+        this.attemptExecutor = null;
+        // default: no concurrency limit
+        this.concurrencyLimiter = null;
+        // default: no attempt listeners
+        this.listeners = new CopyOnWriteArrayList<>();
     };
 
     /**
@@ -198,37 +257,245 @@ public class Retryable<R> implements Callable<R> {
         return this;
     }
 
+    /**
+     * Sets a timeout for individual attempts. Each attempt will be submitted
+     * to the given {@link ExecutorService} and, should it not complete within
+     * the given timeout, the attempt is interrupted and counted as a failed
+     * attempt (with a {@link TimeoutException} as its result). A timed out
+     * attempt is always retried, unless the {@link StopStrategy} decides to
+     * give up.
+     * <p/>
+     * Note that the {@link ExecutorService} is owned by the caller, and will
+     * not be shut down by the {@link Retryable}.
+     *
+     * @param timeout
+     *            The maximum duration of a single attempt. Must be positive.
+     * @param unit
+     *            The unit of the timeout.
+     * @param executor
+     *            The {@link ExecutorService} that attempts are to be run on.
+     * @return
+     */
+    public Retryable<R> attemptTimeout(long timeout, TimeUnit unit, ExecutorService executor) {
+        checkArgument(timeout > 0, "attemptTimeout: timeout must be positive");
+        checkArgument(unit != null, "attemptTimeout: no time unit given");
+        checkArgument(executor != null, "attemptTimeout: no executor given");
+        this.attemptTimeoutMillis = unit.toMillis(timeout);
+        this.attemptExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Sets a {@link ConcurrencyLimiter} that every attempt needs to acquire a
+     * permit from before calling the task. Attempts that fail with an
+     * exception (including timed out attempts) are reported as drops to the
+     * limiter, which will then back off, while attempts that produce a
+     * response (accepted or not) are reported as successes. The permit of a
+     * timed out attempt is held until its task has actually completed.
+     * <p/>
+     * The same {@link ConcurrencyLimiter} can be shared by all
+     * {@link Retryable}s that call the same destination. If no permit can be
+     * acquired within the limiter's maximum wait time, the attempt fails with a
+     * {@link LimitExceededException} (an {@link java.io.IOException}).
+     *
+     * @param limiter
+     *            The {@link ConcurrencyLimiter} to use.
+     * @return
+     */
+    public Retryable<R> concurrencyLimiter(ConcurrencyLimiter limiter) {
+        checkArgument(limiter != null, "concurrencyLimiter: limiter cannot be null");
+        this.concurrencyLimiter = limiter;
+        return this;
+    }
+
+    /**
+     * Adds an {@link AttemptListener} to be notified of the progress of this
+     * {@link Retryable} (attempts started, succeeded, failed, etc).
+     *
+     * @param listener
+     *            The listener to add.
+     * @return
+     */
+    public Retryable<R> listener(AttemptListener listener) {
+        checkArgument(listener != null, "listener: listener cannot be null");
+        this.listeners.add(listener);
+        return this;
+    }
+
     @Override
     public R call() throws Exception {
         this.attempts = 0;
         this.timer = StopWatch.createStarted();
         Object lastResult = null;
+        long delayMillis = 0;
         try {
             while (true) {
+                this.attempts++;
+                long attemptStart = this.timer.getTime(MILLISECONDS);
+                notifyListeners(attemptStart, delayMillis, AttemptListener::attemptStarted);
                 try {
-                    this.attempts++;
-                    R response = this.task.call();
+                    R response = attempt();
                     lastResult = response;
                     if (this.successfulResponse.test(response)) {
+                        if (!this.listeners.isEmpty()) {
+                            notifyListeners(attemptStart, delayMillis,
+                                    (listener, event) -> listener.attemptSucceeded(event, response));
+                        }
                         return response;
                     }
+                    if (!this.listeners.isEmpty()) {
+                        notifyListeners(attemptStart, delayMillis,
+                                (listener, event) -> listener.attemptRejected(event, response));
+                    }
+                } catch (AttemptTimedOut e) {
+                    // timed out attempts are always considered retryable
+                    TimeoutException timeout = (TimeoutException) e.getCause();
+                    lastResult = timeout;
+                    notifyListeners(attemptStart, delayMillis,
+                            (listener, event) -> listener.attemptFailed(event, timeout));
+                } catch (InterruptedException e) {
+                    // an interrupted caller is never retried, whatever errors
+                    // are suppressed
+                    Thread.currentThread().interrupt();
+                    lastResult = e;
+                    notifyListeners(attemptStart, delayMillis, (listener, event) -> listener.attemptFailed(event, e));
+                    throw e;
                 } catch (Exception e) {
                     lastResult = e;
+                    notifyListeners(attemptStart, delayMillis, (listener, event) -> listener.attemptFailed(event, e));
                     throwIfNotSuppressed(e);
                 } finally {
                     logResult(this.attempts, lastResult);
                 }
                 long elapsedTimeMillis = this.timer.getTime(MILLISECONDS);
                 if (this.stopStrategy.giveUp(this.attempts, elapsedTimeMillis)) {
+                    Object result = lastResult;
+                    notifyListeners(attemptStart, delayMillis, (listener, event) -> listener.gaveUp(event, result));
                     giveUp(this.attempts, elapsedTimeMillis, lastResult);
                 }
                 this.delayStrategy.introduceDelay(this.attempts, elapsedTimeMillis);
+                delayMillis = this.timer.getTime(MILLISECONDS) - elapsedTimeMillis;
             }
         } finally {
             this.timer.stop();
         }
     }
 
+    /**
+     * Notifies all {@link AttemptListener}s about the current attempt. Listener
+     * errors are logged and otherwise ignored. The {@link AttemptEvent} is only
+     * created if there are listeners to notify.
+     *
+     * @param attemptStart
+     *            The elapsed time (in milliseconds) at which the current
+     *            attempt was started.
+     * @param delayMillis
+     *            The delay (in milliseconds) that preceded the current attempt.
+     * @param callback
+     *            The listener callback to invoke.
+     */
+    private void notifyListeners(long attemptStart, long delayMillis,
+            BiConsumer<AttemptListener, AttemptEvent> callback) {
+        if (this.listeners.isEmpty()) {
+            return;
+        }
+        long now = this.timer.getTime(MILLISECONDS);
+        AttemptEvent event = new AttemptEvent(this.name, this.attempts, now, delayMillis, now - attemptStart);
+        for (AttemptListener listener : this.listeners) {
+            try {
+                callback.accept(listener, event);
+            } catch (RuntimeException e) {
+                LOG.warn("{}: attempt listener {} failed: {}", this.name, listener, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Makes a single attempt at calling the task. If a
+     * {@link ConcurrencyLimiter} has been set, a permit is acquired before the
+     * task is called and the outcome of the attempt is reported back to the
+     * limiter.
+     * <p/>
+     * With an attempt timeout, the permit is held by the task itself and only
+     * released once the task has completed. A timed out task is interrupted,
+     * but until it reacts to that, it is still a request in flight to the
+     * destination and keeps counting against the limit.
+     *
+     * @return The response of the task.
+     * @throws AttemptTimedOut
+     *             If the attempt timed out.
+     * @throws LimitExceededException
+     *             If no permit could be acquired from the
+     *             {@link ConcurrencyLimiter}.
+     * @throws Exception
+     *             If the task failed.
+     */
+    private R attempt() throws Exception {
+        if (this.concurrencyLimiter == null) {
+            return invokeTask(this.task);
+        }
+
+        Permit permit = this.concurrencyLimiter.acquire();
+        if (this.attemptExecutor != null) {
+            PermitHoldingTask permitHoldingTask = new PermitHoldingTask(permit);
+            try {
+                return invokeTask(permitHoldingTask);
+            } catch (Exception e) {
+                permitHoldingTask.abandon();
+                throw e;
+            }
+        }
+
+        try {
+            R response = this.task.call();
+            permit.success();
+            return response;
+        } catch (Exception e) {
+            permit.dropped();
+            throw e;
+        }
+    }
+
+    /**
+     * Calls a task. If an attempt timeout has been set, the task is run on the
+     * attempt executor and cancelled (with interruption) if it fails to
+     * complete in time.
+     *
+     * @param task
+     *            The task to call.
+     * @return The response of the task.
+     * @throws AttemptTimedOut
+     *             If the attempt timed out.
+     * @throws Exception
+     *             If the task failed.
+     */
+    private R invokeTask(Callable<R> task) throws Exception {
+        if (this.attemptExecutor == null) {
+            return task.call();
+        }
+
+        Future<R> future = this.attemptExecutor.submit(task);
+        try {
+            return future.get(this.attemptTimeoutMillis, MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new AttemptTimedOut(new TimeoutException(
+                    String.format("attempt %d timed out after %d ms", this.attempts, this.attemptTimeoutMillis)));
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
     /**
      * Throws a {@link GaveUpException} after the {@link StopStrategy} has
      * decided to give up.
@@ -246,8 +513,8 @@ public class Retryable<R> implements Callable<R> {
                 asString(lastResult));
 
         // include source exception if last result was an error
-        if (Throwable.class.isAssignableFrom(lastResult.getClass())) {
-            throw new GaveUpException(attempts, elapsedTimeMillis, message, Throwable.class.cast(lastResult));
+        if (lastResult instanceof Throwable) {
+            throw new GaveUpException(attempts, elapsedTimeMillis, message, (Throwable) lastResult);
         }
 
         throw new GaveUpException(attempts, elapsedTimeMillis, message);
@@ -275,8 +542,8 @@ public class Retryable<R> implements Callable<R> {
         if (result == null) {
             return "null/void";
         }
-        if (Throwable.class.isAssignableFrom(result.getClass())) {
-            Throwable exception = Throwable.class.cast(result);
+        if (result instanceof Throwable) {
+            Throwable exception = (Throwable) result;
             String message = exception.getMessage();
             return exception.getClass().getSimpleName() + ": " + (message != null ? message : "null");
         }
@@ -317,4 +584,66 @@ public class Retryable<R> implements Callable<R> {
         }
         throw caughtError;
     }
-}
\ No newline at end of file
+
+    /**
+     * Calls the task of this {@link Retryable} on the attempt executor and
+     * releases a {@link Permit} once the task has completed. If the attempt is
+     * abandoned (for example, on timeout) while the task is running, the
+     * permit is reported as dropped when the task completes. If the attempt is
+     * abandoned before the task got to run, the permit is released right away.
+     */
+    private class PermitHoldingTask implements Callable<R> {
+        private final Permit permit;
+        /** Set by whoever (task or abandoning caller) releases the permit. */
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        /** Set when the caller no longer waits for the task. */
+        private volatile boolean abandoned = false;
+
+        public PermitHoldingTask(Permit permit) {
+            this.permit = permit;
+        }
+
+        @Override
+        public R call() throws Exception {
+            if (!this.claimed.compareAndSet(false, true)) {
+                throw new CancellationException("attempt abandoned before it started");
+            }
+            boolean completed = false;
+            try {
+                R response = Retryable.this.task.call();
+                completed = true;
+                return response;
+            } finally {
+                if (completed && !this.abandoned) {
+                    this.permit.success();
+                } else {
+                    this.permit.dropped();
+                }
+            }
+        }
+
+        /**
+         * Marks the attempt as abandoned by the caller.
+         */
+        public void abandon() {
+            this.abandoned = true;
+            if (this.claimed.compareAndSet(false, true)) {
+                // never started: the permit is not held by anyone
+                this.permit.dropped();
+            }
+        }
+    }
+
+    /**
+     * Internal signal raised by {@link Retryable#attempt()} when an attempt
+     * exceeds the attempt timeout. Carries the {@link TimeoutException} that is
+     * recorded as the attempt result.
+     */
+    private static class AttemptTimedOut extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public AttemptTimedOut(TimeoutException cause) {
+            super(cause);
+        }
+    }
+}
@@ -222,6 +222,6 @@ public class SmtpClientConfig {
 
     @Override
     public String toString() {
-        return JsonUtils.toPrettyString(JsonUtils.toJson(this));
+        return JsonUtils.toPrettyJsonString(this);
     }
 }
\ No newline at end of file
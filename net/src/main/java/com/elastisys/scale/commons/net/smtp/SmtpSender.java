@@ -16,6 +16,10 @@ import org.slf4j.LoggerFactory;
  * <p/>
  * The task returns <code>true</code> if the message was successfully sent.
  * <p/>
+ * Messages are sent through a {@link SmtpTransportPool} (by default, the
+ * {@link SmtpTransportPool#getDefault() shared one}), which reuses an open
+ * connection to the SMTP server across messages.
+ * <p/>
  * For details on JavaMail and security, refer to
  * <a href="https://javamail.java.net/docs/SSLNOTES.txt">these notes</a>.
  */
@@ -26,6 +30,8 @@ public class SmtpSender implements Callable<Boolean> {
     private final Email email;
     /** The SMTP send settings to use. */
     private final SmtpClientConfig sendSettings;
+    /** The {@link SmtpTransportPool} to send through. */
+    private final SmtpTransportPool transportPool;
 
     /**
      * Constructs a new {@link SmtpSender} that will send a simple text-based
@@ -54,8 +60,24 @@ public class SmtpSender implements Callable<Boolean> {
      *            The SMTP send settings to use.
      */
     public SmtpSender(Email email, SmtpClientConfig sendSettings) {
+        this(email, sendSettings, SmtpTransportPool.getDefault());
+    }
+
+    /**
+     * Constructs a new {@link SmtpSender} that will send a given {@link Email}
+     * through a given {@link SmtpTransportPool}.
+     *
+     * @param email
+     *            The email to be sent.
+     * @param sendSettings
+     *            The SMTP send settings to use.
+     * @param transportPool
+     *            The {@link SmtpTransportPool} to send through.
+     */
+    public SmtpSender(Email email, SmtpClientConfig sendSettings, SmtpTransportPool transportPool) {
         this.email = email;
         this.sendSettings = sendSettings;
+        this.transportPool = transportPool;
     }
 
     @Override
@@ -79,52 +101,13 @@ public class SmtpSender implements Callable<Boolean> {
             LOG.trace("sending email to {} with server settings {}", email.getToAddresses(), settings);
         }
 
-        applySendSettings(email, settings);
-        try {
-            email.send();
-        } catch (EmailException e) {
-            throw new SmtpSenderException(String.format("failed to send email: %s", e.getMessage()), e);
-        }
+        this.transportPool.send(email, settings);
 
         if (LOG.isTraceEnabled()) {
             LOG.trace("email sent to " + email.getToAddresses());
         }
     }
 
-    /**
-     * Applies {@link SmtpClientConfig} options to the {@link Email} being sent.
-     *
-     * @param email
-     *            Email to be sent.
-     * @param settings
-     *            Send settings to apply to the email
-     */
-    private void applySendSettings(Email email, SmtpClientConfig settings) {
-        email.setHostName(settings.getSmtpHost());
-        email.setSmtpPort(settings.getSmtpPort());
-        email.setSslSmtpPort(String.valueOf(settings.getSmtpPort()));
-        if (settings.getAuthentication() != null) {
-            email.setAuthentication(settings.getAuthentication().getUsername(),
-                    settings.getAuthentication().getPassword());
-        }
-        if (settings.isUseSsl()) {
-            // enable the use of SSL for SMTP connections. NOTE: should
-            // only be used for cases when the SMTP server port only supports
-            // SSL connections (typically over port 465).
-            email.setSSLOnConnect(true);
-        } else {
-            // Support use of the STARTTLS command (see RFC 2487 and RFC 3501)
-            // to switch the connection to be secured by TLS for cases where the
-            // server supports both SSL and non-SSL connections. This is
-            // typically the case for most modern mail servers.
-            email.setStartTLSEnabled(true);
-        }
-        // trust all mail server host certificates
-        System.setProperty("mail.smtp.ssl.trust", "*");
-        email.setSocketConnectionTimeout(settings.getConnectionTimeout());
-        email.setSocketTimeout(settings.getSocketTimeout());
-    }
-
     /**
      * Converts an {@link SmtpMessage} to an {@link SimpleEmail} instance.
      * <p/>
@@ -0,0 +1,422 @@
+package com.elastisys.scale.commons.net.smtp;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.mail.Email;
+import org.apache.commons.mail.EmailException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps one open, authenticated SMTP connection ({@link Transport}) per
+ * {@link SmtpClientConfig} and sends emails over it, so that a connection
+ * (with its TCP, TLS and authentication handshakes) is set up once for many
+ * emails rather than once per email.
+ * <p/>
+ * A background thread sends a {@code NOOP} command over connections that have
+ * been idle for a while, to keep them from being timed out by the server (and
+ * to notice connections that were dropped), and closes and forgets
+ * connections that have not been used for a longer while, so that the pool
+ * does not grow with every {@link SmtpClientConfig} ever used. A connection
+ * that turns out to be broken is reopened on the next send.
+ * <p/>
+ * Emails are sent one at a time per {@link SmtpClientConfig}. Emails for
+ * different {@link SmtpClientConfig}s are sent concurrently. All mail server
+ * host certificates are trusted.
+ * <p/>
+ * Instances are thread-safe.
+ */
+public class SmtpTransportPool implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+    /**
+     * Default time (in milliseconds) that a connection may be idle before a
+     * {@code NOOP} is sent over it.
+     */
+    public static final long DEFAULT_KEEP_ALIVE_INTERVAL = 30000;
+    /**
+     * Default time (in milliseconds) that a connection may be unused before
+     * it is closed.
+     */
+    public static final long DEFAULT_MAX_IDLE_TIME = 120000;
+
+    /** The {@link SmtpTransportPool} used by {@link SmtpSender}s by default. */
+    private static final SmtpTransportPool DEFAULT = new SmtpTransportPool(DEFAULT_KEEP_ALIVE_INTERVAL,
+            DEFAULT_MAX_IDLE_TIME, TimeUnit.MILLISECONDS);
+
+    /**
+     * The time (in nanoseconds) that a connection may be idle before a
+     * {@code NOOP} is sent over it.
+     */
+    private final long keepAliveInterval;
+    /** The time (in nanoseconds) that a connection may be unused. */
+    private final long maxIdleTime;
+    /** Connections by {@link SmtpClientConfig}. */
+    private final Map<SmtpClientConfig, Connection> connections = new ConcurrentHashMap<>();
+    /** Runs the keep-alive task. */
+    private final ScheduledExecutorService keepAlive;
+    /** <code>true</code> once this {@link SmtpTransportPool} has been closed. */
+    private volatile boolean closed;
+
+    /**
+     * Creates an {@link SmtpTransportPool}.
+     *
+     * @param keepAliveInterval
+     *            The time that a connection may be idle before a {@code NOOP}
+     *            is sent over it. Should be well below the idle timeout of
+     *            the mail server (typically a few minutes).
+     * @param maxIdleTime
+     *            The time that a connection may be unused before it is closed.
+     * @param unit
+     *            The unit of the given times.
+     */
+    public SmtpTransportPool(long keepAliveInterval, long maxIdleTime, TimeUnit unit) {
+        checkArgument(keepAliveInterval > 0, "keepAliveInterval must be positive");
+        checkArgument(maxIdleTime >= keepAliveInterval, "maxIdleTime must not be smaller than keepAliveInterval");
+        checkArgument(unit != null, "no unit given");
+        this.keepAliveInterval = unit.toNanos(keepAliveInterval);
+        this.maxIdleTime = unit.toNanos(maxIdleTime);
+        this.keepAlive = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "smtp-keep-alive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // check at twice the keep-alive rate, so that no connection stays idle
+        // for much longer than the keep-alive interval
+        long period = Math.max(1, this.keepAliveInterval / 2);
+        this.keepAlive.scheduleWithFixedDelay(this::keepAlive, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the {@link SmtpTransportPool} used by {@link SmtpSender}s by
+     * default. It uses the default keep-alive interval and maximum idle time,
+     * and cannot be closed.
+     *
+     * @return
+     */
+    public static SmtpTransportPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Sends an {@link Email} via a given SMTP server. Any send settings (such
+     * as server host name, port, authentication, etc) set on the passed
+     * {@link Email} are overridden by {@code settings}.
+     *
+     * @param email
+     *            The email to send. The same {@link Email} cannot be sent more
+     *            than once.
+     * @param settings
+     *            The SMTP server to send through.
+     * @throws SmtpSenderException
+     *             if the email could not be sent.
+     */
+    public void send(Email email, SmtpClientConfig settings) throws SmtpSenderException {
+        sendAll(Collections.singletonList(email), settings);
+    }
+
+    /**
+     * Sends a number of {@link Email}s, in order, via a given SMTP server,
+     * over one connection. Any send settings (such as server host name, port,
+     * authentication, etc) set on the passed {@link Email}s are overridden by
+     * {@code settings}.
+     *
+     * @param emails
+     *            The emails to send. The same {@link Email} cannot be sent
+     *            more than once.
+     * @param settings
+     *            The SMTP server to send through.
+     * @throws SmtpSenderException
+     *             if an email could not be sent. Any emails before it have
+     *             been sent, any emails after it have not.
+     */
+    public void sendAll(Collection<? extends Email> emails, SmtpClientConfig settings) throws SmtpSenderException {
+        checkArgument(emails != null, "emails cannot be null");
+        checkArgument(settings != null, "settings cannot be null");
+        if (this.closed) {
+            throw new IllegalStateException("smtp transport pool has been closed");
+        }
+
+        for (Email email : emails) {
+            checkArgument(email != null, "email message cannot be null");
+            boolean sent = false;
+            while (!sent) {
+                // not sent if the connection was removed as idle before we
+                // got to it: try again on a new one
+                sent = this.connections.computeIfAbsent(settings, Connection::new).send(email);
+            }
+        }
+    }
+
+    /**
+     * Closes all connections and stops the keep-alive thread. The default
+     * {@link SmtpTransportPool} ignores this call.
+     */
+    @Override
+    public void close() {
+        if (this == DEFAULT) {
+            return;
+        }
+        this.closed = true;
+        this.keepAlive.shutdownNow();
+        for (Connection connection : this.connections.values()) {
+            connection.lock.lock();
+            try {
+                connection.disconnect();
+            } finally {
+                connection.lock.unlock();
+            }
+        }
+        this.connections.clear();
+    }
+
+    /**
+     * Returns the number of times a connection has been opened for a given
+     * {@link SmtpClientConfig}.
+     *
+     * @param settings
+     * @return
+     */
+    long connectCount(SmtpClientConfig settings) {
+        Connection connection = this.connections.get(settings);
+        return connection == null ? 0 : connection.connects;
+    }
+
+    /**
+     * Returns the number of {@link SmtpClientConfig}s that the pool currently
+     * keeps a connection (open or not) for.
+     *
+     * @return
+     */
+    int size() {
+        return this.connections.size();
+    }
+
+    /**
+     * Sends a {@code NOOP} over connections that have been idle for
+     * {@link #keepAliveInterval} and closes and removes connections that have
+     * been unused for {@link #maxIdleTime}. Connections that are in use are
+     * left alone.
+     */
+    private void keepAlive() {
+        long now = System.nanoTime();
+        for (Connection connection : this.connections.values()) {
+            if (!connection.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (now - connection.lastUsed >= this.maxIdleTime) {
+                    LOG.debug("removing idle connection to {}:{}", connection.settings.getSmtpHost(),
+                            connection.settings.getSmtpPort());
+                    connection.removed = true;
+                    this.connections.remove(connection.settings, connection);
+                    connection.disconnect();
+                } else if (connection.isOpen() && now - connection.lastActive >= this.keepAliveInterval) {
+                    connection.checkAlive();
+                }
+            } catch (Exception e) {
+                LOG.warn("smtp keep-alive failed: " + e.getMessage(), e);
+            } finally {
+                connection.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * A connection to the SMTP server of a {@link SmtpClientConfig}.
+     */
+    private class Connection {
+        /** The SMTP server settings. */
+        private final SmtpClientConfig settings;
+        /** The mail session, holding the SMTP server settings. */
+        private final Session session;
+        /** Held while the connection is in use. Guards the fields below. */
+        private final ReentrantLock lock = new ReentrantLock();
+        /** The SMTP transport. <code>null</code> when closed. */
+        private Transport transport;
+        /** Time ({@link System#nanoTime()}) of the last sent email. */
+        private long lastUsed;
+        /** Time ({@link System#nanoTime()}) of the last server command. */
+        private long lastActive;
+        /** The number of times the connection has been opened. */
+        private volatile long connects;
+        /**
+         * Set when the connection has been removed from the pool as idle. It
+         * must not be used after that.
+         */
+        private boolean removed;
+
+        Connection(SmtpClientConfig settings) {
+            this.settings = settings;
+            this.session = Session.getInstance(sessionProperties(settings));
+            this.lastUsed = this.lastActive = System.nanoTime();
+        }
+
+        /**
+         * Sends an {@link Email}, opening the connection if necessary. If a
+         * previously opened connection turns out to be broken, the email is
+         * sent over a new connection.
+         *
+         * @param email
+         * @return <code>false</code> if the email was not sent since the
+         *         connection has been removed from the pool.
+         * @throws SmtpSenderException
+         */
+        public boolean send(Email email) throws SmtpSenderException {
+            this.lock.lock();
+            try {
+                if (this.removed) {
+                    return false;
+                }
+                MimeMessage message;
+                try {
+                    email.setMailSession(this.session);
+                    email.buildMimeMessage();
+                    message = email.getMimeMessage();
+                    message.saveChanges();
+                } catch (EmailException | MessagingException e) {
+                    throw new SmtpSenderException(String.format("failed to build email: %s", e.getMessage()), e);
+                }
+
+                long idleTime = System.nanoTime() - this.lastActive;
+                if (isOpen() && idleTime >= SmtpTransportPool.this.keepAliveInterval) {
+                    // may have been dropped by the server since last use
+                    checkAlive();
+                }
+                boolean reused = this.transport != null;
+                try {
+                    sendMessage(message);
+                } catch (MessagingException e) {
+                    if (!reused || isOpen()) {
+                        throw e;
+                    }
+                    // the reused connection was broken: retry on a new one
+                    LOG.debug("smtp connection lost, reconnecting: {}", e.getMessage());
+                    sendMessage(message);
+                }
+                return true;
+            } catch (MessagingException e) {
+                disconnect();
+                throw new SmtpSenderException(String.format("failed to send email: %s", e.getMessage()), e);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Returns <code>true</code> if the connection is open, as far as is
+         * known without contacting the server.
+         *
+         * @return
+         */
+        public boolean isOpen() {
+            return this.transport != null;
+        }
+
+        /**
+         * Sends a {@code NOOP} to the server, closing the connection if the
+         * server does not respond.
+         */
+        public void checkAlive() {
+            // sends a NOOP for an SMTP transport
+            if (this.transport.isConnected()) {
+                this.lastActive = System.nanoTime();
+            } else {
+                disconnect();
+            }
+        }
+
+        /**
+         * Closes the connection, if open.
+         */
+        public void disconnect() {
+            Transport transport = this.transport;
+            this.transport = null;
+            if (transport != null) {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    LOG.debug("failed to close smtp connection: {}", e.getMessage());
+                }
+            }
+        }
+
+        private void sendMessage(MimeMessage message) throws MessagingException {
+            if (this.transport == null) {
+                connect();
+            }
+            try {
+                this.transport.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException e) {
+                if (!this.transport.isConnected()) {
+                    disconnect();
+                }
+                throw e;
+            }
+            this.lastUsed = this.lastActive = System.nanoTime();
+        }
+
+        private void connect() throws MessagingException {
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("connecting to smtp server with settings {}", this.settings);
+            }
+            Transport transport = this.session.getTransport("smtp");
+            SmtpClientAuthentication authentication = this.settings.getAuthentication();
+            if (authentication != null) {
+                transport.connect(this.settings.getSmtpHost(), this.settings.getSmtpPort(),
+                        authentication.getUsername(), authentication.getPassword());
+            } else {
+                transport.connect(this.settings.getSmtpHost(), this.settings.getSmtpPort(), null, null);
+            }
+            this.transport = transport;
+            this.lastUsed = this.lastActive = System.nanoTime();
+            this.connects++;
+        }
+    }
+
+    /**
+     * Returns the JavaMail session properties for a {@link SmtpClientConfig}.
+     *
+     * @param settings
+     * @return
+     */
+    private static Properties sessionProperties(SmtpClientConfig settings) {
+        Properties properties = new Properties();
+        properties.setProperty("mail.transport.protocol", "smtp");
+        properties.setProperty("mail.smtp.host", settings.getSmtpHost());
+        properties.setProperty("mail.smtp.port", String.valueOf(settings.getSmtpPort()));
+        properties.setProperty("mail.smtp.auth", String.valueOf(settings.getAuthentication() != null));
+        if (settings.isUseSsl()) {
+            // SSL from the start. NOTE: should only be used for cases when the
+            // SMTP server port only supports SSL connections (typically over
+            // port 465).
+            properties.setProperty("mail.smtp.ssl.enable", "true");
+        } else {
+            // Support use of the STARTTLS command (see RFC 2487 and RFC 3501)
+            // to switch the connection to be secured by TLS for cases where the
+            // server supports both SSL and non-SSL connections.
+            properties.setProperty("mail.smtp.starttls.enable", "true");
+        }
+        // trust all mail server host certificates (for this session only)
+        properties.setProperty("mail.smtp.ssl.trust", "*");
+        properties.setProperty("mail.smtp.connectiontimeout", String.valueOf(settings.getConnectionTimeout()));
+        properties.setProperty("mail.smtp.timeout", String.valueOf(settings.getSocketTimeout()));
+        return properties;
+    }
+}
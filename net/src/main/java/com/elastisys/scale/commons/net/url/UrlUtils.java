@@ -74,4 +74,25 @@ public class UrlUtils {
         }
         return urlOrPath.substring(lastSlashIndex + 1);
     }
+
+    /**
+     * Returns the destination ({@code <scheme>://<host>:<port>}) of a
+     * {@link URI}, which identifies the remote endpoint that a request is sent
+     * to. The port is left out if not explicitly given. The empty string is
+     * returned for a <code>null</code> or relative {@link URI}.
+     * <p/>
+     * For example, the destination of {@code https://host:8443/a/b?c=d} would
+     * be {@code https://host:8443}.
+     *
+     * @param uri
+     *            A {@link URI}. May be <code>null</code>.
+     * @return
+     */
+    public static String destination(URI uri) {
+        if (uri == null || uri.getHost() == null) {
+            return "";
+        }
+        String destination = uri.getScheme() + "://" + uri.getHost();
+        return uri.getPort() < 0 ? destination : destination + ":" + uri.getPort();
+    }
 }
@@ -183,4 +183,28 @@ public class TestAlert {
         assertThat(copy.getMetadata(), is(expectedTags));
 
     }
+
+    @Test
+    public void toAndFromJson() {
+        Alert alert = new Alert("topic", AlertSeverity.WARN, UtcTime.now(), "message", null,
+                Maps.of("tag", JsonUtils.parseJsonString("{\"a\": [1, 2]}")));
+        String json = JsonUtils.toJsonString(alert);
+        assertThat(json, is("{\"topic\":\"topic\",\"severity\":\"WARN\",\"timestamp\":\"2014-03-27T12:00:00.000Z\","
+                + "\"message\":\"message\",\"metadata\":{\"tag\":{\"a\":[1,2]}}}"));
+        assertThat(JsonUtils.toObject(JsonUtils.parseJsonString(json), Alert.class), is(alert));
+    }
+
+    /**
+     * Fields missing from the JSON should be left <code>null</code> (with
+     * empty metadata), and unknown fields should be ignored.
+     */
+    @Test
+    public void fromIncompleteJson() {
+        Alert alert = JsonUtils.toObject(JsonUtils.parseJsonString("{\"topic\": \"topic\", \"unknown\": {}}"),
+                Alert.class);
+        assertThat(alert.getTopic(), is("topic"));
+        assertThat(alert.getSeverity(), is(nullValue()));
+        assertThat(alert.getTimestamp(), is(nullValue()));
+        assertThat(alert.getMetadata().isEmpty(), is(true));
+    }
 }
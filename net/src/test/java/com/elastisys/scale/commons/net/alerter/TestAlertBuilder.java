@@ -62,6 +62,31 @@ public class TestAlertBuilder {
                 "{\"host\":\"my.host\",\"list\":[true,false,true],\"map\":{\"k1\":\"v1\",\"k2\":\"v2\"},\"extra\":\"v3\"}"));
     }
 
+    /**
+     * A builder created from an {@link Alert} starts out with the fields and
+     * tags of that {@link Alert}.
+     */
+    @Test
+    public void buildFromAlert() {
+        Alert original = AlertBuilder.create().topic("/topic").severity(AlertSeverity.INFO).message("message")
+                .details("details").addMetadata("tag1", "value1").addMetadata("tag2", "value2").build();
+
+        Alert copy = AlertBuilder.from(original).build();
+        assertThat(copy, is(original));
+
+        Alert extended = AlertBuilder.from(original).addMetadata("tag2", "new-value2").addMetadata("tag3", "value3")
+                .build();
+        assertThat(extended.getTopic(), is("/topic"));
+        assertThat(extended.getDetails(), is("details"));
+        Map<String, JsonElement> expectedMetadata = Maps.of(//
+                "tag1", JsonUtils.toJson("value1"), //
+                "tag2", JsonUtils.toJson("new-value2"), //
+                "tag3", JsonUtils.toJson("value3"));
+        assertThat(extended.getMetadata(), is(expectedMetadata));
+        // original unchanged
+        assertThat(original.getMetadata().size(), is(2));
+    }
+
     /**
      * Topic is required.
      */
@@ -0,0 +1,126 @@
+package com.elastisys.scale.commons.net.alerter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.elastisys.scale.commons.json.JsonUtils;
+import com.elastisys.scale.commons.util.collection.Maps;
+import com.elastisys.scale.commons.util.time.UtcTime;
+import com.google.gson.JsonElement;
+
+/**
+ * Exercises the {@link AlertMetadata}.
+ */
+public class TestAlertMetadata {
+
+    @Test
+    public void empty() {
+        AlertMetadata metadata = AlertMetadata.of(new HashMap<>());
+        assertTrue(metadata == AlertMetadata.EMPTY);
+        assertThat(metadata.size(), is(0));
+        assertThat(metadata.get("tag"), is(nullValue()));
+        assertThat(metadata, is(new HashMap<String, JsonElement>()));
+        assertThat(metadata.hashCode(), is(new HashMap<String, JsonElement>().hashCode()));
+    }
+
+    /**
+     * Tags are kept in key order and can be looked up.
+     */
+    @Test
+    public void lookupAndIterationOrder() {
+        AlertMetadata metadata = AlertMetadata.of(tags("c", 3, "a", 1, "b", 2));
+
+        assertThat(metadata.size(), is(3));
+        assertThat(new ArrayList<>(metadata.keySet()), is(Arrays.asList("a", "b", "c")));
+        assertThat(metadata.get("a"), is(JsonUtils.toJson(1)));
+        assertThat(metadata.get("c"), is(JsonUtils.toJson(3)));
+        assertThat(metadata.get("d"), is(nullValue()));
+        assertThat(metadata.get(1), is(nullValue()));
+        assertThat(metadata.containsKey("b"), is(true));
+        assertThat(metadata.containsKey("d"), is(false));
+    }
+
+    /**
+     * An {@link AlertMetadata} is equal to (and has the same hash code as) any
+     * {@link Map} with the same tags.
+     */
+    @Test
+    public void equalsAndHashCode() {
+        Map<String, JsonElement> tags = tags("c", 3, "a", 1, "b", 2);
+        AlertMetadata metadata = AlertMetadata.of(tags);
+
+        assertThat(metadata, is(tags));
+        assertThat(tags, is((Map<String, JsonElement>) metadata));
+        assertThat(metadata.hashCode(), is(tags.hashCode()));
+        assertThat(metadata.hashCode(), is(new TreeMap<>(tags).hashCode()));
+        assertThat(metadata, is(AlertMetadata.of(new TreeMap<>(tags))));
+        assertThat(metadata.equals(AlertMetadata.of(tags("a", 1, "b", 2))), is(false));
+        assertThat(metadata.equals(AlertMetadata.of(tags("a", 1, "b", 2, "c", 4))), is(false));
+    }
+
+    /**
+     * Merging in tags must leave the original untouched and let added tags
+     * replace tags with the same key.
+     */
+    @Test
+    public void with() {
+        AlertMetadata original = AlertMetadata.of(tags("b", 2, "d", 4));
+
+        AlertMetadata merged = original.with(tags("a", 1, "d", 40, "e", 5, "c", 3));
+        assertThat(merged, is(tags("a", 1, "b", 2, "c", 3, "d", 40, "e", 5)));
+        assertThat(new ArrayList<>(merged.keySet()), is(Arrays.asList("a", "b", "c", "d", "e")));
+        assertThat(original, is(tags("b", 2, "d", 4)));
+
+        assertTrue(original.with(new HashMap<>()) == original);
+        assertThat(AlertMetadata.EMPTY.with(original), is(original));
+        assertThat(original.with(tags("b", 20, "d", 40)), is(tags("b", 20, "d", 40)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        AlertMetadata.of(tags("a", 1)).put("b", JsonUtils.toJson(2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutableEntrySet() {
+        AlertMetadata.of(tags("a", 1)).entrySet().clear();
+    }
+
+    /**
+     * {@link Alert} metadata is serialized as a JSON object.
+     */
+    @Test
+    public void jsonRoundTrip() {
+        Alert alert = new Alert("/topic", AlertSeverity.INFO, UtcTime.now(),
+                "message", null, Maps.of("b", JsonUtils.toJson(Arrays.asList(1, 2)), "a", JsonUtils.toJson("x")));
+        JsonElement json = JsonUtils.toJson(alert);
+        assertThat(json.getAsJsonObject().get("metadata"),
+                is(JsonUtils.parseJsonString("{\"a\": \"x\", \"b\": [1, 2]}")));
+        assertThat(JsonUtils.toObject(json, Alert.class), is(alert));
+
+        // metadata may be left out
+        json.getAsJsonObject().remove("metadata");
+        assertThat(JsonUtils.toObject(json, Alert.class).getMetadata(), is(AlertMetadata.EMPTY));
+    }
+
+    /**
+     * Builds a tag {@link Map} from alternating keys and values.
+     */
+    private static Map<String, JsonElement> tags(Object... keysAndValues) {
+        Map<String, JsonElement> tags = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            tags.put((String) keysAndValues[i], JsonUtils.toJson(keysAndValues[i + 1]));
+        }
+        return tags;
+    }
+}
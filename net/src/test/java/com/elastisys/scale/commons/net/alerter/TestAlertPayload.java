@@ -0,0 +1,103 @@
+package com.elastisys.scale.commons.net.alerter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import com.elastisys.scale.commons.json.JsonUtils;
+import com.elastisys.scale.commons.util.collection.Maps;
+import com.google.gson.JsonElement;
+
+/**
+ * Exercises the {@link AlertPayload}.
+ */
+public class TestAlertPayload {
+
+    /**
+     * Standard tags should be added to the {@link Alert}, replacing any
+     * {@link Alert} tags with the same key.
+     */
+    @Test
+    public void addStandardTags() {
+        Alert alert = alert().addMetadata("a", "alert").addMetadata("b", "alert").build();
+        Map<String, JsonElement> standardTags = Maps.of("b", JsonUtils.toJson("standard"), "c",
+                JsonUtils.toJson("standard"));
+
+        Alert tagged = new AlertPayload(alert, standardTags).getAlert();
+        assertThat(tagged, is(alert().addMetadata("a", "alert").addMetadata("b", "standard")
+                .addMetadata("c", "standard").build()));
+        // original is left unchanged
+        assertThat(alert.getMetadata().get("b"), is(JsonUtils.toJson("alert")));
+    }
+
+    /**
+     * Without standard tags, the tagged {@link Alert} is the {@link Alert}
+     * itself.
+     */
+    @Test
+    public void withoutStandardTags() {
+        Alert alert = alert().build();
+        assertThat(new AlertPayload(alert, null).getAlert(), is(sameInstance(alert)));
+        assertThat(new AlertPayload(alert, Collections.emptyMap()).getAlert(), is(sameInstance(alert)));
+    }
+
+    /**
+     * The serialized forms should match those produced by {@link JsonUtils}.
+     */
+    @Test
+    public void serializedForms() {
+        Map<String, JsonElement> standardTags = Maps.of("tag", JsonUtils.toJson("value"));
+        Alert alert = alert().build();
+        Alert tagged = alert.withMetadata(standardTags);
+
+        AlertPayload payload = new AlertPayload(alert, standardTags);
+        assertThat(payload.getUntaggedAlert(), is(sameInstance(alert)));
+        assertThat(payload.getJson(), is(JsonUtils.toJson(tagged)));
+        assertThat(payload.getPrettyString(), is(JsonUtils.toPrettyString(JsonUtils.toJson(tagged))));
+        assertThat(payload.getCompactString(), is(JsonUtils.toString(JsonUtils.toJson(tagged))));
+        assertThat(new String(payload.getCompactBytes(), UTF_8), is(payload.getCompactString()));
+    }
+
+    /**
+     * Each form should be computed once.
+     */
+    @Test
+    public void computeFormsOnce() {
+        AlertPayload payload = new AlertPayload(alert().build(), Maps.of("tag", JsonUtils.toJson("value")));
+        assertThat(payload.getAlert(), is(sameInstance(payload.getAlert())));
+        assertThat(payload.getJson(), is(sameInstance(payload.getJson())));
+        assertThat(payload.getPrettyString(), is(sameInstance(payload.getPrettyString())));
+        assertThat(payload.getCompactBytes(), is(sameInstance(payload.getCompactBytes())));
+    }
+
+    /**
+     * An {@link AlertPayload} should only be used by {@link Alerter}s that
+     * add the same (or equal) standard tags.
+     */
+    @Test
+    public void hasStandardTags() {
+        Map<String, JsonElement> standardTags = Maps.of("tag", JsonUtils.toJson("value"));
+        AlertPayload payload = new AlertPayload(alert().build(), standardTags);
+        assertThat(payload.hasStandardTags(standardTags), is(true));
+        assertThat(payload.hasStandardTags(new HashMap<>(standardTags)), is(true));
+        assertThat(payload.hasStandardTags(Maps.of("tag", JsonUtils.toJson("other"))), is(false));
+        assertThat(payload.hasStandardTags(null), is(false));
+
+        // no standard tags are the same as empty standard tags
+        assertThat(new AlertPayload(alert().build(), null).hasStandardTags(Collections.emptyMap()), is(true));
+    }
+
+    private static AlertBuilder alert() {
+        return AlertBuilder.create().topic("topic").severity(AlertSeverity.ERROR).message("message")
+                .timestamp(new DateTime(0, DateTimeZone.UTC));
+    }
+}
@@ -0,0 +1,121 @@
+package com.elastisys.scale.commons.net.alerter;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Exercises the {@link ParallelDelivery} class.
+ */
+public class TestParallelDelivery {
+
+    private ParallelDelivery delivery;
+
+    @Before
+    public void beforeTestMethod() {
+        this.delivery = new ParallelDelivery("delivery", 4);
+    }
+
+    @After
+    public void afterTestMethod() {
+        this.delivery.close();
+    }
+
+    /**
+     * Results should be reported per destination, in the order given.
+     */
+    @Test
+    public void resultPerDestination() {
+        List<DeliveryResult> results = this.delivery.deliver(Arrays.asList("a", "b", "c"), destination -> {
+            if (destination.equals("b")) {
+                throw new IllegalStateException("b failed");
+            }
+        }, 1, TimeUnit.SECONDS);
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0).getDestination(), is("a"));
+        assertThat(results.get(0).isSuccess(), is(true));
+        assertThat(results.get(1).getDestination(), is("b"));
+        assertThat(results.get(1).isSuccess(), is(false));
+        assertThat(results.get(1).getError().get().getMessage(), is("b failed"));
+        assertThat(results.get(2).getDestination(), is("c"));
+        assertThat(results.get(2).isSuccess(), is(true));
+    }
+
+    /**
+     * Deliveries should run concurrently: the total time should be that of the
+     * slowest delivery rather than the sum.
+     */
+    @Test
+    public void deliveriesRunConcurrently() {
+        CountDownLatch allStarted = new CountDownLatch(3);
+        List<DeliveryResult> results = this.delivery.deliver(Arrays.asList("a", "b", "c"), destination -> {
+            allStarted.countDown();
+            try {
+                // only completes if all deliveries run at the same time
+                assertTrue(allStarted.await(1, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }, 2, TimeUnit.SECONDS);
+        assertThat(results.size(), is(3));
+        for (DeliveryResult result : results) {
+            assertThat(result.toString(), result.isSuccess(), is(true));
+        }
+    }
+
+    /**
+     * A delivery that doesn't complete before the deadline should be cancelled
+     * and reported as timed out, without holding up other deliveries.
+     */
+    @Test
+    public void slowDeliveryTimesOut() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long start = System.nanoTime();
+        List<DeliveryResult> results = this.delivery.deliver(Arrays.asList("slow", "fast"), destination -> {
+            if (destination.equals("slow")) {
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+
+        assertThat(results.get(0).isSuccess(), is(false));
+        assertThat(results.get(0).getError().get(), instanceOf(TimeoutException.class));
+        assertThat(results.get(1).isSuccess(), is(true));
+        // slow delivery should have been interrupted
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Once closed, deliveries should fail rather than raise an exception.
+     */
+    @Test
+    public void deliverAfterClose() {
+        this.delivery.close();
+        List<DeliveryResult> results = this.delivery.deliver(Arrays.asList("a", "b"), destination -> {
+        }, 1, TimeUnit.SECONDS);
+        assertThat(results.size(), is(2));
+        assertThat(results.get(0).getError().get(), instanceOf(IllegalStateException.class));
+        assertThat(results.get(1).getDestination(), is("b"));
+        assertThat(results.get(1).getError().get(), instanceOf(IllegalStateException.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithNonPositiveMaxThreads() {
+        new ParallelDelivery("delivery", 0);
+    }
+}
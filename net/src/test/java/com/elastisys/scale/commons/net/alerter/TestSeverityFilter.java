@@ -3,6 +3,8 @@ package com.elastisys.scale.commons.net.alerter;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.EnumSet;
+
 import org.junit.Test;
 
 import com.elastisys.scale.commons.util.time.UtcTime;
@@ -42,6 +44,21 @@ public class TestSeverityFilter {
         assertThat(filter.shouldSuppress(alert(AlertSeverity.FATAL)), is(false));
     }
 
+    /**
+     * The filter expression should be resolved to the set of severities that
+     * it matches.
+     */
+    @Test
+    public void acceptedSeverities() {
+        assertThat(new SeverityFilter("ERROR").getAcceptedSeverities(), is(EnumSet.of(AlertSeverity.ERROR)));
+        assertThat(new SeverityFilter("WARN|ERROR|FATAL").getAcceptedSeverities(),
+                is(EnumSet.of(AlertSeverity.WARN, AlertSeverity.ERROR, AlertSeverity.FATAL)));
+        assertThat(new SeverityFilter(".*").getAcceptedSeverities(), is(EnumSet.allOf(AlertSeverity.class)));
+        // the expression must match the entire severity name
+        assertThat(new SeverityFilter("ERR").getAcceptedSeverities(), is(EnumSet.noneOf(AlertSeverity.class)));
+        assertThat(new SeverityFilter("NOTHING").getAcceptedSeverities(), is(EnumSet.noneOf(AlertSeverity.class)));
+    }
+
     private Alert alert(AlertSeverity severity) {
         return new Alert("some topic", severity, UtcTime.now(), "some message", null);
     }
@@ -0,0 +1,168 @@
+package com.elastisys.scale.commons.net.alerter.batching;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.elastisys.scale.commons.net.alerter.Alert;
+import com.elastisys.scale.commons.net.alerter.AlertBuilder;
+import com.elastisys.scale.commons.net.alerter.AlertSeverity;
+import com.elastisys.scale.commons.net.alerter.BatchAlerter;
+
+/**
+ * Exercises the {@link BatchingAlerter}.
+ */
+public class TestBatchingAlerter {
+
+    /** Receives the batches sent by the {@link BatchingAlerter}. */
+    private RecordingBatchAlerter receiver;
+
+    /** Object under test. */
+    private BatchingAlerter alerter;
+
+    @Before
+    public void beforeTestMethod() {
+        this.receiver = new RecordingBatchAlerter();
+    }
+
+    @After
+    public void afterTestMethod() {
+        if (this.alerter != null) {
+            this.alerter.close();
+        }
+    }
+
+    /**
+     * A full batch should be sent right away.
+     */
+    @Test
+    public void sendFullBatch() throws Exception {
+        this.alerter = new BatchingAlerter(this.receiver, 3, 1, TimeUnit.HOURS);
+
+        this.alerter.handleAlert(alert("1"));
+        this.alerter.handleAlert(alert("2"));
+        assertThat(this.alerter.pending(), is(2));
+        this.alerter.handleAlert(alert("3"));
+        this.alerter.handleAlert(alert("4"));
+
+        List<Alert> batch = this.receiver.awaitBatch();
+        assertThat(batch, is(Arrays.asList(alert("1"), alert("2"), alert("3"))));
+        assertThat(this.alerter.pending(), is(1));
+    }
+
+    /**
+     * A batch that doesn't fill up should be sent when its time window has
+     * passed.
+     */
+    @Test
+    public void sendBatchWhenWindowHasPassed() throws Exception {
+        this.alerter = new BatchingAlerter(this.receiver, 100, 100, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        this.alerter.handleAlert(alert("1"));
+        this.alerter.handleAlert(alert("2"));
+
+        List<Alert> batch = this.receiver.awaitBatch();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        assertThat(batch, is(Arrays.asList(alert("1"), alert("2"))));
+        assertThat(this.alerter.pending(), is(0));
+
+        // next alert starts a new batch
+        this.alerter.handleAlert(alert("3"));
+        assertThat(this.receiver.awaitBatch(), is(Arrays.asList(alert("3"))));
+    }
+
+    /**
+     * On close, any buffered alerts should be sent.
+     */
+    @Test
+    public void sendRemainingAlertsOnClose() throws Exception {
+        this.alerter = new BatchingAlerter(this.receiver, 100, 1, TimeUnit.HOURS);
+        this.alerter.handleAlert(alert("1"));
+        this.alerter.handleAlert(alert("2"));
+        assertThat(this.receiver.batches.isEmpty(), is(true));
+
+        this.alerter.close();
+        assertThat(this.receiver.batches.size(), is(1));
+        assertThat(this.receiver.batches.poll(), is(Arrays.asList(alert("1"), alert("2"))));
+    }
+
+    /**
+     * A closed {@link BatchingAlerter} should reject further alerts.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void handleAlertAfterClose() {
+        this.alerter = new BatchingAlerter(this.receiver, 100, 1, TimeUnit.HOURS);
+        this.alerter.close();
+        this.alerter.handleAlert(alert("1"));
+    }
+
+    /**
+     * A failure to send a batch should not prevent later batches from being
+     * sent.
+     */
+    @Test
+    public void failedBatch() throws Exception {
+        this.receiver.failNext = true;
+        this.alerter = new BatchingAlerter(this.receiver, 1, 1, TimeUnit.HOURS);
+        this.alerter.handleAlert(alert("1"));
+        this.alerter.handleAlert(alert("2"));
+        assertThat(this.receiver.awaitBatch(), is(Arrays.asList(alert("2"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithNonPositiveBatchSize() {
+        new BatchingAlerter(this.receiver, 0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithNonPositiveWindow() {
+        new BatchingAlerter(this.receiver, 1, 0, TimeUnit.SECONDS);
+    }
+
+    private static Alert alert(String message) {
+        return AlertBuilder.create().topic("topic").severity(AlertSeverity.ERROR).message(message)
+                .timestamp(new DateTime(0, DateTimeZone.UTC)).build();
+    }
+
+    /**
+     * {@link BatchAlerter} that records the batches it receives.
+     */
+    private static class RecordingBatchAlerter implements BatchAlerter {
+        private final BlockingQueue<List<Alert>> batches = new LinkedBlockingQueue<>();
+        private volatile boolean failNext;
+
+        @Override
+        public void handleAlert(Alert alert) throws RuntimeException {
+            handleAlerts(Arrays.asList(alert));
+        }
+
+        @Override
+        public void handleAlerts(List<Alert> alerts) throws RuntimeException {
+            if (this.failNext) {
+                this.failNext = false;
+                throw new RuntimeException("failed to send");
+            }
+            this.batches.add(new ArrayList<>(alerts));
+        }
+
+        public List<Alert> awaitBatch() throws InterruptedException {
+            List<Alert> batch = this.batches.poll(5, TimeUnit.SECONDS);
+            assertTrue("no batch received", batch != null);
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.elastisys.scale.commons.net.alerter.filtering;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import com.elastisys.scale.commons.json.JsonUtils;
+import com.elastisys.scale.commons.net.alerter.Alert;
+import com.elastisys.scale.commons.net.alerter.AlertSeverity;
+import com.elastisys.scale.commons.util.collection.Maps;
+import com.elastisys.scale.commons.util.time.UtcTime;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Exercises {@link AlertIdentity}.
+ */
+public class TestAlertIdentity {
+
+    /**
+     * Tags that are equal according to {@link JsonElement#equals} should give
+     * the same identity.
+     */
+    @Test
+    public void equalTagsGiveSameIdentity() {
+        assertThat(identity(json("1")), is(identity(json("1.0"))));
+        assertThat(identity(json("1")), is(identity(new JsonPrimitive(1L))));
+        assertThat(identity(json("100")), is(identity(json("1e2"))));
+        assertThat(identity(json("0")), is(identity(json("-0.0"))));
+        assertThat(identity(json("{\"a\": 1, \"b\": [2.50]}")), is(identity(json("{\"b\": [2.5], \"a\": 1.0}"))));
+        assertThat(json("1"), is(json("1.0")));
+    }
+
+    @Test
+    public void differentTagsGiveDifferentIdentities() {
+        assertThat(identity(json("1")), is(not(identity(json("1.5")))));
+        assertThat(identity(json("1")), is(not(identity(json("\"1\"")))));
+        assertThat(identity(json("true")), is(not(identity(json("\"true\"")))));
+        assertThat(identity(json("{\"a\": 1}")), is(not(identity(json("{\"a\": 2}")))));
+        assertThat(identity(json("[1, 2]")), is(not(identity(json("[2, 1]")))));
+    }
+
+    private static String identity(JsonElement tag) {
+        return AlertIdentity.ofTopicMessageAndTags(new Alert("/topic", AlertSeverity.INFO,
+                UtcTime.parse("2017-01-01T12:00:00.000Z"), "message", null, Maps.of("tag", tag)));
+    }
+
+    private static JsonElement json(String json) {
+        return JsonUtils.parseJsonString(json);
+    }
+}
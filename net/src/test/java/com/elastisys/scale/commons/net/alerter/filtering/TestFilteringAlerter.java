@@ -5,6 +5,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
@@ -19,10 +22,14 @@ import org.junit.Test;
 
 import com.elastisys.scale.commons.net.alerter.Alert;
 import com.elastisys.scale.commons.net.alerter.AlertBuilder;
+import com.elastisys.scale.commons.net.alerter.AlertDeliveryException;
+import com.elastisys.scale.commons.net.alerter.AlertPayload;
 import com.elastisys.scale.commons.net.alerter.AlertSeverity;
 import com.elastisys.scale.commons.net.alerter.Alerter;
+import com.elastisys.scale.commons.net.alerter.ReportingAlerter;
 import com.elastisys.scale.commons.util.time.FrozenTime;
 import com.elastisys.scale.commons.util.time.UtcTime;
+import com.google.gson.JsonObject;
 
 public class TestFilteringAlerter {
 
@@ -223,6 +230,39 @@ public class TestFilteringAlerter {
         assertNotEquals(idFunc.apply(alert4), idFunc.apply(alert5));
     }
 
+    /**
+     * Identities must not be fooled by field contents that run together, and
+     * metadata tags should be compared by value.
+     */
+    @Test
+    public void identityFunctionsSeparateFields() {
+        Function<Alert, String> idFunc = FilteringAlerter.TOPIC_MSG_TAGS_IDENTITY_FUNCTION;
+
+        Alert alert1 = AlertBuilder.create().topic("ab").severity(AlertSeverity.INFO).message("c").build();
+        Alert alert2 = AlertBuilder.create().topic("a").severity(AlertSeverity.INFO).message("bc").build();
+        assertNotEquals(idFunc.apply(alert1), idFunc.apply(alert2));
+        assertNotEquals(FilteringAlerter.TOPIC_MSG_IDENTITY_FUNCTION.apply(alert1),
+                FilteringAlerter.TOPIC_MSG_IDENTITY_FUNCTION.apply(alert2));
+
+        Alert stringTag = AlertBuilder.create().topic("t").severity(AlertSeverity.INFO).message("m")
+                .addMetadata("key", "1").build();
+        Alert numberTag = AlertBuilder.create().topic("t").severity(AlertSeverity.INFO).message("m")
+                .addMetadata("key", 1).build();
+        assertNotEquals(idFunc.apply(stringTag), idFunc.apply(numberTag));
+
+        JsonObject object1 = new JsonObject();
+        object1.addProperty("a", 1);
+        object1.addProperty("b", 2);
+        JsonObject object2 = new JsonObject();
+        object2.addProperty("b", 2);
+        object2.addProperty("a", 1);
+        Alert objectTag1 = AlertBuilder.create().topic("t").severity(AlertSeverity.INFO).message("m")
+                .addMetadata("key", object1).build();
+        Alert objectTag2 = AlertBuilder.create().topic("t").severity(AlertSeverity.INFO).message("m")
+                .addMetadata("key", object2).build();
+        assertEquals(idFunc.apply(objectTag1), idFunc.apply(objectTag2));
+    }
+
     @Test
     public void defaultIdentifyFunction() {
         assertThat(FilteringAlerter.DEFAULT_IDENTITY_FUNCTION, is(FilteringAlerter.TOPIC_MSG_TAGS_IDENTITY_FUNCTION));
@@ -263,9 +303,8 @@ public class TestFilteringAlerter {
     }
 
     /**
-     * To prevent the cache from growing infinitely, eviction should take place
-     * on every {@link FilteringAlerter#CALLS_BETWEEN_EVICTION_RUN}th call.
-     * Verify that this is the case.
+     * To prevent the cache from growing infinitely, dated observations should
+     * be evicted on every call. Verify that this is the case.
      */
     @Test
     public void testEviction() {
@@ -275,13 +314,126 @@ public class TestFilteringAlerter {
         FilteringAlerter alerter = new FilteringAlerter(this.wrappedAlerter, idFunction, maxAgeSeconds,
                 TimeUnit.SECONDS);
         assertThat(alerter.size(), is(0));
-        // add one entry every second and make sure that the cache is never
-        // greater than CALLS_BETWEEN_EVICTION_RUN + 60
+        // add one entry every second and make sure that the cache never holds
+        // more than the observations of the last 60 seconds (plus the new one)
         for (int i = 0; i < 50000; i++) {
             FrozenTime.tick();
             alerter.handleAlert(alert(i));
-            assertTrue(alerter.size() <= FilteringAlerter.CALLS_BETWEEN_EVICTION_RUN + maxAgeSeconds);
+            assertTrue(alerter.size() <= maxAgeSeconds + 1);
+        }
+    }
+
+    /**
+     * Dated observations should be evicted as part of handling an
+     * {@link Alert}, without an explicit eviction run.
+     */
+    @Test
+    public void evictIncrementally() {
+        Function<Alert, String> idFunction = (alert) -> alert.getTopic();
+        FilteringAlerter alerter = new FilteringAlerter(this.wrappedAlerter, idFunction, 60, TimeUnit.SECONDS);
+        alerter.handleAlert(alert(1));
+        alerter.handleAlert(alert(2));
+        FrozenTime.tick(30);
+        alerter.handleAlert(alert(3));
+        assertThat(alerter.size(), is(3));
+
+        // suppression time has passed for the first two observations
+        FrozenTime.tick(31);
+        alerter.handleAlert(alert(4));
+        assertThat(alerter.size(), is(2));
+    }
+
+    /**
+     * The number of observations must never exceed the configured maximum.
+     * When full, the oldest observation is to be evicted, even if its
+     * suppression time has not passed.
+     */
+    @Test
+    public void boundNumberOfObservations() {
+        Function<Alert, String> idFunction = (alert) -> alert.getTopic();
+        FilteringAlerter alerter = new FilteringAlerter(this.wrappedAlerter, idFunction, 60, TimeUnit.MINUTES, 3);
+        for (int i = 0; i < 1000; i++) {
+            alerter.handleAlert(alert(i));
+            assertTrue(alerter.size() <= 3);
         }
+        verify(this.wrappedAlerter, times(1000)).handleAlert(any(Alert.class));
+
+        // the most recent observations are still suppressed ...
+        reset(this.wrappedAlerter);
+        alerter.handleAlert(alert(999));
+        verify(this.wrappedAlerter, never()).handleAlert(alert(999));
+        // ... while the evicted ones are not
+        alerter.handleAlert(alert(0));
+        verify(this.wrappedAlerter).handleAlert(alert(0));
+    }
+
+    /**
+     * {@link FilteringAlerter#sendAlert(Alert)} should report delivery
+     * failures and not suppress a retry of an {@link Alert} that failed to be
+     * delivered.
+     */
+    @Test
+    public void sendAlertReportsFailure() {
+        FilteringAlerter alerter = new FilteringAlerter(this.wrappedAlerter, 10, TimeUnit.MINUTES);
+        Alert alert = alert(1);
+
+        doThrow(new RuntimeException("connection refused")).when(this.wrappedAlerter).handleAlert(alert);
+        try {
+            alerter.sendAlert(alert);
+            fail("expected to fail");
+        } catch (AlertDeliveryException e) {
+            assertThat(e.getCause().getMessage(), is("connection refused"));
+        }
+
+        // a retry is not a duplicate, since the alert never got through
+        reset(this.wrappedAlerter);
+        alerter.sendAlert(alert);
+        verify(this.wrappedAlerter).handleAlert(alert);
+        // ... but once delivered, the alert is suppressed
+        alerter.sendAlert(alert);
+        verify(this.wrappedAlerter, times(1)).handleAlert(alert);
+    }
+
+    /**
+     * {@link FilteringAlerter#sendAlert(Alert)} should use the
+     * {@link ReportingAlerter#sendAlert(Alert)} of a wrapped
+     * {@link ReportingAlerter}.
+     */
+    @Test
+    public void sendAlertToReportingAlerter() {
+        ReportingAlerter reportingAlerter = mock(ReportingAlerter.class);
+        FilteringAlerter alerter = new FilteringAlerter(reportingAlerter, 10, TimeUnit.MINUTES);
+        Alert alert = alert(1);
+
+        AlertDeliveryException error = new AlertDeliveryException("failed");
+        doThrow(error).when(reportingAlerter).sendAlert(alert);
+        try {
+            alerter.sendAlert(alert);
+            fail("expected to fail");
+        } catch (AlertDeliveryException e) {
+            assertThat(e, is(error));
+        }
+        verify(reportingAlerter, never()).handleAlert(alert);
+    }
+
+    /**
+     * {@link FilteringAlerter#sendPayload(AlertPayload)} should pass the
+     * {@link AlertPayload} on to a wrapped {@link ReportingAlerter}, and
+     * suppress duplicates like {@link FilteringAlerter#sendAlert(Alert)}.
+     */
+    @Test
+    public void sendPayloadToReportingAlerter() {
+        ReportingAlerter reportingAlerter = mock(ReportingAlerter.class);
+        FilteringAlerter alerter = new FilteringAlerter(reportingAlerter, 10, TimeUnit.MINUTES);
+        AlertPayload payload = new AlertPayload(alert(1), null);
+
+        alerter.sendPayload(payload);
+        verify(reportingAlerter).sendPayload(payload);
+        verify(reportingAlerter, never()).sendAlert(any(Alert.class));
+
+        // duplicate
+        alerter.sendPayload(new AlertPayload(alert(1), null));
+        verify(reportingAlerter, times(1)).sendPayload(any(AlertPayload.class));
     }
 
     private Alert alert(int sequenceNumber) {
@@ -300,6 +452,12 @@ public class TestFilteringAlerter {
         new FilteringAlerter(this.wrappedAlerter, 0, TimeUnit.MINUTES);
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithIllegalMaxObservations() {
+        new FilteringAlerter(this.wrappedAlerter, FilteringAlerter.DEFAULT_IDENTITY_FUNCTION, 10, TimeUnit.MINUTES,
+                0);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void createWithoutIdentityFunction() {
         new FilteringAlerter(this.wrappedAlerter, null, 0, TimeUnit.MINUTES);
@@ -2,7 +2,9 @@ package com.elastisys.scale.commons.net.alerter.http;
 
 import static com.elastisys.scale.commons.util.time.UtcTime.now;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -18,9 +20,12 @@ import org.junit.Test;
 
 import com.elastisys.scale.commons.json.JsonUtils;
 import com.elastisys.scale.commons.net.alerter.Alert;
+import com.elastisys.scale.commons.net.alerter.AlertDeliveryException;
 import com.elastisys.scale.commons.net.alerter.AlertBuilder;
 import com.elastisys.scale.commons.net.alerter.AlertSeverity;
+import com.elastisys.scale.commons.net.alerter.DeliveryResult;
 import com.elastisys.scale.commons.net.host.HostUtils;
+import com.elastisys.scale.commons.net.http.client.AuthenticatedHttpClient;
 import com.elastisys.scale.commons.server.ServletDefinition;
 import com.elastisys.scale.commons.server.ServletServerBuilder;
 import com.elastisys.scale.commons.server.SslKeyStoreType;
@@ -216,6 +221,102 @@ public class TestHttpAlerterBasicFunctionality {
         assertThat(webhook.getReceivedMessages().get(0), is(alert));
     }
 
+    /**
+     * A batch of alerts should be sent as a single JSON array, from which
+     * alerts that don't pass the severity filter have been removed.
+     */
+    @Test
+    public void batchDelivery() {
+        HttpAlerter alerter = new HttpAlerter(config(webhookUrl(), "WARN|ERROR", null), null);
+
+        Alert alert1 = new Alert("topic", AlertSeverity.WARN, now(), "msg1", null);
+        Alert alert2 = new Alert("topic", AlertSeverity.DEBUG, now(), "msg2", null);
+        Alert alert3 = new Alert("topic", AlertSeverity.ERROR, now(), "msg3", null);
+        alerter.handleAlerts(Arrays.asList(alert1, alert2, alert3));
+
+        assertThat(webhook.getReceivedRequests(), is(1));
+        assertThat(webhook.getReceivedMessages(), is(Arrays.asList(alert1, alert3)));
+
+        // nothing should be sent if all alerts are filtered out
+        alerter.handleAlerts(Arrays.asList(alert2));
+        assertThat(webhook.getReceivedRequests(), is(1));
+        alerter.close();
+    }
+
+    /**
+     * Delivery results should be reported per destination.
+     */
+    @Test
+    public void deliveryResultPerDestination() {
+        HttpAlerterConfig config = new HttpAlerterConfig(Arrays.asList(webhookUrl(), "https://non.existing.host:443/"),
+                null, null, 1000, 1000);
+        HttpAlerter alerter = new HttpAlerter(config, null);
+
+        List<DeliveryResult> results = alerter.deliver(JsonUtils.toString(JsonUtils.toJson(alert("msg"))));
+        assertThat(results.size(), is(2));
+        assertThat(results.get(0).getDestination(), is(webhookUrl()));
+        assertThat(results.get(0).isSuccess(), is(true));
+        assertThat(results.get(1).getDestination(), is("https://non.existing.host:443/"));
+        assertThat(results.get(1).isSuccess(), is(false));
+        alerter.close();
+    }
+
+    /**
+     * The same (pooled) client should be reused for all alerts and
+     * destinations until the alerter is closed.
+     */
+    @Test
+    public void reuseClientAcrossAlerts() {
+        HttpAlerterConfig config = new HttpAlerterConfig(Arrays.asList(webhookUrl(), webhookUrl()), null, null, 1000,
+                1000);
+        HttpAlerter alerter = new HttpAlerter(config, null);
+
+        alerter.handleAlert(new Alert("topic", AlertSeverity.INFO, now(), "msg1", null));
+        AuthenticatedHttpClient client = alerter.httpClient();
+        alerter.handleAlert(new Alert("topic", AlertSeverity.INFO, now(), "msg2", null));
+        assertThat(alerter.httpClient(), is(sameInstance(client)));
+        assertThat(webhook.getReceivedMessages().size(), is(4));
+
+        alerter.close();
+    }
+
+    /**
+     * A closed {@link HttpAlerter} should not set up a new client, and should
+     * not deliver any more alerts.
+     */
+    @Test
+    public void noDeliveryAfterClose() throws Exception {
+        HttpAlerterConfig config = new HttpAlerterConfig(Arrays.asList(webhookUrl()), null, null, 1000, 1000);
+        HttpAlerter alerter = new HttpAlerter(config, null);
+        alerter.handleAlert(alert("msg1"));
+        assertThat(webhook.getReceivedMessages().size(), is(1));
+
+        alerter.close();
+        alerter.handleAlert(alert("msg2"));
+        alerter.handleAlerts(Arrays.asList(alert("msg3")));
+        try {
+            alerter.sendAlert(alert("msg4"));
+            fail("closed alerter should not deliver alerts");
+        } catch (AlertDeliveryException e) {
+            // expected
+        }
+        List<DeliveryResult> results = alerter.deliver(JsonUtils.toString(JsonUtils.toJson(alert("msg5"))));
+        assertThat(results.get(0).getError().get() instanceof IllegalStateException, is(true));
+        try {
+            alerter.httpClient();
+            fail("closed alerter should not set up a new client");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertThat(webhook.getReceivedMessages().size(), is(1));
+        // closing again is harmless
+        alerter.close();
+    }
+
+    private static Alert alert(String message) {
+        return new Alert("topic", AlertSeverity.INFO, now(), message, null);
+    }
+
     private HttpAlerterConfig config(String url, String severityFilter, HttpAuthConfig authConfig) {
         return new HttpAlerterConfig(Arrays.asList(url), severityFilter, authConfig, 1000, 1000);
     }
@@ -2,12 +2,14 @@ package com.elastisys.scale.commons.net.alerter.http;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
 
+import com.elastisys.scale.commons.json.JsonUtils;
 import com.elastisys.scale.commons.net.ssl.BasicCredentials;
 
 /**
@@ -32,6 +34,10 @@ public class TestHttpAlerterConfig {
         assertThat(config.getAuth(), is(auth));
         assertThat(config.getConnectTimeout(), is(connectionTimeout));
         assertThat(config.getSocketTimeout(), is(socketTimeout));
+        assertThat(config.getDeliveryTimeout(), is(HttpAlerterConfig.DEFAULT_DELIVERY_TIMEOUT));
+
+        config = new HttpAlerterConfig(urls, severityFilter, auth, connectionTimeout, socketTimeout, 5000);
+        assertThat(config.getDeliveryTimeout(), is(5000));
     }
 
     /**
@@ -53,6 +59,9 @@ public class TestHttpAlerterConfig {
         assertThat(config.getAuth().getCertificateCredentials().isPresent(), is(false));
         assertThat(config.getConnectTimeout(), is(HttpAlerterConfig.DEFAULT_CONNECTION_TIMEOUT));
         assertThat(config.getSocketTimeout(), is(HttpAlerterConfig.DEFAULT_SOCKET_TIMEOUT));
+
+        config = new HttpAlerterConfig(urls, severityFilter, auth, connectionTimeout, socketTimeout, null);
+        assertThat(config.getDeliveryTimeout(), is(HttpAlerterConfig.DEFAULT_DELIVERY_TIMEOUT));
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -70,6 +79,12 @@ public class TestHttpAlerterConfig {
         new HttpAlerterConfig(urls, severityFilter, auth);
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void withNonPositiveDeliveryTimeout() {
+        List<String> urls = Arrays.asList("http://some.host/");
+        new HttpAlerterConfig(urls, null, null, null, null, 0);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void withIllegalSeverityFilter() {
         List<String> urls = Arrays.asList("http://some.host/");
@@ -78,4 +93,22 @@ public class TestHttpAlerterConfig {
 
         new HttpAlerterConfig(urls, severityFilter, auth);
     }
+
+    /**
+     * A config should be deserialized as-is, and only be validated on
+     * {@link HttpAlerterConfig#validate()}.
+     */
+    @Test
+    public void fromJsonWithoutValidation() {
+        HttpAlerterConfig config = JsonUtils.toObject(
+                JsonUtils.parseJsonString("{\"destinationUrls\": [\"tcp://1.2.3.4\"], \"deliveryTimeout\": 0}"),
+                HttpAlerterConfig.class);
+        assertThat(config.getDestinationUrls(), is(Arrays.asList("tcp://1.2.3.4")));
+        try {
+            config.validate();
+            fail("expected validation to fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
 }
@@ -2,8 +2,9 @@ package com.elastisys.scale.commons.net.alerter.http;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
@@ -17,6 +18,7 @@ import org.slf4j.LoggerFactory;
 
 import com.elastisys.scale.commons.json.JsonUtils;
 import com.elastisys.scale.commons.net.alerter.Alert;
+import com.google.gson.JsonElement;
 
 /**
  * A {@link Servlet} used in tests that saves a list of all received POST
@@ -28,7 +30,9 @@ public class WebhookServlet extends HttpServlet {
     static final Logger logger = LoggerFactory.getLogger(WebhookServlet.class);
 
     private final int responseCode;
-    private final List<Alert> receivedAlerts = new ArrayList<>();
+    private final List<Alert> receivedAlerts = new CopyOnWriteArrayList<>();
+    /** Number of received POST requests. */
+    private final AtomicInteger receivedRequests = new AtomicInteger();
 
     /**
      * @param responseCode
@@ -45,7 +49,16 @@ public class WebhookServlet extends HttpServlet {
             throws ServletException, IOException {
         String body = IO.toString(request.getInputStream(), StandardCharsets.UTF_8.displayName());
         logger.debug("received {} request: {}\n  Body: '{}'", request.getMethod(), request.getRequestURI(), body);
-        this.receivedAlerts.add(JsonUtils.toObject(JsonUtils.parseJsonString(body), Alert.class));
+        this.receivedRequests.incrementAndGet();
+        JsonElement json = JsonUtils.parseJsonString(body);
+        if (json.isJsonArray()) {
+            // a batch of alerts
+            for (JsonElement alert : json.getAsJsonArray()) {
+                this.receivedAlerts.add(JsonUtils.toObject(alert, Alert.class));
+            }
+        } else {
+            this.receivedAlerts.add(JsonUtils.toObject(json, Alert.class));
+        }
 
         response.setContentType("text/html;charset=utf-8");
         response.setStatus(this.responseCode);
@@ -57,6 +70,16 @@ public class WebhookServlet extends HttpServlet {
      */
     public void clear() {
         this.receivedAlerts.clear();
+        this.receivedRequests.set(0);
+    }
+
+    /**
+     * Returns the number of received POST requests.
+     *
+     * @return
+     */
+    public int getReceivedRequests() {
+        return this.receivedRequests.get();
     }
 
     public List<Alert> getReceivedMessages() {
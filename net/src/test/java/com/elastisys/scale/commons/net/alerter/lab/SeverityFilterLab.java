@@ -0,0 +1,56 @@
+package com.elastisys.scale.commons.net.alerter.lab;
+
+import java.util.regex.Pattern;
+
+import com.elastisys.scale.commons.net.alerter.Alert;
+import com.elastisys.scale.commons.net.alerter.AlertSeverity;
+import com.elastisys.scale.commons.net.alerter.SeverityFilter;
+import com.elastisys.scale.commons.util.time.UtcTime;
+
+/**
+ * Simple program that compares the cost of filtering {@link Alert}s with a
+ * {@link SeverityFilter} (which resolves its filter expression to a set of
+ * accepted severities up front) against matching the filter expression on
+ * every {@link Alert} (which compiles the regular expression on every call).
+ */
+public class SeverityFilterLab {
+
+    private static final String FILTER_EXPRESSION = "NOTICE|WARN|ERROR|FATAL";
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ITERATIONS = 2_000_000;
+
+    public static void main(String[] args) {
+        AlertSeverity[] severities = AlertSeverity.values();
+        Alert[] alerts = new Alert[severities.length];
+        for (int i = 0; i < severities.length; i++) {
+            alerts[i] = new Alert("/topic", severities[i], UtcTime.now(), "message", null);
+        }
+        SeverityFilter filter = new SeverityFilter(FILTER_EXPRESSION);
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long start = System.nanoTime();
+            int suppressed = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                String severity = alerts[i % alerts.length].getSeverity().name();
+                if (!Pattern.matches(FILTER_EXPRESSION, severity)) {
+                    suppressed++;
+                }
+            }
+            long regexNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                if (filter.shouldSuppress(alerts[i % alerts.length])) {
+                    suppressed--;
+                }
+            }
+            long filterNanos = System.nanoTime() - start;
+
+            if (round == WARMUP_ROUNDS) {
+                System.out.printf("Pattern.matches per call: %.1f ns/op%n", (double) regexNanos / ITERATIONS);
+                System.out.printf("SeverityFilter:           %.1f ns/op%n", (double) filterNanos / ITERATIONS);
+                System.out.printf("(checksum: %d)%n", suppressed);
+            }
+        }
+    }
+}
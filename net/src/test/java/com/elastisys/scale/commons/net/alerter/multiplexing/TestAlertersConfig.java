@@ -13,6 +13,7 @@ import org.junit.Test;
 
 import com.elastisys.scale.commons.json.JsonUtils;
 import com.elastisys.scale.commons.json.types.TimeInterval;
+import com.elastisys.scale.commons.net.alerter.batching.BatchingAlerterConfig;
 import com.elastisys.scale.commons.net.alerter.http.HttpAlerterConfig;
 import com.elastisys.scale.commons.net.alerter.http.HttpAuthConfig;
 import com.elastisys.scale.commons.net.alerter.smtp.SmtpAlerterConfig;
@@ -58,6 +59,29 @@ public class TestAlertersConfig {
 
     }
 
+    /**
+     * Batching is only used if configured.
+     */
+    @Test
+    public void withBatching() {
+        HttpAlerterConfig httpAlerter1 = new HttpAlerterConfig(Arrays.asList("http://host1/"), "INFO|WARN", null);
+
+        AlertersConfig config = new AlertersConfig(null, asList(httpAlerter1), null);
+        assertThat(config.getBatching().isPresent(), is(false));
+
+        BatchingAlerterConfig batching = new BatchingAlerterConfig(10, TimeInterval.seconds(30));
+        config = new AlertersConfig(null, asList(httpAlerter1), null, batching);
+        config.validate();
+        assertThat(config.getBatching().get(), is(batching));
+
+        config = JsonUtils.toObject(JsonUtils.parseJsonString(
+                "{'http': [{'destinationUrls': ['http://host1/']}], 'batching': {'maxBatchSize': 20}}"),
+                AlertersConfig.class);
+        config.validate();
+        assertThat(config.getBatching().get().getMaxBatchSize(), is(20));
+        assertThat(config.getBatching().get().getWindow(), is(BatchingAlerterConfig.DEFAULT_WINDOW));
+    }
+
     /**
      * <code>null</code> arguments should be allowed and should default to empty
      * list.
@@ -23,9 +23,11 @@ import com.elastisys.scale.commons.eventbus.impl.SynchronousEventBus;
 import com.elastisys.scale.commons.json.JsonUtils;
 import com.elastisys.scale.commons.json.types.TimeInterval;
 import com.elastisys.scale.commons.net.alerter.Alert;
+import com.elastisys.scale.commons.net.alerter.AlertDeliveryException;
 import com.elastisys.scale.commons.net.alerter.AlertBuilder;
 import com.elastisys.scale.commons.net.alerter.AlertSeverity;
 import com.elastisys.scale.commons.net.alerter.Alerter;
+import com.elastisys.scale.commons.net.alerter.DeliveryResult;
 import com.elastisys.scale.commons.net.alerter.filtering.FilteringAlerter;
 import com.elastisys.scale.commons.net.alerter.http.HttpAlerter;
 import com.elastisys.scale.commons.net.alerter.http.HttpAlerterConfig;
@@ -85,6 +87,7 @@ public class TestMultiplexingAlerter {
 
     @After
     public void onTearDown() {
+        this.multiplexingAlerter.close();
         stopSmtpServer();
     }
 
@@ -259,6 +262,80 @@ public class TestMultiplexingAlerter {
         }
     }
 
+    /**
+     * The outcome of a dispatch should be reported per {@link Alerter}.
+     */
+    @Test
+    public void dispatchReportsResultPerAlerter() throws Exception {
+        RequestLoggingHttpServer webServer = startHttpServer();
+        try {
+            SmtpAlerterConfig smtpAlerter = smtpConfig("recipient@company.com", ".*");
+            HttpAlerterConfig httpAlerter = httpConfig("http://localhost:" + webServer.getHttpPort(), ".*");
+            AlertersConfig alertConfig = alertConfig(asList(smtpAlerter), asList(httpAlerter), null);
+            this.multiplexingAlerter.registerAlerters(alertConfig, standardTags());
+
+            Alert alert = AlertBuilder.create().topic("topic").severity(AlertSeverity.ERROR).message("error!").build();
+            List<DeliveryResult> results = this.multiplexingAlerter.dispatch(alert);
+            assertThat(results.size(), is(2));
+            assertThat(results.get(0).isSuccess(), is(true));
+            assertThat(results.get(1).isSuccess(), is(true));
+            assertThat(webServer.getPostedMessages().size(), is(1));
+            assertThat(this.sslMailServer.getReceivedMessages().length, is(1));
+        } finally {
+            webServer.stop();
+        }
+    }
+
+    /**
+     * A failed delivery should be reported as a failed dispatch, with the
+     * outcome per destination of the {@link Alerter}.
+     */
+    @Test
+    public void dispatchReportsFailedDelivery() throws Exception {
+        RequestLoggingHttpServer webServer = startHttpServer();
+        try {
+            String goodUrl = "http://localhost:" + webServer.getHttpPort();
+            String badUrl = "http://localhost:" + HostUtils.findFreePorts(1).get(0);
+            HttpAlerterConfig httpAlerter = new HttpAlerterConfig(Arrays.asList(goodUrl, badUrl), ".*",
+                    new HttpAuthConfig(new BasicCredentials("user", "pass"), null));
+            this.multiplexingAlerter.registerAlerters(alertConfig(null, asList(httpAlerter), null), standardTags());
+
+            Alert alert = AlertBuilder.create().topic("topic").severity(AlertSeverity.ERROR).message("error!").build();
+            List<DeliveryResult> results = this.multiplexingAlerter.dispatch(alert);
+            assertThat(results.size(), is(1));
+            assertThat(results.get(0).isSuccess(), is(false));
+            AlertDeliveryException error = (AlertDeliveryException) results.get(0).getError().get();
+            List<DeliveryResult> destinationResults = error.getDeliveryResults();
+            assertThat(destinationResults.size(), is(2));
+            assertThat(destinationResults.get(0).getDestination(), is(goodUrl));
+            assertThat(destinationResults.get(0).isSuccess(), is(true));
+            assertThat(destinationResults.get(1).getDestination(), is(badUrl));
+            assertThat(destinationResults.get(1).isSuccess(), is(false));
+            assertThat(webServer.getPostedMessages().size(), is(1));
+
+            // since delivery failed, a retry is not suppressed as a duplicate
+            this.multiplexingAlerter.dispatch(alert);
+            assertThat(webServer.getPostedMessages().size(), is(2));
+        } finally {
+            webServer.stop();
+        }
+    }
+
+    /**
+     * A closed {@link MultiplexingAlerter} should not dispatch any alerts.
+     */
+    @Test
+    public void noDispatchAfterClose() throws Exception {
+        SmtpAlerterConfig smtpAlerter = smtpConfig("recipient@company.com", ".*");
+        this.multiplexingAlerter.registerAlerters(alertConfig(asList(smtpAlerter), null, null), standardTags());
+        this.multiplexingAlerter.close();
+
+        Alert alert = AlertBuilder.create().topic("topic").severity(AlertSeverity.ERROR).message("error!").build();
+        assertThat(this.multiplexingAlerter.dispatch(alert).isEmpty(), is(true));
+        this.multiplexingAlerter.handleAlert(alert);
+        assertThat(this.sslMailServer.getReceivedMessages().length, is(0));
+    }
+
     /**
      * Make sure duplicate {@link Alert}s are not dispatched to {@link Alerter}
      * s.
@@ -0,0 +1,291 @@
+package com.elastisys.scale.commons.net.alerter.outbox;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.elastisys.scale.commons.net.alerter.Alert;
+import com.elastisys.scale.commons.net.alerter.AlertBuilder;
+import com.elastisys.scale.commons.net.alerter.AlertDeliveryException;
+import com.elastisys.scale.commons.net.alerter.AlertSeverity;
+import com.elastisys.scale.commons.net.alerter.Alerter;
+import com.elastisys.scale.commons.net.alerter.ReportingAlerter;
+import com.elastisys.scale.commons.util.file.FileUtils;
+
+/**
+ * Exercises the {@link OutboxAlerter}.
+ */
+public class TestOutboxAlerter {
+
+    private static final File OUTBOX_DIR = new File("target", "outbox");
+
+    /** Object under test. */
+    private OutboxAlerter alerter;
+
+    @Before
+    public void beforeTestMethod() throws IOException {
+        FileUtils.deleteRecursively(OUTBOX_DIR);
+    }
+
+    @After
+    public void afterTestMethod() {
+        if (this.alerter != null) {
+            this.alerter.close();
+        }
+    }
+
+    /**
+     * {@link Alert}s should be delivered, in order, in the background.
+     */
+    @Test
+    public void deliverInOrder() throws Exception {
+        RecordingAlerter receiver = new RecordingAlerter();
+        this.alerter = new OutboxAlerter(receiver, OUTBOX_DIR);
+
+        this.alerter.handleAlert(alert("1"));
+        this.alerter.handleAlert(alert("2"));
+        this.alerter.handleAlert(alert("3"));
+
+        assertThat(receiver.await(3), is(Arrays.asList(alert("1"), alert("2"), alert("3"))));
+        awaitPendingCount(0);
+    }
+
+    /**
+     * A slow recipient should not hold up the poster of an {@link Alert}.
+     */
+    @Test
+    public void handleAlertDoesNotWaitForDelivery() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingAlerter receiver = new RecordingAlerter() {
+            @Override
+            public void handleAlert(Alert alert) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                super.handleAlert(alert);
+            }
+        };
+        this.alerter = new OutboxAlerter(receiver, OUTBOX_DIR);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            this.alerter.handleAlert(alert(String.valueOf(i)));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertThat(this.alerter.getPendingCount(), is(10L));
+
+        release.countDown();
+        assertThat(receiver.await(10).size(), is(10));
+        awaitPendingCount(0);
+    }
+
+    /**
+     * A failed delivery should be retried until it succeeds, with the
+     * {@link Alert}s that follow waiting their turn.
+     */
+    @Test
+    public void retryFailedDelivery() throws Exception {
+        FlakyAlerter receiver = new FlakyAlerter(2);
+        this.alerter = new OutboxAlerter(receiver, OUTBOX_DIR, OutboxAlerter.DEFAULT_MAX_SEGMENT_SIZE, false, 10, 20,
+                TimeUnit.MILLISECONDS);
+
+        this.alerter.handleAlert(alert("1"));
+        this.alerter.handleAlert(alert("2"));
+
+        assertThat(receiver.await(2), is(Arrays.asList(alert("1"), alert("2"))));
+        assertThat(receiver.attempts.get(), is(6));
+        awaitPendingCount(0);
+    }
+
+    /**
+     * For a {@link ReportingAlerter}, failures reported by
+     * {@link ReportingAlerter#sendAlert(Alert)} should be retried.
+     */
+    @Test
+    public void retryFailureReportedByReportingAlerter() throws Exception {
+        FlakyAlerter receiver = new FlakyAlerter(1);
+        this.alerter = new OutboxAlerter(receiver.reporting(), OUTBOX_DIR, OutboxAlerter.DEFAULT_MAX_SEGMENT_SIZE,
+                false, 10, 20, TimeUnit.MILLISECONDS);
+
+        this.alerter.handleAlert(alert("1"));
+
+        assertThat(receiver.await(1), is(Arrays.asList(alert("1"))));
+        assertThat(receiver.attempts.get(), is(2));
+    }
+
+    /**
+     * {@link Alert}s that have not been delivered when the
+     * {@link OutboxAlerter} is closed should be delivered by the next
+     * {@link OutboxAlerter} opened on the same directory.
+     */
+    @Test
+    public void deliverUndeliveredAlertsAfterRestart() throws Exception {
+        FlakyAlerter unavailable = new FlakyAlerter(Integer.MAX_VALUE);
+        OutboxAlerter first = new OutboxAlerter(unavailable, OUTBOX_DIR, 100, true, 10, 20, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 10; i++) {
+            first.handleAlert(alert(String.valueOf(i)));
+        }
+        first.close();
+        assertThat(first.getPendingCount(), is(10L));
+
+        RecordingAlerter receiver = new RecordingAlerter();
+        this.alerter = new OutboxAlerter(receiver, OUTBOX_DIR, 100, true, 10, 20, TimeUnit.MILLISECONDS);
+        List<Alert> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add(alert(String.valueOf(i)));
+        }
+        assertThat(receiver.await(10), is(expected));
+        awaitPendingCount(0);
+    }
+
+    /**
+     * Delivered {@link Alert}s should not be delivered again after a restart.
+     */
+    @Test
+    public void doNotRedeliverAfterRestart() throws Exception {
+        RecordingAlerter receiver = new RecordingAlerter();
+        OutboxAlerter first = new OutboxAlerter(receiver, OUTBOX_DIR, 100, true, 10, 20, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 10; i++) {
+            first.handleAlert(alert(String.valueOf(i)));
+        }
+        receiver.await(10);
+        first.close();
+        assertThat(first.getPendingCount(), is(0L));
+
+        this.alerter = new OutboxAlerter(receiver, OUTBOX_DIR, 100, true, 10, 20, TimeUnit.MILLISECONDS);
+        this.alerter.handleAlert(alert("10"));
+        assertThat(receiver.await(1), is(Arrays.asList(alert("10"))));
+    }
+
+    /**
+     * Once closed, {@link Alert}s should be rejected.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void rejectAlertsAfterClose() throws Exception {
+        this.alerter = new OutboxAlerter(new RecordingAlerter(), OUTBOX_DIR);
+        this.alerter.close();
+        this.alerter.handleAlert(alert("1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithoutAlerter() throws Exception {
+        new OutboxAlerter(null, OUTBOX_DIR);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithMaxRetryDelaySmallerThanInitialRetryDelay() throws Exception {
+        new OutboxAlerter(new RecordingAlerter(), OUTBOX_DIR, 100, true, 10, 5, TimeUnit.MILLISECONDS);
+    }
+
+    private void awaitPendingCount(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.alerter.getPendingCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(this.alerter.getPendingCount(), is(expected));
+    }
+
+    private static Alert alert(String message) {
+        return AlertBuilder.create().topic("topic").severity(AlertSeverity.ERROR).message(message)
+                .timestamp(new DateTime(0, DateTimeZone.UTC)).build();
+    }
+
+    /**
+     * An {@link Alerter} that records received {@link Alert}s.
+     */
+    private static class RecordingAlerter implements Alerter {
+        private final BlockingQueue<Alert> received = new LinkedBlockingQueue<>();
+
+        @Override
+        public void handleAlert(Alert alert) {
+            this.received.add(alert);
+        }
+
+        /**
+         * Waits for a given number of {@link Alert}s to be received.
+         *
+         * @param count
+         * @return
+         * @throws InterruptedException
+         */
+        public List<Alert> await(int count) throws InterruptedException {
+            List<Alert> alerts = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Alert alert = this.received.poll(5, TimeUnit.SECONDS);
+                if (alert == null) {
+                    throw new AssertionError("timed out waiting for alert " + (i + 1));
+                }
+                alerts.add(alert);
+            }
+            return alerts;
+        }
+    }
+
+    /**
+     * A {@link RecordingAlerter} that fails each {@link Alert} a given number
+     * of times before accepting it.
+     */
+    private static class FlakyAlerter extends RecordingAlerter {
+        private final int failuresPerAlert;
+        private final AtomicInteger attempts = new AtomicInteger();
+        private int failures;
+
+        public FlakyAlerter(int failuresPerAlert) {
+            this.failuresPerAlert = failuresPerAlert;
+        }
+
+        @Override
+        public synchronized void handleAlert(Alert alert) {
+            this.attempts.incrementAndGet();
+            if (this.failures < this.failuresPerAlert) {
+                this.failures++;
+                throw new AlertDeliveryException("recipient unavailable");
+            }
+            this.failures = 0;
+            super.handleAlert(alert);
+        }
+
+        /**
+         * Returns a {@link ReportingAlerter} view of this alerter that only
+         * reports failures through {@link ReportingAlerter#sendAlert(Alert)}.
+         *
+         * @return
+         */
+        public ReportingAlerter reporting() {
+            return new ReportingAlerter() {
+                @Override
+                public void handleAlert(Alert alert) {
+                    try {
+                        sendAlert(alert);
+                    } catch (AlertDeliveryException e) {
+                        // swallowed, like HttpAlerter and SmtpAlerter do
+                    }
+                }
+
+                @Override
+                public void sendAlert(Alert alert) throws AlertDeliveryException {
+                    FlakyAlerter.this.handleAlert(alert);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.elastisys.scale.commons.net.alerter.outbox;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.elastisys.scale.commons.net.alerter.outbox.OutboxLog.Record;
+import com.elastisys.scale.commons.util.file.FileUtils;
+
+/**
+ * Exercises the {@link OutboxLog}.
+ */
+public class TestOutboxLog {
+
+    private static final File LOG_DIR = new File("target", "outboxlog");
+
+    @Before
+    public void beforeTestMethod() throws IOException {
+        FileUtils.deleteRecursively(LOG_DIR);
+    }
+
+    /**
+     * Records should be handed out in order, each until acknowledged.
+     */
+    @Test
+    public void appendPeekAndAcknowledge() throws IOException {
+        try (OutboxLog log = new OutboxLog(LOG_DIR, 1024, false)) {
+            assertThat(log.peek(), is(nullValue()));
+            log.append("a");
+            log.append("b");
+            assertThat(log.pending(), is(2L));
+
+            Record record = log.peek();
+            assertThat(record.getPayload(), is("a"));
+            assertThat(log.peek().getPayload(), is("a"));
+            log.acknowledge(record);
+            assertThat(log.pending(), is(1L));
+
+            record = log.peek();
+            assertThat(record.getPayload(), is("b"));
+            log.acknowledge(record);
+            assertThat(log.peek(), is(nullValue()));
+            assertThat(log.pending(), is(0L));
+        }
+    }
+
+    /**
+     * Unacknowledged records should survive a re-open, acknowledged ones not.
+     */
+    @Test
+    public void reopen() throws IOException {
+        try (OutboxLog log = new OutboxLog(LOG_DIR, 1024, true)) {
+            log.append("a");
+            log.append("b");
+            log.append("c");
+            log.acknowledge(log.peek());
+        }
+
+        try (OutboxLog log = new OutboxLog(LOG_DIR, 1024, true)) {
+            assertThat(log.pending(), is(2L));
+            assertThat(log.peek().getPayload(), is("b"));
+            log.acknowledge(log.peek());
+            assertThat(log.peek().getPayload(), is("c"));
+        }
+    }
+
+    /**
+     * Records should span several segments, and segments should be deleted
+     * once all of their records have been acknowledged.
+     */
+    @Test
+    public void rollAndDeleteSegments() throws IOException {
+        try (OutboxLog log = new OutboxLog(LOG_DIR, 20, false)) {
+            for (int i = 0; i < 10; i++) {
+                log.append("record-" + i);
+            }
+            assertThat(segmentCount(), is(6));
+
+            for (int i = 0; i < 10; i++) {
+                Record record = log.peek();
+                assertThat(record.getPayload(), is("record-" + i));
+                log.acknowledge(record);
+            }
+            assertThat(log.peek(), is(nullValue()));
+            assertThat(segmentCount(), is(1));
+        }
+
+        // all records acknowledged before re-open
+        try (OutboxLog log = new OutboxLog(LOG_DIR, 20, false)) {
+            assertThat(log.pending(), is(0L));
+            assertThat(log.peek(), is(nullValue()));
+            log.append("record-10");
+            assertThat(log.peek().getPayload(), is("record-10"));
+        }
+    }
+
+    /**
+     * A partially written record at the end of the log (from a crash in the
+     * middle of an append) should be truncated on open.
+     */
+    @Test
+    public void truncateIncompleteRecordOnOpen() throws IOException {
+        try (OutboxLog log = new OutboxLog(LOG_DIR, 1024, true)) {
+            log.append("a");
+            log.append("b");
+        }
+        File segment = LOG_DIR.listFiles((dir, name) -> name.startsWith(OutboxLog.SEGMENT_PREFIX))[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        try (OutboxLog log = new OutboxLog(LOG_DIR, 1024, true)) {
+            assertThat(log.pending(), is(1L));
+            log.append("c");
+            log.acknowledge(log.peek());
+            assertThat(log.peek().getPayload(), is("c"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void acknowledgeOutOfOrder() throws IOException {
+        try (OutboxLog log = new OutboxLog(LOG_DIR, 1024, false)) {
+            log.append("a");
+            Record record = log.peek();
+            log.acknowledge(record);
+            log.acknowledge(record);
+        }
+    }
+
+    private static int segmentCount() {
+        return LOG_DIR.listFiles((dir, name) -> name.startsWith(OutboxLog.SEGMENT_PREFIX)).length;
+    }
+}
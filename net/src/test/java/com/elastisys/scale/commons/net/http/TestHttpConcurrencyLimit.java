@@ -0,0 +1,68 @@
+package com.elastisys.scale.commons.net.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Test;
+
+import com.elastisys.scale.commons.net.host.HostUtils;
+import com.elastisys.scale.commons.net.limiter.AimdLimit;
+import com.elastisys.scale.commons.net.limiter.ConcurrencyLimiter;
+
+/**
+ * Verifies that a {@link Http} client configured with a concurrency limit
+ * makes use of a {@link ConcurrencyLimiter} per destination.
+ */
+public class TestHttpConcurrencyLimit {
+
+    @Test
+    public void testWithoutConcurrencyLimit() {
+        Http http = Http.builder().build();
+        assertThat(http.getConcurrencyLimiter("http://localhost:8080"), is(nullValue()));
+    }
+
+    /**
+     * A separate {@link ConcurrencyLimiter} should be used per destination.
+     */
+    @Test
+    public void testLimiterPerDestination() {
+        Http http = Http.builder().concurrencyLimiter(() -> new ConcurrencyLimiter(new AimdLimit())).build();
+        ConcurrencyLimiter limiter = http.getConcurrencyLimiter("http://localhost:8080");
+        assertThat(http.getConcurrencyLimiter("http://localhost:8080"), is(sameInstance(limiter)));
+        assertThat(http.getConcurrencyLimiter("http://localhost:8081") == limiter, is(false));
+    }
+
+    /**
+     * Failed connection attempts should be reported as drops, causing the
+     * limit to be reduced.
+     */
+    @Test
+    public void testBackOffOnConnectionFailure() throws Exception {
+        int port = HostUtils.findFreePorts(1).get(0);
+        Http http = Http.builder().concurrencyLimiter(
+                () -> new ConcurrencyLimiter(new AimdLimit(10, 1, 100, 0.5, 10, TimeUnit.SECONDS))).build();
+        String url = String.format("http://localhost:%d/", port);
+        try {
+            http.execute(new HttpGet(url));
+            fail("expected request to fail");
+        } catch (IOException e) {
+            // expected: nothing is listening on the port
+        }
+
+        ConcurrencyLimiter limiter = http.getConcurrencyLimiter("http://localhost:" + port);
+        assertThat(limiter.getLimit(), is(5));
+        assertThat(limiter.getInFlight(), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullLimiterFactory() {
+        Http.builder().concurrencyLimiter(null);
+    }
+}
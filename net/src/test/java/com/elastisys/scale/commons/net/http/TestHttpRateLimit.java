@@ -0,0 +1,95 @@
+package com.elastisys.scale.commons.net.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.message.BasicHeader;
+import org.junit.Test;
+
+import com.elastisys.scale.commons.net.limiter.LimitExceededException;
+import com.elastisys.scale.commons.net.limiter.RateLimitPolicy;
+import com.elastisys.scale.commons.net.limiter.TokenBucketRateLimiter;
+
+/**
+ * Verifies that a {@link Http} client configured with a
+ * {@link TokenBucketRateLimiter} limits its request rate and respects
+ * {@code Retry-After} headers.
+ */
+public class TestHttpRateLimit {
+
+    @Test
+    public void testWithoutRateLimit() {
+        assertThat(Http.builder().build().getRateLimiter(), is(nullValue()));
+    }
+
+    /**
+     * Requests exceeding the rate limit should not be sent.
+     */
+    @Test
+    public void testFailFastWhenRateLimitExceeded() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, RateLimitPolicy.FAIL_FAST, 0,
+                TimeUnit.SECONDS);
+        Http http = Http.builder().rateLimiter(limiter).build();
+        assertThat(http.getRateLimiter(), is(sameInstance(limiter)));
+
+        // use up the only token
+        limiter.acquire(URI.create("http://localhost:1/"));
+        try {
+            http.execute(new HttpGet("http://localhost:1/"));
+            fail("expected rate limit to be exceeded");
+        } catch (LimitExceededException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRetryAfterInSeconds() {
+        assertThat(Http.retryAfterMillis(headers(new BasicHeader("Retry-After", "120")), 0), is(120000L));
+        assertThat(Http.retryAfterMillis(headers(new BasicHeader("retry-after", " 5 ")), 0), is(5000L));
+    }
+
+    @Test
+    public void testRetryAfterAsHttpDate() {
+        long now = System.currentTimeMillis();
+        // HTTP dates have second precision
+        Date in30Seconds = new Date((now / 1000 + 30) * 1000);
+        Long retryAfter = Http.retryAfterMillis(
+                headers(new BasicHeader("Retry-After", DateUtils.formatDate(in30Seconds))), now);
+        assertThat(retryAfter, is(in30Seconds.getTime() - now));
+
+        // dates in the past mean no delay
+        Date past = new Date(now - 30000);
+        assertThat(Http.retryAfterMillis(headers(new BasicHeader("Retry-After", DateUtils.formatDate(past))), now),
+                is(0L));
+    }
+
+    @Test
+    public void testMissingOrInvalidRetryAfter() {
+        assertThat(Http.retryAfterMillis(Collections.emptyList(), 0), is(nullValue()));
+        assertThat(Http.retryAfterMillis(headers(new BasicHeader("Content-Type", "text/plain")), 0),
+                is(nullValue()));
+        assertThat(Http.retryAfterMillis(headers(new BasicHeader("Retry-After", "soon")), 0), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullRateLimiter() {
+        Http.builder().rateLimiter(null);
+    }
+
+    private static List<Header> headers(Header... headers) {
+        return Arrays.asList(headers);
+    }
+}
@@ -0,0 +1,72 @@
+package com.elastisys.scale.commons.net.limiter;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Exercises the {@link AimdLimit} {@link LimitAlgorithm}.
+ */
+public class TestAimdLimit {
+
+    private static final long FAST = MILLISECONDS.toNanos(10);
+    private static final long SLOW = MILLISECONDS.toNanos(2000);
+
+    @Test
+    public void testDefaults() {
+        AimdLimit aimd = new AimdLimit();
+        assertThat(aimd.getInitialLimit(), is(AimdLimit.DEFAULT_INITIAL_LIMIT));
+    }
+
+    /**
+     * The limit should grow additively on success when utilized.
+     */
+    @Test
+    public void testAdditiveIncrease() {
+        AimdLimit aimd = new AimdLimit(10, 1, 12, 0.5, 1000, MILLISECONDS);
+        assertThat(aimd.update(10, FAST, 10, false), is(11));
+        assertThat(aimd.update(11, FAST, 11, false), is(12));
+        // capped by max limit
+        assertThat(aimd.update(12, FAST, 12, false), is(12));
+    }
+
+    /**
+     * The limit should not grow if less than half of it is being used.
+     */
+    @Test
+    public void testNoIncreaseWhenUnderutilized() {
+        AimdLimit aimd = new AimdLimit(10, 1, 100, 0.5, 1000, MILLISECONDS);
+        assertThat(aimd.update(10, FAST, 4, false), is(10));
+        assertThat(aimd.update(10, FAST, 5, false), is(11));
+    }
+
+    /**
+     * The limit should be cut multiplicatively on drops and on slow requests.
+     */
+    @Test
+    public void testMultiplicativeDecrease() {
+        AimdLimit aimd = new AimdLimit(10, 2, 100, 0.5, 1000, MILLISECONDS);
+        assertThat(aimd.update(10, FAST, 10, true), is(5));
+        // too slow
+        assertThat(aimd.update(10, SLOW, 10, false), is(5));
+        // never drops below min limit
+        assertThat(aimd.update(3, FAST, 3, true), is(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalMinLimit() {
+        new AimdLimit(10, 0, 100, 0.5, 1000, MILLISECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalInitialLimit() {
+        new AimdLimit(101, 1, 100, 0.5, 1000, MILLISECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalBackoffRatio() {
+        new AimdLimit(10, 1, 100, 1.0, 1000, MILLISECONDS);
+    }
+}
@@ -0,0 +1,135 @@
+package com.elastisys.scale.commons.net.limiter;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.elastisys.scale.commons.net.limiter.ConcurrencyLimiter.Permit;
+
+/**
+ * Exercises the {@link ConcurrencyLimiter}.
+ */
+public class TestConcurrencyLimiter {
+
+    private ExecutorService executor;
+
+    @Before
+    public void beforeTestMethod() {
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void afterTestMethod() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testAcquireAndRelease() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(fixedLimit(2));
+        assertThat(limiter.getLimit(), is(2));
+
+        Permit permit1 = limiter.acquire();
+        Permit permit2 = limiter.acquire();
+        assertThat(limiter.getInFlight(), is(2));
+
+        permit1.success();
+        assertThat(limiter.getInFlight(), is(1));
+        // releasing a permit more than once should have no effect
+        permit1.success();
+        permit1.dropped();
+        assertThat(limiter.getInFlight(), is(1));
+
+        permit2.ignore();
+        assertThat(limiter.getInFlight(), is(0));
+    }
+
+    /**
+     * When the limit has been reached, acquire should fail after the maximum
+     * wait time.
+     */
+    @Test
+    public void testFailWhenLimitReached() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(fixedLimit(1), 50, MILLISECONDS);
+        limiter.acquire();
+        long start = System.currentTimeMillis();
+        try {
+            limiter.acquire();
+            fail("expected to fail to acquire permit");
+        } catch (LimitExceededException e) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start >= 50);
+    }
+
+    /**
+     * A waiting caller should be admitted as soon as a permit is released.
+     */
+    @Test
+    public void testWaitForPermit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(fixedLimit(1), 10, SECONDS);
+        Permit permit = limiter.acquire();
+
+        CountDownLatch waiting = new CountDownLatch(1);
+        Future<Permit> waiter = this.executor.submit(() -> {
+            waiting.countDown();
+            return limiter.acquire();
+        });
+        waiting.await();
+        Thread.sleep(50);
+        assertThat(waiter.isDone(), is(false));
+
+        permit.success();
+        waiter.get(1, SECONDS).success();
+        assertThat(limiter.getInFlight(), is(0));
+    }
+
+    /**
+     * The outcome of completed requests should be fed to the
+     * {@link LimitAlgorithm}.
+     */
+    @Test
+    public void testLimitAdjustedByAlgorithm() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(new AimdLimit(4, 1, 10, 0.5, 1, SECONDS));
+        limiter.acquire().dropped();
+        assertThat(limiter.getLimit(), is(2));
+
+        // in flight: 1 of 2 -> utilized enough to grow
+        limiter.acquire().success();
+        assertThat(limiter.getLimit(), is(3));
+
+        // ignored outcomes do not affect the limit
+        limiter.acquire().ignore();
+        assertThat(limiter.getLimit(), is(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateWithoutAlgorithm() {
+        new ConcurrencyLimiter(null);
+    }
+
+    private static LimitAlgorithm fixedLimit(int limit) {
+        return new LimitAlgorithm() {
+            @Override
+            public int getInitialLimit() {
+                return limit;
+            }
+
+            @Override
+            public int update(int currentLimit, long rttNanos, int inFlight, boolean dropped) {
+                return currentLimit;
+            }
+        };
+    }
+}
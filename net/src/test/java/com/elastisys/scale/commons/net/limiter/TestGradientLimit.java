@@ -0,0 +1,73 @@
+package com.elastisys.scale.commons.net.limiter;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Exercises the {@link GradientLimit} {@link LimitAlgorithm}.
+ */
+public class TestGradientLimit {
+
+    @Test
+    public void testDefaults() {
+        GradientLimit gradient = new GradientLimit();
+        assertThat(gradient.getInitialLimit(), is(GradientLimit.DEFAULT_INITIAL_LIMIT));
+    }
+
+    /**
+     * With stable latencies, the limit should grow.
+     */
+    @Test
+    public void testGrowOnStableLatency() {
+        GradientLimit gradient = new GradientLimit(10, 1, 100, 0.5, 1000);
+        int limit = 10;
+        for (int i = 0; i < 20; i++) {
+            limit = gradient.update(limit, MILLISECONDS.toNanos(10), limit, false);
+        }
+        assertTrue(limit > 10);
+        assertTrue(limit <= 100);
+    }
+
+    /**
+     * As latencies increase (due to queueing at the destination), the limit
+     * should shrink.
+     */
+    @Test
+    public void testShrinkOnIncreasingLatency() {
+        GradientLimit gradient = new GradientLimit(50, 1, 100, 0.5, 1000);
+        int limit = gradient.update(50, MILLISECONDS.toNanos(10), 50, false);
+        int grown = limit;
+        for (int i = 0; i < 20; i++) {
+            limit = gradient.update(limit, MILLISECONDS.toNanos(100), limit, false);
+        }
+        assertTrue(limit < grown);
+    }
+
+    /**
+     * Dropped requests should cut the limit in half.
+     */
+    @Test
+    public void testDrop() {
+        GradientLimit gradient = new GradientLimit(50, 1, 100, 0.5, 1000);
+        assertThat(gradient.update(50, MILLISECONDS.toNanos(10), 50, true), is(25));
+        assertThat(gradient.update(1, MILLISECONDS.toNanos(10), 1, true), is(1));
+    }
+
+    /**
+     * The limit should not grow if less than half of it is being used.
+     */
+    @Test
+    public void testNoGrowthWhenUnderutilized() {
+        GradientLimit gradient = new GradientLimit(50, 1, 100, 0.5, 1000);
+        assertThat(gradient.update(50, MILLISECONDS.toNanos(10), 10, false), is(50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalSmoothing() {
+        new GradientLimit(10, 1, 100, 0.0, 1000);
+    }
+}
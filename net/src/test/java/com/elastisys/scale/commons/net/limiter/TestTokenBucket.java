@@ -0,0 +1,116 @@
+package com.elastisys.scale.commons.net.limiter;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Exercises the {@link TokenBucket}.
+ */
+public class TestTokenBucket {
+
+    /** Fake clock (nanoseconds). */
+    private AtomicLong clock;
+
+    @Before
+    public void beforeTestMethod() {
+        this.clock = new AtomicLong(0);
+    }
+
+    /**
+     * A full bucket should admit a burst of requests right away.
+     */
+    @Test
+    public void testBurst() {
+        TokenBucket bucket = new TokenBucket(1, 3, this.clock::get);
+        assertThat(bucket.tryAcquire(), is(true));
+        assertThat(bucket.tryAcquire(), is(true));
+        assertThat(bucket.tryAcquire(), is(true));
+        assertThat(bucket.tryAcquire(), is(false));
+    }
+
+    /**
+     * The bucket should be refilled at the configured rate, but never hold
+     * more than the burst size.
+     */
+    @Test
+    public void testRefill() {
+        TokenBucket bucket = new TokenBucket(10, 2, this.clock::get);
+        bucket.tryAcquire();
+        bucket.tryAcquire();
+        assertThat(bucket.tryAcquire(), is(false));
+
+        // 100 ms at 10 permits/s => 1 token
+        advance(100, MILLISECONDS);
+        assertThat(bucket.tryAcquire(), is(true));
+        assertThat(bucket.tryAcquire(), is(false));
+
+        // a long time => capped at burst
+        advance(10, SECONDS);
+        assertThat(bucket.getAvailableTokens(), is(2.0));
+    }
+
+    /**
+     * Reservations should queue up behind each other.
+     */
+    @Test
+    public void testReserve() {
+        TokenBucket bucket = new TokenBucket(10, 1, this.clock::get);
+        assertThat(bucket.reserve(SECONDS.toNanos(1)), is(0L));
+        assertThat(bucket.reserve(SECONDS.toNanos(1)), is(MILLISECONDS.toNanos(100)));
+        assertThat(bucket.reserve(SECONDS.toNanos(1)), is(MILLISECONDS.toNanos(200)));
+        // would need to wait 300 ms
+        assertThat(bucket.reserve(MILLISECONDS.toNanos(250)), is(-1L));
+        // failed reservation should not have consumed a token
+        assertThat(bucket.reserve(MILLISECONDS.toNanos(300)), is(MILLISECONDS.toNanos(300)));
+    }
+
+    /**
+     * A paused bucket should not admit any requests until the pause has
+     * expired.
+     */
+    @Test
+    public void testPause() {
+        TokenBucket bucket = new TokenBucket(10, 5, this.clock::get);
+        bucket.pause(2, SECONDS);
+        assertThat(bucket.tryAcquire(), is(false));
+        assertThat(bucket.reserve(SECONDS.toNanos(10)), is(SECONDS.toNanos(2) + MILLISECONDS.toNanos(100)));
+
+        advance(3, SECONDS);
+        // refilled from empty (minus the reservation) after the pause
+        assertThat(bucket.tryAcquire(), is(true));
+    }
+
+    /**
+     * A shorter pause should not cut an ongoing pause short.
+     */
+    @Test
+    public void testPauseExtends() {
+        TokenBucket bucket = new TokenBucket(10, 5, this.clock::get);
+        bucket.pause(2, SECONDS);
+        bucket.pause(1, SECONDS);
+        advance(1500, MILLISECONDS);
+        assertThat(bucket.tryAcquire(), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalRate() {
+        new TokenBucket(0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalBurst() {
+        new TokenBucket(1, 0);
+    }
+
+    private void advance(long time, TimeUnit unit) {
+        this.clock.addAndGet(unit.toNanos(time));
+    }
+}
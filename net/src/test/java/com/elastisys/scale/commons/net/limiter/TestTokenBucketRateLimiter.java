@@ -0,0 +1,140 @@
+package com.elastisys.scale.commons.net.limiter;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+
+import org.junit.Test;
+
+/**
+ * Exercises the {@link TokenBucketRateLimiter}.
+ */
+public class TestTokenBucketRateLimiter {
+
+    /**
+     * Each destination should get its own bucket by default.
+     */
+    @Test
+    public void testBucketPerDestination() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 5, RateLimitPolicy.FAIL_FAST, 0, SECONDS);
+        TokenBucket bucket = limiter.getBucket(URI.create("https://host1/a"));
+        assertThat(limiter.getBucket(URI.create("https://host1/b?c=d")), is(sameInstance(bucket)));
+        assertThat(limiter.getBucket(URI.create("https://host1:8443/a")), is(not(sameInstance(bucket))));
+        assertThat(limiter.getBucket(URI.create("https://host2/a")), is(not(sameInstance(bucket))));
+        assertThat(bucket.getPermitsPerSecond(), is(10.0));
+        assertThat(bucket.getBurst(), is(5));
+    }
+
+    /**
+     * Requests should be subjected to the bucket of the longest matching
+     * route prefix.
+     */
+    @Test
+    public void testRoutes() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 5, RateLimitPolicy.FAIL_FAST, 0, SECONDS)
+                .route("https://host", 5, 5).route("https://host/v1/servers", 1, 1);
+
+        assertThat(limiter.getBucket(URI.create("https://host/v1/servers/1")).getPermitsPerSecond(), is(1.0));
+        assertThat(limiter.getBucket(URI.create("https://host/v1/images")).getPermitsPerSecond(), is(5.0));
+        assertThat(limiter.getBucket(URI.create("https://other/v1/servers")).getPermitsPerSecond(), is(10.0));
+
+        // replacing a route
+        limiter.route("https://host/v1/servers", 2, 1);
+        assertThat(limiter.getBucket(URI.create("https://host/v1/servers/1")).getPermitsPerSecond(), is(2.0));
+    }
+
+    /**
+     * A route prefix should only match at a boundary of the URL, not in the
+     * middle of a host name or path segment.
+     */
+    @Test
+    public void testRoutesMatchAtBoundary() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 5, RateLimitPolicy.FAIL_FAST, 0, SECONDS)
+                .route("https://api.example.com", 5, 5).route("https://api.example.com/v1", 1, 1)
+                .route("https://[::1]", 2, 2).route("https://host:8443/", 3, 3);
+
+        assertThat(rate(limiter, "https://api.example.com"), is(5.0));
+        assertThat(rate(limiter, "https://api.example.com/"), is(5.0));
+        assertThat(rate(limiter, "https://api.example.com?a=b"), is(5.0));
+        assertThat(rate(limiter, "https://api.example.com:8443/v2"), is(5.0));
+        assertThat(rate(limiter, "https://api.example.com.other.org/v1"), is(10.0));
+        assertThat(rate(limiter, "https://api.example.comx"), is(10.0));
+
+        assertThat(rate(limiter, "https://api.example.com/v1"), is(1.0));
+        assertThat(rate(limiter, "https://api.example.com/v1/servers"), is(1.0));
+        assertThat(rate(limiter, "https://api.example.com/v1?a=b"), is(1.0));
+        assertThat(rate(limiter, "https://api.example.com/v10"), is(5.0));
+        // a port can only follow a host
+        assertThat(rate(limiter, "https://api.example.com/v1:x"), is(5.0));
+
+        assertThat(rate(limiter, "https://[::1]:8443/"), is(2.0));
+        assertThat(rate(limiter, "https://host:8443/a"), is(3.0));
+        assertThat(rate(limiter, "https://host:84430/a"), is(10.0));
+    }
+
+    private static double rate(TokenBucketRateLimiter limiter, String url) {
+        return limiter.getBucket(URI.create(url)).getPermitsPerSecond();
+    }
+
+    /**
+     * With a fail-fast policy, requests exceeding the limit should fail
+     * immediately.
+     */
+    @Test
+    public void testFailFast() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 2, RateLimitPolicy.FAIL_FAST, 10, SECONDS);
+        URI uri = URI.create("https://host/a");
+        limiter.acquire(uri);
+        limiter.acquire(uri);
+        try {
+            limiter.acquire(uri);
+            fail("expected rate limit to be exceeded");
+        } catch (LimitExceededException e) {
+            // expected
+        }
+    }
+
+    /**
+     * With a wait policy, requests exceeding the limit should wait until they
+     * are admitted.
+     */
+    @Test
+    public void testWait() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(20, 1, RateLimitPolicy.WAIT, 1, SECONDS);
+        URI uri = URI.create("https://host/a");
+        long start = System.nanoTime();
+        limiter.acquire(uri);
+        limiter.acquire(uri);
+        limiter.acquire(uri);
+        // 20 permits/s => 50 ms between requests
+        long elapsedMillis = MILLISECONDS.convert(System.nanoTime() - start, NANOSECONDS);
+        assertTrue(elapsedMillis >= 95);
+    }
+
+    /**
+     * A paused destination should not admit any requests until the pause
+     * expires.
+     */
+    @Test
+    public void testPause() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 10, RateLimitPolicy.FAIL_FAST, 0, SECONDS);
+        URI uri = URI.create("https://host/a");
+        limiter.pause(uri, 10, SECONDS);
+        try {
+            limiter.acquire(uri);
+            fail("expected rate limit to be exceeded");
+        } catch (LimitExceededException e) {
+            // expected
+        }
+        // other destinations are unaffected
+        limiter.acquire(URI.create("https://other/a"));
+    }
+}
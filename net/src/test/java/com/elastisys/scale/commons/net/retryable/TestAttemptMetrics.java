@@ -0,0 +1,86 @@
+package com.elastisys.scale.commons.net.retryable;
+
+import static com.elastisys.scale.commons.net.retryable.StopStrategies.afterAttempts;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Exercises the {@link AttemptMetrics} {@link AttemptListener}.
+ */
+public class TestAttemptMetrics {
+
+    /**
+     * Metrics should be collected per task name.
+     */
+    @Test
+    public void testMetricsPerTask() throws Exception {
+        AttemptMetrics metrics = new AttemptMetrics();
+
+        // succeeds on first attempt
+        new Retryable<>(() -> "ok").name("a").listener(metrics).call();
+        new Retryable<>(() -> "ok").name("a").listener(metrics).call();
+        // needs three attempts: two errors, then success
+        new Retryable<>(failNTimes(2)).name("b").retryOnException().listener(metrics).call();
+
+        assertThat(metrics.getTaskMetrics().size(), is(2));
+        assertThat(metrics.getTaskMetrics("c"), is(nullValue()));
+
+        AttemptMetrics.TaskMetrics a = metrics.getTaskMetrics("a");
+        assertThat(a.getCalls(), is(2L));
+        assertThat(a.getAttempts(), is(2L));
+        assertThat(a.getRetries(), is(0L));
+        assertThat(a.getSuccesses(), is(2L));
+        assertThat(a.getFailures(), is(0L));
+        assertThat(a.getRetryRate(), is(0.0));
+        assertThat(a.getAttemptsPerCall().getMax(), is(1L));
+
+        AttemptMetrics.TaskMetrics b = metrics.getTaskMetrics("b");
+        assertThat(b.getCalls(), is(1L));
+        assertThat(b.getAttempts(), is(3L));
+        assertThat(b.getRetries(), is(2L));
+        assertThat(b.getSuccesses(), is(1L));
+        assertThat(b.getFailures(), is(2L));
+        assertThat(b.getRetryRate(), is(2.0));
+        assertThat(b.getAttemptDuration().getCount(), is(3L));
+        assertThat(b.getDelay().getCount(), is(3L));
+        assertThat(b.getAttemptsPerCall().getMax(), is(3L));
+    }
+
+    /**
+     * Rejected responses and give-ups should be counted.
+     */
+    @Test
+    public void testRejectionsAndGiveUps() throws Exception {
+        AttemptMetrics metrics = new AttemptMetrics();
+        try {
+            new Retryable<>(() -> "not ok").name("task").retryUntilResponse("ok"::equals).stop(afterAttempts(4))
+                    .listener(metrics).call();
+        } catch (GaveUpException e) {
+            // expected
+        }
+
+        AttemptMetrics.TaskMetrics task = metrics.getTaskMetrics("task");
+        assertThat(task.getCalls(), is(1L));
+        assertThat(task.getAttempts(), is(4L));
+        assertThat(task.getRejections(), is(4L));
+        assertThat(task.getSuccesses(), is(0L));
+        assertThat(task.getGaveUps(), is(1L));
+        assertThat(task.getAttemptsPerCall().getMax(), is(4L));
+    }
+
+    private static Callable<String> failNTimes(int n) {
+        AtomicInteger calls = new AtomicInteger(0);
+        return () -> {
+            if (calls.incrementAndGet() <= n) {
+                throw new IllegalStateException("failure " + calls.get());
+            }
+            return "ok";
+        };
+    }
+}
@@ -4,6 +4,7 @@ import static com.elastisys.scale.commons.net.retryable.DelayStrategies.exponent
 import static com.elastisys.scale.commons.net.retryable.DelayStrategies.fixed;
 import static com.elastisys.scale.commons.net.retryable.StopStrategies.afterAttempts;
 import static com.elastisys.scale.commons.net.retryable.StopStrategies.afterTime;
+import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.CoreMatchers.is;
@@ -13,12 +14,26 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.elastisys.scale.commons.net.limiter.AimdLimit;
+import com.elastisys.scale.commons.net.limiter.ConcurrencyLimiter;
+import com.elastisys.scale.commons.net.limiter.LimitExceededException;
+
 /**
  * Verifies the behavior of the {@link Retryable} and its interaction with the
  * different strategies for determining successful responses, how long to wait
@@ -26,9 +41,16 @@ import org.junit.Test;
  */
 public class TestRetryable {
 
+    private ExecutorService executor;
+
     @Before
     public void beforeTestMethod() {
+        this.executor = Executors.newCachedThreadPool();
+    }
 
+    @After
+    public void afterTestMethod() {
+        this.executor.shutdownNow();
     }
 
     /**
@@ -105,6 +127,30 @@ public class TestRetryable {
         retryable.call();
     }
 
+    /**
+     * Suppressed errors added after the {@link Retryable} has been called
+     * should be respected on subsequent calls.
+     */
+    @Test
+    public void testAddSuppressedErrorAfterCall() throws Exception {
+        Exception fault = new IllegalStateException("task failed!");
+        // fails on the first two calls
+        Callable<String> task = new FailNTimesAndReturn(2, fault, "hello world");
+        Retryable<String> retryable = new Retryable<>(task).retryOnError(IllegalArgumentException.class);
+        try {
+            retryable.call();
+            fail("retryable was expected to fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertThat(retryable.getAttempts(), is(1));
+
+        // from now on, the error should be suppressed
+        retryable.retryOnError(IllegalStateException.class);
+        assertThat(retryable.call(), is("hello world"));
+        assertThat(retryable.getAttempts(), is(2));
+    }
+
     @Test
     public void testWithResponsePredicate() throws Exception {
         Callable<Integer> task = new Counter();
@@ -252,6 +298,386 @@ public class TestRetryable {
         assertTrue(expectedDelay <= elapsed && elapsed <= expectedDelay + margin);
     }
 
+    /**
+     * With an attempt timeout set, attempts that complete in time should be
+     * unaffected.
+     */
+    @Test
+    public void testAttemptTimeoutOnTimelyAttempts() throws Exception {
+        Exception fault = new IllegalStateException("can't handle too small values!");
+        Callable<Integer> task = new FailNTimesCounter(2, fault);
+        Retryable<Integer> retryable = new Retryable<>(task).retryOnException().retryUntilResponse(equalTo(5))
+                .attemptTimeout(1, SECONDS, this.executor);
+        assertThat(retryable.call(), is(5));
+        assertThat(retryable.getAttempts(), is(5));
+    }
+
+    /**
+     * An attempt that hangs should be interrupted and counted as a failed
+     * attempt, after which a new attempt is made.
+     */
+    @Test
+    public void testAttemptTimeoutOnHangingAttempt() throws Exception {
+        AtomicInteger interrupted = new AtomicInteger(0);
+        Callable<String> task = new HangNTimesAndReturn(2, interrupted, "hello world");
+        // note: no errors suppressed, timeouts should still be retried
+        Retryable<String> retryable = new Retryable<>(task).attemptTimeout(50, MILLISECONDS, this.executor);
+        assertThat(retryable.call(), is("hello world"));
+        assertThat(retryable.getAttempts(), is(3));
+        long elapsed = retryable.getTimer().getTime(MILLISECONDS);
+        assertTrue(elapsed >= 100L && elapsed < 1000L);
+
+        // wait for abandoned attempts to notice the interruption
+        this.executor.shutdown();
+        this.executor.awaitTermination(1, SECONDS);
+        assertThat(interrupted.get(), is(2));
+    }
+
+    /**
+     * A hanging attempt should not prevent the {@link StopStrategy} from
+     * giving up. The {@link GaveUpException} should carry the
+     * {@link TimeoutException} of the last attempt.
+     */
+    @Test
+    public void testAttemptTimeoutWithTimeBasedStopStrategy() throws Exception {
+        Callable<String> task = new HangNTimesAndReturn(Integer.MAX_VALUE, new AtomicInteger(), "hello world");
+        Retryable<String> retryable = new Retryable<>(task).attemptTimeout(50, MILLISECONDS, this.executor)
+                .stop(afterTime(200, MILLISECONDS));
+        try {
+            retryable.call();
+            fail("retryable was expected to give up");
+        } catch (GaveUpException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+            assertTrue(e.getElapsedTimeMillis() >= 200L && e.getElapsedTimeMillis() < 1000L);
+        }
+    }
+
+    /**
+     * Errors raised by attempts run on the attempt executor should be handled
+     * just as if the attempt had been run on the calling thread.
+     */
+    @Test
+    public void testAttemptTimeoutWithErrorThatDoesNotMatchSuppressedErrors() throws Exception {
+        Exception fault = new RuntimeException("task failed!");
+        Callable<String> task = new FailNTimesAndReturn(5, fault, "hello world");
+        Retryable<String> retryable = new Retryable<>(task).retryOnError(IllegalArgumentException.class)
+                .attemptTimeout(1, SECONDS, this.executor);
+        try {
+            retryable.call();
+            fail("retryable was expected to fail");
+        } catch (Exception e) {
+            assertThat(e, is(fault));
+        }
+        assertThat(retryable.getAttempts(), is(1));
+    }
+
+    /**
+     * A caller that is interrupted while waiting for a timed attempt should
+     * fail with an {@link InterruptedException} that is not retried, even if
+     * all exceptions are suppressed, and keep its interrupt status.
+     */
+    @Test
+    public void testAttemptTimeoutWhenCallerIsInterrupted() throws Exception {
+        AtomicInteger interrupted = new AtomicInteger(0);
+        Callable<String> task = new HangNTimesAndReturn(Integer.MAX_VALUE, interrupted, "hello world");
+        Retryable<String> retryable = new Retryable<>(task).retryOnException().attemptTimeout(10, SECONDS,
+                this.executor);
+
+        AtomicReference<Exception> error = new AtomicReference<>();
+        AtomicBoolean interruptStatus = new AtomicBoolean(false);
+        Thread caller = new Thread(() -> {
+            try {
+                retryable.call();
+            } catch (Exception e) {
+                error.set(e);
+            }
+            interruptStatus.set(Thread.currentThread().isInterrupted());
+        });
+        caller.start();
+        // give the caller time to start waiting for the first attempt
+        Thread.sleep(100);
+        caller.interrupt();
+        caller.join(1000);
+
+        assertThat(caller.isAlive(), is(false));
+        assertTrue(error.get() instanceof InterruptedException);
+        assertThat(interruptStatus.get(), is(true));
+        assertThat(retryable.getAttempts(), is(1));
+
+        // the abandoned attempt should have been cancelled
+        this.executor.shutdown();
+        this.executor.awaitTermination(1, SECONDS);
+        assertThat(interrupted.get(), is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAttemptTimeoutWithNonPositiveTimeout() {
+        new Retryable<>(() -> "hello world").attemptTimeout(0, SECONDS, this.executor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAttemptTimeoutWithoutExecutor() {
+        new Retryable<>(() -> "hello world").attemptTimeout(1, SECONDS, null);
+    }
+
+    /**
+     * {@link AttemptListener}s should be notified of every attempt and its
+     * outcome.
+     */
+    @Test
+    public void testAttemptListener() throws Exception {
+        Exception fault = new IllegalStateException("can't handle too small values!");
+        Callable<Integer> task = new FailNTimesCounter(2, fault);
+        RecordingListener listener = new RecordingListener();
+        Retryable<Integer> retryable = new Retryable<>(task).name("counter").retryOnException()
+                .retryUntilResponse(equalTo(4)).delay(fixed(10, MILLISECONDS)).listener(listener);
+        assertThat(retryable.call(), is(4));
+
+        assertThat(listener.calls, is(asList("started:1", "failed:1", "started:2", "failed:2", "started:3",
+                "rejected:3", "started:4", "succeeded:4")));
+        // first attempt is not preceded by any delay
+        assertThat(listener.events.get(0).getDelayMillis(), is(0L));
+        assertThat(listener.events.get(0).getTaskName(), is("counter"));
+        // subsequent attempts are preceded by the fixed delay
+        AttemptEvent secondStart = listener.events.get(2);
+        assertTrue(secondStart.getDelayMillis() >= 10L);
+        assertTrue(secondStart.getElapsedTimeMillis() >= 10L);
+    }
+
+    /**
+     * {@link AttemptListener}s should be notified when the {@link Retryable}
+     * gives up.
+     */
+    @Test
+    public void testAttemptListenerOnGiveUp() throws Exception {
+        Callable<Integer> task = new Counter();
+        RecordingListener listener = new RecordingListener();
+        Retryable<Integer> retryable = new Retryable<>(task).retryUntilResponse(equalTo(10)).stop(afterAttempts(2))
+                .listener(listener);
+        try {
+            retryable.call();
+            fail("retryable was expected to give up");
+        } catch (GaveUpException e) {
+            // expected
+        }
+        assertThat(listener.calls,
+                is(asList("started:1", "rejected:1", "started:2", "rejected:2", "gaveUp:2")));
+    }
+
+    /**
+     * A failing {@link AttemptListener} must not affect the outcome of the
+     * {@link Retryable}.
+     */
+    @Test
+    public void testFailingAttemptListener() throws Exception {
+        Callable<Integer> task = new Counter();
+        Retryable<Integer> retryable = new Retryable<>(task).retryUntilResponse(equalTo(3))
+                .listener(new AttemptListener() {
+                    @Override
+                    public void attemptStarted(AttemptEvent event) {
+                        throw new IllegalStateException("listener failed!");
+                    }
+                });
+        assertThat(retryable.call(), is(3));
+        assertThat(retryable.getAttempts(), is(3));
+    }
+
+    /**
+     * With a {@link ConcurrencyLimiter}, every attempt should acquire a permit
+     * and report its outcome to the limiter.
+     */
+    @Test
+    public void testConcurrencyLimiter() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(new AimdLimit(8, 1, 100, 0.5, 10, SECONDS));
+        Exception fault = new IllegalStateException("can't handle too small values!");
+        Callable<Integer> task = new FailNTimesCounter(2, fault);
+        Retryable<Integer> retryable = new Retryable<>(task).retryOnException().retryUntilResponse(equalTo(3))
+                .concurrencyLimiter(limiter);
+        assertThat(retryable.call(), is(3));
+        // two drops (8 -> 4 -> 2), then a success when limit was utilized
+        assertThat(limiter.getLimit(), is(3));
+        assertThat(limiter.getInFlight(), is(0));
+    }
+
+    /**
+     * An attempt that cannot acquire a permit from the
+     * {@link ConcurrencyLimiter} should fail with a
+     * {@link LimitExceededException}.
+     */
+    @Test
+    public void testConcurrencyLimitExceeded() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(new AimdLimit(1, 1, 1, 0.5, 10, SECONDS), 0,
+                MILLISECONDS);
+        // hold the only permit
+        limiter.acquire();
+        Retryable<String> retryable = new Retryable<>(() -> "hello world").concurrencyLimiter(limiter)
+                .retryOnException().stop(afterAttempts(2));
+        try {
+            retryable.call();
+            fail("retryable was expected to give up");
+        } catch (GaveUpException e) {
+            assertTrue(e.getCause() instanceof LimitExceededException);
+        }
+        assertThat(retryable.getAttempts(), is(2));
+    }
+
+    /**
+     * With an attempt timeout, the permit of a timed out attempt should be
+     * held until its task has actually completed, and then be reported as
+     * dropped.
+     */
+    @Test
+    public void testConcurrencyLimiterHoldsPermitOfTimedOutAttempt() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(new AimdLimit(8, 1, 100, 0.5, 10, SECONDS));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(1);
+        // a task that does not respond to interruption
+        Callable<String> task = () -> {
+            try {
+                while (true) {
+                    try {
+                        release.await();
+                        return "done";
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                }
+            } finally {
+                completed.countDown();
+            }
+        };
+        Retryable<String> retryable = new Retryable<>(task).attemptTimeout(50, MILLISECONDS, this.executor)
+                .concurrencyLimiter(limiter).stop(afterAttempts(1));
+        try {
+            retryable.call();
+            fail("retryable was expected to give up");
+        } catch (GaveUpException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        // the abandoned task is still running
+        assertThat(limiter.getInFlight(), is(1));
+        assertThat(limiter.getLimit(), is(8));
+
+        release.countDown();
+        assertTrue(completed.await(1, SECONDS));
+        long deadline = System.currentTimeMillis() + 1000;
+        while (limiter.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(limiter.getInFlight(), is(0));
+        // reported as dropped
+        assertThat(limiter.getLimit(), is(4));
+    }
+
+    /**
+     * An attempt that times out before its task got to run should release its
+     * permit right away.
+     */
+    @Test
+    public void testConcurrencyLimiterReleasesPermitOfAttemptThatNeverRan() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(new AimdLimit(8, 1, 100, 0.5, 10, SECONDS));
+        ExecutorService busyExecutor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // keep the only executor thread busy
+            busyExecutor.submit(() -> {
+                release.await();
+                return null;
+            });
+            AtomicInteger calls = new AtomicInteger(0);
+            Retryable<Integer> retryable = new Retryable<>(calls::incrementAndGet)
+                    .attemptTimeout(50, MILLISECONDS, busyExecutor).concurrencyLimiter(limiter).stop(afterAttempts(1));
+            try {
+                retryable.call();
+                fail("retryable was expected to give up");
+            } catch (GaveUpException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+            assertThat(limiter.getInFlight(), is(0));
+            assertThat(limiter.getLimit(), is(4));
+
+            // the task must not be run once the executor gets to it
+            release.countDown();
+            busyExecutor.shutdown();
+            assertTrue(busyExecutor.awaitTermination(1, SECONDS));
+            assertThat(calls.get(), is(0));
+        } finally {
+            busyExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * An {@link AttemptListener} that records all callbacks.
+     */
+    private static class RecordingListener implements AttemptListener {
+        private final List<String> calls = new ArrayList<>();
+        private final List<AttemptEvent> events = new ArrayList<>();
+
+        @Override
+        public void attemptStarted(AttemptEvent event) {
+            record("started", event);
+        }
+
+        @Override
+        public void attemptSucceeded(AttemptEvent event, Object response) {
+            record("succeeded", event);
+        }
+
+        @Override
+        public void attemptRejected(AttemptEvent event, Object response) {
+            record("rejected", event);
+        }
+
+        @Override
+        public void attemptFailed(AttemptEvent event, Exception error) {
+            record("failed", event);
+        }
+
+        @Override
+        public void gaveUp(AttemptEvent event, Object lastResult) {
+            record("gaveUp", event);
+        }
+
+        private void record(String callback, AttemptEvent event) {
+            this.calls.add(callback + ":" + event.getAttempt());
+            this.events.add(event);
+        }
+    }
+
+    /**
+     * A test task that will hang (until interrupted) a specified number of
+     * times before eventually producing a successful result.
+     */
+    private static class HangNTimesAndReturn implements Callable<String> {
+        /** calls thus far. */
+        private final AtomicInteger attempts = new AtomicInteger(0);
+        /** Number of planned hanging attempts before successful return. */
+        private final int plannedHangs;
+        /** Counts the number of times a hanging attempt was interrupted. */
+        private final AtomicInteger interrupted;
+        /** Value to return (eventually) */
+        private final String returnValue;
+
+        public HangNTimesAndReturn(int plannedHangs, AtomicInteger interrupted, String returnValue) {
+            this.plannedHangs = plannedHangs;
+            this.interrupted = interrupted;
+            this.returnValue = returnValue;
+        }
+
+        @Override
+        public String call() throws Exception {
+            if (this.attempts.incrementAndGet() <= this.plannedHangs) {
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    this.interrupted.incrementAndGet();
+                    throw e;
+                }
+            }
+            return this.returnValue;
+        }
+    }
+
     /**
      * A test task that will fail a specified number of times before eventually
      * producing a successful result.
@@ -0,0 +1,205 @@
+package com.elastisys.scale.commons.net.smtp;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.mail.Email;
+import org.apache.commons.mail.SimpleEmail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.elastisys.scale.commons.net.host.HostUtils;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.GreenMailUtil;
+
+/**
+ * Exercises the {@link SmtpTransportPool} with an embedded SMTP mail server.
+ */
+public class TestSmtpTransportPool {
+
+    /** Trusted user on SSL server. */
+    private static final String USERNAME = "user";
+    /** Trusted user's password on SSL server. */
+    private static final String PASSWORD = "password";
+
+    /** Port where fake SMTP server is listening */
+    private static int SMTP_PORT;
+    /** Port where fake SMTP server is listening for SSL */
+    private static int SMTP_SSL_PORT;
+
+    static {
+        List<Integer> freePorts = HostUtils.findFreePorts(2);
+        SMTP_PORT = freePorts.get(0);
+        SMTP_SSL_PORT = freePorts.get(1);
+    }
+
+    /** Fake email SMTP server without SSL. */
+    private GreenMail insecureMailServer;
+    /** Fake email SMTP server with SSL. */
+    private GreenMail sslMailServer;
+
+    /** Object under test. */
+    private SmtpTransportPool pool;
+
+    @Before
+    public void setUp() {
+        this.insecureMailServer = SmtpTestServerUtil.startSmtpServer(SMTP_PORT);
+        this.sslMailServer = SmtpTestServerUtil.startSslStmpServer(SMTP_SSL_PORT, USERNAME, PASSWORD);
+    }
+
+    @After
+    public void onTearDown() {
+        if (this.pool != null) {
+            this.pool.close();
+        }
+        this.insecureMailServer.stop();
+        this.sslMailServer.stop();
+    }
+
+    /**
+     * Many emails should be sent over a single connection.
+     */
+    @Test
+    public void reuseConnection() throws Exception {
+        this.pool = new SmtpTransportPool(10, 60, TimeUnit.SECONDS);
+        SmtpClientConfig settings = new SmtpClientConfig("localhost", SMTP_PORT, null, false);
+
+        for (int i = 0; i < 5; i++) {
+            this.pool.send(email("subject" + i), settings);
+        }
+        assertThat(this.pool.connectCount(settings), is(1L));
+
+        MimeMessage[] receivedMessages = this.insecureMailServer.getReceivedMessages();
+        assertThat(receivedMessages.length, is(5));
+        for (int i = 0; i < 5; i++) {
+            assertThat(receivedMessages[i].getSubject(), is("subject" + i));
+            assertThat(GreenMailUtil.getBody(receivedMessages[i]).trim(), is("content"));
+        }
+    }
+
+    /**
+     * A batch of emails should be sent over a single authenticated SSL
+     * connection.
+     */
+    @Test
+    public void sendAllAuthenticatedWithSsl() throws Exception {
+        this.pool = new SmtpTransportPool(10, 60, TimeUnit.SECONDS);
+        SmtpClientConfig settings = new SmtpClientConfig("localhost", SMTP_SSL_PORT,
+                new SmtpClientAuthentication(USERNAME, PASSWORD), true);
+
+        List<Email> emails = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            emails.add(email("subject" + i));
+        }
+        this.pool.sendAll(emails, settings);
+        this.pool.send(email("subject3"), settings);
+        assertThat(this.pool.connectCount(settings), is(1L));
+
+        MimeMessage[] receivedMessages = this.sslMailServer.getReceivedMessages();
+        assertThat(receivedMessages.length, is(4));
+        assertThat(receivedMessages[3].getSubject(), is("subject3"));
+        // nothing sent over regular SMTP
+        assertThat(this.insecureMailServer.getReceivedMessages().length, is(0));
+    }
+
+    /**
+     * Idle connections are kept alive, and closed and removed from the pool
+     * once they have been unused for too long.
+     */
+    @Test
+    public void keepAliveAndCloseIdleConnections() throws Exception {
+        this.pool = new SmtpTransportPool(100, 1000, TimeUnit.MILLISECONDS);
+        SmtpClientConfig settings = new SmtpClientConfig("localhost", SMTP_PORT, null, false);
+
+        this.pool.send(email("subject0"), settings);
+        // kept open by keep-alive
+        Thread.sleep(500);
+        this.pool.send(email("subject1"), settings);
+        assertThat(this.pool.connectCount(settings), is(1L));
+        assertThat(this.pool.size(), is(1));
+
+        // removed when idle too long, and set up anew on next send
+        Thread.sleep(2000);
+        assertThat(this.pool.size(), is(0));
+        this.pool.send(email("subject2"), settings);
+        assertThat(this.pool.connectCount(settings), is(1L));
+        assertThat(this.pool.size(), is(1));
+
+        assertThat(this.insecureMailServer.getReceivedMessages().length, is(3));
+    }
+
+    /**
+     * Connections for servers that are no longer used should not be kept
+     * around, not even those that failed to connect.
+     */
+    @Test
+    public void removeIdleConnections() throws Exception {
+        this.pool = new SmtpTransportPool(100, 500, TimeUnit.MILLISECONDS);
+        int unusedPort = HostUtils.findFreePorts(1).get(0);
+        SmtpClientConfig unreachable = new SmtpClientConfig("localhost", unusedPort, null, false);
+        try {
+            this.pool.send(email("subject"), unreachable);
+        } catch (SmtpSenderException e) {
+            // expected
+        }
+        for (int i = 0; i < 10; i++) {
+            // distinct configs (by connection timeout) for the same server
+            this.pool.send(email("subject" + i),
+                    new SmtpClientConfig("localhost", SMTP_PORT, null, false, 10000 + i, 10000));
+        }
+        assertThat(this.pool.size(), is(11));
+
+        Thread.sleep(1500);
+        assertThat(this.pool.size(), is(0));
+        assertThat(this.insecureMailServer.getReceivedMessages().length, is(10));
+    }
+
+    /**
+     * A broken connection is replaced on next send.
+     */
+    @Test
+    public void reconnectAfterServerRestart() throws Exception {
+        this.pool = new SmtpTransportPool(10, 60, TimeUnit.SECONDS);
+        SmtpClientConfig settings = new SmtpClientConfig("localhost", SMTP_PORT, null, false);
+
+        this.pool.send(email("subject0"), settings);
+        this.insecureMailServer.stop();
+        this.insecureMailServer = SmtpTestServerUtil.startSmtpServer(SMTP_PORT);
+
+        this.pool.send(email("subject1"), settings);
+        assertThat(this.pool.connectCount(settings), is(2L));
+        MimeMessage[] receivedMessages = this.insecureMailServer.getReceivedMessages();
+        assertThat(receivedMessages.length, is(1));
+        assertThat(receivedMessages[0].getSubject(), is("subject1"));
+    }
+
+    @Test(expected = SmtpSenderException.class)
+    public void sendToUnreachableServer() throws Exception {
+        this.pool = new SmtpTransportPool(10, 60, TimeUnit.SECONDS);
+        int port = HostUtils.findFreePorts(1).get(0);
+        this.pool.send(email("subject"), new SmtpClientConfig("localhost", port, null, false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void sendAfterClose() throws Exception {
+        this.pool = new SmtpTransportPool(10, 60, TimeUnit.SECONDS);
+        this.pool.close();
+        this.pool.send(email("subject"), new SmtpClientConfig("localhost", SMTP_PORT, null, false));
+    }
+
+    private static Email email(String subject) throws Exception {
+        SimpleEmail email = new SimpleEmail();
+        email.setFrom("sender@elastisys.com");
+        email.setSubject(subject);
+        email.setMsg("content");
+        email.addTo("recipient@elastisys.com");
+        return email;
+    }
+}
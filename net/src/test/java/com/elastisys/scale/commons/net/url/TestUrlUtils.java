@@ -3,6 +3,7 @@ package com.elastisys.scale.commons.net.url;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.net.URI;
 import java.net.URL;
 
 import org.junit.Test;
@@ -110,4 +111,11 @@ public class TestUrlUtils {
         UrlUtils.url("http ://host");
     }
 
+    @Test
+    public void destination() {
+        assertThat(UrlUtils.destination(URI.create("https://host:8443/a/b?c=d")), is("https://host:8443"));
+        assertThat(UrlUtils.destination(URI.create("http://host/a")), is("http://host"));
+        assertThat(UrlUtils.destination(URI.create("/relative/path")), is(""));
+        assertThat(UrlUtils.destination(null), is(""));
+    }
 }
@@ -221,6 +221,6 @@ public class ApiAccessConfig {
 
     @Override
     public String toString() {
-        return JsonUtils.toString(JsonUtils.toJson(this));
+        return JsonUtils.toJsonString(this);
     }
 }
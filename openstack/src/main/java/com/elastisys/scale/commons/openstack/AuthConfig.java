@@ -132,6 +132,6 @@ public class AuthConfig {
 
     @Override
     public String toString() {
-        return JsonUtils.toPrettyString(JsonUtils.toJson(this));
+        return JsonUtils.toPrettyJsonString(this);
     }
 }
@@ -264,6 +264,6 @@ public class AuthV3Credentials {
 
     @Override
     public String toString() {
-        return JsonUtils.toString(JsonUtils.toJson(this));
+        return JsonUtils.toJsonString(this);
     }
 }
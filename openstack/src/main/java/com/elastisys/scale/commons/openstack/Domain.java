@@ -92,6 +92,6 @@ public class Domain {
 
     @Override
     public String toString() {
-        return JsonUtils.toString(JsonUtils.toJson(this));
+        return JsonUtils.toJsonString(this);
     }
 }
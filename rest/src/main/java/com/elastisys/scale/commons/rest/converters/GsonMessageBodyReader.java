@@ -3,7 +3,7 @@ package com.elastisys.scale.commons.rest.converters;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.PushbackReader;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
@@ -26,7 +26,6 @@ import org.slf4j.LoggerFactory;
 
 import com.elastisys.scale.commons.json.JsonUtils;
 import com.elastisys.scale.commons.json.types.ErrorType;
-import com.elastisys.scale.commons.util.io.IoUtils;
 import com.google.gson.JsonParseException;
 
 /**
@@ -55,12 +54,17 @@ public class GsonMessageBodyReader<T> implements MessageBodyReader<T> {
     public T readFrom(Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType,
             MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
             throws IOException, WebApplicationException {
-        try (Reader entityReader = new InputStreamReader(entityStream, StandardCharsets.UTF_8)) {
-            String entity = IoUtils.toString(entityReader);
-            if (entity == null || entity.isEmpty()) {
+        try (PushbackReader entityReader = new PushbackReader(
+                new InputStreamReader(entityStream, StandardCharsets.UTF_8))) {
+            // peek to tell an empty entity from one that holds JSON
+            int first = entityReader.read();
+            if (first == -1) {
                 throw new NoContentException("failed to deserialize JSON entity: " + "empty/null entity stream");
             }
-            return JsonUtils.toObject(JsonUtils.parseJsonString(entity), type);
+            entityReader.unread(first);
+            // deserialize straight from the stream, without buffering the
+            // entity
+            return JsonUtils.toObject(entityReader, type);
         } catch (IllegalArgumentException | JsonParseException e) {
             // produce a 400 http response
             throw new WebApplicationException(e, Response.status(Status.BAD_REQUEST).entity(new ErrorType(e)).build());
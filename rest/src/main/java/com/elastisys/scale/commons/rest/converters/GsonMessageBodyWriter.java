@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
 
 import javax.inject.Singleton;
 import javax.ws.rs.Produces;
@@ -20,6 +19,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.elastisys.scale.commons.json.JsonUtils;
+import com.google.gson.JsonIOException;
 
 /**
  * A {@link MessageBodyWriter} that can serialize arbitrary Java class instances
@@ -54,10 +54,16 @@ public class GsonMessageBodyWriter<T> implements MessageBodyWriter<T> {
     public void writeTo(T t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
             MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
             throws IOException, WebApplicationException {
-        entityStream.write(serialize(t));
-    }
-
-    private byte[] serialize(T t) {
-        return JsonUtils.toPrettyString(JsonUtils.toJson(t)).getBytes(StandardCharsets.UTF_8);
+        // stream straight to the entity, without an intermediate JSON tree
+        try {
+            JsonUtils.writeJson(t, entityStream, true);
+        } catch (JsonIOException e) {
+            // let the JAX-RS runtime handle failures to write to the entity
+            // stream (such as a client disconnect) as IOExceptions
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
     }
 }
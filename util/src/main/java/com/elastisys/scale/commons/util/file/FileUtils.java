@@ -3,8 +3,13 @@ package com.elastisys.scale.commons.util.file;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
@@ -140,4 +145,55 @@ public class FileUtils {
                     String.format("the specified file path %s " + "is not a valid file", filePath));
         }
     }
+
+    /**
+     * Atomically replaces the content of a file (creating the file if it
+     * doesn't exist). The content is written to a temporary file in the same
+     * directory, which is flushed to disk and then renamed to the target file.
+     * <p/>
+     * Readers (and a restarted process after a crash) therefore see either the
+     * old or the new content of the file, never a partially written file.
+     *
+     * @param file
+     *            The file to write.
+     * @param content
+     *            The new content of the file.
+     * @throws IOException
+     */
+    public static void writeAtomically(File file, byte[] content) throws IOException {
+        Preconditions.checkArgument(file != null, "file cannot be null");
+        Preconditions.checkArgument(content != null, "content cannot be null");
+
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target.getParent());
+    }
+
+    /**
+     * Flushes a directory to disk, to make a file created or renamed in it
+     * durable. This is a best-effort operation, since not all platforms allow
+     * directories to be opened.
+     *
+     * @param directory
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on this platform
+        }
+    }
 }
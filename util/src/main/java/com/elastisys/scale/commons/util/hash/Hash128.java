@@ -0,0 +1,256 @@
+package com.elastisys.scale.commons.util.hash;
+
+/**
+ * A streaming, non-cryptographic 128-bit hash function, built on the block
+ * mixing and finalization steps of MurmurHash3 (x64, 128-bit variant).
+ * <p/>
+ * Values are fed one at a time with the {@code put} methods, and the hash of
+ * everything fed so far is read with {@link #high()} and {@link #low()} (or
+ * {@link #toHexString()}). Feeding a value does not allocate, so a
+ * {@link Hash128} can be used to hash a composite object without first
+ * building a string or array representation of it.
+ * <p/>
+ * The hash depends on the order and the kind of the fed values. Strings are
+ * fed together with their length, so that, for example, feeding
+ * {@code "ab", "c"} and {@code "a", "bc"} yields different hashes.
+ * <p/>
+ * Instances are not thread-safe.
+ */
+public class Hash128 {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /** Marker fed in place of a <code>null</code> string. */
+    private static final long NULL_MARKER = 0x9e3779b97f4a7c15L;
+
+    /** Hash state. */
+    private long h1;
+    /** Hash state. */
+    private long h2;
+    /** First word of a half-filled 128-bit block. */
+    private long k1;
+    /** <code>true</code> if {@link #k1} holds a word. */
+    private boolean halfBlock;
+    /** Characters packed into a word, pending a full word. */
+    private long chars;
+    /** The number of characters in {@link #chars}. */
+    private int pendingChars;
+    /** The number of 64-bit words fed so far. */
+    private long words;
+    /** High 64 bits of the hash, as computed by the last {@link #finish()}. */
+    private long resultHigh;
+    /** Low 64 bits of the hash, as computed by the last {@link #finish()}. */
+    private long resultLow;
+
+    /**
+     * Creates a {@link Hash128} with seed {@code 0}.
+     */
+    public Hash128() {
+        this(0);
+    }
+
+    /**
+     * Creates a {@link Hash128} with a given seed.
+     *
+     * @param seed
+     */
+    public Hash128(long seed) {
+        this.h1 = seed;
+        this.h2 = seed;
+    }
+
+    /**
+     * Feeds a {@code long} value.
+     *
+     * @param value
+     * @return This {@link Hash128}, for chaining.
+     */
+    public Hash128 putLong(long value) {
+        flushChars();
+        putWord(value);
+        return this;
+    }
+
+    /**
+     * Feeds an {@code int} value.
+     *
+     * @param value
+     * @return This {@link Hash128}, for chaining.
+     */
+    public Hash128 putInt(int value) {
+        return putLong(value);
+    }
+
+    /**
+     * Feeds a {@code boolean} value.
+     *
+     * @param value
+     * @return This {@link Hash128}, for chaining.
+     */
+    public Hash128 putBoolean(boolean value) {
+        return putLong(value ? 1 : 0);
+    }
+
+    /**
+     * Feeds a string (which may be <code>null</code>), preceded by its
+     * length.
+     *
+     * @param value
+     * @return This {@link Hash128}, for chaining.
+     */
+    public Hash128 putString(CharSequence value) {
+        if (value == null) {
+            return putLong(NULL_MARKER);
+        }
+        int length = value.length();
+        putLong(length);
+        for (int i = 0; i < length; i++) {
+            this.chars = (this.chars << 16) | value.charAt(i);
+            if (++this.pendingChars == 4) {
+                putWord(this.chars);
+                this.chars = 0;
+                this.pendingChars = 0;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the high 64 bits of the hash of the values fed so far. More
+     * values can be fed afterwards.
+     *
+     * @return
+     */
+    public long high() {
+        finish();
+        return this.resultHigh;
+    }
+
+    /**
+     * Returns the low 64 bits of the hash of the values fed so far. More
+     * values can be fed afterwards.
+     *
+     * @return
+     */
+    public long low() {
+        finish();
+        return this.resultLow;
+    }
+
+    /**
+     * Returns the hash of the values fed so far as a 32 character hexadecimal
+     * string. More values can be fed afterwards.
+     *
+     * @return
+     */
+    public String toHexString() {
+        finish();
+        char[] hex = new char[32];
+        for (int i = 0; i < 16; i++) {
+            hex[15 - i] = Character.forDigit((int) (this.resultHigh >>> (4 * i)) & 0xf, 16);
+            hex[31 - i] = Character.forDigit((int) (this.resultLow >>> (4 * i)) & 0xf, 16);
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Feeds a 64-bit word. Every second word completes a block, which is mixed
+     * into the hash state.
+     *
+     * @param word
+     */
+    private void putWord(long word) {
+        this.words++;
+        if (!this.halfBlock) {
+            this.k1 = word;
+            this.halfBlock = true;
+            return;
+        }
+        this.halfBlock = false;
+
+        this.h1 ^= mixK1(this.k1);
+        this.h1 = Long.rotateLeft(this.h1, 27);
+        this.h1 += this.h2;
+        this.h1 = this.h1 * 5 + 0x52dce729;
+
+        this.h2 ^= mixK2(word);
+        this.h2 = Long.rotateLeft(this.h2, 31);
+        this.h2 += this.h1;
+        this.h2 = this.h2 * 5 + 0x38495ab5;
+    }
+
+    /**
+     * Feeds any characters that do not yet fill a word, padded with the
+     * number of characters.
+     */
+    private void flushChars() {
+        if (this.pendingChars > 0) {
+            long word = (this.chars << 16 * (4 - this.pendingChars)) | this.pendingChars;
+            this.chars = 0;
+            this.pendingChars = 0;
+            putWord(word);
+        }
+    }
+
+    /**
+     * Computes the hash of the values fed so far into {@link #resultHigh} and
+     * {@link #resultLow}, without changing the hash state.
+     */
+    private void finish() {
+        long h1 = this.h1;
+        long h2 = this.h2;
+        long words = this.words;
+        long k1 = this.k1;
+        boolean halfBlock = this.halfBlock;
+        if (this.pendingChars > 0) {
+            long word = (this.chars << 16 * (4 - this.pendingChars)) | this.pendingChars;
+            words++;
+            if (halfBlock) {
+                h1 ^= mixK1(k1);
+                h2 ^= mixK2(word);
+                halfBlock = false;
+            } else {
+                k1 = word;
+                halfBlock = true;
+            }
+        }
+        if (halfBlock) {
+            h1 ^= mixK1(k1);
+        }
+
+        long length = words * 8;
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        this.resultHigh = h1;
+        this.resultLow = h2;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb93fe53a87fbL;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,192 @@
+package com.elastisys.scale.commons.util.metrics;
+
+import static com.elastisys.scale.commons.util.precond.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of non-negative {@code long} values (such as
+ * latencies in milliseconds) with exponentially sized buckets.
+ * <p/>
+ * Bucket {@code 0} holds the value {@code 0} and bucket {@code i > 0} holds
+ * values in the range {@code [2^(i-1), 2^i)}. This keeps the memory footprint
+ * fixed (64 counters) regardless of the number of recorded values, at the
+ * expense of percentiles only being accurate to within a factor of two.
+ * Negative values are recorded as {@code 0}.
+ * <p/>
+ * Recording a value is lock-free and allocation-free.
+ */
+public class Histogram {
+    /** Number of buckets needed to cover all non-negative {@code long}s. */
+    private static final int NUM_BUCKETS = 64;
+
+    /** Number of recorded values per bucket. */
+    private final AtomicLongArray buckets;
+    /** Total number of recorded values. */
+    private final LongAdder count;
+    /** Sum of all recorded values. */
+    private final LongAdder sum;
+    /** Smallest recorded value. */
+    private final AtomicLong min;
+    /** Largest recorded value. */
+    private final AtomicLong max;
+
+    /**
+     * Creates an empty {@link Histogram}.
+     */
+    public Histogram() {
+        this.buckets = new AtomicLongArray(NUM_BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.min = new AtomicLong(Long.MAX_VALUE);
+        this.max = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    /**
+     * Records a value in this {@link Histogram}.
+     *
+     * @param value
+     *            The value to record. Negative values are recorded as
+     *            {@code 0}.
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        this.buckets.incrementAndGet(bucketOf(v));
+        this.count.increment();
+        this.sum.add(v);
+        this.min.accumulateAndGet(v, Math::min);
+        this.max.accumulateAndGet(v, Math::max);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return
+     */
+    public long getSum() {
+        return this.sum.sum();
+    }
+
+    /**
+     * Returns the smallest recorded value, or {@code 0} if no values have been
+     * recorded.
+     *
+     * @return
+     */
+    public long getMin() {
+        return getCount() == 0 ? 0 : this.min.get();
+    }
+
+    /**
+     * Returns the largest recorded value, or {@code 0} if no values have been
+     * recorded.
+     *
+     * @return
+     */
+    public long getMax() {
+        return getCount() == 0 ? 0 : this.max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values, or {@code 0.0} if no values
+     * have been recorded.
+     *
+     * @return
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0.0 : (double) getSum() / n;
+    }
+
+    /**
+     * Returns an upper bound estimate for the given percentile of the recorded
+     * values. The estimate is the upper bound of the bucket in which the
+     * percentile falls (capped by the largest recorded value), and as such
+     * never underestimates the true percentile by more than a factor of two.
+     *
+     * @param percentile
+     *            A percentile in the range {@code [0, 100]}.
+     * @return The percentile estimate, or {@code 0} if no values have been
+     *         recorded.
+     */
+    public long getPercentile(double percentile) {
+        checkArgument(0.0 <= percentile && percentile <= 100.0, "percentile must be in range [0, 100]");
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns a snapshot of the number of recorded values per bucket. Bucket
+     * {@code 0} holds the value {@code 0} and bucket {@code i > 0} holds values
+     * in the range {@code [2^(i-1), 2^i)}.
+     *
+     * @return
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the index of the bucket that a given non-negative value falls
+     * into.
+     *
+     * @param value
+     * @return
+     */
+    static int bucketOf(long value) {
+        return NUM_BUCKETS - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Returns the (inclusive) upper bound of a given bucket.
+     *
+     * @param bucket
+     * @return
+     */
+    static long bucketUpperBound(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        if (bucket >= NUM_BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return (1L << bucket) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{count: %d, min: %d, mean: %.2f, p50: %d, p99: %d, max: %d}", getCount(), getMin(),
+                getMean(), getPercentile(50), getPercentile(99), getMax());
+    }
+}
@@ -100,6 +100,21 @@ public class TestFileUtils {
         assertFalse(FileUtils.canWriteTo(new File("/root")));
     }
 
+    /**
+     * Atomic writes should create or replace the file and leave no temporary
+     * file behind.
+     */
+    @Test
+    public void writeAtomically() throws IOException {
+        File file = new File(DIR_OWNED_BY_USER, "state.json");
+        FileUtils.writeAtomically(file, "first".getBytes());
+        assertThat(new String(Files.readAllBytes(file.toPath())), is("first"));
+
+        FileUtils.writeAtomically(file, "second".getBytes());
+        assertThat(new String(Files.readAllBytes(file.toPath())), is("second"));
+        assertThat(dirFiles(DIR_OWNED_BY_USER), is(asList("state.json")));
+    }
+
     @Test
     public void deleteRecursivelyWithFile() throws IOException {
         File fileToBeDeleted = new File(DIR_OWNED_BY_USER, "file.txt");
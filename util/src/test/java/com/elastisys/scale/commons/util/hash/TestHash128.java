@@ -0,0 +1,92 @@
+package com.elastisys.scale.commons.util.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Exercises the {@link Hash128}.
+ */
+public class TestHash128 {
+
+    /**
+     * Feeding the same values should always produce the same hash.
+     */
+    @Test
+    public void deterministic() {
+        String hash = new Hash128().putString("topic").putLong(42).putBoolean(true).toHexString();
+        assertThat(new Hash128().putString("topic").putLong(42).putBoolean(true).toHexString(), is(hash));
+        assertThat(hash.length(), is(32));
+    }
+
+    /**
+     * The hash should be readable at any point, without disturbing the values
+     * fed afterwards.
+     */
+    @Test
+    public void readInBetweenFeeds() {
+        Hash128 hash = new Hash128().putString("abc");
+        long high = hash.high();
+        long low = hash.low();
+        assertThat(hash.high(), is(high));
+        assertThat(hash.low(), is(low));
+
+        hash.putString("def");
+        assertThat(hash.toHexString(), is(new Hash128().putString("abc").putString("def").toHexString()));
+        assertThat(hash.high(), is(not(high)));
+    }
+
+    /**
+     * Moving a boundary between strings should change the hash.
+     */
+    @Test
+    public void stringBoundariesMatter() {
+        assertThat(hash("ab", "c"), is(not(hash("a", "bc"))));
+        assertThat(hash("abcd", ""), is(not(hash("", "abcd"))));
+        assertThat(hash("", null), is(not(hash(null, ""))));
+    }
+
+    /**
+     * The order of fed values should matter.
+     */
+    @Test
+    public void orderMatters() {
+        assertThat(new Hash128().putLong(1).putLong(2).toHexString(),
+                is(not(new Hash128().putLong(2).putLong(1).toHexString())));
+    }
+
+    /**
+     * The seed should be part of the hash.
+     */
+    @Test
+    public void seedMatters() {
+        assertThat(new Hash128(1).putString("a").toHexString(), is(not(new Hash128(2).putString("a").toHexString())));
+    }
+
+    /**
+     * Similar inputs should not collide.
+     */
+    @Test
+    public void noCollisionsAmongSimilarInputs() {
+        Set<String> hashes = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            hashes.add(new Hash128().putString("alert-" + i).toHexString());
+        }
+        assertThat(hashes.size(), is(100000));
+
+        Set<Long> highs = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            highs.add(new Hash128().putLong(i).high());
+        }
+        assertThat(highs.size(), is(100000));
+    }
+
+    private static String hash(String first, String second) {
+        return new Hash128().putString(first).putString(second).toHexString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.elastisys.scale.commons.util.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Exercises the {@link Histogram} class.
+ */
+public class TestHistogram {
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getSum(), is(0L));
+        assertThat(histogram.getMin(), is(0L));
+        assertThat(histogram.getMax(), is(0L));
+        assertThat(histogram.getMean(), is(0.0));
+        assertThat(histogram.getPercentile(50), is(0L));
+    }
+
+    @Test
+    public void testRecord() {
+        Histogram histogram = new Histogram();
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(10);
+
+        assertThat(histogram.getCount(), is(4L));
+        assertThat(histogram.getSum(), is(16L));
+        assertThat(histogram.getMin(), is(1L));
+        assertThat(histogram.getMax(), is(10L));
+        assertThat(histogram.getMean(), is(4.0));
+
+        long[] buckets = histogram.getBucketCounts();
+        assertThat(buckets[0], is(0L));
+        // [1, 2)
+        assertThat(buckets[1], is(1L));
+        // [2, 4)
+        assertThat(buckets[2], is(2L));
+        // [8, 16)
+        assertThat(buckets[4], is(1L));
+    }
+
+    /**
+     * Negative values are recorded as zero.
+     */
+    @Test
+    public void testRecordNegative() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        assertThat(histogram.getCount(), is(1L));
+        assertThat(histogram.getMin(), is(0L));
+        assertThat(histogram.getBucketCounts()[0], is(1L));
+    }
+
+    /**
+     * Percentiles are estimated by the upper bound of the bucket they fall in,
+     * capped by the maximum recorded value.
+     */
+    @Test
+    public void testPercentile() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        // p50 = 50 falls in bucket [32, 64)
+        assertThat(histogram.getPercentile(50), is(63L));
+        // p100 = 100 falls in bucket [64, 128), capped by max
+        assertThat(histogram.getPercentile(100), is(100L));
+        // p1 = 1 falls in bucket [1, 2)
+        assertThat(histogram.getPercentile(1), is(1L));
+        assertThat(histogram.getPercentile(0), is(1L));
+    }
+
+    @Test
+    public void testBucketOf() {
+        assertThat(Histogram.bucketOf(0), is(0));
+        assertThat(Histogram.bucketOf(1), is(1));
+        assertThat(Histogram.bucketOf(2), is(2));
+        assertThat(Histogram.bucketOf(3), is(2));
+        assertThat(Histogram.bucketOf(4), is(3));
+        assertThat(Histogram.bucketOf(Long.MAX_VALUE), is(63));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalPercentile() {
+        new Histogram().getPercentile(101);
+    }
+}